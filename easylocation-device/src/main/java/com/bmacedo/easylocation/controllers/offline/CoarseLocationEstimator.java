@@ -0,0 +1,110 @@
+package com.bmacedo.easylocation.controllers.offline;
+
+import com.bmacedo.easylocation.controllers.util.GeodesyUtil;
+
+/**
+ *
+ * Estimates a coarse position from the cells and access points visible to the device, as the
+ * weighted centroid of their positions in the {@link OfflineLocationDatabase}. A source weighs
+ * more when its signal is stronger and its range smaller.
+ *
+ * The accuracy is the weighted mean range of the sources plus the weighted root mean square
+ * distance between the sources and the centroid, so that sources that disagree widen it.
+ *
+ * Instances can be reused with {@link #reset()} and are not thread safe.
+ *
+ */
+public class CoarseLocationEstimator {
+
+    // Maximum number of sources considered, the strongest are usually reported first
+    public static final int MAX_SOURCES = 64;
+
+    // Ranges below this are not trusted, in meters
+    private static final int MIN_RANGE = 10;
+    // Signal strengths used to weigh the sources, in dBm
+    private static final int WEAKEST_SIGNAL = -120;
+    private static final int STRONGEST_SIGNAL = -30;
+
+    private final OfflineLocationDatabase database;
+    private final double[] latitudes = new double[MAX_SOURCES];
+    private final double[] longitudes = new double[MAX_SOURCES];
+    private final double[] ranges = new double[MAX_SOURCES];
+    private final double[] weights = new double[MAX_SOURCES];
+    private int count;
+
+    public CoarseLocationEstimator(OfflineLocationDatabase database) {
+        this.database = database;
+    }
+
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * Looks up the source in the database and adds it to the estimate.
+     * @param key the key of the cell or access point, or {@link OfflineLocationDatabase#NOT_FOUND}
+     * @param signalDbm the signal strength, or 0 if unknown
+     * @return true if the source is in the database
+     */
+    public boolean add(long key, int signalDbm) {
+        if (key == OfflineLocationDatabase.NOT_FOUND || count == MAX_SOURCES) {
+            return false;
+        }
+        long index = database.indexOf(key);
+        if (index == OfflineLocationDatabase.NOT_FOUND) {
+            return false;
+        }
+        double range = Math.max(MIN_RANGE, database.getRange(index));
+        latitudes[count] = database.getLatitude(index);
+        longitudes[count] = database.getLongitude(index);
+        ranges[count] = range;
+        weights[count] = getSignalWeight(signalDbm) / range;
+        count++;
+        return true;
+    }
+
+    public boolean hasEstimate() {
+        return count > 0;
+    }
+
+    /**
+     * @param out array that receives the latitude, the longitude and the accuracy in meters
+     * @return false if no source was found in the database
+     */
+    public boolean estimate(double[] out) {
+        if (count == 0) {
+            return false;
+        }
+        double totalWeight = 0;
+        double latitude = 0;
+        double longitude = 0;
+        double range = 0;
+        for (int i = 0; i < count; i++) {
+            totalWeight += weights[i];
+            latitude += weights[i] * latitudes[i];
+            longitude += weights[i] * longitudes[i];
+            range += weights[i] * ranges[i];
+        }
+        latitude /= totalWeight;
+        longitude /= totalWeight;
+        range /= totalWeight;
+        double squaredDistance = 0;
+        for (int i = 0; i < count; i++) {
+            double distance = GeodesyUtil.equirectangular(latitude, longitude, latitudes[i], longitudes[i]);
+            squaredDistance += weights[i] * distance * distance;
+        }
+        out[0] = latitude;
+        out[1] = longitude;
+        out[2] = range + Math.sqrt(squaredDistance / totalWeight);
+        return true;
+    }
+
+    private static double getSignalWeight(int signalDbm) {
+        if (signalDbm == 0) {
+            // Unknown, weighs as an average signal
+            signalDbm = (WEAKEST_SIGNAL + STRONGEST_SIGNAL) / 2;
+        }
+        int clamped = Math.max(WEAKEST_SIGNAL, Math.min(STRONGEST_SIGNAL, signalDbm));
+        return 1 + (clamped - WEAKEST_SIGNAL) / 10.0;
+    }
+}
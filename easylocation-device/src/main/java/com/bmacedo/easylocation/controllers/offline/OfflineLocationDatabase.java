@@ -0,0 +1,203 @@
+package com.bmacedo.easylocation.controllers.offline;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *
+ * Read-only database of the positions of cell towers and Wi-Fi access points, memory-mapped from
+ * a file. The records are never loaded in the heap: each lookup is a binary search over the
+ * mapped file, so only the pages it touches are read, and the OS may drop them at any time.
+ *
+ * File format, big endian:
+ *
+ * <pre>
+ * header:  int magic ('ELDB'), int version, long record count
+ * record:  long key, int latitude * 1e7, int longitude * 1e7, int range in meters
+ * </pre>
+ *
+ * The records are sorted by key, compared as unsigned numbers, and keys are unique. See
+ * {@link #cellKey} and {@link #wifiKey} for how the keys are built, and
+ * {@link OfflineLocationDatabaseWriter} to create a database.
+ *
+ * Lookups can be made from any thread.
+ *
+ */
+public class OfflineLocationDatabase implements Closeable {
+
+    public static final int MAGIC = 0x454C4442;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 20;
+
+    // Index returned when the key is not in the database
+    public static final long NOT_FOUND = -1;
+
+    // A single mapping cannot be larger than 2GB, so larger files are mapped in segments
+    private static final int RECORDS_PER_SEGMENT = Integer.MAX_VALUE / RECORD_SIZE;
+    private static final double E7 = 1e7;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] segments;
+    private final long count;
+
+    private OfflineLocationDatabase(RandomAccessFile file, MappedByteBuffer[] segments, long count) {
+        this.file = file;
+        this.segments = segments;
+        this.count = count;
+    }
+
+    /**
+     * Maps the database file. This only reads the header, so it is fast even for large files.
+     * @throws IOException if the file cannot be read or is not a valid database
+     */
+    public static OfflineLocationDatabase open(File databaseFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(databaseFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Truncated offline location database: " + databaseFile);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported offline location database: " + databaseFile);
+            }
+            long count = header.getLong(8);
+            if (count < 0 || HEADER_SIZE + count * RECORD_SIZE > channel.size()) {
+                throw new IOException("Truncated offline location database: " + databaseFile);
+            }
+            int segmentCount = (int) ((count + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long first = (long) i * RECORDS_PER_SEGMENT;
+                long records = Math.min(RECORDS_PER_SEGMENT, count - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + first * RECORD_SIZE, records * RECORD_SIZE);
+                segments[i].order(ByteOrder.BIG_ENDIAN);
+            }
+            return new OfflineLocationDatabase(file, segments, count);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of records
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Finds the record of the key by binary search.
+     * @return the index of the record, or {@link #NOT_FOUND}
+     */
+    public long indexOf(long key) {
+        long low = 0;
+        long high = count - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int comparison = compareUnsigned(getKey(middle), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    public long getKey(long index) {
+        return segment(index).getLong(offset(index));
+    }
+
+    public double getLatitude(long index) {
+        return segment(index).getInt(offset(index) + 8) / E7;
+    }
+
+    public double getLongitude(long index) {
+        return segment(index).getInt(offset(index) + 12) / E7;
+    }
+
+    /**
+     * @return the radius around the position where the cell or access point is visible, in meters
+     */
+    public int getRange(long index) {
+        return segment(index).getInt(offset(index) + 16);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The mappings are released by the garbage collector
+        file.close();
+    }
+
+    /**
+     * Builds the key of a GSM, UMTS or LTE cell.
+     * @param mcc the mobile country code, from 1 to 999
+     * @param mnc the mobile network code, from 0 to 999
+     * @param lac the location area code, or the tracking area code for LTE, up to 16 bits
+     * @param cid the cell id, or the E-UTRAN cell id for LTE, up to 28 bits
+     * @return the key, or {@link #NOT_FOUND} if any of the values is out of range
+     */
+    public static long cellKey(int mcc, int mnc, int lac, long cid) {
+        if (mcc < 1 || mcc > 999 || mnc < 0 || mnc > 999 || lac < 0 || lac > 0xFFFF || cid < 0 || cid > 0xFFFFFFFL) {
+            return NOT_FOUND;
+        }
+        return ((long) mcc << 54) | ((long) mnc << 44) | ((long) lac << 28) | cid;
+    }
+
+    /**
+     * Builds the key of a Wi-Fi access point. As the MAC address has 48 bits and the mcc of a cell
+     * key is never zero, the keys of access points and cells never collide.
+     * @param bssid the MAC address of the access point, e.g. "00:1a:2b:3c:4d:5e"
+     * @return the key, or {@link #NOT_FOUND} if the address is not valid
+     */
+    public static long wifiKey(String bssid) {
+        if (bssid == null || bssid.length() != 17) {
+            return NOT_FOUND;
+        }
+        long mac = 0;
+        for (int i = 0; i < 17; i++) {
+            char c = bssid.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':' && c != '-') {
+                    return NOT_FOUND;
+                }
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                return NOT_FOUND;
+            }
+            mac = (mac << 4) | digit;
+        }
+        return mac;
+    }
+
+    /**
+     * Compares two keys as unsigned numbers, which is the order of the records in the file.
+     */
+    public static int compareUnsigned(long a, long b) {
+        a += Long.MIN_VALUE;
+        b += Long.MIN_VALUE;
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    private MappedByteBuffer segment(long index) {
+        return segments[(int) (index / RECORDS_PER_SEGMENT)];
+    }
+
+    private static int offset(long index) {
+        return (int) (index % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,77 @@
+package com.bmacedo.easylocation.controllers.offline;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ *
+ * Writes an {@link OfflineLocationDatabase} file. The records are streamed to disk, so databases
+ * of any size can be written, but they must be added already sorted by key.
+ *
+ * The file is written to a temporary file and renamed on {@link #close()}, so a database being
+ * written is never opened by mistake.
+ *
+ */
+public class OfflineLocationDatabaseWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final File temporaryFile;
+    private final DataOutputStream output;
+    private long count;
+    private long lastKey;
+    private boolean isClosed;
+
+    public OfflineLocationDatabaseWriter(File file) throws IOException {
+        this.file = file;
+        this.temporaryFile = new File(file.getPath() + ".tmp");
+        this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), BUFFER_SIZE));
+        output.writeInt(OfflineLocationDatabase.MAGIC);
+        output.writeInt(OfflineLocationDatabase.VERSION);
+        // The record count is written on close
+        output.writeLong(0);
+    }
+
+    /**
+     * @param key the key, greater than the previous one when compared as unsigned numbers
+     * @param latitude the latitude in degrees
+     * @param longitude the longitude in degrees
+     * @param range the radius where the cell or access point is visible, in meters
+     */
+    public void add(long key, double latitude, double longitude, int range) throws IOException {
+        if (count > 0 && OfflineLocationDatabase.compareUnsigned(key, lastKey) <= 0) {
+            throw new IllegalArgumentException("The keys must be added in increasing order");
+        }
+        output.writeLong(key);
+        output.writeInt((int) Math.round(latitude * 1e7));
+        output.writeInt((int) Math.round(longitude * 1e7));
+        output.writeInt(range);
+        lastKey = key;
+        count++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        output.close();
+        RandomAccessFile header = new RandomAccessFile(temporaryFile, "rw");
+        try {
+            header.seek(8);
+            header.writeLong(count);
+        } finally {
+            header.close();
+        }
+        if (!temporaryFile.renameTo(file)) {
+            throw new IOException("Could not create the offline location database " + file);
+        }
+    }
+}
@@ -7,9 +7,15 @@ import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Bundle;
 
+import com.bmacedo.easylocation.api.EasyLocationConfiguration;
+import com.bmacedo.easylocation.api.EasyLocationMetrics;
+import com.bmacedo.easylocation.controllers.tracing.Tracing;
+import com.bmacedo.easylocation.controllers.util.HandlerTaskScheduler;
 import com.bmacedo.easylocation.controllers.util.LocationUtil;
 import com.bmacedo.easylocation.models.LocationStrategyError;
 
+import java.util.List;
+
 
 /**
  * 
@@ -26,7 +32,10 @@ import com.bmacedo.easylocation.models.LocationStrategyError;
  */
 public class FallbackLocationStrategy extends LocationStrategy implements LocationListener {
 
-    public static final String STRATEGY_NAME = "Fallback_Strategy";
+    public static final String STRATEGY_NAME = LocationStrategyLoader.DEVICE;
+
+    // Interval between location updates when none is configured, in milliseconds
+    private static final long DEFAULT_UPDATE_INTERVAL = 20000;
 
     // Object that stores the unique instance of this class
     private static FallbackLocationStrategy instance;
@@ -38,8 +47,10 @@ public class FallbackLocationStrategy extends LocationStrategy implements Locati
     private Criteria criteria;
     // Variable that identifies when requested to stop
     private boolean isStopped = false;
+    // Object that holds the locations while batching is enabled
+    private LocationBatcher batcher;
 
-    private FallbackLocationStrategy(LocationStrategyManager manager, Context context) {
+    protected FallbackLocationStrategy(LocationStrategyManager manager, Context context) {
         super(manager, context);
 
         androidLocationManager = (LocationManager) getContext().getSystemService(Context.LOCATION_SERVICE);
@@ -48,7 +59,7 @@ public class FallbackLocationStrategy extends LocationStrategy implements Locati
         criteria.setAccuracy(Criteria.ACCURACY_MEDIUM);
     }
 
-    public static FallbackLocationStrategy getInstance(LocationStrategyManager manager, Context context) {
+    public static synchronized FallbackLocationStrategy getInstance(LocationStrategyManager manager, Context context) {
         if (instance == null) {
             instance = new FallbackLocationStrategy(manager, context);
         } else {
@@ -61,19 +72,37 @@ public class FallbackLocationStrategy extends LocationStrategy implements Locati
     @Override
     public void start() {
         isStopped = false;
-        if (findBestProvider()) {
-            Location location = androidLocationManager.getLastKnownLocation(bestProvider);
-            if (location != null) {
-                getManager().onLocationObtained(location);
+        long maxWaitTime = EasyLocationConfiguration.getInstance().getMaxWaitTime();
+        if (maxWaitTime > 0) {
+            if (batcher == null) {
+                batcher = new LocationBatcher(new LocationBatcher.Listener() {
+                    @Override
+                    public void onBatchReady(List<Location> locations) {
+                        getManager().onLocationsObtained(locations);
+                    }
+                }, new HandlerTaskScheduler(), maxWaitTime, LocationBatcher.DEFAULT_MAX_BATCH_SIZE);
+            } else {
+                batcher.setMaxWaitTime(maxWaitTime);
             }
-            androidLocationManager.requestLocationUpdates(bestProvider, 20000, 1, this);
+        } else {
+            batcher = null;
+        }
+        // The last known locations of the providers are already offered by the service, through
+        // its LastKnownLocationAggregator, before the strategy is started
+        if (findBestProvider()) {
+            requestLocationUpdates();
         }
     }
 
     @Override
     public void stop() {
-        isStopped = true;
         androidLocationManager.removeUpdates(this);
+        if (batcher != null) {
+            // The locations held were already obtained, so they are delivered instead of discarded,
+            // before the strategy is marked as stopped
+            batcher.flush();
+        }
+        isStopped = true;
     }
 
     @Override
@@ -83,7 +112,12 @@ public class FallbackLocationStrategy extends LocationStrategy implements Locati
 
     @Override
     public void onLocationChanged(Location location) {
-        getManager().onLocationObtained(location);
+        EasyLocationMetrics.getInstance().onLocationWakeup(1);
+        if (batcher != null) {
+            batcher.add(location);
+        } else {
+            getManager().onLocationObtained(location);
+        }
     }
 
     @Override
@@ -104,19 +138,53 @@ public class FallbackLocationStrategy extends LocationStrategy implements Locati
     private void restartLocationUpdates() {
         if (!isStopped && findBestProvider()) {
             androidLocationManager.removeUpdates(this);
-            androidLocationManager.requestLocationUpdates(bestProvider, 20000, 1, this);
+            requestLocationUpdates();
+        }
+    }
+
+    private void requestLocationUpdates() {
+        if (Tracing.ENABLED) {
+            Tracing.beginSection(Tracing.PROVIDER_REQUEST);
+        }
+        try {
+            androidLocationManager.requestLocationUpdates(bestProvider, getUpdateInterval(), 1, this);
+        } finally {
+            if (Tracing.ENABLED) {
+                Tracing.endSection();
+            }
         }
     }
 
+    protected long getUpdateInterval() {
+        long interval = EasyLocationConfiguration.getInstance().getUpdateInterval();
+        return interval > 0 ? interval : DEFAULT_UPDATE_INTERVAL;
+    }
+
     private boolean findBestProvider() {
         if (LocationUtil.isLocationEnabled(getContext().getContentResolver())) {
-            bestProvider = androidLocationManager.getBestProvider(criteria, true);
+            if (Tracing.ENABLED) {
+                Tracing.beginSection(Tracing.BEST_PROVIDER);
+            }
+            try {
+                bestProvider = androidLocationManager.getBestProvider(criteria, true);
+            } finally {
+                if (Tracing.ENABLED) {
+                    Tracing.endSection();
+                }
+            }
             if (bestProvider != null && !bestProvider.isEmpty()) {
                 return true;
             }
         }
         // Gets here only if !isLocationEnabled or bestProvider == null
-        getManager().onStrategyError(new LocationStrategyError(LocationStrategyError.StrategyError.STRATEGY_DISABLED, getName()));
+        onProvidersDisabled();
         return false;
     }
+
+    /**
+     * Called when there is no location provider enabled. Reports the error to the manager.
+     */
+    protected void onProvidersDisabled() {
+        getManager().onStrategyError(new LocationStrategyError(LocationStrategyError.StrategyError.STRATEGY_DISABLED, getName()));
+    }
 }
@@ -0,0 +1,320 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import android.content.Context;
+import android.location.Location;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.telephony.CellIdentityGsm;
+import android.telephony.CellIdentityLte;
+import android.telephony.CellIdentityWcdma;
+import android.telephony.CellInfo;
+import android.telephony.CellInfoGsm;
+import android.telephony.CellInfoLte;
+import android.telephony.CellInfoWcdma;
+import android.telephony.CellLocation;
+import android.telephony.TelephonyManager;
+import android.telephony.gsm.GsmCellLocation;
+import android.util.Log;
+
+import com.bmacedo.easylocation.controllers.offline.CoarseLocationEstimator;
+import com.bmacedo.easylocation.controllers.offline.OfflineLocationDatabase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ *
+ * This class represents a strategy that delivers a coarse location right away, without network
+ * or GPS, and then keeps obtaining locations from the device location providers, as the
+ * {@link FallbackLocationStrategy} does.
+ *
+ * The coarse location is the weighted centroid of the cells and Wi-Fi access points visible to
+ * the device, looked up in an {@link OfflineLocationDatabase} provided by the app. The lookups run
+ * in a background thread and are repeated every update interval until the first location of the
+ * providers is obtained. If the location providers are disabled, the coarse locations keep being
+ * delivered while the database knows the visible cells or access points.
+ *
+ * This strategy is not registered automatically. Register it with
+ * <pre>
+ * EasyLocationManager.registerStrategy(OfflineLocationStrategy.createDescriptor(databaseFile));
+ * </pre>
+ *
+ */
+public class OfflineLocationStrategy extends FallbackLocationStrategy {
+
+    public static final String STRATEGY_NAME = "Offline_Strategy";
+    // Provider of the coarse locations
+    public static final String PROVIDER = "easylocation_offline";
+
+    private static final String TAG = "OfflineLocationStrategy";
+    // Characteristics declared in the descriptor: the accuracy is the one of the providers, but
+    // the first location is obtained almost instantly
+    private static final float DECLARED_ACCURACY = 30;
+    private static final long DECLARED_LATENCY = 100;
+
+    // Object that stores the unique instance of this class
+    private static OfflineLocationStrategy instance;
+
+    // File of the database, which may be changed while the strategy runs
+    private volatile File databaseFile;
+    // Handler of the main thread, where the locations are delivered
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Handler of the background thread where the lookups run, created on the first start
+    private Handler lookupHandler;
+
+    // The fields below are only accessed from the background thread
+    private OfflineLocationDatabase database;
+    private File openedDatabaseFile;
+    private CoarseLocationEstimator estimator;
+
+    // The fields below are only accessed from the main thread
+    // Incremented on every start and stop, so that the results of previous lookups are discarded
+    private int generation;
+    private boolean isRunning;
+    private boolean hasLookedUp;
+    private boolean hasCoarseFix;
+    private boolean hasProviderFix;
+    private boolean areProvidersDisabled;
+
+    private OfflineLocationStrategy(LocationStrategyManager manager, Context context) {
+        super(manager, context);
+    }
+
+    public static synchronized OfflineLocationStrategy getInstance(LocationStrategyManager manager, Context context) {
+        if (instance == null) {
+            instance = new OfflineLocationStrategy(manager, context);
+        } else {
+            instance.setManager(manager);
+            instance.setContext(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Creates the descriptor used to register this strategy.
+     * @param databaseFile the database of the cells and access points
+     */
+    public static LocationStrategyDescriptor createDescriptor(final File databaseFile) {
+        return new LocationStrategyDescriptor(STRATEGY_NAME, LocationStrategyDescriptor.Cost.HIGH,
+                DECLARED_ACCURACY, DECLARED_LATENCY, new LocationStrategyDescriptor.Factory() {
+            @Override
+            public LocationStrategy create(LocationStrategyManager manager, Context context) {
+                OfflineLocationStrategy strategy = getInstance(manager, context);
+                strategy.databaseFile = databaseFile;
+                return strategy;
+            }
+        });
+    }
+
+    @Override
+    public void start() {
+        generation++;
+        isRunning = true;
+        hasLookedUp = false;
+        hasCoarseFix = false;
+        hasProviderFix = false;
+        areProvidersDisabled = false;
+        if (lookupHandler == null) {
+            HandlerThread thread = new HandlerThread(TAG);
+            thread.start();
+            lookupHandler = new Handler(thread.getLooper());
+        }
+        lookupHandler.post(new LookupTask(generation));
+        super.start();
+    }
+
+    @Override
+    public void stop() {
+        generation++;
+        isRunning = false;
+        if (lookupHandler != null) {
+            lookupHandler.removeCallbacksAndMessages(null);
+        }
+        super.stop();
+    }
+
+    @Override
+    public String getName() {
+        return STRATEGY_NAME;
+    }
+
+    @Override
+    public void onLocationChanged(Location location) {
+        if (!hasProviderFix) {
+            // The providers are more accurate, so there is no need for more lookups
+            hasProviderFix = true;
+            lookupHandler.removeCallbacksAndMessages(null);
+        }
+        super.onLocationChanged(location);
+    }
+
+    @Override
+    protected void onProvidersDisabled() {
+        if (!isRunning || areProvidersDisabled) {
+            return;
+        }
+        areProvidersDisabled = true;
+        if (hasLookedUp && !hasCoarseFix) {
+            super.onProvidersDisabled();
+        }
+    }
+
+    private void onLookupFinished(int lookupGeneration, double[] estimate) {
+        if (!isRunning || lookupGeneration != generation || hasProviderFix) {
+            return;
+        }
+        hasLookedUp = true;
+        if (estimate != null) {
+            hasCoarseFix = true;
+            getManager().onLocationObtained(createLocation(estimate));
+        } else if (!hasCoarseFix && areProvidersDisabled) {
+            // There is no way to obtain a location
+            super.onProvidersDisabled();
+            return;
+        }
+        lookupHandler.postDelayed(new LookupTask(lookupGeneration), getUpdateInterval());
+    }
+
+    /**
+     * Runs in the background thread.
+     * @return the latitude, longitude and accuracy, or null if no visible source is in the database
+     */
+    private double[] lookup() {
+        File file = databaseFile;
+        if (file == null) {
+            return null;
+        }
+        try {
+            if (database == null || !file.equals(openedDatabaseFile)) {
+                closeDatabase();
+                database = OfflineLocationDatabase.open(file);
+                openedDatabaseFile = file;
+                estimator = new CoarseLocationEstimator(database);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not open the offline location database", e);
+            return null;
+        }
+        estimator.reset();
+        try {
+            addVisibleCells(estimator);
+            addVisibleAccessPoints(estimator);
+        } catch (SecurityException e) {
+            Log.w(TAG, "Not allowed to read the visible cells or access points", e);
+        }
+        double[] estimate = new double[3];
+        return estimator.estimate(estimate) ? estimate : null;
+    }
+
+    private void addVisibleCells(CoarseLocationEstimator estimator) {
+        TelephonyManager telephonyManager = (TelephonyManager) getContext().getSystemService(Context.TELEPHONY_SERVICE);
+        if (telephonyManager == null) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            List<CellInfo> cells = telephonyManager.getAllCellInfo();
+            if (cells != null && !cells.isEmpty()) {
+                for (CellInfo cell : cells) {
+                    addCell(estimator, cell);
+                }
+                return;
+            }
+        }
+        // Older devices only report the serving cell
+        CellLocation cellLocation = telephonyManager.getCellLocation();
+        String operator = telephonyManager.getNetworkOperator();
+        if (cellLocation instanceof GsmCellLocation && operator != null && operator.length() >= 5) {
+            GsmCellLocation gsmCellLocation = (GsmCellLocation) cellLocation;
+            try {
+                int mcc = Integer.parseInt(operator.substring(0, 3));
+                int mnc = Integer.parseInt(operator.substring(3));
+                estimator.add(OfflineLocationDatabase.cellKey(mcc, mnc, gsmCellLocation.getLac(), gsmCellLocation.getCid()), 0);
+            } catch (NumberFormatException e) {
+                // Unknown operator
+            }
+        }
+    }
+
+    private static void addCell(CoarseLocationEstimator estimator, CellInfo cell) {
+        // The unknown values are Integer.MAX_VALUE, which cellKey rejects
+        if (cell instanceof CellInfoGsm) {
+            CellIdentityGsm identity = ((CellInfoGsm) cell).getCellIdentity();
+            estimator.add(OfflineLocationDatabase.cellKey(identity.getMcc(), identity.getMnc(), identity.getLac(),
+                    identity.getCid()), ((CellInfoGsm) cell).getCellSignalStrength().getDbm());
+        } else if (cell instanceof CellInfoLte) {
+            CellIdentityLte identity = ((CellInfoLte) cell).getCellIdentity();
+            estimator.add(OfflineLocationDatabase.cellKey(identity.getMcc(), identity.getMnc(), identity.getTac(),
+                    identity.getCi()), ((CellInfoLte) cell).getCellSignalStrength().getDbm());
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2 && cell instanceof CellInfoWcdma) {
+            CellIdentityWcdma identity = ((CellInfoWcdma) cell).getCellIdentity();
+            estimator.add(OfflineLocationDatabase.cellKey(identity.getMcc(), identity.getMnc(), identity.getLac(),
+                    identity.getCid()), ((CellInfoWcdma) cell).getCellSignalStrength().getDbm());
+        }
+    }
+
+    private void addVisibleAccessPoints(CoarseLocationEstimator estimator) {
+        WifiManager wifiManager = (WifiManager) getContext().getSystemService(Context.WIFI_SERVICE);
+        if (wifiManager == null) {
+            return;
+        }
+        // The results of the last scan, made by the system or by other apps
+        List<ScanResult> results = wifiManager.getScanResults();
+        if (results != null) {
+            for (ScanResult result : results) {
+                estimator.add(OfflineLocationDatabase.wifiKey(result.BSSID), result.level);
+            }
+        }
+    }
+
+    private void closeDatabase() {
+        if (database != null) {
+            try {
+                database.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Could not close the offline location database", e);
+            }
+            database = null;
+            openedDatabaseFile = null;
+        }
+    }
+
+    private static Location createLocation(double[] estimate) {
+        Location location = new Location(PROVIDER);
+        location.setLatitude(estimate[0]);
+        location.setLongitude(estimate[1]);
+        location.setAccuracy((float) estimate[2]);
+        location.setTime(System.currentTimeMillis());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            location.setElapsedRealtimeNanos(SystemClock.elapsedRealtimeNanos());
+        }
+        return location;
+    }
+
+    /**
+     * Looks up the visible sources in the background thread and delivers the result on the main thread
+     */
+    private class LookupTask implements Runnable {
+        private final int lookupGeneration;
+
+        LookupTask(int lookupGeneration) {
+            this.lookupGeneration = lookupGeneration;
+        }
+
+        @Override
+        public void run() {
+            final double[] estimate = lookup();
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    onLookupFinished(lookupGeneration, estimate);
+                }
+            });
+        }
+    }
+}
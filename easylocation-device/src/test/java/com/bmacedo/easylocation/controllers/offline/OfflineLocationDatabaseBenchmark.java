@@ -0,0 +1,118 @@
+package com.bmacedo.easylocation.controllers.offline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Lookup cost of the {@link OfflineLocationDatabase} on a synthetic database with the given number
+ * of records. The keys are the even numbers, so half of the random lookups find a record. The
+ * heap is limited to 256 MB, which the 50 million records (about 1 GB) would not fit in, to show
+ * that the records stay in the mapped file. The database is written to the temporary directory in
+ * the setup, which takes a while for the largest size. Run it from the unit test classpath:
+ *
+ * java -cp [test classpath] org.openjdk.jmh.Main OfflineLocationDatabaseBenchmark
+ *
+ * Add -p records=1000000 to skip the largest database.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class OfflineLocationDatabaseBenchmark {
+
+    private static final int LOOKUPS = 4096;
+    // Sources visible in a typical scan, cells and access points
+    private static final int SOURCES = 20;
+
+    @Param({"1000000", "50000000"})
+    public long records;
+
+    private File file;
+    private OfflineLocationDatabase database;
+    private CoarseLocationEstimator estimator;
+    private long[] keys;
+    private final double[] estimate = new double[3];
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("offline", ".db");
+        file.delete();
+        Random random = new Random(1);
+        OfflineLocationDatabaseWriter writer = new OfflineLocationDatabaseWriter(file);
+        try {
+            for (long i = 0; i < records; i++) {
+                writer.add(2 * i, -60 + random.nextDouble() * 130, -180 + random.nextDouble() * 360,
+                        50 + random.nextInt(2000));
+            }
+        } finally {
+            writer.close();
+        }
+        database = OfflineLocationDatabase.open(file);
+        estimator = new CoarseLocationEstimator(database);
+        keys = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            keys[i] = (long) (random.nextDouble() * 2 * records);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        database.close();
+        file.delete();
+    }
+
+    /**
+     * The mappings are only released by the garbage collector, so opening in a loop would exhaust
+     * the mappings of the process. The database is opened once per strategy anyway.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5)
+    @Measurement(iterations = 20)
+    public long open() throws IOException {
+        OfflineLocationDatabase opened = OfflineLocationDatabase.open(file);
+        long size = opened.size();
+        opened.close();
+        return size;
+    }
+
+    @Benchmark
+    public long indexOf() {
+        return database.indexOf(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean estimate() {
+        estimator.reset();
+        for (int i = 0; i < SOURCES; i++) {
+            estimator.add(keys[nextIndex()], -70);
+        }
+        return estimator.estimate(estimate);
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == LOOKUPS ? 0 : i + 1;
+        return i;
+    }
+}
@@ -0,0 +1,128 @@
+package com.bmacedo.easylocation.controllers.offline;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OfflineLocationDatabaseTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("offline", ".db");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void recordsAreFoundByKey() throws IOException {
+        OfflineLocationDatabaseWriter writer = new OfflineLocationDatabaseWriter(file);
+        for (int i = 0; i < 1000; i++) {
+            writer.add(2 * i, i * 0.001, -i * 0.001, i);
+        }
+        writer.close();
+
+        OfflineLocationDatabase database = OfflineLocationDatabase.open(file);
+        try {
+            assertEquals(1000, database.size());
+            long index = database.indexOf(2 * 500);
+            assertEquals(500, index);
+            assertEquals(0.5, database.getLatitude(index), 1e-7);
+            assertEquals(-0.5, database.getLongitude(index), 1e-7);
+            assertEquals(500, database.getRange(index));
+            assertEquals(OfflineLocationDatabase.NOT_FOUND, database.indexOf(2 * 500 + 1));
+            assertEquals(OfflineLocationDatabase.NOT_FOUND, database.indexOf(2000));
+        } finally {
+            database.close();
+        }
+    }
+
+    @Test
+    public void keysAreComparedAsUnsigned() throws IOException {
+        // Country codes from 512 set the sign bit of the cell keys
+        long negative = OfflineLocationDatabase.cellKey(724, 5, 1, 1);
+        assertTrue(negative < 0);
+        OfflineLocationDatabaseWriter writer = new OfflineLocationDatabaseWriter(file);
+        writer.add(1, 1, 1, 100);
+        writer.add(negative, 2, 2, 100);
+        writer.close();
+
+        OfflineLocationDatabase database = OfflineLocationDatabase.open(file);
+        try {
+            assertEquals(0, database.indexOf(1));
+            assertEquals(1, database.indexOf(negative));
+        } finally {
+            database.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void writerRejectsUnsortedKeys() throws IOException {
+        OfflineLocationDatabaseWriter writer = new OfflineLocationDatabaseWriter(file);
+        try {
+            writer.add(2, 0, 0, 100);
+            writer.add(1, 0, 0, 100);
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFileIsRejected() throws IOException {
+        OfflineLocationDatabaseWriter writer = new OfflineLocationDatabaseWriter(file);
+        writer.add(1, 0, 0, 100);
+        writer.add(2, 0, 0, 100);
+        writer.close();
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(truncated.length() - 1);
+        truncated.close();
+
+        OfflineLocationDatabase.open(file);
+    }
+
+    @Test
+    public void cellAndWifiKeysDoNotCollide() {
+        long cell = OfflineLocationDatabase.cellKey(208, 1, 1, 1);
+        long wifi = OfflineLocationDatabase.wifiKey("00:00:00:00:00:01");
+        assertNotEquals(OfflineLocationDatabase.NOT_FOUND, cell);
+        assertNotEquals(OfflineLocationDatabase.NOT_FOUND, wifi);
+        assertNotEquals(cell, wifi);
+    }
+
+    @Test
+    public void estimateIsBetweenTheSources() throws IOException {
+        OfflineLocationDatabaseWriter writer = new OfflineLocationDatabaseWriter(file);
+        writer.add(1, 48.0, 2.0, 100);
+        writer.add(2, 48.002, 2.0, 100);
+        writer.close();
+
+        OfflineLocationDatabase database = OfflineLocationDatabase.open(file);
+        try {
+            CoarseLocationEstimator estimator = new CoarseLocationEstimator(database);
+            assertTrue(estimator.add(1, -60));
+            assertTrue(estimator.add(2, -60));
+            assertFalse(estimator.add(3, -60));
+            double[] estimate = new double[3];
+            assertTrue(estimator.estimate(estimate));
+            assertEquals(48.001, estimate[0], 1e-6);
+            assertEquals(2.0, estimate[1], 1e-6);
+            assertTrue(estimate[2] >= 100);
+        } finally {
+            database.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import android.content.Context;
+import android.location.Location;
+import android.location.LocationManager;
+import android.provider.Settings;
+
+import com.bmacedo.easylocation.api.EasyLocationConfiguration;
+import com.bmacedo.easylocation.models.LocationStrategyError;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLocationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class FallbackLocationStrategyTest {
+
+    private static final long MAX_WAIT_TIME = 60000;
+
+    private final FakeManager manager = new FakeManager();
+    private long previousMaxWaitTime;
+    private FallbackLocationStrategy strategy;
+
+    @Before
+    public void setUp() {
+        previousMaxWaitTime = EasyLocationConfiguration.getInstance().getMaxWaitTime();
+        EasyLocationConfiguration.getInstance().setMaxWaitTime(MAX_WAIT_TIME);
+        Settings.Secure.putInt(RuntimeEnvironment.application.getContentResolver(), Settings.Secure.LOCATION_MODE,
+                Settings.Secure.LOCATION_MODE_HIGH_ACCURACY);
+        strategy = new FallbackLocationStrategy(manager, RuntimeEnvironment.application);
+    }
+
+    @After
+    public void tearDown() {
+        EasyLocationConfiguration.getInstance().setMaxWaitTime(previousMaxWaitTime);
+    }
+
+    @Test
+    public void stopDeliversTheBatchedLocations() {
+        strategy.start();
+        strategy.onLocationChanged(new Location("gps"));
+        strategy.onLocationChanged(new Location("gps"));
+        assertEquals(0, manager.batches.size());
+
+        strategy.stop();
+        assertEquals(1, manager.batches.size());
+        assertEquals(2, manager.batches.get(0).size());
+    }
+
+    @Test
+    public void stopWithoutLocationsDeliversNothing() {
+        strategy.start();
+        strategy.stop();
+        assertEquals(0, manager.batches.size());
+    }
+
+    @Test
+    public void startDoesNotDeliverTheLastKnownLocation() {
+        EasyLocationConfiguration.getInstance().setMaxWaitTime(0);
+        LocationManager locationManager = (LocationManager) RuntimeEnvironment.application
+                .getSystemService(Context.LOCATION_SERVICE);
+        ShadowLocationManager shadowLocationManager = Shadows.shadowOf(locationManager);
+        for (String provider : new String[]{LocationManager.GPS_PROVIDER, LocationManager.NETWORK_PROVIDER}) {
+            shadowLocationManager.setProviderEnabled(provider, true);
+            shadowLocationManager.setLastKnownLocation(provider, new Location(provider));
+        }
+
+        strategy.start();
+        assertEquals(0, manager.locations.size());
+
+        strategy.onLocationChanged(new Location(LocationManager.GPS_PROVIDER));
+        assertEquals(1, manager.locations.size());
+        strategy.stop();
+    }
+
+    private static class FakeManager implements LocationStrategyManager {
+        final List<Location> locations = new ArrayList<>();
+        final List<List<Location>> batches = new ArrayList<>();
+
+        @Override
+        public void onLocationObtained(Location location) {
+            locations.add(location);
+        }
+
+        @Override
+        public void onLocationsObtained(List<Location> locations) {
+            batches.add(locations);
+        }
+
+        @Override
+        public void onStrategyError(LocationStrategyError error) {
+        }
+    }
+}
@@ -0,0 +1,6 @@
+# ProGuard rules applied to the apps that use this library when they are minified.
+
+# LocationStrategyLoader finds the strategy by its class name and creates it through getInstance
+-keep class com.bmacedo.easylocation.controllers.strategies.ServicesLocationStrategy {
+    public static *** getInstance(com.bmacedo.easylocation.controllers.strategies.LocationStrategyManager, android.content.Context);
+}
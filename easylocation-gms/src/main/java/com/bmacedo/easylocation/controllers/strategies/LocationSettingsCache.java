@@ -0,0 +1,64 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import com.bmacedo.easylocation.controllers.util.Clock;
+
+/**
+ *
+ * This class remembers the last successful location settings check, so that the Settings API
+ * round-trip can be skipped when the strategy is started again or reconnects.
+ *
+ * A cached result is discarded when:
+ * <ul>
+ *     <li>Its time to live expires</li>
+ *     <li>{@link #invalidate()} is called, which happens when the providers change</li>
+ *     <li>The device location system was toggled since the check was made</li>
+ * </ul>
+ *
+ */
+public class LocationSettingsCache {
+
+    private final Clock clock;
+    private long timeToLiveMillis;
+
+    // Moment of the last successful check
+    private long checkedAt;
+    // Value of LocationUtil.isLocationEnabled when the last successful check was made
+    private boolean wasLocationEnabled;
+    // Variable that indicates if there is a cached result
+    private boolean isValid = false;
+
+    public LocationSettingsCache(Clock clock, long timeToLiveMillis) {
+        this.clock = clock;
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    public void setTimeToLive(long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    /**
+     * @param isLocationEnabled the current state of the device location system
+     * @return true if the last successful check can be reused
+     */
+    public boolean isValid(boolean isLocationEnabled) {
+        if (isValid && (isLocationEnabled != wasLocationEnabled
+                || clock.elapsedRealtime() - checkedAt >= timeToLiveMillis)) {
+            isValid = false;
+        }
+        return isValid;
+    }
+
+    /**
+     * Stores a successful check
+     * @param isLocationEnabled the state of the device location system when the check was made
+     */
+    public void onCheckSucceeded(boolean isLocationEnabled) {
+        isValid = true;
+        wasLocationEnabled = isLocationEnabled;
+        checkedAt = clock.elapsedRealtime();
+    }
+
+    public void invalidate() {
+        isValid = false;
+    }
+}
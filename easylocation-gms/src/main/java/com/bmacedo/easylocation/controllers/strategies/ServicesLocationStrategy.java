@@ -0,0 +1,483 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.location.Location;
+import android.location.LocationManager;
+import android.os.Bundle;
+import android.os.Looper;
+
+import com.bmacedo.easylocation.api.EasyLocationConfiguration;
+import com.bmacedo.easylocation.api.EasyLocationMetrics;
+import com.bmacedo.easylocation.controllers.tracing.Tracing;
+import com.bmacedo.easylocation.controllers.util.Clock;
+import com.bmacedo.easylocation.controllers.util.ExponentialBackoff;
+import com.bmacedo.easylocation.controllers.util.HandlerTaskScheduler;
+import com.bmacedo.easylocation.controllers.util.LocationUtil;
+import com.bmacedo.easylocation.models.LocationStrategyError;
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.PendingResult;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.LocationSettingsRequest;
+import com.google.android.gms.location.LocationSettingsResult;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ *
+ * This class encapsulates the connection, the request and the retrieval of locations
+ * via Google Services. However, it does not recover from errors, it just delegates
+ * any erros to the LocationStrategyManager
+ *
+ * Before trying to obtain the location, this class uses the SettingAPI to find out if
+ * the kind of location requested is possible to obtain given the current settings. An
+ * error is sent if not possible. A successful check is cached by {@link LocationSettingsCache}
+ * until its TTL expires or the location providers change.
+ *
+ * The error type
+ * {@link com.bmacedo.easylocation.models.LocationStrategyError.StrategyError#STRATEGY_CONNECTION_FAILURE}
+ * occurs when:
+ * <ol>
+ *     <li>It wasn't possible to connect to Google Services, but some user action might fix it</li>
+ *     <li>It was possible to connect to Google Services, but the location settings is disabled</li>
+ * </ol>
+ *
+ * The error type
+ * {@link com.bmacedo.easylocation.models.LocationStrategyError.StrategyError#UNRECOVERABLE_ERROR}
+ * occurs when there is no available solution.
+ *
+ * The error type
+ * {@link com.bmacedo.easylocation.models.LocationStrategyError.StrategyError#STRATEGY_CONNECTION_SUSPENDED}
+ * occurs when the connection with Google Services is suspended. In this case the strategy tries to
+ * reconnect using the {@link ReconnectionScheduler}, and only reports a
+ * {@link com.bmacedo.easylocation.models.LocationStrategyError.StrategyError#STRATEGY_CONNECTION_FAILURE}
+ * if the connection is not restored before the configured deadline.
+ *
+ * The error type
+ * {@link com.bmacedo.easylocation.models.LocationStrategyError.StrategyError#STRATEGY_DISABLED}
+ * occurs when the device has the location settings enabled, but the user has not allowed Google
+ * Services to use his or her location.
+ *
+ * Created by -Bernardo on 2015-07-22.
+ */
+public class ServicesLocationStrategy extends LocationStrategy {
+
+    public static final String STRATEGY_NAME = LocationStrategyLoader.SERVICES;
+
+    // Object that stores the reference to the unique instance of this class
+    private static ServicesLocationStrategy instance;
+    // This variable indicates when the class is waiting for the location updates request result.
+    // It avoid that some request is activated more than once while a response is not received.
+    private final AtomicBoolean isWaitingForStatus = new AtomicBoolean();
+    // Variable that indicates if there is a settings check pending. Concurrent starts share it.
+    private boolean isCheckingSettings = false;
+    // Identifies the pending settings check, so that results of checks abandoned by stop() are ignored
+    private int settingsCheckId = 0;
+    // Object that stores the result of the last successful settings check
+    private LocationSettingsCache settingsCache;
+    // Receiver that invalidates the settings cache when the location providers change. It stays
+    // registered as long as the cache exists, so that changes made while stopped are noticed.
+    private BroadcastReceiver providersChangedReceiver;
+    // Object that allows the use of Google Services API
+    private GoogleApiClient googleApiClient;
+    // Object that stores info about the needed location
+    private LocationRequest locationRequest;
+    // Object that manages location requests. Needed for the Settings API.
+    private LocationSettingsRequest.Builder locationRequestBuilder;
+    // Instance of the internal class that manages the connection with Google Services
+    private LocationServicesConnectionListener connectionListener;
+    // Object that schedules the reconnection attempts after the connection is suspended
+    private ReconnectionScheduler reconnectionScheduler;
+    // Object that receives the locations, one at a time or in batches
+    private LocationCallback locationCallback;
+    // Variable that indicates if the locations are requested in batches
+    private boolean isBatching = false;
+    // Identifies the connection attempts and the location requests in the tracing sections
+    private int connectionId = 0;
+    private int requestId = 0;
+    // Variable that indicates if the tracing section of a connection attempt is open
+    private boolean isTracingConnection = false;
+    // Identifiers of the settings check and the location request whose tracing sections are open, or 0
+    private int tracedSettingsCheckId = 0;
+    private int tracedRequestId = 0;
+
+    private ServicesLocationStrategy(LocationStrategyManager manager, Context context) {
+        super(manager, context);
+
+        // Initialize Google Services Connection Listener
+        connectionListener = new LocationServicesConnectionListener();
+
+        // Create a GoogleApiClient instance
+        googleApiClient = new GoogleApiClient.Builder(getContext())
+                .addApi(LocationServices.API)
+                .addConnectionCallbacks(connectionListener)
+                .addOnConnectionFailedListener(connectionListener)
+                .build();
+
+        locationCallback = new LocationCallback() {
+            @Override
+            public void onLocationResult(LocationResult result) {
+                onLocationsChanged(result.getLocations());
+            }
+        };
+
+        // Initialize Location services variables
+        locationRequest = LocationRequest.create();
+        locationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
+        locationRequestBuilder = new LocationSettingsRequest.Builder()
+                .addLocationRequest(locationRequest);
+
+        settingsCache = new LocationSettingsCache(Clock.ELAPSED_REALTIME,
+                EasyLocationConfiguration.getInstance().getSettingsCheckTtl());
+        providersChangedReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                settingsCache.invalidate();
+            }
+        };
+        // The strategy is a single instance for the whole process, like the application context
+        getContext().getApplicationContext().registerReceiver(providersChangedReceiver,
+                new IntentFilter(LocationManager.PROVIDERS_CHANGED_ACTION));
+    }
+
+    public static synchronized ServicesLocationStrategy getInstance(LocationStrategyManager manager, Context context) {
+        if (instance == null) {
+            instance = new ServicesLocationStrategy(manager, context);
+        } else {
+            instance.setManager(manager);
+            instance.setContext(context);
+        }
+        return instance;
+    }
+
+    /**
+     * This method is called by {@link LocationStrategyManager} in order to start the process of
+     * location requesting.
+     */
+    @Override
+    public void start() {
+        settingsCache.setTimeToLive(EasyLocationConfiguration.getInstance().getSettingsCheckTtl());
+        long updateInterval = EasyLocationConfiguration.getInstance().getUpdateInterval();
+        if (updateInterval > 0) {
+            locationRequest.setInterval(updateInterval);
+        }
+        long maxWaitTime = EasyLocationConfiguration.getInstance().getMaxWaitTime();
+        locationRequest.setMaxWaitTime(maxWaitTime);
+        isBatching = maxWaitTime > 0;
+        if (googleApiClient.isConnected()) {
+            checkLocationSettingsAndStartPeriodicUpdates();
+        } else if (!googleApiClient.isConnecting()) {
+            connect();
+        }
+    }
+
+    /**
+     * This method finishes the location requests.
+     */
+    @Override
+    public void stop() {
+        if (reconnectionScheduler != null) {
+            reconnectionScheduler.cancel();
+        }
+        isCheckingSettings = false;
+        stopPeriodicUpdates();
+        endConnectionSection();
+        // The results of the pending check and request may never be delivered after the disconnection
+        endPendingSections();
+        googleApiClient.disconnect();
+    }
+
+    @Override
+    public String getName() {
+        return STRATEGY_NAME;
+    }
+
+    /**
+     * Returns the last location of the FusedLocation API. It is only available while the
+     * connection with Google Services is established.
+     */
+    @Override
+    public Location getLastKnownLocation() {
+        if (googleApiClient.isConnected()) {
+            return LocationServices.FusedLocationApi.getLastLocation(googleApiClient);
+        }
+        return null;
+    }
+
+    /**
+     * This method is called by the Google Services API when new locations are available. When
+     * batching, the provider holds them and delivers them all in a single call.
+     */
+    private void onLocationsChanged(List<Location> locations) {
+        if (locations.isEmpty()) {
+            return;
+        }
+        EasyLocationMetrics.getInstance().onLocationWakeup(locations.size());
+        if (isBatching) {
+            getManager().onLocationsObtained(locations);
+        } else {
+            for (Location location : locations) {
+                getManager().onLocationObtained(location);
+            }
+        }
+    }
+
+    /**
+     *
+     * This method is responsible to use the SettingsAPI to identify the possibility of obtaining
+     * the requested location.
+     *
+     * If successful, then the method {@link #startPeriodicUpdates()} is called
+     *
+     * If not, the error is delegated to the {@link LocationStrategyManager}.
+     *
+     * Note that this method should not be called before the Google Services connection is established
+     *
+     */
+    private void checkLocationSettingsAndStartPeriodicUpdates() {
+        if (googleApiClient.isConnected()) {
+            final boolean isLocationEnabled = LocationUtil.isLocationEnabled(getContext().getContentResolver());
+            if (settingsCache.isValid(isLocationEnabled)) {
+                EasyLocationMetrics.getInstance().onSettingsCheckSaved();
+                startPeriodicUpdates();
+            } else if (isCheckingSettings) {
+                // The pending check will start the updates for this request as well
+                EasyLocationMetrics.getInstance().onSettingsCheckSaved();
+            } else {
+                isCheckingSettings = true;
+                final int checkId = ++settingsCheckId;
+                if (Tracing.ENABLED) {
+                    tracedSettingsCheckId = checkId;
+                    Tracing.beginAsyncSection(Tracing.SETTINGS_CHECK, checkId);
+                }
+                final PendingResult<LocationSettingsResult> result =
+                        LocationServices.SettingsApi.checkLocationSettings(googleApiClient, locationRequestBuilder.build());
+
+                result.setResultCallback(new ResultCallback<LocationSettingsResult>() {
+                    @Override
+                    public void onResult(LocationSettingsResult locationSettingsResult) {
+                        endSettingsCheckSection(checkId);
+                        if (!isCheckingSettings || checkId != settingsCheckId) {
+                            // The strategy was stopped or suspended while the check was pending
+                            return;
+                        }
+                        isCheckingSettings = false;
+                        final Status status = locationSettingsResult.getStatus();
+                        if (status.isSuccess()) {
+                            settingsCache.onCheckSucceeded(isLocationEnabled);
+                            startPeriodicUpdates();
+                        } else {
+                            settingsCache.invalidate();
+                            handleFailure(status);
+                        }
+                    }
+                });
+            }
+        } else {
+            throw new RuntimeException("O ServicesLocationStrategy nao tem como checar " +
+                    "a configuracao da localizacao antes de efetivar a conexao com o GoogleApiClient");
+        }
+    }
+
+    /**
+     * This method start the request for locations using the FusedLocation API. Then it returns the
+     * last known location.
+     *
+     * If an error occurs while requesting the location updates, an error type
+     * {@link com.bmacedo.easylocation.models.LocationStrategyError.StrategyError#STRATEGY_CONNECTION_FAILURE}
+     * is delegated
+     *
+     * If an error occurs while trying to obtain the last known location, the user has not allowed
+     * Google Services to use his or her location, therefore, an error type
+     * {@link com.bmacedo.easylocation.models.LocationStrategyError.StrategyError#STRATEGY_DISABLED}
+     * is delegated.
+     *
+     * Note that this method should not be called before the Google Services connection is established
+     *
+     */
+    private void startPeriodicUpdates() {
+        if (googleApiClient.isConnected()) {
+            if (isWaitingForStatus.compareAndSet(false, true)) {
+                // Inicia request por localizacoes atualizadas
+                final int currentRequestId = ++requestId;
+                if (Tracing.ENABLED) {
+                    tracedRequestId = currentRequestId;
+                    Tracing.beginAsyncSection(Tracing.PROVIDER_REQUEST, currentRequestId);
+                }
+                PendingResult<Status> result = LocationServices.FusedLocationApi
+                        .requestLocationUpdates(googleApiClient, locationRequest, locationCallback, Looper.getMainLooper());
+
+                result.setResultCallback(new ResultCallback<Status>() {
+                    @Override
+                    public void onResult(Status status) {
+                        endRequestSection(currentRequestId);
+                        isWaitingForStatus.set(false);
+                        if (!status.isSuccess()) {
+                            handleFailure(status);
+                        }
+                    }
+                });
+
+                // Envia ultima localizacao disponivel
+                Location location = LocationServices.FusedLocationApi.getLastLocation(googleApiClient);
+                if (location != null) {
+                    getManager().onLocationObtained(location);
+                }
+            }
+        } else {
+            throw new RuntimeException("O ServicesLocationStrategy nao tem como iniciar " +
+                    "a obtencao da localizacao antes de efetivar a conexao com o GoogleApiClient");
+        }
+    }
+
+    private void handleFailure(Status status) {
+        isWaitingForStatus.set(false);
+        if (status != null && !status.isSuccess()) {
+            if (status.hasResolution()) {
+                getManager().onStrategyError(
+                        new LocationStrategyError(LocationStrategyError.StrategyError.STRATEGY_CONNECTION_FAILURE, getName(), status.getResolution()));
+            } else {
+                getManager().onStrategyError(
+                        new LocationStrategyError(LocationStrategyError.StrategyError.UNRECOVERABLE_ERROR, getName()));
+            }
+        }
+    }
+
+    private void connect() {
+        if (Tracing.ENABLED && !isTracingConnection) {
+            isTracingConnection = true;
+            Tracing.beginAsyncSection(Tracing.CONNECT, ++connectionId);
+        }
+        googleApiClient.connect();
+    }
+
+    /**
+     * Ends the tracing section of the connection attempt, when it succeeds, fails or is abandoned
+     */
+    private void endConnectionSection() {
+        if (Tracing.ENABLED && isTracingConnection) {
+            isTracingConnection = false;
+            Tracing.endAsyncSection(Tracing.CONNECT, connectionId);
+        }
+    }
+
+    private void endSettingsCheckSection(int checkId) {
+        if (Tracing.ENABLED && checkId == tracedSettingsCheckId) {
+            tracedSettingsCheckId = 0;
+            Tracing.endAsyncSection(Tracing.SETTINGS_CHECK, checkId);
+        }
+    }
+
+    private void endRequestSection(int currentRequestId) {
+        if (Tracing.ENABLED && currentRequestId == tracedRequestId) {
+            tracedRequestId = 0;
+            Tracing.endAsyncSection(Tracing.PROVIDER_REQUEST, currentRequestId);
+        }
+    }
+
+    /**
+     * Ends the tracing sections of the settings check and the location request that are still
+     * waiting for their results, which are abandoned
+     */
+    private void endPendingSections() {
+        if (tracedSettingsCheckId != 0) {
+            endSettingsCheckSection(tracedSettingsCheckId);
+        }
+        if (tracedRequestId != 0) {
+            endRequestSection(tracedRequestId);
+        }
+    }
+
+    private boolean isReconnecting() {
+        return reconnectionScheduler != null && reconnectionScheduler.isReconnecting();
+    }
+
+    /**
+     * Creates the scheduler using the current {@link EasyLocationConfiguration}, so that changes in
+     * the configuration are applied on the next suspension.
+     */
+    private ReconnectionScheduler createReconnectionScheduler() {
+        EasyLocationConfiguration configuration = EasyLocationConfiguration.getInstance();
+        ExponentialBackoff backoff = new ExponentialBackoff(configuration.getReconnectionBaseDelay(),
+                configuration.getReconnectionMaxDelay());
+        return new ReconnectionScheduler(connectionListener, connectionListener, Clock.ELAPSED_REALTIME,
+                new HandlerTaskScheduler(), backoff, configuration.getReconnectionDeadline());
+    }
+
+    private void stopPeriodicUpdates() {
+        if (googleApiClient.isConnected()) {
+            LocationServices.FusedLocationApi.removeLocationUpdates(googleApiClient, locationCallback);
+        }
+    }
+
+    /**
+     * Internal class that manages the connection with Google Services.
+     */
+    private class LocationServicesConnectionListener implements GoogleApiClient.ConnectionCallbacks,
+            GoogleApiClient.OnConnectionFailedListener, ReconnectionScheduler.Client, ReconnectionScheduler.Listener {
+
+        @Override
+        public void onConnected(Bundle bundle) {
+            endConnectionSection();
+            if (reconnectionScheduler != null) {
+                reconnectionScheduler.onConnectionRestored();
+            }
+            checkLocationSettingsAndStartPeriodicUpdates();
+        }
+
+        @Override
+        public void onConnectionSuspended(int i) {
+            // The pending requests are lost with the connection
+            isWaitingForStatus.set(false);
+            isCheckingSettings = false;
+            endPendingSections();
+            if (!isReconnecting()) {
+                reconnectionScheduler = createReconnectionScheduler();
+                reconnectionScheduler.onConnectionLost();
+            }
+            getManager().onStrategyError(new LocationStrategyError(LocationStrategyError.StrategyError.STRATEGY_CONNECTION_SUSPENDED, getName()));
+        }
+
+        @Override
+        public void onConnectionFailed(ConnectionResult connectionResult) {
+            endConnectionSection();
+            if (connectionResult.hasResolution()) {
+                if (reconnectionScheduler != null) {
+                    reconnectionScheduler.cancel();
+                }
+                getManager().onStrategyError(
+                        new LocationStrategyError(LocationStrategyError.StrategyError.STRATEGY_CONNECTION_FAILURE, getName(), connectionResult.getResolution()));
+            } else if (!isReconnecting()) {
+                getManager().onStrategyError(new LocationStrategyError(LocationStrategyError.StrategyError.UNRECOVERABLE_ERROR, getName()));
+            }
+            // While reconnecting, failures without resolution are retried until the deadline
+        }
+
+        @Override
+        public boolean isConnected() {
+            return googleApiClient.isConnected();
+        }
+
+        @Override
+        public void reconnect() {
+            if (!googleApiClient.isConnecting()) {
+                connect();
+            }
+        }
+
+        @Override
+        public void onReconnectionDeadlineExceeded() {
+            // Without error details, the manager handles the failure as unrecoverable
+            getManager().onStrategyError(new LocationStrategyError(LocationStrategyError.StrategyError.STRATEGY_CONNECTION_FAILURE, getName()));
+        }
+    }
+}
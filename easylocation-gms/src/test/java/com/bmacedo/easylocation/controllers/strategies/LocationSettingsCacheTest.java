@@ -0,0 +1,77 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import com.bmacedo.easylocation.controllers.util.Clock;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocationSettingsCacheTest {
+
+    private static final long TIME_TO_LIVE = 10 * 60 * 1000;
+
+    private long now;
+    private LocationSettingsCache cache;
+
+    @Before
+    public void setUp() {
+        now = 100000;
+        cache = new LocationSettingsCache(new Clock() {
+            @Override
+            public long elapsedRealtime() {
+                return now;
+            }
+        }, TIME_TO_LIVE);
+    }
+
+    @Test
+    public void emptyCacheIsNotValid() {
+        assertFalse(cache.isValid(true));
+    }
+
+    @Test
+    public void successfulCheckIsReusedWithinTheTimeToLive() {
+        cache.onCheckSucceeded(true);
+        now += TIME_TO_LIVE - 1;
+        assertTrue(cache.isValid(true));
+    }
+
+    @Test
+    public void successfulCheckExpires() {
+        cache.onCheckSucceeded(true);
+        now += TIME_TO_LIVE;
+        assertFalse(cache.isValid(true));
+    }
+
+    @Test
+    public void invalidateDiscardsTheCheck() {
+        cache.onCheckSucceeded(true);
+        cache.invalidate();
+        assertFalse(cache.isValid(true));
+    }
+
+    @Test
+    public void toggledLocationSystemDiscardsTheCheck() {
+        cache.onCheckSucceeded(true);
+        assertFalse(cache.isValid(false));
+        assertFalse(cache.isValid(true));
+    }
+
+    @Test
+    public void shorterTimeToLiveAppliesToTheCachedCheck() {
+        cache.onCheckSucceeded(true);
+        cache.setTimeToLive(1000);
+        now += 1000;
+        assertFalse(cache.isValid(true));
+    }
+
+    @Test
+    public void newCheckIsValidAfterInvalidation() {
+        cache.onCheckSucceeded(true);
+        cache.invalidate();
+        cache.onCheckSucceeded(true);
+        assertTrue(cache.isValid(true));
+    }
+}
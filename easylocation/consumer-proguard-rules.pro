@@ -0,0 +1,21 @@
+# ProGuard rules applied to the apps that use this library when they are minified.
+
+# Otto delivers the events to the methods annotated with @Subscribe and @Produce
+-keepattributes *Annotation*
+-keepclassmembers class ** {
+    @com.squareup.otto.Subscribe public *;
+    @com.squareup.otto.Produce public *;
+}
+
+# The models are saved with Gson by field name, so the names must be the same in every app version
+-keepclassmembers class com.bmacedo.easylocation.models.** {
+    <fields>;
+    <init>();
+}
+-keepclassmembers class com.bmacedo.easylocation.controllers.analytics.StaySegmenter$State {
+    <fields>;
+}
+
+# Parceler finds the generated wrappers by name
+-keep class **$$Parcelable { *; }
+-keep class org.parceler.Parceler$$Parcels
@@ -0,0 +1,121 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import com.bmacedo.easylocation.api.EasyLocationConfiguration;
+import com.bmacedo.easylocation.common.intents.LocationServiceIntent;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Measures on a device the time from a start request of a client to the start of the strategy by
+ * the {@link LocationService}, when the request is handed directly to the running service by the
+ * {@link LocationServiceClient} and when it is sent by Intent and goes through startService and
+ * onStartCommand.
+ *
+ * The service is kept running by a first client, and each request switches between two fake
+ * strategies, so that every request starts a strategy. Both kinds of request are sent from the
+ * main thread. The percentiles are written to the log with the tag of this class.
+ *
+ */
+public class LocationServiceClientBenchmark extends InstrumentationTestCase {
+
+    private static final String TAG = LocationServiceClientBenchmark.class.getSimpleName();
+    private static final int KEEPER_ID = 1;
+    private static final int CLIENT_ID = 2;
+    private static final int WARMUP_REQUESTS = 50;
+    private static final int REQUESTS = 500;
+
+    private Context context;
+    private RecordingStrategy first;
+    private RecordingStrategy second;
+    private long previousLingerPeriod;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = getInstrumentation().getTargetContext();
+        first = RecordingStrategy.register("BenchmarkFirst");
+        second = RecordingStrategy.register("BenchmarkSecond");
+        previousLingerPeriod = EasyLocationConfiguration.getInstance().getLingerPeriod();
+        EasyLocationConfiguration.getInstance().setLingerPeriod(0);
+
+        // Creates the service and waits until the state is loaded and the first strategy runs
+        first.expectStart();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                LocationServiceClient.startChain(context, new String[]{first.getName()}, KEEPER_ID);
+            }
+        });
+        first.awaitStart();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                LocationServiceClient.stop(context, LocationServiceIntent.NO_CLIENT);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+        EasyLocationConfiguration.getInstance().setLingerPeriod(previousLingerPeriod);
+        first.unregister();
+        second.unregister();
+        super.tearDown();
+    }
+
+    public void testStartToFirstRequestByDirectCall() throws Exception {
+        measure("direct call", true);
+    }
+
+    public void testStartToFirstRequestByIntent() throws Exception {
+        measure("intent", false);
+    }
+
+    private void measure(String label, boolean isDirect) throws Exception {
+        for (int i = 0; i < WARMUP_REQUESTS; i++) {
+            request(i, isDirect);
+        }
+        long[] latencies = new long[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            latencies[i] = request(i, isDirect);
+        }
+        Arrays.sort(latencies);
+        Log.i(TAG, label + ": p50 " + toMicros(latencies[REQUESTS / 2])
+                + " us, p90 " + toMicros(latencies[REQUESTS * 9 / 10])
+                + " us, p99 " + toMicros(latencies[REQUESTS * 99 / 100]) + " us");
+    }
+
+    /**
+     * @return the nanoseconds from the request to the start of the strategy
+     */
+    private long request(int index, final boolean isDirect) throws InterruptedException {
+        // The first strategy runs after setUp, so the requests alternate starting with the second
+        final RecordingStrategy strategy = index % 2 == 0 ? second : first;
+        final long[] requestTime = new long[1];
+        strategy.expectStart();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                String[] names = new String[]{strategy.getName()};
+                requestTime[0] = System.nanoTime();
+                if (isDirect) {
+                    LocationServiceClient.startChain(context, names, CLIENT_ID);
+                } else {
+                    context.startService(new LocationServiceIntent(context, LocationService.class, CLIENT_ID, names));
+                }
+            }
+        });
+        return strategy.awaitStart() - requestTime[0];
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,123 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+import com.bmacedo.easylocation.api.EasyLocationConfiguration;
+import com.bmacedo.easylocation.api.EasyLocationMetrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Measures on a device the cold start of the {@link LocationService}: the main thread time of
+ * onCreate, the time until the persisted state is loaded, and the time until the first strategy
+ * is started. Each run creates the service with a start request, waits for the strategy, then
+ * stops the service and waits for it to go away. The percentiles are written to the log with the
+ * tag of this class.
+ *
+ */
+public class LocationServiceStartupBenchmark extends InstrumentationTestCase {
+
+    private static final String TAG = LocationServiceStartupBenchmark.class.getSimpleName();
+    private static final int CLIENT_ID = 1;
+    private static final int WARMUP_RUNS = 5;
+    private static final int RUNS = 50;
+    private static final long STOP_TIMEOUT = 10000;
+
+    private Context context;
+    private RecordingStrategy strategy;
+    private long previousLingerPeriod;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        context = getInstrumentation().getTargetContext();
+        strategy = RecordingStrategy.register("BenchmarkStartup");
+        previousLingerPeriod = EasyLocationConfiguration.getInstance().getLingerPeriod();
+        EasyLocationConfiguration.getInstance().setLingerPeriod(0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        EasyLocationConfiguration.getInstance().setLingerPeriod(previousLingerPeriod);
+        strategy.unregister();
+        super.tearDown();
+    }
+
+    public void testColdStart() throws Exception {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            coldStart();
+        }
+        long[] createNanos = new long[RUNS];
+        long[] loadNanos = new long[RUNS];
+        long[] firstStartNanos = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            firstStartNanos[i] = coldStart();
+            createNanos[i] = EasyLocationMetrics.getInstance().getCreateMainThreadNanos();
+            loadNanos[i] = EasyLocationMetrics.getInstance().getLoadNanos();
+        }
+        log("onCreate main thread", createNanos);
+        log("loaded state", loadNanos);
+        log("first strategy start", firstStartNanos);
+    }
+
+    /**
+     * @return the nanoseconds from the start request to the start of the strategy
+     */
+    private long coldStart() throws InterruptedException {
+        final long[] requestTime = new long[1];
+        strategy.expectStart();
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                assertNull("The service is still running", LocationService.getDirectInstance());
+                requestTime[0] = System.nanoTime();
+                LocationServiceClient.startChain(context, new String[]{strategy.getName()}, CLIENT_ID);
+            }
+        });
+        long elapsed = strategy.awaitStart() - requestTime[0];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                LocationServiceClient.stop(context, CLIENT_ID);
+            }
+        });
+        awaitStop();
+        return elapsed;
+    }
+
+    /**
+     * Waits until the service stopped accepting direct calls, so that the next request creates it again
+     */
+    private void awaitStop() throws InterruptedException {
+        final boolean[] isStopped = new boolean[1];
+        long deadline = System.currentTimeMillis() + STOP_TIMEOUT;
+        while (!isStopped[0] && System.currentTimeMillis() < deadline) {
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    isStopped[0] = LocationService.getDirectInstance() == null;
+                }
+            });
+            Thread.sleep(5);
+        }
+        assertTrue("The service did not stop", isStopped[0]);
+        // Lets onDestroy run before the next creation
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private static void log(String label, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        Log.i(TAG, label + ": p50 " + toMicros(sorted[sorted.length / 2])
+                + " us, p90 " + toMicros(sorted[sorted.length * 9 / 10])
+                + " us, max " + toMicros(sorted[sorted.length - 1]) + " us");
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,80 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import android.content.Context;
+
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategy;
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategyDescriptor;
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategyManager;
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategyRegistry;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+/**
+ * Strategy of the benchmarks that only records when it is started
+ */
+class RecordingStrategy extends LocationStrategy {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private final String name;
+    private volatile CountDownLatch started;
+    private volatile long startTime;
+
+    private RecordingStrategy(String name) {
+        super(null, null);
+        this.name = name;
+    }
+
+    /**
+     * Creates a strategy and registers it with the given name
+     */
+    static RecordingStrategy register(String name) {
+        final RecordingStrategy strategy = new RecordingStrategy(name);
+        LocationStrategyRegistry.getInstance().register(new LocationStrategyDescriptor(name,
+                LocationStrategyDescriptor.Cost.LOW, 10, 0, new LocationStrategyDescriptor.Factory() {
+                    @Override
+                    public LocationStrategy create(LocationStrategyManager manager, Context context) {
+                        strategy.setManager(manager);
+                        return strategy;
+                    }
+                }));
+        return strategy;
+    }
+
+    void unregister() {
+        LocationStrategyRegistry.getInstance().unregister(name);
+    }
+
+    /**
+     * Must be called before the request that starts the strategy
+     */
+    void expectStart() {
+        started = new CountDownLatch(1);
+    }
+
+    /**
+     * @return the {@link System#nanoTime()} of the start
+     */
+    long awaitStart() throws InterruptedException {
+        Assert.assertTrue("The strategy " + name + " was not started", started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return startTime;
+    }
+
+    @Override
+    public void start() {
+        startTime = System.nanoTime();
+        started.countDown();
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
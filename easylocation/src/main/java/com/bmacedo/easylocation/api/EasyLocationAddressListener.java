@@ -0,0 +1,25 @@
+package com.bmacedo.easylocation.api;
+
+import android.location.Location;
+
+import com.bmacedo.easylocation.models.AddressModel;
+
+/**
+ * This interface must be implemented by any class that wants to obtain the address of the
+ * user location from the EasyLocationManager.
+ * See {@link EasyLocationManager#setAddressListener(EasyLocationAddressListener)}.
+ */
+public interface EasyLocationAddressListener {
+    /**
+     * This method will be called after every location delivered to the EasyLocationListener.
+     * @param location the location delivered
+     * @param address the address of the location, or null if no address was found
+     */
+    public void onAddressObtained(Location location, AddressModel address);
+
+    /**
+     * This method will be called when the geocoder could not be reached.
+     * @param location the location that could not be resolved
+     */
+    public void onAddressError(Location location);
+}
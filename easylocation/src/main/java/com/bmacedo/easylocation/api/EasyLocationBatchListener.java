@@ -0,0 +1,18 @@
+package com.bmacedo.easylocation.api;
+
+import android.location.Location;
+
+import java.util.List;
+
+/**
+ * This interface must be implemented by any class that wants to obtain the locations in batches
+ * from the EasyLocationManager. See {@link EasyLocationConfiguration#setMaxWaitTime(long)}.
+ */
+public interface EasyLocationBatchListener {
+    /**
+     * This method will be called with the updated locations held since the last batch, instead of
+     * {@link EasyLocationListener#onUpdatedLocationObtained(Location)}.
+     * @param locations the locations, ordered from the oldest to the newest
+     */
+    public void onLocationsBatchObtained(List<Location> locations);
+}
@@ -0,0 +1,305 @@
+package com.bmacedo.easylocation.api;
+
+import com.bmacedo.easylocation.controllers.tracing.Tracer;
+
+import java.io.File;
+
+/**
+ *
+ * This class holds the settings that tune the behaviour of the location service.
+ *
+ * There is a single configuration per process. It should be changed before calling
+ * {@link EasyLocationManager#start()}, since the service reads it when starting a strategy.
+ * The settings are usually changed on the main thread and read by the service on other threads,
+ * so the fields are volatile.
+ *
+ */
+public class EasyLocationConfiguration {
+
+    private static final long DEFAULT_RECONNECTION_BASE_DELAY = 1000;           // 1 second
+    private static final long DEFAULT_RECONNECTION_MAX_DELAY = 15 * 1000;       // 15 seconds
+    private static final long DEFAULT_RECONNECTION_DEADLINE = 60 * 1000;        // 1 minute
+    private static final long DEFAULT_SETTINGS_CHECK_TTL = 10 * 60 * 1000;      // 10 minutes
+    private static final long DEFAULT_LINGER_PERIOD = 5 * 1000;                 // 5 seconds
+    private static final long DEFAULT_CHECKPOINT_INTERVAL = 30 * 1000;          // 30 seconds
+    private static final float DEFAULT_CHECKPOINT_DISTANCE = 50;                // 50 meters
+    private static final long DEFAULT_RESOLUTION_INTERVAL = 30 * 1000;          // 30 seconds
+    private static final long DEFAULT_RESOLUTION_COOLDOWN = 10 * 60 * 1000;     // 10 minutes
+
+    // Object that stores the unique instance of this class
+    private static EasyLocationConfiguration instance;
+
+    private volatile long reconnectionBaseDelay = DEFAULT_RECONNECTION_BASE_DELAY;
+    private volatile long reconnectionMaxDelay = DEFAULT_RECONNECTION_MAX_DELAY;
+    private volatile long reconnectionDeadline = DEFAULT_RECONNECTION_DEADLINE;
+    private volatile long settingsCheckTtl = DEFAULT_SETTINGS_CHECK_TTL;
+    private volatile long lingerPeriod = DEFAULT_LINGER_PERIOD;
+    private volatile long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private volatile float checkpointDistance = DEFAULT_CHECKPOINT_DISTANCE;
+    private volatile long resolutionInterval = DEFAULT_RESOLUTION_INTERVAL;
+    private volatile long resolutionCooldown = DEFAULT_RESOLUTION_COOLDOWN;
+    private volatile long updateInterval;
+    private volatile long maxWaitTime;
+    private volatile boolean isFastFallbackEnabled;
+    private volatile File sharedFixRingFile;
+    private volatile int sharedFixRingCapacity;
+    private Tracer tracer;
+    // True once the tracer was read by the tracing hooks, which keep it for the rest of the process
+    private boolean isTracerSealed;
+
+    private EasyLocationConfiguration() {
+    }
+
+    public static synchronized EasyLocationConfiguration getInstance() {
+        if (instance == null) {
+            instance = new EasyLocationConfiguration();
+        }
+        return instance;
+    }
+
+    public long getReconnectionBaseDelay() {
+        return reconnectionBaseDelay;
+    }
+
+    public long getReconnectionMaxDelay() {
+        return reconnectionMaxDelay;
+    }
+
+    public long getReconnectionDeadline() {
+        return reconnectionDeadline;
+    }
+
+    public long getSettingsCheckTtl() {
+        return settingsCheckTtl;
+    }
+
+    public long getLingerPeriod() {
+        return lingerPeriod;
+    }
+
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    public float getCheckpointDistance() {
+        return checkpointDistance;
+    }
+
+    public long getResolutionInterval() {
+        return resolutionInterval;
+    }
+
+    public long getResolutionCooldown() {
+        return resolutionCooldown;
+    }
+
+    /**
+     * @return the interval between location updates in milliseconds, or 0 for the strategy default
+     */
+    public long getUpdateInterval() {
+        return updateInterval;
+    }
+
+    /**
+     * @return the maximum time locations are held to be delivered in batches, or 0 if batching is disabled
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public boolean isFastFallbackEnabled() {
+        return isFastFallbackEnabled;
+    }
+
+    public File getSharedFixRingFile() {
+        return sharedFixRingFile;
+    }
+
+    public int getSharedFixRingCapacity() {
+        return sharedFixRingCapacity;
+    }
+
+    public synchronized Tracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * Used by the tracing hooks to read the tracer, which can not be changed afterwards.
+     */
+    public synchronized Tracer sealTracer() {
+        isTracerSealed = true;
+        return tracer;
+    }
+
+    /**
+     * Sets the delays used to reconnect to Google Services after the connection is suspended.
+     * The delay doubles after each attempt, starting at baseDelay and limited to maxDelay.
+     * @param baseDelay the delay before the first attempt, in milliseconds
+     * @param maxDelay the maximum delay between two attempts, in milliseconds
+     */
+    public EasyLocationConfiguration setReconnectionDelays(long baseDelay, long maxDelay) {
+        if (baseDelay <= 0 || maxDelay < baseDelay) {
+            throw new IllegalArgumentException("Invalid reconnection delays: base=" + baseDelay + ", max=" + maxDelay);
+        }
+        this.reconnectionBaseDelay = baseDelay;
+        this.reconnectionMaxDelay = maxDelay;
+        return this;
+    }
+
+    /**
+     * Sets how long the service keeps trying to reconnect to Google Services before switching to
+     * the fallback strategy (or reporting an error, if the fallback is not enabled). While the
+     * service is reconnecting, it is in degraded mode and only the last known location is available.
+     * @param deadline the deadline in milliseconds
+     */
+    public EasyLocationConfiguration setReconnectionDeadline(long deadline) {
+        if (deadline < 0) {
+            throw new IllegalArgumentException("Invalid reconnection deadline: " + deadline);
+        }
+        this.reconnectionDeadline = deadline;
+        return this;
+    }
+
+    /**
+     * Sets for how long a successful location settings check is reused before the Settings API is
+     * queried again. The cached result is also discarded whenever the location providers change.
+     * Use 0 to check the settings on every start.
+     * @param ttl the time to live in milliseconds
+     */
+    public EasyLocationConfiguration setSettingsCheckTtl(long ttl) {
+        if (ttl < 0) {
+            throw new IllegalArgumentException("Invalid settings check TTL: " + ttl);
+        }
+        this.settingsCheckTtl = ttl;
+        return this;
+    }
+
+    /**
+     * Sets for how long the location request and the connection with the providers are kept active
+     * after the last {@link EasyLocationManager} stops. If a manager is started within this period,
+     * it reuses them instead of starting everything again. Use 0 to stop them right away.
+     * @param lingerPeriod the linger period in milliseconds
+     */
+    public EasyLocationConfiguration setLingerPeriod(long lingerPeriod) {
+        if (lingerPeriod < 0) {
+            throw new IllegalArgumentException("Invalid linger period: " + lingerPeriod);
+        }
+        this.lingerPeriod = lingerPeriod;
+        return this;
+    }
+
+    /**
+     * Sets how often the last location is saved to the disk while the service is running. At most
+     * one location is saved per interval, and only when the device moved at least the given distance
+     * since the last saved location or the service state changed. The locations received in between
+     * are coalesced, and the last one is always saved when the service stops.
+     * @param interval the interval in milliseconds
+     * @param distance the distance in meters
+     */
+    public EasyLocationConfiguration setCheckpointPolicy(long interval, float distance) {
+        if (interval < 0 || distance < 0) {
+            throw new IllegalArgumentException("Invalid checkpoint policy: interval=" + interval + ", distance=" + distance);
+        }
+        this.checkpointInterval = interval;
+        this.checkpointDistance = distance;
+        return this;
+    }
+
+    /**
+     * Sets how often the user may be asked to resolve a location error, e.g. to enable the location
+     * settings, when the error keeps coming back. After the user declines a resolution, it is not
+     * asked again during the cool-down, and the last location keeps being served in degraded mode.
+     * Both limits apply to each type of error separately.
+     * @param interval the minimum time between two resolution dialogs, in milliseconds
+     * @param cooldown the time without asking again after the user declines, in milliseconds
+     */
+    public EasyLocationConfiguration setResolutionPolicy(long interval, long cooldown) {
+        if (interval < 0 || cooldown < 0) {
+            throw new IllegalArgumentException("Invalid resolution policy: interval=" + interval + ", cooldown=" + cooldown);
+        }
+        this.resolutionInterval = interval;
+        this.resolutionCooldown = cooldown;
+        return this;
+    }
+
+    /**
+     * Sets the interval between location updates requested by the strategies. Longer intervals
+     * save power; a {@link com.bmacedo.easylocation.controllers.prediction.LocationPredictor} can
+     * fill the positions in between. Use 0 to keep the default of each strategy.
+     * @param interval the interval in milliseconds
+     */
+    public EasyLocationConfiguration setUpdateInterval(long interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("Invalid update interval: " + interval);
+        }
+        this.updateInterval = interval;
+        return this;
+    }
+
+    /**
+     * Enables the batched delivery of locations. Instead of waking the app for every location, the
+     * locations are held for up to the given time and delivered together, through
+     * {@link EasyLocationManager#setBatchListener(EasyLocationBatchListener)}. Google Services
+     * holds them in the provider; the device strategy holds them in the library.
+     * The wait time should be at least twice the update interval (see {@link #setUpdateInterval(long)}),
+     * otherwise the batches have a single location. Use 0 to disable batching.
+     * @param maxWaitTime the maximum wait time in milliseconds
+     */
+    public EasyLocationConfiguration setMaxWaitTime(long maxWaitTime) {
+        if (maxWaitTime < 0) {
+            throw new IllegalArgumentException("Invalid maximum wait time: " + maxWaitTime);
+        }
+        this.maxWaitTime = maxWaitTime;
+        return this;
+    }
+
+    /**
+     * Enables the fast fallback. When a strategy does not obtain its first location within three
+     * times its declared latency (about 6 seconds for Google Services), the service gives up on it
+     * and starts the next strategy of the chain, which is kept until the service stops. It is
+     * disabled by default, so that a slow first fix does not move the app to a less accurate
+     * strategy; the next strategy is then only tried when the current one fails.
+     * @param enabled true to enable the fast fallback
+     */
+    public EasyLocationConfiguration setFastFallbackEnabled(boolean enabled) {
+        this.isFastFallbackEnabled = enabled;
+        return this;
+    }
+
+    /**
+     * Makes the service publish every location delivered into a memory-mapped ring file, so that
+     * other processes of the app can read the same locations with
+     * {@link com.bmacedo.easylocation.common.ipc.SharedFixRing#openReader(File)}, without starting
+     * another location service. Use a null file to disable it.
+     * @param file the ring file, usually inside {@link android.content.Context#getFilesDir()}
+     * @param capacity the number of locations kept in the ring
+     */
+    public EasyLocationConfiguration setSharedFixRing(File file, int capacity) {
+        if (file != null && capacity <= 0) {
+            throw new IllegalArgumentException("Invalid ring capacity: " + capacity);
+        }
+        // The service reads the file first, so a new file comes with its capacity
+        this.sharedFixRingCapacity = capacity;
+        this.sharedFixRingFile = file;
+        return this;
+    }
+
+    /**
+     * Installs the tracer that receives the sections traced by the library, such as the start of
+     * the strategies, the connection with Google Services and the delivery of the locations. Use
+     * {@link com.bmacedo.easylocation.controllers.tracing.AndroidTraceTracer} to see them in
+     * systrace.
+     * The tracer is read once, the first time a section is traced, so it must be installed before
+     * calling {@link EasyLocationManager#start()}, e.g. in Application.onCreate.
+     * @param tracer the tracer, or null to trace nothing
+     * @throws IllegalStateException if the tracer was already read
+     */
+    public synchronized EasyLocationConfiguration setTracer(Tracer tracer) {
+        if (isTracerSealed) {
+            throw new IllegalStateException("The tracer must be installed before the location service is started");
+        }
+        this.tracer = tracer;
+        return this;
+    }
+}
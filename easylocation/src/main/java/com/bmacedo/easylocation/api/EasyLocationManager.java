@@ -1,17 +1,32 @@
 package com.bmacedo.easylocation.api;
 
 import android.content.Context;
+import android.location.Location;
 
+import com.bmacedo.easylocation.common.events.OnDegradedModeChangedEvent;
 import com.bmacedo.easylocation.common.events.OnInitialLocationObtainedEvent;
 import com.bmacedo.easylocation.common.events.OnLocationErrorEvent;
+import com.bmacedo.easylocation.common.events.OnLocationsBatchObtainedEvent;
 import com.bmacedo.easylocation.common.events.OnUpdatedLocationObtainedEvent;
 import com.bmacedo.easylocation.common.events.SingletonBus;
-import com.bmacedo.easylocation.common.intents.BaseIntent;
 import com.bmacedo.easylocation.common.intents.LocationServiceIntent;
-import com.bmacedo.easylocation.controllers.services.LocationService;
+import com.bmacedo.easylocation.controllers.diagnostics.FlightRecorder;
+import com.bmacedo.easylocation.controllers.diagnostics.FlightRecorderCrashHandler;
+import com.bmacedo.easylocation.controllers.geocoding.AddressResolver;
+import com.bmacedo.easylocation.controllers.services.ClientUsageAccountant;
+import com.bmacedo.easylocation.controllers.services.LocationServiceClient;
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategyDescriptor;
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategyRegistry;
+import com.bmacedo.easylocation.models.AddressModel;
+import com.bmacedo.easylocation.models.ClientUsage;
 import com.squareup.otto.Subscribe;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 
@@ -20,15 +35,31 @@ import java.lang.ref.WeakReference;
  * 
  * In order to start receiving locations, you must call the method {@link #start()}.
  * Then, after you are done with locations, you should call {@link #stop()}.
+ *
+ * The strategies are tried in order: with {@link EasyLocationStrategy#ANY} or a strategy chain,
+ * the next strategy starts when the current one fails. If the fast fallback is enabled with
+ * {@link EasyLocationConfiguration#setFastFallbackEnabled(boolean)}, it also starts when the
+ * current strategy takes more than three times its declared latency to obtain the first location.
+ * The service does not go back to a previous strategy until it is started again.
  * 
  *
  * Created by -Bernardo on 2015-08-01.
  */
 public class EasyLocationManager {
 
+    // Source of the ids that identify each manager to the LocationService
+    private static final AtomicInteger nextClientId = new AtomicInteger(LocationServiceIntent.NO_CLIENT + 1);
+
+    private final int clientId = nextClientId.getAndIncrement();
     private WeakReference<Context> context;
     private EasyLocationListener listener;
     private EasyLocationStrategy strategy;
+    private String[] strategyChain;
+    private Location lastLocation;
+    private boolean isDegraded;
+    private EasyLocationBatchListener batchListener;
+    private EasyLocationAddressListener addressListener;
+    private AddressResolver addressResolver;
 
     /**
      * This constructor sets by default the location strategy {@link EasyLocationStrategy#ANY}.
@@ -58,7 +89,9 @@ public class EasyLocationManager {
      */
     public void start() {
         SingletonBus.getInstance().register(this);
-        if (context != null && context.get() != null) {
+        if (context != null && context.get() != null && strategyChain != null) {
+            LocationServiceClient.startChain(context.get(), strategyChain, clientId);
+        } else if (context != null && context.get() != null) {
             String action;
             switch (strategy) {
                 case DEVICE_LOCATION:
@@ -71,31 +104,161 @@ public class EasyLocationManager {
                     action = LocationServiceIntent.ACTION_START_STRATEGY_ANY;
                     break;
             }
-            BaseIntent it = new LocationServiceIntent(context.get(), LocationService.class, action);
-            context.get().startService(it);
+            LocationServiceClient.start(context.get(), action, clientId);
         }
     }
 
     /**
-     * Call this method to stop receiving location updates
+     * Call this method to choose exactly which strategies are used, and in which order. The next
+     * strategy is tried when the current one fails or, with the fast fallback enabled, takes too
+     * long to obtain the first location.
+     * This replaces the {@link EasyLocationStrategy} passed in the constructor.
+     * @param strategyNames the names of strategies registered with {@link #registerStrategy},
+     *                      including the built-in ones, or null to use the EasyLocationStrategy again
+     */
+    public void setStrategyChain(String... strategyNames) {
+        this.strategyChain = strategyNames != null && strategyNames.length > 0 ? strategyNames.clone() : null;
+    }
+
+    /**
+     * Registers a location strategy, so that it can be used by any manager. With
+     * {@link EasyLocationStrategy#ANY}, all registered strategies are tried, ordered by their
+     * declared characteristics and by how they performed before on the device.
+     *
+     * The registration is kept only while the app process lives, so this method should be called
+     * before the first manager starts, e.g. in Application.onCreate.
+     * @param descriptor the strategy name, its characteristics and the factory that creates it
+     */
+    public static void registerStrategy(LocationStrategyDescriptor descriptor) {
+        LocationStrategyRegistry.getInstance().register(descriptor);
+    }
+
+    /**
+     * Removes a location strategy registered with {@link #registerStrategy} or a built-in one.
+     * @return true if the strategy was registered
+     */
+    public static boolean unregisterStrategy(String strategyName) {
+        return LocationStrategyRegistry.getInstance().unregister(strategyName);
+    }
+
+    /**
+     * Writes the last events of the location service (state changes, strategy switches, errors,
+     * locations accepted or rejected) to the stream, e.g. to attach them to a bug report. The
+     * dump is binary: render it as text with
+     * {@link com.bmacedo.easylocation.controllers.diagnostics.FlightRecordDecoder}.
+     */
+    public static void dumpFlightRecord(OutputStream outputStream) throws IOException {
+        FlightRecorder.getInstance().writeTo(outputStream);
+    }
+
+    /**
+     * Makes the app write the last events of the location service to the file when it crashes.
+     * See {@link #dumpFlightRecord(OutputStream)}.
+     * @param file the file that receives the dump, e.g. inside {@link Context#getFilesDir()}
+     */
+    public static void dumpFlightRecordOnCrash(File file) {
+        FlightRecorderCrashHandler.install(file);
+    }
+
+    /**
+     * Call this method to stop receiving location updates.
+     *
+     * When no other manager is receiving locations, the service keeps the location request active
+     * during the linger period (see {@link EasyLocationConfiguration#setLingerPeriod(long)}), so
+     * that a manager started right after, e.g. after a screen rotation, gets a location right away.
      */
     public void stop() {
         SingletonBus.getInstance().unregister(this);
         if (context != null && context.get() != null) {
-            BaseIntent it = new LocationServiceIntent(context.get(), LocationService.class, LocationServiceIntent.ACTION_STOP);
-            context.get().startService(it);
+            LocationServiceClient.stop(context.get(), clientId);
             context.clear();
         }
     }
 
+    /**
+     * Call this method to receive the updated locations in batches, when batching is enabled with
+     * {@link EasyLocationConfiguration#setMaxWaitTime(long)}. Without a batch listener, the
+     * locations of each batch are delivered one by one to the EasyLocationListener.
+     * @param batchListener the listener of the batches, or null to remove it
+     */
+    public void setBatchListener(EasyLocationBatchListener batchListener) {
+        this.batchListener = batchListener;
+    }
+
+    /**
+     * Call this method to also receive the address of every location delivered. The addresses are
+     * obtained with the Android geocoder and cached, see {@link AddressResolver}.
+     * @param addressListener the listener of the addresses, or null to stop resolving addresses
+     */
+    public void setAddressListener(EasyLocationAddressListener addressListener) {
+        Context context = this.context != null ? this.context.get() : null;
+        setAddressListener(addressListener, context != null ? AddressResolver.getInstance(context) : null);
+    }
+
+    /**
+     * Call this method to also receive the address of every location delivered.
+     * @param addressListener the listener of the addresses, or null to stop resolving addresses
+     * @param addressResolver the resolver used to obtain the addresses, e.g. one with a custom geocoder
+     */
+    public void setAddressListener(EasyLocationAddressListener addressListener, AddressResolver addressResolver) {
+        this.addressListener = addressListener;
+        this.addressResolver = addressResolver;
+    }
+
+    /**
+     * Indicates if the location service is in degraded mode. This happens while the connection with
+     * Google Services is suspended and being restored. No updated locations are delivered in this
+     * mode, but the last location obtained is still available through {@link #getLastLocation()}.
+     * @return true if the service is in degraded mode
+     */
+    public boolean isDegraded() {
+        return isDegraded;
+    }
+
+    /**
+     * @return the id that identifies this manager in the {@link ClientUsage} of
+     * {@link #getClientUsages()}
+     */
+    public int getClientId() {
+        return clientId;
+    }
+
+    /**
+     * Returns the resources used by the location service on behalf of this manager since it was
+     * created: the time the location providers were active, the wakeups, and the locations
+     * delivered and rejected. The cost of a request shared by several managers is split between them.
+     * @return the usage, or null if this manager was never started
+     */
+    public ClientUsage getUsage() {
+        return ClientUsageAccountant.getInstance().getUsage(clientId);
+    }
+
+    /**
+     * Returns the usage of the managers that are receiving locations and of the last ones stopped,
+     * so that the cost of the location updates can be attributed to the features of the app.
+     * See {@link #getUsage()}.
+     */
+    public static List<ClientUsage> getClientUsages() {
+        return ClientUsageAccountant.getInstance().getUsages();
+    }
+
+    /**
+     * @return the last location received by this manager, or null if none was received yet
+     */
+    public Location getLastLocation() {
+        return lastLocation;
+    }
+
     /**
      * <b>Do not call this method.</b>
      * This method is used internally to receive locations and forward to the listener.
      */
     @Subscribe
     public void onInitialLocationObtained(OnInitialLocationObtainedEvent event) {
+        lastLocation = event.getLocation();
         if (listener != null && context != null && context.get() != null) {
             listener.onInitialLocationObtained(event.getLocation());
+            resolveAddress(event.getLocation());
         }
     }
 
@@ -105,8 +268,29 @@ public class EasyLocationManager {
      */
     @Subscribe
     public void onUpdatedLocationObtained(OnUpdatedLocationObtainedEvent event) {
+        lastLocation = event.getLocation();
         if (listener != null && context != null && context.get() != null) {
             listener.onUpdatedLocationObtained(event.getLocation());
+            resolveAddress(event.getLocation());
+        }
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive batches of locations and forward to the listener.
+     */
+    @Subscribe
+    public void onLocationsBatchObtained(OnLocationsBatchObtainedEvent event) {
+        lastLocation = event.getLastLocation();
+        if (context != null && context.get() != null) {
+            if (batchListener != null) {
+                batchListener.onLocationsBatchObtained(event.getLocations());
+            } else if (listener != null) {
+                for (Location location : event.getLocations()) {
+                    listener.onUpdatedLocationObtained(location);
+                }
+            }
+            resolveAddress(event.getLastLocation());
         }
     }
 
@@ -121,4 +305,37 @@ public class EasyLocationManager {
         }
     }
 
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to keep track of the degraded mode.
+     */
+    @Subscribe
+    public void onDegradedModeChanged(OnDegradedModeChangedEvent event) {
+        isDegraded = event.isDegraded();
+        if (event.getLastLocation() != null) {
+            lastLocation = event.getLastLocation();
+        }
+    }
+
+    private void resolveAddress(Location location) {
+        if (addressListener == null || addressResolver == null) {
+            return;
+        }
+        addressResolver.resolve(location, new AddressResolver.Callback() {
+            @Override
+            public void onAddressResolved(Location location, AddressModel address) {
+                if (addressListener != null && context != null && context.get() != null) {
+                    addressListener.onAddressObtained(location, address);
+                }
+            }
+
+            @Override
+            public void onAddressError(Location location, IOException error) {
+                if (addressListener != null && context != null && context.get() != null) {
+                    addressListener.onAddressError(location);
+                }
+            }
+        });
+    }
+
 }
@@ -0,0 +1,271 @@
+package com.bmacedo.easylocation.api;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * This class exposes counters about the work done (and avoided) by the location service.
+ *
+ * Unless stated otherwise, the counters refer to the current session, which begins every time the
+ * location service is created. They can be read from any thread.
+ *
+ */
+public class EasyLocationMetrics {
+
+    // Object that stores the unique instance of this class
+    private static EasyLocationMetrics instance;
+
+    private final AtomicLong settingsChecksSaved = new AtomicLong();
+    private final AtomicLong reconnectsAvoided = new AtomicLong();
+    private final AtomicLong checkpointWrites = new AtomicLong();
+    private final AtomicLong locationWakeups = new AtomicLong();
+    private final AtomicLong locationsReceived = new AtomicLong();
+    private final AtomicLong directCalls = new AtomicLong();
+    private final AtomicLong resolutionsLaunched = new AtomicLong();
+    private final AtomicLong resolutionLaunchesAvoided = new AtomicLong();
+    // Cold start counters are kept for the lifetime of the process
+    private final AtomicLong coldStarts = new AtomicLong();
+    private final AtomicLong coldStartCacheHits = new AtomicLong();
+    // Durations of the last cold start
+    private volatile long createMainThreadNanos;
+    private volatile long loadNanos;
+    // Moment when the current session started
+    private volatile long sessionStartedAt = SystemClock.elapsedRealtime();
+
+    private EasyLocationMetrics() {
+    }
+
+    public static synchronized EasyLocationMetrics getInstance() {
+        if (instance == null) {
+            instance = new EasyLocationMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * @return the number of location settings checks (Settings API round-trips) that were not
+     * made because a cached result was reused or because a check was already pending
+     */
+    public long getSettingsChecksSaved() {
+        return settingsChecksSaved.get();
+    }
+
+    /**
+     * @return the number of times a manager was started while the service was lingering, reusing
+     * the location request that was still active instead of starting a new one
+     */
+    public long getReconnectsAvoided() {
+        return reconnectsAvoided.get();
+    }
+
+    /**
+     * @return the number of manager starts and stops handed directly to the running service,
+     * without an Intent round-trip
+     */
+    public long getDirectCalls() {
+        return directCalls.get();
+    }
+
+    /**
+     * @return the number of times the error resolution dialog was shown to the user
+     */
+    public long getResolutionsLaunched() {
+        return resolutionsLaunched.get();
+    }
+
+    /**
+     * @return the number of times the error resolution dialog was not shown again because one was
+     * already showing, the last one was too recent, or the user declined it recently
+     */
+    public long getResolutionLaunchesAvoided() {
+        return resolutionLaunchesAvoided.get();
+    }
+
+    /**
+     * @return the number of checkpoints of the service state written to the disk
+     */
+    public long getCheckpointWrites() {
+        return checkpointWrites.get();
+    }
+
+    /**
+     * @return the average number of checkpoints written per hour since the session started
+     */
+    public double getCheckpointWritesPerHour() {
+        return perHour(checkpointWrites.get());
+    }
+
+    /**
+     * @return the number of times a strategy was woken up by its provider to receive locations.
+     * Without batching there is a wakeup for every location.
+     */
+    public long getLocationWakeups() {
+        return locationWakeups.get();
+    }
+
+    /**
+     * @return the number of locations received from the providers
+     */
+    public long getLocationsReceived() {
+        return locationsReceived.get();
+    }
+
+    /**
+     * @return the average number of wakeups per hour since the session started
+     */
+    public double getLocationWakeupsPerHour() {
+        return perHour(locationWakeups.get());
+    }
+
+    /**
+     * @return the average number of locations received per hour since the session started, which
+     * is the number of wakeups per hour that unbatched delivery would cause
+     */
+    public double getLocationsReceivedPerHour() {
+        return perHour(locationsReceived.get());
+    }
+
+    /**
+     * @return the number of times the location service was created in this process
+     */
+    public long getColdStarts() {
+        return coldStarts.get();
+    }
+
+    /**
+     * @return the fraction of cold starts in which a saved location was available, or 0 if there
+     * were no cold starts in this process
+     */
+    public double getColdStartCacheHitRate() {
+        long starts = coldStarts.get();
+        return starts == 0 ? 0 : (double) coldStartCacheHits.get() / starts;
+    }
+
+    /**
+     * @return the time spent on the main thread by the last creation of the location service, in
+     * nanoseconds
+     */
+    public long getCreateMainThreadNanos() {
+        return createMainThreadNanos;
+    }
+
+    /**
+     * @return the time between the last creation of the location service and the end of the loading
+     * of its persisted state, in nanoseconds. The cached location is delivered at this point.
+     */
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally when the location service is created.
+     */
+    public void startSession() {
+        settingsChecksSaved.set(0);
+        reconnectsAvoided.set(0);
+        checkpointWrites.set(0);
+        locationWakeups.set(0);
+        locationsReceived.set(0);
+        directCalls.set(0);
+        resolutionsLaunched.set(0);
+        resolutionLaunchesAvoided.set(0);
+        sessionStartedAt = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to count the settings checks saved.
+     */
+    public void onSettingsCheckSaved() {
+        settingsChecksSaved.incrementAndGet();
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to count the reconnects avoided.
+     */
+    public void onReconnectAvoided() {
+        reconnectsAvoided.incrementAndGet();
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to count the direct calls to the service.
+     */
+    public void onDirectCall() {
+        directCalls.incrementAndGet();
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to count the error resolutions shown.
+     */
+    public void onResolutionLaunched() {
+        resolutionsLaunched.incrementAndGet();
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to count the error resolutions not shown.
+     */
+    public void onResolutionLaunchAvoided() {
+        resolutionLaunchesAvoided.incrementAndGet();
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to count the checkpoints written.
+     */
+    public void onCheckpointWritten() {
+        checkpointWrites.incrementAndGet();
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to count the wakeups of the strategies.
+     * @param locations the number of locations received in the wakeup
+     */
+    public void onLocationWakeup(int locations) {
+        locationWakeups.incrementAndGet();
+        locationsReceived.addAndGet(locations);
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally when the saved state is loaded.
+     * @param hasLocation true if a saved location was found
+     */
+    public void onColdStart(boolean hasLocation) {
+        coldStarts.incrementAndGet();
+        if (hasLocation) {
+            coldStartCacheHits.incrementAndGet();
+        }
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to measure the creation of the service.
+     */
+    public void onServiceCreated(long mainThreadNanos) {
+        createMainThreadNanos = mainThreadNanos;
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to measure the loading of the persisted state.
+     */
+    public void onServiceLoaded(long nanos) {
+        loadNanos = nanos;
+    }
+
+    private double perHour(long count) {
+        long elapsed = SystemClock.elapsedRealtime() - sessionStartedAt;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return count * (60.0 * 60 * 1000) / elapsed;
+    }
+}
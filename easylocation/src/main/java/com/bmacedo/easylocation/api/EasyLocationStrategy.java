@@ -25,6 +25,7 @@ public enum EasyLocationStrategy {
      * Location API. If for some reason, this API is not available, than we will try to obtain the
      * location directly from the device location providers.
      * Note that this approach might be as slow as the DEVICE_LOCATION strategy.
+     * The strategies registered with EasyLocationManager#registerStrategy are tried as well.
      */
     ANY
 }
@@ -0,0 +1,29 @@
+package com.bmacedo.easylocation.common.events;
+
+import android.location.Location;
+
+/**
+ * Event posted when the service enters or leaves the degraded mode, in which the current strategy
+ * is trying to recover its connection and only the last obtained location is available.
+ */
+public class OnDegradedModeChangedEvent {
+
+    private boolean degraded;
+    private Location lastLocation;
+
+    public OnDegradedModeChangedEvent(boolean degraded, Location lastLocation) {
+        this.degraded = degraded;
+        this.lastLocation = lastLocation;
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    /**
+     * @return the last location obtained before the event, or null if there is none
+     */
+    public Location getLastLocation() {
+        return lastLocation;
+    }
+}
@@ -0,0 +1,28 @@
+package com.bmacedo.easylocation.common.events;
+
+import android.location.Location;
+
+import java.util.List;
+
+/**
+ *
+ * Event posted instead of {@link OnUpdatedLocationObtainedEvent} when batching is enabled. The
+ * locations are ordered from the oldest to the newest.
+ *
+ */
+public class OnLocationsBatchObtainedEvent {
+
+    private List<Location> locations;
+
+    public OnLocationsBatchObtainedEvent(List<Location> locations) {
+        this.locations = locations;
+    }
+
+    public List<Location> getLocations() {
+        return locations;
+    }
+
+    public Location getLastLocation() {
+        return locations.get(locations.size() - 1);
+    }
+}
@@ -1,8 +1,20 @@
 package com.bmacedo.easylocation.common.events;
 
+import com.bmacedo.easylocation.models.LocationStrategyError;
+
 /**
  * Created by -Bernardo on 2015-07-25.
  */
 public class OnStrategyErrorNotSolved {
-    // This event does not require any parameters
+
+    // Type of the error that was not solved
+    private final LocationStrategyError.StrategyError error;
+
+    public OnStrategyErrorNotSolved(LocationStrategyError.StrategyError error) {
+        this.error = error;
+    }
+
+    public LocationStrategyError.StrategyError getError() {
+        return error;
+    }
 }
@@ -6,19 +6,22 @@ import com.squareup.otto.ThreadEnforcer;
 /**
  * This class encapsulates the Otto EventBus in a Singleton
  *
+ * The bus is created on first use by the class loader (holder idiom), so that concurrent callers
+ * always get the same instance without locking.
+ *
  * Created by -Bernardo on 2015-05-10.
  */
 public class SingletonBus {
-    private static Bus bus;
 
     private SingletonBus() {
     }
 
     public static Bus getInstance() {
-        if (bus == null) {
-            bus = new Bus(ThreadEnforcer.ANY);
-        }
-        return bus;
+        return Holder.BUS;
+    }
+
+    private static class Holder {
+        static final Bus BUS = new Bus(ThreadEnforcer.ANY);
     }
 
 }
@@ -8,6 +8,10 @@ import android.content.Intent;
  */
 public abstract class BaseIntent extends Intent {
 
+    /**
+     * @return the actions accepted by the intent. Called on every construction, so it should
+     * return a constant array
+     */
     protected abstract String[] getPossibleActions();
 
     public BaseIntent(Context context, Class<?> clazz, String action) {
@@ -18,6 +18,8 @@ public class LocationErrorHandlerIntent extends BaseIntent {
     private static final String ERROR_DETAILS_KEY = "Location_Error_Handler_Error_Details";
     private static final String STRATEGY_NAME_KEY = "Location_Error_Strategy_Strategy_Name";
 
+    private static final String[] POSSIBLE_ACTIONS = {HANDLE_ERROR_ACTION};
+
     public LocationErrorHandlerIntent(Context context, Class<?> clazz, String action, LocationStrategyError error) {
         super(context, clazz, action);
         putExtra(STRATEGY_ERROR_KEY, error.getError());
@@ -32,7 +34,7 @@ public class LocationErrorHandlerIntent extends BaseIntent {
 
     @Override
     protected String[] getPossibleActions() {
-        return new String[]{HANDLE_ERROR_ACTION};
+        return POSSIBLE_ACTIONS;
     }
 
     public LocationStrategyError getError() {
@@ -1,6 +1,7 @@
 package com.bmacedo.easylocation.common.intents;
 
 import android.content.Context;
+import android.content.Intent;
 
 /**
  * Created by -Bernardo on 2015-07-22.
@@ -10,19 +11,56 @@ public class LocationServiceIntent extends BaseIntent {
     public static final String ACTION_START_STRATEGY_ANY = "LocationService_Start_Any";
     public static final String ACTION_START_STRATEGY_SERVICES = "LocationService_Start_Services";
     public static final String ACTION_START_STRATEGY_DEVICE = "LocationService_Start_Device";
+    public static final String ACTION_START_STRATEGY_CHAIN = "LocationService_Start_Chain";
     public static final String ACTION_STOP = "LocationService_Stop";
 
+    // Client id used by intents that do not identify the client
+    public static final int NO_CLIENT = 0;
+
+    private static final String CLIENT_ID_KEY = "LocationService_Client_Id";
+    private static final String STRATEGY_NAMES_KEY = "LocationService_Strategy_Names";
+
+    private static final String[] POSSIBLE_ACTIONS = {
+            ACTION_START_STRATEGY_ANY,
+            ACTION_START_STRATEGY_SERVICES,
+            ACTION_START_STRATEGY_DEVICE,
+            ACTION_START_STRATEGY_CHAIN,
+            ACTION_STOP
+    };
+
     public LocationServiceIntent(Context context, Class<?> clazz, String action) {
         super(context, clazz, action);
     }
 
+    public LocationServiceIntent(Context context, Class<?> clazz, String action, int clientId) {
+        super(context, clazz, action);
+        putExtra(CLIENT_ID_KEY, clientId);
+    }
+
+    /**
+     * Creates an intent with action {@link #ACTION_START_STRATEGY_CHAIN}
+     * @param strategyNames the names of the registered strategies to try, in order
+     */
+    public LocationServiceIntent(Context context, Class<?> clazz, int clientId, String[] strategyNames) {
+        super(context, clazz, ACTION_START_STRATEGY_CHAIN);
+        putExtra(CLIENT_ID_KEY, clientId);
+        putExtra(STRATEGY_NAMES_KEY, strategyNames);
+    }
+
+    public LocationServiceIntent(Intent original) {
+        super(original);
+    }
+
     @Override
     protected String[] getPossibleActions() {
-        return new String[] {
-                ACTION_START_STRATEGY_ANY,
-                ACTION_START_STRATEGY_SERVICES,
-                ACTION_START_STRATEGY_DEVICE,
-                ACTION_STOP
-        };
+        return POSSIBLE_ACTIONS;
+    }
+
+    public int getClientId() {
+        return getIntExtra(CLIENT_ID_KEY, NO_CLIENT);
+    }
+
+    public String[] getStrategyNames() {
+        return getStringArrayExtra(STRATEGY_NAMES_KEY);
     }
 }
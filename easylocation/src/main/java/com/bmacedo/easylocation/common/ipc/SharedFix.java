@@ -0,0 +1,65 @@
+package com.bmacedo.easylocation.common.ipc;
+
+/**
+ *
+ * A location read from a {@link SharedFixRing}. Instances are meant to be reused by the readers,
+ * so that reading a fix does not allocate.
+ *
+ */
+public class SharedFix {
+
+    long sequence;
+    long time;
+    long elapsedRealtimeNanos;
+    double latitude;
+    double longitude;
+    double altitude;
+    float accuracy;
+    float speed;
+    float bearing;
+
+    /**
+     * @return the sequence number of the fix. The first fix published has sequence 1.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the wall clock time of the fix, as in {@link android.location.Location#getTime()}
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the elapsed realtime of the fix, or 0 if it is unknown
+     */
+    public long getElapsedRealtimeNanos() {
+        return elapsedRealtimeNanos;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public double getAltitude() {
+        return altitude;
+    }
+
+    public float getAccuracy() {
+        return accuracy;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    public float getBearing() {
+        return bearing;
+    }
+}
@@ -0,0 +1,298 @@
+package com.bmacedo.easylocation.common.ipc;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *
+ * A ring of location fixes stored in a memory-mapped file, written by a single process and read by
+ * any number of processes without any IPC per fix.
+ *
+ * The file starts with a header, followed by a fixed number of slots:
+ *
+ * <pre>
+ * header: magic (int), version (int), capacity (int), slot size (int), last sequence (long),
+ *         epoch (long)
+ * slot:   stamp (long), time (long), elapsed realtime nanos (long), latitude (double),
+ *         longitude (double), altitude (double), accuracy (float), speed (float), bearing (float)
+ * </pre>
+ *
+ * The fix with sequence s (starting at 1) is stored in the slot (s - 1) % capacity. Each slot works
+ * as a seqlock: while the fix s is being written its stamp is 2s - 1, and once it is complete the
+ * stamp is 2s. A reader that sees different stamps before and after reading a slot, or a stamp
+ * that does not match the sequence it wants, knows that the slot was overwritten meanwhile.
+ *
+ * The epoch changes every time a writer opens the file, so that the readers notice when the ring
+ * starts over.
+ *
+ * This class only depends on the JVM, so the readers can run in any process, including tests.
+ *
+ */
+public class SharedFixRing {
+
+    private static final int MAGIC = 0x454c4652;  // "ELFR"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 64;
+
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int LAST_SEQUENCE_OFFSET = 16;
+    private static final int EPOCH_OFFSET = 24;
+
+    private static final int STAMP_OFFSET = 0;
+    private static final int TIME_OFFSET = 8;
+    private static final int ELAPSED_REALTIME_OFFSET = 16;
+    private static final int LATITUDE_OFFSET = 24;
+    private static final int LONGITUDE_OFFSET = 32;
+    private static final int ALTITUDE_OFFSET = 40;
+    private static final int ACCURACY_OFFSET = 48;
+    private static final int SPEED_OFFSET = 52;
+    private static final int BEARING_OFFSET = 56;
+
+    private SharedFixRing() {
+    }
+
+    /**
+     * Creates (or resets) the ring file and opens it for writing. Only one writer may be open
+     * for a file at any time.
+     * @param capacity the number of fixes kept in the ring
+     */
+    public static Writer openWriter(File file, int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid ring capacity: " + capacity);
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            long size = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+            randomAccessFile.setLength(size);
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new Writer(randomAccessFile, buffer, capacity);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing ring file for reading. The reader starts after the last fix published,
+     * so only the fixes published from now on are read.
+     */
+    public static Reader openReader(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            MappedByteBuffer buffer = randomAccessFile.getChannel()
+                    .map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                    || buffer.getInt(12) != SLOT_SIZE) {
+                throw new IOException("Not a fix ring file: " + file);
+            }
+            int capacity = buffer.getInt(CAPACITY_OFFSET);
+            if (buffer.capacity() < HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+                throw new IOException("Truncated fix ring file: " + file);
+            }
+            return new Reader(randomAccessFile, buffer, capacity);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Publishes fixes into the ring. Not thread-safe: must be used by a single thread.
+     */
+    public static class Writer implements Closeable {
+
+        private final RandomAccessFile file;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private long lastSequence;
+        // Volatile writes order the writes to the buffer for the readers (release semantics)
+        private volatile long fence;
+
+        private Writer(RandomAccessFile file, MappedByteBuffer buffer, int capacity) {
+            this.file = file;
+            this.buffer = buffer;
+            this.capacity = capacity;
+            for (int slot = 0; slot < capacity; slot++) {
+                buffer.putLong(HEADER_SIZE + slot * SLOT_SIZE + STAMP_OFFSET, 0);
+            }
+            buffer.putLong(LAST_SEQUENCE_OFFSET, 0);
+            buffer.putLong(EPOCH_OFFSET, System.currentTimeMillis() ^ System.nanoTime());
+            buffer.putInt(4, VERSION);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            buffer.putInt(12, SLOT_SIZE);
+            fence = 0;
+            // The magic is written last, so that readers never see a half initialized header
+            buffer.putInt(0, MAGIC);
+        }
+
+        /**
+         * @return the sequence of the published fix
+         */
+        public long publish(long time, long elapsedRealtimeNanos, double latitude, double longitude,
+                            double altitude, float accuracy, float speed, float bearing) {
+            long sequence = lastSequence + 1;
+            int offset = getSlotOffset(sequence, capacity);
+            buffer.putLong(offset + STAMP_OFFSET, 2 * sequence - 1);
+            fence = sequence;
+            buffer.putLong(offset + TIME_OFFSET, time);
+            buffer.putLong(offset + ELAPSED_REALTIME_OFFSET, elapsedRealtimeNanos);
+            buffer.putDouble(offset + LATITUDE_OFFSET, latitude);
+            buffer.putDouble(offset + LONGITUDE_OFFSET, longitude);
+            buffer.putDouble(offset + ALTITUDE_OFFSET, altitude);
+            buffer.putFloat(offset + ACCURACY_OFFSET, accuracy);
+            buffer.putFloat(offset + SPEED_OFFSET, speed);
+            buffer.putFloat(offset + BEARING_OFFSET, bearing);
+            fence = sequence;
+            buffer.putLong(offset + STAMP_OFFSET, 2 * sequence);
+            fence = sequence;
+            buffer.putLong(LAST_SEQUENCE_OFFSET, sequence);
+            lastSequence = sequence;
+            return sequence;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads fixes from the ring. Each reader keeps its own position and must be used by a single
+     * thread. Readers never block the writer: a reader that falls behind by more than the capacity
+     * of the ring skips the fixes that were overwritten.
+     */
+    public static class Reader implements Closeable {
+
+        // Maximum time slept between two polls while waiting for a fix
+        private static final long MAX_POLL_INTERVAL_MILLIS = 8;
+
+        private final RandomAccessFile file;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        // Epoch of the writer whose fixes are being read
+        private long epoch;
+        // Sequence of the last fix read
+        private long position;
+        // Number of fixes that were overwritten before being read
+        private long skipped;
+        // Volatile reads order the reads from the buffer (acquire semantics)
+        private volatile long fence;
+
+        private Reader(RandomAccessFile file, MappedByteBuffer buffer, int capacity) {
+            this.file = file;
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.epoch = buffer.getLong(EPOCH_OFFSET);
+            this.position = getLastSequence();
+        }
+
+        /**
+         * @return the sequence of the last fix published by the writer
+         */
+        public long getLastSequence() {
+            long sequence = buffer.getLong(LAST_SEQUENCE_OFFSET);
+            long ignored = fence;
+            return sequence;
+        }
+
+        /**
+         * @return the number of fixes that this reader missed because they were overwritten
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * Reads the next fix without waiting.
+         * @param fix the object that receives the fix
+         * @return true if a fix was read, false if there is no new fix
+         */
+        public boolean poll(SharedFix fix) {
+            while (true) {
+                long currentEpoch = buffer.getLong(EPOCH_OFFSET);
+                if (currentEpoch != epoch) {
+                    // A new writer started over. Its fixes are read from the beginning.
+                    epoch = currentEpoch;
+                    position = 0;
+                }
+                long last = getLastSequence();
+                if (last <= position) {
+                    return false;
+                }
+                long oldest = Math.max(1, last - capacity + 1);
+                if (position + 1 < oldest) {
+                    skipped += oldest - position - 1;
+                    position = oldest - 1;
+                }
+                long sequence = position + 1;
+                if (read(sequence, fix)) {
+                    position = sequence;
+                    return true;
+                }
+                // The slot was overwritten while it was read. Skip ahead and try again.
+                skipped++;
+                position = sequence;
+            }
+        }
+
+        /**
+         * Reads the next fix, waiting for it to be published if needed. The ring is polled with
+         * an increasing interval, so no IPC is needed.
+         * @param fix the object that receives the fix
+         * @param timeoutMillis the maximum time to wait
+         * @return true if a fix was read, false if the timeout expired
+         */
+        public boolean awaitNext(SharedFix fix, long timeoutMillis) throws InterruptedException {
+            long deadline = System.nanoTime() + timeoutMillis * 1000000L;
+            long interval = 0;
+            while (!poll(fix)) {
+                long remaining = (deadline - System.nanoTime()) / 1000000L;
+                if (remaining <= 0) {
+                    return false;
+                }
+                if (interval == 0) {
+                    Thread.yield();
+                    interval = 1;
+                } else {
+                    Thread.sleep(Math.min(interval, remaining));
+                    interval = Math.min(interval * 2, MAX_POLL_INTERVAL_MILLIS);
+                }
+            }
+            return true;
+        }
+
+        private boolean read(long sequence, SharedFix fix) {
+            int offset = getSlotOffset(sequence, capacity);
+            long stamp = buffer.getLong(offset + STAMP_OFFSET);
+            if (stamp != 2 * sequence) {
+                return false;
+            }
+            long ignored = fence;
+            fix.sequence = sequence;
+            fix.time = buffer.getLong(offset + TIME_OFFSET);
+            fix.elapsedRealtimeNanos = buffer.getLong(offset + ELAPSED_REALTIME_OFFSET);
+            fix.latitude = buffer.getDouble(offset + LATITUDE_OFFSET);
+            fix.longitude = buffer.getDouble(offset + LONGITUDE_OFFSET);
+            fix.altitude = buffer.getDouble(offset + ALTITUDE_OFFSET);
+            fix.accuracy = buffer.getFloat(offset + ACCURACY_OFFSET);
+            fix.speed = buffer.getFloat(offset + SPEED_OFFSET);
+            fix.bearing = buffer.getFloat(offset + BEARING_OFFSET);
+            ignored = fence;
+            return buffer.getLong(offset + STAMP_OFFSET) == stamp;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+    private static int getSlotOffset(long sequence, int capacity) {
+        return HEADER_SIZE + (int) ((sequence - 1) % capacity) * SLOT_SIZE;
+    }
+}
@@ -1,8 +1,10 @@
 package com.bmacedo.easylocation.controllers.activities;
 
+import android.app.PendingIntent;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.IntentSender;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Parcelable;
 import android.support.v4.app.FragmentActivity;
@@ -13,11 +15,8 @@ import com.bmacedo.easylocation.common.events.OnStrategyErrorNotSolved;
 import com.bmacedo.easylocation.common.events.OnStrategyErrorSolved;
 import com.bmacedo.easylocation.common.events.SingletonBus;
 import com.bmacedo.easylocation.common.intents.LocationErrorHandlerIntent;
-import com.bmacedo.easylocation.controllers.strategies.FallbackLocationStrategy;
 import com.bmacedo.easylocation.controllers.util.LocationUtil;
 import com.bmacedo.easylocation.models.LocationStrategyError;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.Status;
 
 /**
  * 
@@ -32,7 +31,9 @@ import com.google.android.gms.common.api.Status;
  * finishes itself.
  *
  * The communication between this Activity and the LocationService instance works through EventBus
- * events <b>OnStrategyErrorSolved</b> and <b>OnStrategyErrorNotSolved</b>
+ * events <b>OnStrategyErrorSolved</b> and <b>OnStrategyErrorNotSolved</b>. Exactly one of them is
+ * posted for each error: if the Activity is destroyed without a result, e.g. because the user left
+ * it with the back button, the error is considered not solved.
  * 
  * Created by -Bernardo on 2015-07-24.
  */
@@ -43,10 +44,15 @@ public class LocationErrorHandlerActivity extends FragmentActivity {
     // Request code used for the device location settings activity
     private static final int REQUEST_RESOLVE_LOCATION_DISABLED = 1002;
 
-    // State variable which avoids that the error resolution is run more than once at the same time
-    private static boolean isResolvingError = false;
+    // Key of the saved state that indicates that the resolution was already started
+    private static final String RESOLVING_KEY = "LocationErrorHandlerActivity_Resolving";
+
     // Object that contains the error and some details, if needed
     private LocationStrategyError error;
+    // Variable that indicates if the resolution was started, and its result is awaited
+    private boolean isResolvingError;
+    // Variable that indicates if the result was already posted to the LocationService
+    private boolean isResultPosted;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -55,24 +61,40 @@ public class LocationErrorHandlerActivity extends FragmentActivity {
         LocationErrorHandlerIntent intent = new LocationErrorHandlerIntent(getIntent());
         this.error = intent.getError();
 
-        if (error != null) {
-            LocationStrategyError.StrategyError strategyError = error.getError();
+        isResolvingError = savedInstanceState != null && savedInstanceState.getBoolean(RESOLVING_KEY);
 
-            if (!isResolvingError) {
-                if (strategyError == LocationStrategyError.StrategyError.STRATEGY_CONNECTION_FAILURE) {
-                    handleConnectionFailureError(error.getErrorDetails());
-                } else if (strategyError == LocationStrategyError.StrategyError.STRATEGY_DISABLED &&
-                        FallbackLocationStrategy.STRATEGY_NAME.equals(error.getStrategy())) {
-                    handleStrategyDisabledError();
-                } else {
-                    finish();
-                }
+        if (error == null) {
+            finish();
+        } else if (!isResolvingError) {
+            // When recreated while resolving, the result is delivered to the new instance
+            LocationStrategyError.StrategyError strategyError = error.getError();
+            if (strategyError == LocationStrategyError.StrategyError.STRATEGY_CONNECTION_FAILURE) {
+                handleConnectionFailureError(error.getErrorDetails());
+            } else if (strategyError == LocationStrategyError.StrategyError.STRATEGY_DISABLED) {
+                // Only the strategies that use the device location providers report this error
+                handleStrategyDisabledError();
             } else {
-                finish();
+                postEventAndFinish(new OnStrategyErrorNotSolved(strategyError));
             }
         }
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putBoolean(RESOLVING_KEY, isResolvingError);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        boolean isRecreating = Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB && isChangingConfigurations();
+        if (error != null && !isResultPosted && !isRecreating) {
+            // Finished without a result, so the LocationService must not wait for one
+            postEventAndFinish(new OnStrategyErrorNotSolved(error.getError()));
+        }
+    }
+
     /**
      * 
      * Shows Dialog which warns the user that the device's location system is disabled.
@@ -95,6 +117,7 @@ public class LocationErrorHandlerActivity extends FragmentActivity {
                     public void onClick(DialogInterface dialog, int id) {
                         Intent settings = new Intent("com.google.android.gms.location.settings.GOOGLE_LOCATION_SETTINGS");
                         startActivityForResult(settings, REQUEST_RESOLVE_LOCATION_DISABLED);
+                        isResolvingError = true;
                         dialog.dismiss();
                     }
                 })
@@ -103,7 +126,14 @@ public class LocationErrorHandlerActivity extends FragmentActivity {
                     public void onClick(DialogInterface dialog, int which) {
                         dialog.dismiss();
                         // Error remains. Post event to LocationService.
-                        postEventAndFinish(new OnStrategyErrorNotSolved());
+                        postEventAndFinish(new OnStrategyErrorNotSolved(error.getError()));
+                    }
+                })
+                .setOnCancelListener(new DialogInterface.OnCancelListener() {
+                    @Override
+                    public void onCancel(DialogInterface dialog) {
+                        // Dismissed with the back button or by touching outside
+                        postEventAndFinish(new OnStrategyErrorNotSolved(error.getError()));
                     }
                 });
         builder.create().show();
@@ -113,34 +143,25 @@ public class LocationErrorHandlerActivity extends FragmentActivity {
     /**
      * 
      * This method receives the connection error details and tries to execute the error resolution
-     * provided by the object itself.
+     * provided by the strategy, as a PendingIntent, so the core does not need to know which
+     * strategy module raised the error.
      *
      * The error resolution opens a Dialog that informs the user what to do to resolve the issue. Then
      * the operation result is received on onActivityResult
      * 
      */
     private void handleConnectionFailureError(Parcelable errorDetails) {
-        // TODO: change errorDetails to avoid the usage of the instanceof operator. Bad smells.
-        if (errorDetails != null) {
-            if (errorDetails instanceof ConnectionResult) {
-                ConnectionResult result = (ConnectionResult) errorDetails;
-                try {
-                    result.startResolutionForResult(this, REQUEST_RESOLVE_GOOGLE_SERVICES_ERROR);
-                    isResolvingError = true;
-                } catch (IntentSender.SendIntentException e) {
-                    e.printStackTrace();
-                    postEventAndFinish(new OnStrategyErrorNotSolved());
-                }
-            } else if (errorDetails instanceof Status) {
-                Status status = (Status) errorDetails;
-                try {
-                    status.startResolutionForResult(this, REQUEST_RESOLVE_GOOGLE_SERVICES_ERROR);
-                    isResolvingError = true;
-                } catch (IntentSender.SendIntentException e) {
-                    e.printStackTrace();
-                    postEventAndFinish(new OnStrategyErrorNotSolved());
-                }
+        if (errorDetails instanceof PendingIntent) {
+            PendingIntent resolution = (PendingIntent) errorDetails;
+            try {
+                startIntentSenderForResult(resolution.getIntentSender(), REQUEST_RESOLVE_GOOGLE_SERVICES_ERROR, null, 0, 0, 0);
+                isResolvingError = true;
+            } catch (IntentSender.SendIntentException e) {
+                e.printStackTrace();
+                postEventAndFinish(new OnStrategyErrorNotSolved(error.getError()));
             }
+        } else {
+            postEventAndFinish(new OnStrategyErrorNotSolved(error.getError()));
         }
     }
 
@@ -151,24 +172,27 @@ public class LocationErrorHandlerActivity extends FragmentActivity {
         if (requestCode == REQUEST_RESOLVE_GOOGLE_SERVICES_ERROR) {
             if (resultCode == RESULT_OK) {
                 // Error resolved. Post event to LocationService.
-                postEventAndFinish(new OnStrategyErrorSolved());
+                postEventAndFinish(new OnStrategyErrorSolved(error.getError()));
             } else {
                 // Error remains. Post event to LocationService.
-                postEventAndFinish(new OnStrategyErrorNotSolved());
+                postEventAndFinish(new OnStrategyErrorNotSolved(error.getError()));
             }
             isResolvingError = false;
         } else if (requestCode == REQUEST_RESOLVE_LOCATION_DISABLED) {
             if (LocationUtil.isLocationEnabled(getContentResolver())) {
-                postEventAndFinish(new OnStrategyErrorSolved());
+                postEventAndFinish(new OnStrategyErrorSolved(error.getError()));
             } else {
-                postEventAndFinish(new OnStrategyErrorNotSolved());
+                postEventAndFinish(new OnStrategyErrorNotSolved(error.getError()));
             }
             isResolvingError = false;
         }
     }
 
     private void postEventAndFinish(Object event) {
-        SingletonBus.getInstance().post(event);
+        if (!isResultPosted) {
+            isResultPosted = true;
+            SingletonBus.getInstance().post(event);
+        }
         finish();
     }
 }
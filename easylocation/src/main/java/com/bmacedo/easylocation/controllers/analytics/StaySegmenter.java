@@ -0,0 +1,367 @@
+package com.bmacedo.easylocation.controllers.analytics;
+
+import android.content.Context;
+import android.location.Location;
+
+import com.bmacedo.easylocation.common.events.OnInitialLocationObtainedEvent;
+import com.bmacedo.easylocation.common.events.OnLocationsBatchObtainedEvent;
+import com.bmacedo.easylocation.common.events.OnUpdatedLocationObtainedEvent;
+import com.bmacedo.easylocation.common.events.SingletonBus;
+import com.bmacedo.easylocation.controllers.util.GeodesyUtil;
+import com.bmacedo.easylocation.controllers.util.PreferenceUtil;
+import com.bmacedo.easylocation.models.StaySummary;
+import com.bmacedo.easylocation.models.TripSummary;
+import com.squareup.otto.Subscribe;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Splits the stream of locations into stay points and the trips between them, as the locations
+ * are obtained. A stay starts once the fixes remain within the radius of their centroid for the
+ * minimum duration, and ends with the first fix outside the radius, which starts a trip. Only the
+ * current stay and trip are kept, so the memory used does not grow with the number of fixes.
+ *
+ * Call {@link #start()} to segment the locations delivered by the LocationService. The state is
+ * saved in the preferences, so the segmentation continues after the service is restarted.
+ *
+ */
+public class StaySegmenter {
+
+    public static final float DEFAULT_RADIUS_METERS = 100;
+    public static final long DEFAULT_MIN_STAY_MILLIS = 5 * 60 * 1000;
+
+    private static final String STATE_KEY = "easylocation_segmenter_state";
+    // Maximum time between two saves of the state while no transition happens
+    private static final long SAVE_INTERVAL_MILLIS = 60 * 1000;
+
+    private final Context context;
+    private final Listener listener;
+    private final double radiusMeters;
+    private final long minStayMillis;
+    private final double maxAccuracyMeters;
+    private State state = new State();
+    private long lastSavedAt;
+
+    /**
+     * This interface receives the transitions between stays and trips. The summaries of the
+     * stays and trips that are starting only have their first fixes.
+     */
+    public interface Listener {
+
+        void onStayStarted(StaySummary stay);
+
+        void onStayEnded(StaySummary stay);
+
+        void onTripStarted(TripSummary trip);
+
+        void onTripEnded(TripSummary trip);
+
+    }
+
+    public StaySegmenter(Context context, Listener listener) {
+        this(context, listener, DEFAULT_RADIUS_METERS, DEFAULT_MIN_STAY_MILLIS);
+    }
+
+    /**
+     * @param radiusMeters maximum distance between the fixes of a stay and their centroid. Fixes
+     *                     less accurate than this are ignored.
+     * @param minStayMillis minimum time within the radius for a stay to start
+     */
+    public StaySegmenter(Context context, Listener listener, double radiusMeters, long minStayMillis) {
+        if (radiusMeters <= 0) {
+            throw new IllegalArgumentException("Invalid radius: " + radiusMeters);
+        }
+        if (minStayMillis < 0) {
+            throw new IllegalArgumentException("Invalid minimum stay: " + minStayMillis);
+        }
+        this.context = context != null ? context.getApplicationContext() : null;
+        this.listener = listener;
+        this.radiusMeters = radiusMeters;
+        this.minStayMillis = minStayMillis;
+        this.maxAccuracyMeters = radiusMeters;
+    }
+
+    /**
+     * Restores the saved state and starts segmenting the locations delivered by the LocationService
+     */
+    public void start() {
+        restore();
+        SingletonBus.getInstance().register(this);
+    }
+
+    /**
+     * Stops segmenting the locations and saves the state
+     */
+    public void stop() {
+        SingletonBus.getInstance().unregister(this);
+        save();
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the locations.
+     */
+    @Subscribe
+    public void onInitialLocationObtained(OnInitialLocationObtainedEvent event) {
+        onLocationChanged(event.getLocation());
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the locations.
+     */
+    @Subscribe
+    public void onUpdatedLocationObtained(OnUpdatedLocationObtainedEvent event) {
+        onLocationChanged(event.getLocation());
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the locations.
+     */
+    @Subscribe
+    public void onLocationsBatchObtained(OnLocationsBatchObtainedEvent event) {
+        for (Location location : event.getLocations()) {
+            onLocationChanged(location);
+        }
+    }
+
+    public void onLocationChanged(Location location) {
+        float accuracy = location.hasAccuracy() ? location.getAccuracy() : 0;
+        onFix(location.getLatitude(), location.getLongitude(), accuracy, location.getTime());
+    }
+
+    /**
+     * Adds a fix to the segmentation. Fixes older than the previous one are ignored.
+     * @param time time of the fix in milliseconds since the epoch
+     */
+    public void onFix(double latitude, double longitude, float accuracy, long time) {
+        // The listener is notified once the lock is released, so it can call back into the segmenter
+        List<Transition> transitions = new ArrayList<>(2);
+        synchronized (this) {
+            segment(latitude, longitude, accuracy, time, transitions);
+        }
+        for (Transition transition : transitions) {
+            transition.deliverTo(listener);
+        }
+    }
+
+    private void segment(double latitude, double longitude, float accuracy, long time, List<Transition> transitions) {
+        State s = state;
+        if (accuracy > maxAccuracyMeters || (s.hasLastFix && time <= s.lastTime)) {
+            return;
+        }
+        double step = 0;
+        double stepSpeed = 0;
+        if (s.hasLastFix) {
+            step = GeodesyUtil.haversine(s.lastLatitude, s.lastLongitude, latitude, longitude);
+            stepSpeed = step * 1000 / (time - s.lastTime);
+        }
+        if (s.isTripActive) {
+            s.tripDistance += step;
+            s.tripMaxSpeed = Math.max(s.tripMaxSpeed, stepSpeed);
+            s.tripFixCount++;
+        }
+        s.hasLastFix = true;
+        s.lastLatitude = latitude;
+        s.lastLongitude = longitude;
+        s.lastTime = time;
+
+        boolean hasTransition = false;
+        if (s.candidateCount > 0
+                && GeodesyUtil.haversine(s.candidateLatitude, s.candidateLongitude, latitude, longitude) <= radiusMeters) {
+            s.candidateCount++;
+            s.candidateLatitude += (latitude - s.candidateLatitude) / s.candidateCount;
+            s.candidateLongitude += normalizeLongitude(longitude - s.candidateLongitude) / s.candidateCount;
+            s.candidateLongitude = normalizeLongitude(s.candidateLongitude);
+            s.candidateEndTime = time;
+            if (!s.isStaying && s.candidateEndTime - s.candidateStartTime >= minStayMillis) {
+                if (s.isTripActive) {
+                    // The trip ends at the first fix of the stay, so the jitter within the stay is not counted
+                    s.isTripActive = false;
+                    transitions.add(Transition.tripEnded(new TripSummary(s.tripStartLatitude, s.tripStartLongitude, s.tripStartTime,
+                            s.candidateLatitude, s.candidateLongitude, s.candidateStartTime,
+                            s.candidateTripDistance, s.candidateTripMaxSpeed, s.candidateTripFixCount)));
+                }
+                s.isStaying = true;
+                transitions.add(Transition.stayStarted(getCurrentStay()));
+                hasTransition = true;
+            }
+        } else {
+            if (s.candidateCount > 0) {
+                boolean wasStaying = s.isStaying;
+                if (wasStaying) {
+                    transitions.add(Transition.stayEnded(getCurrentStay()));
+                    s.isStaying = false;
+                }
+                if (!s.isTripActive) {
+                    // The trip starts when the user left the stay, or at the first fix if there was none
+                    long startTime = wasStaying ? s.candidateEndTime : s.candidateStartTime;
+                    s.isTripActive = true;
+                    s.tripStartLatitude = s.candidateLatitude;
+                    s.tripStartLongitude = s.candidateLongitude;
+                    s.tripStartTime = startTime;
+                    s.tripDistance = GeodesyUtil.haversine(s.candidateLatitude, s.candidateLongitude, latitude, longitude);
+                    // The distance is counted from the centroid, but the speed from the last fix within the radius
+                    s.tripMaxSpeed = stepSpeed;
+                    s.tripFixCount = 1;
+                    transitions.add(Transition.tripStarted(getCurrentTrip()));
+                }
+                hasTransition = true;
+            }
+            s.candidateCount = 1;
+            s.candidateLatitude = latitude;
+            s.candidateLongitude = longitude;
+            s.candidateStartTime = time;
+            s.candidateEndTime = time;
+            s.candidateTripDistance = s.tripDistance;
+            s.candidateTripMaxSpeed = s.tripMaxSpeed;
+            s.candidateTripFixCount = s.tripFixCount;
+        }
+        if (hasTransition || time - lastSavedAt >= SAVE_INTERVAL_MILLIS) {
+            lastSavedAt = time;
+            save();
+        }
+    }
+
+    public synchronized boolean isStaying() {
+        return state.isStaying;
+    }
+
+    /**
+     * @return the stay in progress, or null if the user is not staying
+     */
+    public synchronized StaySummary getCurrentStay() {
+        State s = state;
+        if (!s.isStaying) {
+            return null;
+        }
+        return new StaySummary(s.candidateLatitude, s.candidateLongitude, s.candidateStartTime,
+                s.candidateEndTime, s.candidateCount);
+    }
+
+    /**
+     * @return the trip in progress, or null if there is none
+     */
+    public synchronized TripSummary getCurrentTrip() {
+        State s = state;
+        if (!s.isTripActive) {
+            return null;
+        }
+        return new TripSummary(s.tripStartLatitude, s.tripStartLongitude, s.tripStartTime,
+                s.lastLatitude, s.lastLongitude, s.lastTime, s.tripDistance, s.tripMaxSpeed, s.tripFixCount);
+    }
+
+    /**
+     * Forgets the current stay and trip without notifying the listener
+     */
+    public synchronized void reset() {
+        state = new State();
+        save();
+    }
+
+    private synchronized void restore() {
+        if (context == null) {
+            return;
+        }
+        State saved = PreferenceUtil.getPreference(context, STATE_KEY, State.class);
+        if (saved != null) {
+            state = saved;
+            lastSavedAt = saved.lastTime;
+        }
+    }
+
+    private synchronized void save() {
+        if (context != null) {
+            PreferenceUtil.savePreference(context, STATE_KEY, state);
+        }
+    }
+
+    private static double normalizeLongitude(double longitude) {
+        if (longitude > 180) {
+            return longitude - 360;
+        } else if (longitude < -180) {
+            return longitude + 360;
+        }
+        return longitude;
+    }
+
+    // Transition found under the lock, to be passed to the listener after it is released
+    private static class Transition {
+        private static final int STAY_STARTED = 0;
+        private static final int STAY_ENDED = 1;
+        private static final int TRIP_STARTED = 2;
+        private static final int TRIP_ENDED = 3;
+
+        final int type;
+        final StaySummary stay;
+        final TripSummary trip;
+
+        private Transition(int type, StaySummary stay, TripSummary trip) {
+            this.type = type;
+            this.stay = stay;
+            this.trip = trip;
+        }
+
+        static Transition stayStarted(StaySummary stay) {
+            return new Transition(STAY_STARTED, stay, null);
+        }
+
+        static Transition stayEnded(StaySummary stay) {
+            return new Transition(STAY_ENDED, stay, null);
+        }
+
+        static Transition tripStarted(TripSummary trip) {
+            return new Transition(TRIP_STARTED, null, trip);
+        }
+
+        static Transition tripEnded(TripSummary trip) {
+            return new Transition(TRIP_ENDED, null, trip);
+        }
+
+        void deliverTo(Listener listener) {
+            switch (type) {
+                case STAY_STARTED:
+                    listener.onStayStarted(stay);
+                    break;
+                case STAY_ENDED:
+                    listener.onStayEnded(stay);
+                    break;
+                case TRIP_STARTED:
+                    listener.onTripStarted(trip);
+                    break;
+                case TRIP_ENDED:
+                    listener.onTripEnded(trip);
+                    break;
+            }
+        }
+    }
+
+    // State saved in the preferences
+    private static class State {
+        boolean hasLastFix;
+        double lastLatitude;
+        double lastLongitude;
+        long lastTime;
+        // Centroid of the fixes since the user last left the radius
+        int candidateCount;
+        double candidateLatitude;
+        double candidateLongitude;
+        long candidateStartTime;
+        long candidateEndTime;
+        // Distance, speed and fixes of the trip up to the first fix of the candidate
+        double candidateTripDistance;
+        double candidateTripMaxSpeed;
+        int candidateTripFixCount;
+        boolean isStaying;
+        boolean isTripActive;
+        double tripStartLatitude;
+        double tripStartLongitude;
+        long tripStartTime;
+        double tripDistance;
+        double tripMaxSpeed;
+        int tripFixCount;
+    }
+}
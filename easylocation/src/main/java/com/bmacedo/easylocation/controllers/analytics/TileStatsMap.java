@@ -0,0 +1,176 @@
+package com.bmacedo.easylocation.controllers.analytics;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Open addressing hash map from tile keys to their dwell time and visit count, with the values
+ * already synchronized kept alongside. The entries are stored in parallel primitive arrays, so
+ * there are no objects per tile. Keys must not be negative, and entries are never removed.
+ *
+ */
+public class TileStatsMap {
+
+    private static final long EMPTY = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private long[] dwellMillis;
+    private int[] visits;
+    private long[] syncedDwellMillis;
+    private int[] syncedVisits;
+    private int size;
+
+    public TileStatsMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of entries that can be stored, some of which may be empty
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * @return the approximate number of bytes used by the map
+     */
+    public long getFootprintBytes() {
+        return (long) keys.length * (8 + 8 + 4 + 8 + 4);
+    }
+
+    public void add(long key, long dwellMillis, int visits) {
+        int slot = findOrInsert(key);
+        this.dwellMillis[slot] += dwellMillis;
+        this.visits[slot] += visits;
+    }
+
+    /**
+     * Sets every value of an entry, e.g. when it is loaded from disk
+     */
+    public void put(long key, long dwellMillis, int visits, long syncedDwellMillis, int syncedVisits) {
+        int slot = findOrInsert(key);
+        this.dwellMillis[slot] = dwellMillis;
+        this.visits[slot] = visits;
+        this.syncedDwellMillis[slot] = syncedDwellMillis;
+        this.syncedVisits[slot] = syncedVisits;
+    }
+
+    /**
+     * Marks part of the values of an entry as synchronized
+     */
+    public void addSynced(long key, long dwellMillis, int visits) {
+        int slot = find(key);
+        if (slot >= 0) {
+            syncedDwellMillis[slot] += dwellMillis;
+            syncedVisits[slot] += visits;
+        }
+    }
+
+    public long getDwellMillis(long key) {
+        int slot = find(key);
+        return slot >= 0 ? dwellMillis[slot] : 0;
+    }
+
+    public int getVisits(long key) {
+        int slot = find(key);
+        return slot >= 0 ? visits[slot] : 0;
+    }
+
+    /**
+     * This interface receives the entries of the map, see {@link #forEach(Visitor)}
+     */
+    public interface Visitor {
+
+        void visit(long key, long dwellMillis, int visits, long syncedDwellMillis, int syncedVisits);
+
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                visitor.visit(keys[slot], dwellMillis[slot], visits[slot], syncedDwellMillis[slot], syncedVisits[slot]);
+            }
+        }
+    }
+
+    public void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            } else if (keys[slot] == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private int findOrInsert(long key) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Invalid key: " + key);
+        }
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return slot;
+            } else if (keys[slot] == EMPTY) {
+                // Keeps the load factor at or below one half
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                    return findOrInsert(key);
+                }
+                keys[slot] = key;
+                size++;
+                return slot;
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldDwellMillis = dwellMillis;
+        int[] oldVisits = visits;
+        long[] oldSyncedDwellMillis = syncedDwellMillis;
+        int[] oldSyncedVisits = syncedVisits;
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) {
+                continue;
+            }
+            int slot = hash(oldKeys[i]) & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            dwellMillis[slot] = oldDwellMillis[i];
+            visits[slot] = oldVisits[i];
+            syncedDwellMillis[slot] = oldSyncedDwellMillis[i];
+            syncedVisits[slot] = oldSyncedVisits[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        dwellMillis = new long[capacity];
+        visits = new int[capacity];
+        syncedDwellMillis = new long[capacity];
+        syncedVisits = new int[capacity];
+    }
+
+    // Mixes the bits of the key, since the lower bits of nearby tiles are very similar
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
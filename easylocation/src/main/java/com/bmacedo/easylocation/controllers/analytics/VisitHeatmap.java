@@ -0,0 +1,314 @@
+package com.bmacedo.easylocation.controllers.analytics;
+
+import android.location.Location;
+import android.util.Log;
+
+import com.bmacedo.easylocation.common.events.OnInitialLocationObtainedEvent;
+import com.bmacedo.easylocation.common.events.OnLocationsBatchObtainedEvent;
+import com.bmacedo.easylocation.common.events.OnUpdatedLocationObtainedEvent;
+import com.bmacedo.easylocation.common.events.SingletonBus;
+import com.bmacedo.easylocation.controllers.util.Clock;
+import com.bmacedo.easylocation.controllers.util.LocationUtil;
+import com.bmacedo.easylocation.controllers.util.QuadkeyUtil;
+import com.bmacedo.easylocation.models.HeatmapDelta;
+import com.squareup.otto.Subscribe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ *
+ * Aggregates where the device spends time, as the locations are obtained. For each tile of the
+ * configured zoom levels, it keeps the time spent inside the tile and the number of times the
+ * tile was entered.
+ *
+ * The time between two consecutive fixes is added to the tiles of the first one. Gaps longer than
+ * the maximum gap, e.g. while the location updates are stopped, are not counted, and the next fix
+ * starts a new visit.
+ *
+ * Call {@link #start()} to aggregate the locations delivered by the LocationService. The tiles
+ * changed since the last synchronization are obtained with {@link #exportDelta()}, and marked as
+ * synchronized with {@link #commitDelta(HeatmapDelta)} once they are delivered.
+ *
+ */
+public class VisitHeatmap {
+
+    public static final long DEFAULT_MAX_GAP_MILLIS = 5 * 60 * 1000;
+
+    private static final String TAG = "VisitHeatmap";
+    private static final int FILE_MAGIC = 0x454c484d;
+    private static final int FILE_VERSION = 1;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Clock clock;
+    private final long maxGapMillis;
+    private final int[] zooms;
+    private final TileStatsMap tiles = new TileStatsMap();
+
+    // Tiles of the previous fix at each zoom level
+    private final long[] previousKeys;
+    // Moment of the previous fix in the elapsed realtime clock, or -1 if there is none
+    private long previousFixAt = -1;
+    private long fixes;
+
+    /**
+     * @param zooms zoom levels aggregated, from 1 to {@link QuadkeyUtil#MAX_ZOOM}
+     */
+    public VisitHeatmap(int... zooms) {
+        this(Clock.ELAPSED_REALTIME, DEFAULT_MAX_GAP_MILLIS, zooms);
+    }
+
+    public VisitHeatmap(Clock clock, long maxGapMillis, int... zooms) {
+        if (zooms.length == 0) {
+            throw new IllegalArgumentException("At least one zoom level is required");
+        }
+        for (int zoom : zooms) {
+            if (zoom < 1 || zoom > QuadkeyUtil.MAX_ZOOM) {
+                throw new IllegalArgumentException("Invalid zoom: " + zoom);
+            }
+        }
+        if (maxGapMillis <= 0) {
+            throw new IllegalArgumentException("Invalid maximum gap: " + maxGapMillis);
+        }
+        this.clock = clock;
+        this.maxGapMillis = maxGapMillis;
+        this.zooms = zooms.clone();
+        this.previousKeys = new long[zooms.length];
+    }
+
+    /**
+     * Starts aggregating the locations delivered by the LocationService
+     */
+    public void start() {
+        SingletonBus.getInstance().register(this);
+    }
+
+    public void stop() {
+        SingletonBus.getInstance().unregister(this);
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the locations.
+     */
+    @Subscribe
+    public void onInitialLocationObtained(OnInitialLocationObtainedEvent event) {
+        onLocationChanged(event.getLocation());
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the locations.
+     */
+    @Subscribe
+    public void onUpdatedLocationObtained(OnUpdatedLocationObtainedEvent event) {
+        onLocationChanged(event.getLocation());
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the locations.
+     */
+    @Subscribe
+    public void onLocationsBatchObtained(OnLocationsBatchObtainedEvent event) {
+        for (Location location : event.getLocations()) {
+            onLocationChanged(location);
+        }
+    }
+
+    /**
+     * Adds a fix to the heatmap. Fixes older than the previous one are ignored.
+     */
+    public synchronized void onLocationChanged(Location location) {
+        long fixAt = clock.elapsedRealtime() - LocationUtil.getAgeMillis(location);
+        if (previousFixAt >= 0 && fixAt <= previousFixAt) {
+            return;
+        }
+        boolean isContinuous = previousFixAt >= 0 && fixAt - previousFixAt <= maxGapMillis;
+        for (int i = 0; i < zooms.length; i++) {
+            long key = QuadkeyUtil.encode(location.getLatitude(), location.getLongitude(), zooms[i]);
+            if (isContinuous) {
+                tiles.add(previousKeys[i], fixAt - previousFixAt, 0);
+            }
+            if (!isContinuous || key != previousKeys[i]) {
+                tiles.add(key, 0, 1);
+            }
+            previousKeys[i] = key;
+        }
+        previousFixAt = fixAt;
+        fixes++;
+    }
+
+    /**
+     * Ends the current visit, so that the time until the next fix is not counted
+     */
+    public synchronized void interrupt() {
+        previousFixAt = -1;
+    }
+
+    public synchronized long getDwellMillis(double latitude, double longitude, int zoom) {
+        return tiles.getDwellMillis(QuadkeyUtil.encode(latitude, longitude, zoom));
+    }
+
+    public synchronized int getVisits(double latitude, double longitude, int zoom) {
+        return tiles.getVisits(QuadkeyUtil.encode(latitude, longitude, zoom));
+    }
+
+    public synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+    public synchronized long getFixes() {
+        return fixes;
+    }
+
+    /**
+     * @return the approximate number of bytes used by the tiles
+     */
+    public synchronized long getFootprintBytes() {
+        return tiles.getFootprintBytes();
+    }
+
+    /**
+     * @return the values of the tiles changed since the last synchronization
+     */
+    public synchronized HeatmapDelta exportDelta() {
+        final long[] keys = new long[tiles.size()];
+        final long[] dwellMillis = new long[tiles.size()];
+        final int[] visits = new int[tiles.size()];
+        final int[] count = new int[1];
+        tiles.forEach(new TileStatsMap.Visitor() {
+            @Override
+            public void visit(long key, long dwell, int visitCount, long syncedDwell, int syncedVisits) {
+                if (dwell != syncedDwell || visitCount != syncedVisits) {
+                    keys[count[0]] = key;
+                    dwellMillis[count[0]] = dwell - syncedDwell;
+                    visits[count[0]] = visitCount - syncedVisits;
+                    count[0]++;
+                }
+            }
+        });
+        return new HeatmapDelta(keys, dwellMillis, visits, count[0]);
+    }
+
+    /**
+     * Marks the values of a delta as synchronized, so that they are not exported again. Values
+     * added after the delta was exported are kept for the next one.
+     */
+    public synchronized void commitDelta(HeatmapDelta delta) {
+        for (int i = 0; i < delta.getTileCount(); i++) {
+            tiles.addSynced(delta.getKey(i), delta.getDwellMillis(i), delta.getVisits(i));
+        }
+    }
+
+    /**
+     * Writes the tiles to the file in a compact binary format
+     */
+    public void save(File file) throws IOException {
+        File temporary = new File(file.getPath() + TEMPORARY_SUFFIX);
+        FileOutputStream output = new FileOutputStream(temporary);
+        try {
+            final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+            synchronized (this) {
+                data.writeInt(FILE_MAGIC);
+                data.writeInt(FILE_VERSION);
+                data.writeByte(zooms.length);
+                for (int zoom : zooms) {
+                    data.writeByte(zoom);
+                }
+                data.writeInt(tiles.size());
+                final IOException[] error = new IOException[1];
+                tiles.forEach(new TileStatsMap.Visitor() {
+                    @Override
+                    public void visit(long key, long dwell, int visits, long syncedDwell, int syncedVisits) {
+                        if (error[0] != null) {
+                            return;
+                        }
+                        try {
+                            data.writeLong(key);
+                            data.writeLong(dwell);
+                            data.writeInt(visits);
+                            data.writeLong(syncedDwell);
+                            data.writeInt(syncedVisits);
+                        } catch (IOException e) {
+                            error[0] = e;
+                        }
+                    }
+                });
+                if (error[0] != null) {
+                    throw error[0];
+                }
+            }
+            data.flush();
+            output.getFD().sync();
+        } finally {
+            closeQuietly(output);
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("Could not rename " + temporary + " to " + file);
+        }
+    }
+
+    /**
+     * Replaces the tiles with the ones saved in the file. Nothing is changed if the file does not
+     * exist, cannot be read or was saved with other zoom levels.
+     * @return true if the tiles were restored
+     */
+    public boolean restore(File file) {
+        if (!file.exists()) {
+            return false;
+        }
+        DataInputStream data = null;
+        try {
+            data = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (data.readInt() != FILE_MAGIC || data.readInt() != FILE_VERSION) {
+                return false;
+            }
+            int[] savedZooms = new int[data.readUnsignedByte()];
+            for (int i = 0; i < savedZooms.length; i++) {
+                savedZooms[i] = data.readUnsignedByte();
+            }
+            if (!Arrays.equals(savedZooms, zooms)) {
+                return false;
+            }
+            int count = data.readInt();
+            TileStatsMap restored = new TileStatsMap();
+            for (int i = 0; i < count; i++) {
+                restored.put(data.readLong(), data.readLong(), data.readInt(), data.readLong(), data.readInt());
+            }
+            synchronized (this) {
+                tiles.clear();
+                restored.forEach(new TileStatsMap.Visitor() {
+                    @Override
+                    public void visit(long key, long dwell, int visits, long syncedDwell, int syncedVisits) {
+                        tiles.put(key, dwell, visits, syncedDwell, syncedVisits);
+                    }
+                });
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read the heatmap", e);
+            return false;
+        } finally {
+            closeQuietly(data);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing else to do
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.bmacedo.easylocation.controllers.diagnostics;
+
+import com.bmacedo.easylocation.models.LocationState;
+import com.bmacedo.easylocation.models.LocationStrategyError.StrategyError;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ *
+ * Renders as text a dump written by {@link FlightRecorder#writeTo(java.io.OutputStream)}, one
+ * record per line, e.g.
+ *
+ * <pre>
+ * #42 10:15:02.311 STATE WAITING_INITIAL_LOCATION -> WAITING_UPDATED_LOCATION
+ * #43 10:15:02.311 FIX_ACCEPTED Fallback_Strategy accuracy=12.0m
+ * </pre>
+ *
+ * The times are converted to the wall clock of the moment of the dump. It only depends on the
+ * JVM, so it can be run on a dump pulled from a device:
+ *
+ * <pre>
+ * java -cp easylocation.jar com.bmacedo.easylocation.controllers.diagnostics.FlightRecordDecoder dump.bin
+ * </pre>
+ *
+ */
+public class FlightRecordDecoder {
+
+    private FlightRecordDecoder() {
+    }
+
+    /**
+     * Command line entry point, shown above: prints the dump given as the only argument to the
+     * standard output. The library never calls it; an app that renders a dump itself, e.g. to
+     * attach it to a bug report, uses {@link #decode(InputStream, Appendable)}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: FlightRecordDecoder <dump file>");
+            System.exit(1);
+            return;
+        }
+        InputStream input = new BufferedInputStream(new FileInputStream(args[0]));
+        try {
+            PrintWriter output = new PrintWriter(new OutputStreamWriter(System.out, "UTF-8"));
+            decode(input, output);
+            output.flush();
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * @throws IOException if the stream is not a dump or could not be read
+     */
+    public static void decode(InputStream inputStream, Appendable output) throws IOException {
+        DataInputStream input = new DataInputStream(inputStream);
+        if (input.readInt() != FlightRecorder.MAGIC) {
+            throw new IOException("Not a flight record dump");
+        }
+        int version = input.readInt();
+        if (version != FlightRecorder.VERSION) {
+            throw new IOException("Unsupported flight record version: " + version);
+        }
+        long dumpElapsedRealtime = input.readLong();
+        long dumpTime = input.readLong();
+        String[] names = new String[input.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = input.readUTF();
+        }
+        int count = input.readInt();
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss.SSS", Locale.US);
+        output.append("Flight record dumped at ")
+                .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US).format(new Date(dumpTime)))
+                .append(", ").append(String.valueOf(count)).append(" records\n");
+        long expected = -1;
+        for (int i = 0; i < count; i++) {
+            long sequence = input.readLong();
+            long elapsedRealtime = input.readLong();
+            long payload = input.readLong();
+            if (expected != -1 && sequence != expected) {
+                output.append("... ").append(String.valueOf(sequence - expected)).append(" records lost\n");
+            }
+            expected = sequence + 1;
+            output.append('#').append(String.valueOf(sequence)).append(' ')
+                    .append(timeFormat.format(new Date(dumpTime - (dumpElapsedRealtime - elapsedRealtime)))).append(' ')
+                    .append(describe(payload, names)).append('\n');
+        }
+    }
+
+    private static String describe(long payload, String[] names) {
+        int a = FlightRecorder.getA(payload);
+        int b = FlightRecorder.getB(payload);
+        int value = FlightRecorder.getValue(payload);
+        switch (FlightRecorder.getType(payload)) {
+            case FlightRecorder.TYPE_STATE_CHANGED:
+                return "STATE " + getStateName(a) + " -> " + getStateName(b);
+            case FlightRecorder.TYPE_STRATEGY_STARTED:
+                return "STRATEGY_STARTED " + getName(names, b);
+            case FlightRecorder.TYPE_STRATEGY_STOPPED:
+                return "STRATEGY_STOPPED " + getName(names, b);
+            case FlightRecorder.TYPE_STRATEGY_SWITCHED:
+                return "STRATEGY_SWITCHED " + getName(names, b) + " -> " + getName(names, value);
+            case FlightRecorder.TYPE_STRATEGY_ERROR:
+                return "STRATEGY_ERROR " + getEnumName(StrategyError.values(), a) + " " + getName(names, b);
+            case FlightRecorder.TYPE_FIX_ACCEPTED:
+                return "FIX_ACCEPTED " + getName(names, b) + " accuracy=" + Float.intBitsToFloat(value) + "m";
+            case FlightRecorder.TYPE_FIX_REJECTED:
+                return "FIX_REJECTED " + getName(names, b)
+                        + (a == FlightRecorder.REJECTED_NOT_NEWER ? " NOT_NEWER" : " NOT_DELIVERED")
+                        + " accuracy=" + Float.intBitsToFloat(value) + "m";
+            default:
+                return "UNKNOWN " + Long.toHexString(payload);
+        }
+    }
+
+    private static String getStateName(int ordinal) {
+        return ordinal == FlightRecorder.NONE ? "NONE" : getEnumName(LocationState.values(), ordinal);
+    }
+
+    private static String getEnumName(Enum<?>[] values, int ordinal) {
+        return ordinal < values.length ? values[ordinal].name() : "#" + ordinal;
+    }
+
+    private static String getName(String[] names, int id) {
+        return id < names.length ? names[id] : "?";
+    }
+}
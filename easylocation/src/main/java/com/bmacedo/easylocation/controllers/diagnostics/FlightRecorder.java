@@ -0,0 +1,232 @@
+package com.bmacedo.easylocation.controllers.diagnostics;
+
+import com.bmacedo.easylocation.controllers.util.Clock;
+import com.bmacedo.easylocation.models.LocationState;
+import com.bmacedo.easylocation.models.LocationStrategyError.StrategyError;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * A fixed-size ring of the last events of the location service: state changes, strategy starts,
+ * stops and switches, strategy errors, and locations accepted or rejected. It is meant to explain
+ * what happened before a bug report or a crash, and is always on.
+ *
+ * Each event is a record of three longs in an {@link AtomicLongArray}: a stamp, the elapsed
+ * realtime and a payload with the type and up to three values. Recording takes a slot with an
+ * atomic increment and writes it without locks or allocations. As in
+ * {@link com.bmacedo.easylocation.common.ipc.SharedFixRing}, each slot works as a seqlock: while
+ * the record s (starting at 1) is being written its stamp is 2s - 1, and once it is complete the
+ * stamp is 2s, so that the dump skips the records that are incomplete or overwritten.
+ *
+ * The strategy names are stored as ids of a table that only grows when a new name is recorded.
+ * The dump, written by {@link #writeTo(OutputStream)}, is rendered as text by
+ * {@link FlightRecordDecoder}.
+ *
+ */
+public class FlightRecorder {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // Types of the records
+    public static final int TYPE_STATE_CHANGED = 1;
+    public static final int TYPE_STRATEGY_STARTED = 2;
+    public static final int TYPE_STRATEGY_STOPPED = 3;
+    public static final int TYPE_STRATEGY_SWITCHED = 4;
+    public static final int TYPE_STRATEGY_ERROR = 5;
+    public static final int TYPE_FIX_ACCEPTED = 6;
+    public static final int TYPE_FIX_REJECTED = 7;
+
+    // Reasons of the rejected fixes
+    public static final int REJECTED_NOT_NEWER = 0;
+    public static final int REJECTED_NOT_DELIVERED = 1;
+
+    // Value stored instead of a missing state or an unknown strategy name
+    public static final int NONE = 0xFF;
+    public static final int UNKNOWN_NAME = 0xFFFF;
+
+    static final int MAGIC = 0x454c4644;  // "ELFD"
+    static final int VERSION = 1;
+    private static final int SLOT_SIZE = 3;
+
+    private final Clock clock;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray slots;
+    // Sequence of the last record taken
+    private final AtomicLong sequence = new AtomicLong();
+    // Ids of the strategy names, and the names by id
+    private final ConcurrentHashMap<String, Integer> nameIds = new ConcurrentHashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * @param capacity the number of records kept, rounded up to a power of two
+     */
+    public FlightRecorder(int capacity, Clock clock) {
+        if (capacity <= 0 || capacity > (1 << 24)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = this.capacity - 1;
+        this.clock = clock;
+        this.slots = new AtomicLongArray(this.capacity * SLOT_SIZE);
+    }
+
+    /**
+     * @return the recorder of the location service
+     */
+    public static FlightRecorder getInstance() {
+        return Holder.RECORDER;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void recordStateChanged(LocationState from, LocationState to) {
+        record(TYPE_STATE_CHANGED, from != null ? from.ordinal() : NONE, to != null ? to.ordinal() : NONE, 0);
+    }
+
+    public void recordStrategyStarted(String strategyName) {
+        record(TYPE_STRATEGY_STARTED, 0, getNameId(strategyName), 0);
+    }
+
+    public void recordStrategyStopped(String strategyName) {
+        record(TYPE_STRATEGY_STOPPED, 0, getNameId(strategyName), 0);
+    }
+
+    public void recordStrategySwitched(String fromStrategyName, String toStrategyName) {
+        record(TYPE_STRATEGY_SWITCHED, 0, getNameId(fromStrategyName), getNameId(toStrategyName));
+    }
+
+    public void recordStrategyError(StrategyError error, String strategyName) {
+        record(TYPE_STRATEGY_ERROR, error.ordinal(), getNameId(strategyName), 0);
+    }
+
+    /**
+     * @param accuracy the accuracy of the location in meters
+     */
+    public void recordFixAccepted(String strategyName, float accuracy) {
+        record(TYPE_FIX_ACCEPTED, 0, getNameId(strategyName), Float.floatToRawIntBits(accuracy));
+    }
+
+    /**
+     * @param reason {@link #REJECTED_NOT_NEWER} or {@link #REJECTED_NOT_DELIVERED}
+     */
+    public void recordFixRejected(String strategyName, int reason, float accuracy) {
+        record(TYPE_FIX_REJECTED, reason, getNameId(strategyName), Float.floatToRawIntBits(accuracy));
+    }
+
+    /**
+     * Writes the names and the complete records, oldest first. It can be called from any thread,
+     * including while other threads record.
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        long last = sequence.get();
+        long first = Math.max(1, last - capacity + 1);
+        long[] records = new long[(int) (last - first + 1) * SLOT_SIZE];
+        int count = 0;
+        for (long s = first; s <= last; s++) {
+            int index = getIndex(s);
+            long stamp = slots.get(index);
+            long time = slots.get(index + 1);
+            long payload = slots.get(index + 2);
+            if (stamp == 2 * s && slots.get(index) == stamp) {
+                records[count * SLOT_SIZE] = s;
+                records[count * SLOT_SIZE + 1] = time;
+                records[count * SLOT_SIZE + 2] = payload;
+                count++;
+            }
+        }
+        String[] currentNames;
+        synchronized (names) {
+            currentNames = names.toArray(new String[names.size()]);
+        }
+
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeLong(clock.elapsedRealtime());
+        output.writeLong(System.currentTimeMillis());
+        output.writeInt(currentNames.length);
+        for (String name : currentNames) {
+            output.writeUTF(name);
+        }
+        output.writeInt(count);
+        for (int i = 0; i < count * SLOT_SIZE; i++) {
+            output.writeLong(records[i]);
+        }
+        output.flush();
+    }
+
+    private void record(int type, int a, int b, int value) {
+        long s = sequence.incrementAndGet();
+        int index = getIndex(s);
+        // The ordered stores keep the stamps around the data
+        slots.lazySet(index, 2 * s - 1);
+        slots.lazySet(index + 1, clock.elapsedRealtime());
+        slots.lazySet(index + 2, pack(type, a, b, value));
+        slots.lazySet(index, 2 * s);
+    }
+
+    private int getIndex(long s) {
+        return (int) ((s - 1) & mask) * SLOT_SIZE;
+    }
+
+    private int getNameId(String name) {
+        if (name == null) {
+            return UNKNOWN_NAME;
+        }
+        Integer id = nameIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (names) {
+            id = nameIds.get(name);
+            if (id == null) {
+                if (names.size() == UNKNOWN_NAME) {
+                    return UNKNOWN_NAME;
+                }
+                id = names.size();
+                names.add(name);
+                nameIds.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Packs the type (8 bits), a (8 bits), b (16 bits) and value (32 bits) in a long
+     */
+    static long pack(int type, int a, int b, int value) {
+        return ((long) (type & 0xFF) << 56) | ((long) (a & 0xFF) << 48) | ((long) (b & 0xFFFF) << 32)
+                | (value & 0xFFFFFFFFL);
+    }
+
+    static int getType(long payload) {
+        return (int) (payload >>> 56);
+    }
+
+    static int getA(long payload) {
+        return (int) (payload >>> 48) & 0xFF;
+    }
+
+    static int getB(long payload) {
+        return (int) (payload >>> 32) & 0xFFFF;
+    }
+
+    static int getValue(long payload) {
+        return (int) payload;
+    }
+
+    private static class Holder {
+        static final FlightRecorder RECORDER = new FlightRecorder(DEFAULT_CAPACITY, Clock.ELAPSED_REALTIME);
+    }
+}
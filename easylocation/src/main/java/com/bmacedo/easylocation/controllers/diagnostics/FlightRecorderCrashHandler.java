@@ -0,0 +1,54 @@
+package com.bmacedo.easylocation.controllers.diagnostics;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ *
+ * Handler of uncaught exceptions that writes the {@link FlightRecorder} to a file before handing
+ * the exception to the previous handler, which usually ends the process.
+ *
+ */
+public class FlightRecorderCrashHandler implements Thread.UncaughtExceptionHandler {
+
+    private final File file;
+    private final Thread.UncaughtExceptionHandler previousHandler;
+
+    private FlightRecorderCrashHandler(File file, Thread.UncaughtExceptionHandler previousHandler) {
+        this.file = file;
+        this.previousHandler = previousHandler;
+    }
+
+    /**
+     * Installs the handler as the default one of the process, in front of the current one.
+     * @param file the file that receives the dump, replaced on each crash
+     */
+    public static synchronized void install(File file) {
+        Thread.UncaughtExceptionHandler current = Thread.getDefaultUncaughtExceptionHandler();
+        if (current instanceof FlightRecorderCrashHandler) {
+            // Replaces the file, keeping a single handler
+            current = ((FlightRecorderCrashHandler) current).previousHandler;
+        }
+        Thread.setDefaultUncaughtExceptionHandler(new FlightRecorderCrashHandler(file, current));
+    }
+
+    @Override
+    public void uncaughtException(Thread thread, Throwable throwable) {
+        try {
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                FlightRecorder.getInstance().writeTo(output);
+            } finally {
+                output.close();
+            }
+        } catch (IOException | RuntimeException e) {
+            // The dump must never hide the crash
+        }
+        if (previousHandler != null) {
+            previousHandler.uncaughtException(thread, throwable);
+        }
+    }
+}
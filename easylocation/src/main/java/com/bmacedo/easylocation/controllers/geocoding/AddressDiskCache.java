@@ -0,0 +1,135 @@
+package com.bmacedo.easylocation.controllers.geocoding;
+
+import android.util.Log;
+
+import com.bmacedo.easylocation.models.AddressModel;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ *
+ * Second tier of the address cache. Each geohash cell is stored in its own file, and the least
+ * recently used files are removed once the number of files goes over the limit. Must only be used
+ * from a single background thread.
+ *
+ */
+public class AddressDiskCache {
+
+    private static final String TAG = "AddressDiskCache";
+    private static final String SUFFIX = ".json";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    // Number of writes between two trims of the directory, since listing it is not cheap
+    private static final int WRITES_PER_TRIM = 32;
+
+    private static final Gson gson = new Gson();
+
+    private final File directory;
+    private final int maxEntries;
+    private int writesSinceTrim;
+
+    public AddressDiskCache(File directory, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of entries: " + maxEntries);
+        }
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        this.writesSinceTrim = WRITES_PER_TRIM;
+    }
+
+    /**
+     * @return the address stored for the cell, or null if there is none
+     */
+    public AddressModel get(String geohash) {
+        File file = new File(directory, geohash + SUFFIX);
+        if (!file.exists()) {
+            return null;
+        }
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            AddressModel address = gson.fromJson(reader, AddressModel.class);
+            file.setLastModified(System.currentTimeMillis());
+            return address;
+        } catch (IOException | JsonParseException e) {
+            Log.w(TAG, "Could not read the cached address", e);
+            file.delete();
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    public void put(String geohash, AddressModel address) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create " + directory);
+            return;
+        }
+        File file = new File(directory, geohash + SUFFIX);
+        File temporary = new File(directory, geohash + TEMPORARY_SUFFIX);
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(temporary);
+            Writer writer = new OutputStreamWriter(output, "UTF-8");
+            gson.toJson(address, writer);
+            writer.flush();
+            output.close();
+            output = null;
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Could not rename " + temporary + " to " + file);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write the cached address", e);
+        } finally {
+            closeQuietly(output);
+        }
+        if (++writesSinceTrim >= WRITES_PER_TRIM) {
+            writesSinceTrim = 0;
+            trim();
+        }
+    }
+
+    private void trim() {
+        File[] files = directory.listFiles();
+        if (files == null || files.length <= maxEntries) {
+            return;
+        }
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long difference = lastModified[a] - lastModified[b];
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.length - maxEntries; i++) {
+            files[order[i]].delete();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing else to do
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.bmacedo.easylocation.controllers.geocoding;
+
+import com.bmacedo.easylocation.models.AddressModel;
+
+import java.io.IOException;
+
+/**
+ *
+ * Interface that should be implemented by the backends that translate coordinates into
+ * addresses. The calls are made on a background thread, so implementations may block.
+ *
+ */
+public interface AddressGeocoder {
+
+    /**
+     * @return the address at the coordinates, or null if there is none
+     * @throws IOException if the backend could not be reached
+     */
+    AddressModel getAddress(double latitude, double longitude) throws IOException;
+
+}
@@ -0,0 +1,276 @@
+package com.bmacedo.easylocation.controllers.geocoding;
+
+import android.content.Context;
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.bmacedo.easylocation.controllers.util.GeohashUtil;
+import com.bmacedo.easylocation.models.AddressModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Translates locations into addresses, caching the results by geohash cell. Locations in the same
+ * cell are assumed to have the same address, so consecutive fixes of a user that is not moving
+ * are resolved without calling the geocoder.
+ *
+ * The addresses are looked up in a LRU memory cache, then in a disk cache, and only then the
+ * geocoder is called. Requests for a cell that is already being resolved wait for that result
+ * instead of calling the geocoder again. The callbacks are always called on the main thread.
+ *
+ */
+public class AddressResolver {
+
+    public static final int DEFAULT_PRECISION = 8;
+    public static final int DEFAULT_MEMORY_ENTRIES = 128;
+    public static final int DEFAULT_DISK_ENTRIES = 1024;
+
+    private static final String DISK_CACHE_DIRECTORY = "easylocation_addresses";
+    private static final int LATENCY_SAMPLES = 1024;
+
+    private static AddressResolver instance;
+
+    private final AddressGeocoder geocoder;
+    private final int precision;
+    private final AddressDiskCache diskCache;
+    private final ExecutorService executor;
+    private final Handler handler;
+    // Memory cache in access order, guarded by itself
+    private final LruCache<String, AddressModel> memoryCache;
+    // Requests waiting for the cell being resolved, guarded by the memory cache
+    private final Map<String, List<Request>> inFlight = new HashMap<>();
+
+    private final LatencyRecorder latencies = new LatencyRecorder(LATENCY_SAMPLES);
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong coalescedRequests = new AtomicLong();
+    private final AtomicLong geocoderCalls = new AtomicLong();
+
+    /**
+     * This interface receives the results of {@link #resolve(Location, Callback)}
+     */
+    public interface Callback {
+
+        /**
+         * @param address the address found, or null if the geocoder has no address for the location
+         */
+        void onAddressResolved(Location location, AddressModel address);
+
+        void onAddressError(Location location, IOException error);
+
+    }
+
+    /**
+     * @return the resolver backed by the Android geocoder with the default cache sizes
+     */
+    public static synchronized AddressResolver getInstance(Context context) {
+        if (instance == null) {
+            instance = new AddressResolver(context, new AndroidAddressGeocoder(context),
+                    DEFAULT_PRECISION, DEFAULT_MEMORY_ENTRIES, DEFAULT_DISK_ENTRIES);
+        }
+        return instance;
+    }
+
+    /**
+     * @param geocoder backend used when an address is not cached
+     * @param precision number of geohash characters of the cells, see {@link GeohashUtil}
+     * @param memoryEntries maximum number of cells kept in memory
+     * @param diskEntries maximum number of cells kept on disk
+     */
+    public AddressResolver(Context context, AddressGeocoder geocoder, int precision,
+                           int memoryEntries, int diskEntries) {
+        if (precision < 1 || precision > GeohashUtil.MAX_PRECISION) {
+            throw new IllegalArgumentException("Invalid geohash precision: " + precision);
+        }
+        if (memoryEntries <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of entries: " + memoryEntries);
+        }
+        this.geocoder = geocoder;
+        this.precision = precision;
+        File directory = new File(context.getApplicationContext().getCacheDir(), DISK_CACHE_DIRECTORY + "_" + precision);
+        this.diskCache = new AddressDiskCache(directory, diskEntries);
+        this.handler = new Handler(Looper.getMainLooper());
+        this.memoryCache = new LruCache<>(memoryEntries);
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "AddressResolver");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Looks up the address of the location. The callback is called on the main thread.
+     */
+    public void resolve(Location location, Callback callback) {
+        final Request request = new Request(location, callback, System.nanoTime());
+        final String geohash = GeohashUtil.encode(location.getLatitude(), location.getLongitude(), precision);
+        requests.incrementAndGet();
+        synchronized (memoryCache) {
+            AddressModel address = memoryCache.get(geohash);
+            if (address != null) {
+                memoryHits.incrementAndGet();
+                deliver(request, address, null);
+                return;
+            }
+            List<Request> waiting = inFlight.get(geohash);
+            if (waiting != null) {
+                coalescedRequests.incrementAndGet();
+                waiting.add(request);
+                return;
+            }
+            waiting = new ArrayList<>();
+            waiting.add(request);
+            inFlight.put(geohash, waiting);
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                resolveInBackground(geohash, request.location);
+            }
+        });
+    }
+
+    private void resolveInBackground(String geohash, Location location) {
+        AddressModel address = diskCache.get(geohash);
+        IOException error = null;
+        if (address != null) {
+            diskHits.incrementAndGet();
+        } else {
+            geocoderCalls.incrementAndGet();
+            try {
+                address = geocoder.getAddress(location.getLatitude(), location.getLongitude());
+                if (address != null) {
+                    diskCache.put(geohash, address);
+                }
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        List<Request> waiting;
+        synchronized (memoryCache) {
+            if (address != null) {
+                memoryCache.put(geohash, address);
+            }
+            waiting = inFlight.remove(geohash);
+        }
+        for (Request request : waiting) {
+            deliver(request, address, error);
+        }
+    }
+
+    private void deliver(final Request request, final AddressModel address, final IOException error) {
+        latencies.record((System.nanoTime() - request.startedAt) / 1000);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (error != null) {
+                    request.callback.onAddressError(request.location, error);
+                } else {
+                    request.callback.onAddressResolved(request.location, address);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes the addresses kept in memory. The disk cache is kept.
+     */
+    public void clearMemoryCache() {
+        synchronized (memoryCache) {
+            memoryCache.clear();
+        }
+    }
+
+    /**
+     * @return the number of calls to {@link #resolve(Location, Callback)}
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * @return the number of requests that waited for a cell that was already being resolved
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.get();
+    }
+
+    public long getGeocoderCalls() {
+        return geocoderCalls.get();
+    }
+
+    /**
+     * @return the fraction of the requests that did not call the geocoder, between 0 and 1
+     */
+    public double getHitRate() {
+        long total = requests.get();
+        if (total == 0) {
+            return 0;
+        }
+        return (double) (memoryHits.get() + diskHits.get() + coalescedRequests.get()) / total;
+    }
+
+    /**
+     * @param percentile value between 0 and 100, e.g. 50 for the median
+     * @return the time between a request and its result over the most recent requests, in microseconds
+     */
+    public long getLatencyPercentileMicros(double percentile) {
+        return latencies.getPercentile(percentile);
+    }
+
+    /**
+     * Map in access order that drops its least recently used entry when it grows over its size
+     */
+    private static class LruCache<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LruCache(int maxEntries) {
+            super(maxEntries, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+    private static class Request {
+        final Location location;
+        final Callback callback;
+        final long startedAt;
+
+        Request(Location location, Callback callback, long startedAt) {
+            this.location = location;
+            this.callback = callback;
+            this.startedAt = startedAt;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.bmacedo.easylocation.controllers.geocoding;
+
+import android.content.Context;
+import android.location.Address;
+import android.location.Geocoder;
+
+import com.bmacedo.easylocation.models.AddressModel;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ *
+ * {@link AddressGeocoder} backed by the geocoder provided by the Android system.
+ *
+ */
+public class AndroidAddressGeocoder implements AddressGeocoder {
+
+    private final Geocoder geocoder;
+
+    public AndroidAddressGeocoder(Context context) {
+        this.geocoder = new Geocoder(context.getApplicationContext());
+    }
+
+    /**
+     * @return true if the device has a geocoder backend
+     */
+    public static boolean isPresent() {
+        return Geocoder.isPresent();
+    }
+
+    @Override
+    public AddressModel getAddress(double latitude, double longitude) throws IOException {
+        List<Address> addresses = geocoder.getFromLocation(latitude, longitude, 1);
+        if (addresses == null || addresses.isEmpty()) {
+            return null;
+        }
+        return new AddressModel(addresses.get(0));
+    }
+}
@@ -0,0 +1,56 @@
+package com.bmacedo.easylocation.controllers.geocoding;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Keeps the most recent latency samples, in microseconds, so that percentiles can be computed
+ * over a sliding window without growing the memory used.
+ *
+ */
+public class LatencyRecorder {
+
+    private final long[] samples;
+    // Total number of samples recorded; the next one goes to index count % samples.length
+    private long count;
+
+    public LatencyRecorder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.samples = new long[capacity];
+    }
+
+    public synchronized void record(long micros) {
+        samples[(int) (count % samples.length)] = micros;
+        count++;
+    }
+
+    /**
+     * @param percentile value between 0 and 100
+     * @return the latency at the percentile in microseconds, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile);
+        }
+        long[] copy;
+        synchronized (this) {
+            copy = Arrays.copyOf(samples, (int) Math.min(count, samples.length));
+        }
+        if (copy.length == 0) {
+            return 0;
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(percentile / 100 * copy.length) - 1;
+        return copy[Math.max(0, index)];
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized void reset() {
+        count = 0;
+    }
+}
@@ -0,0 +1,236 @@
+package com.bmacedo.easylocation.controllers.prediction;
+
+import android.location.Location;
+
+import com.bmacedo.easylocation.common.events.OnInitialLocationObtainedEvent;
+import com.bmacedo.easylocation.common.events.OnLocationsBatchObtainedEvent;
+import com.bmacedo.easylocation.common.events.OnUpdatedLocationObtainedEvent;
+import com.bmacedo.easylocation.common.events.SingletonBus;
+import com.bmacedo.easylocation.controllers.util.Clock;
+import com.bmacedo.easylocation.controllers.util.GeodesyUtil;
+import com.bmacedo.easylocation.controllers.util.LocationUtil;
+import com.squareup.otto.Subscribe;
+
+/**
+ *
+ * Extrapolates the position of the user between fixes by dead reckoning, so that a map can be
+ * drawn at every frame while the location updates are requested at long intervals.
+ *
+ * The velocity comes from the speed and bearing of the last fix, or is derived from the last two
+ * fixes when they are not available. The uncertainty of the prediction starts at the accuracy of
+ * the fix and grows with the uncertainty of the velocity and a maximum acceleration. The position
+ * stops moving after the maximum extrapolation time, while the uncertainty keeps growing.
+ *
+ * {@link #predict(long, double[])} does not take locks or allocate objects, so it may be called
+ * from a render thread: it reads a snapshot of the last fix protected by a sequence counter, and
+ * tries again if a fix was written at the same time.
+ *
+ */
+public class LocationPredictor {
+
+    public static final long DEFAULT_MAX_EXTRAPOLATION_MILLIS = 10 * 1000;
+
+    // Uncertainty of a speed reported by the provider, in meters per second
+    private static final double REPORTED_SPEED_UNCERTAINTY = 1;
+    // Acceleration assumed when growing the uncertainty, in meters per second squared
+    private static final double MAX_ACCELERATION = 2;
+    // Fixes further apart than this are not used to derive the velocity
+    private static final long MAX_DERIVATION_GAP_NANOS = 60 * 1000000000L;
+
+    private static final int LATITUDE = 0;
+    private static final int LONGITUDE = 1;
+    private static final int UNCERTAINTY = 2;
+
+    private final Clock clock;
+    private final long maxExtrapolationNanos;
+
+    // Snapshot of the last fix. The counter is odd while the fields are being written. Every field
+    // is volatile, so the reader sees the writes in order and can check the counter after them.
+    private volatile int sequence;
+    private volatile boolean hasFix;
+    private volatile long fixNanos;
+    private volatile double latitude;
+    private volatile double longitude;
+    private volatile double accuracy;
+    private volatile double velocityNorth;
+    private volatile double velocityEast;
+    private volatile double velocityUncertainty;
+
+    public LocationPredictor() {
+        this(Clock.ELAPSED_REALTIME, DEFAULT_MAX_EXTRAPOLATION_MILLIS);
+    }
+
+    public LocationPredictor(Clock clock, long maxExtrapolationMillis) {
+        if (maxExtrapolationMillis < 0) {
+            throw new IllegalArgumentException("Invalid maximum extrapolation: " + maxExtrapolationMillis);
+        }
+        this.clock = clock;
+        this.maxExtrapolationNanos = maxExtrapolationMillis * 1000000;
+    }
+
+    /**
+     * Starts receiving the locations delivered by the LocationService
+     */
+    public void start() {
+        SingletonBus.getInstance().register(this);
+    }
+
+    public void stop() {
+        SingletonBus.getInstance().unregister(this);
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the locations.
+     */
+    @Subscribe
+    public void onInitialLocationObtained(OnInitialLocationObtainedEvent event) {
+        onLocationChanged(event.getLocation());
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the locations.
+     */
+    @Subscribe
+    public void onUpdatedLocationObtained(OnUpdatedLocationObtainedEvent event) {
+        onLocationChanged(event.getLocation());
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the locations.
+     */
+    @Subscribe
+    public void onLocationsBatchObtained(OnLocationsBatchObtainedEvent event) {
+        for (Location location : event.getLocations()) {
+            onLocationChanged(location);
+        }
+    }
+
+    public void onLocationChanged(Location location) {
+        long nanos = (clock.elapsedRealtime() - LocationUtil.getAgeMillis(location)) * 1000000;
+        double speed = location.hasSpeed() && location.hasBearing() ? location.getSpeed() : Double.NaN;
+        onFix(nanos, location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : 0, speed, location.getBearing());
+    }
+
+    /**
+     * Updates the prediction with a new fix. Fixes older than the last one are ignored.
+     * @param elapsedRealtimeNanos time of the fix in the elapsed realtime clock
+     * @param speed speed in meters per second, or NaN to derive it from the previous fix
+     * @param bearing bearing in degrees, ignored if the speed is NaN
+     */
+    public synchronized void onFix(long elapsedRealtimeNanos, double latitude, double longitude,
+                                   double accuracy, double speed, double bearing) {
+        boolean hasPrevious = hasFix;
+        if (hasPrevious && elapsedRealtimeNanos <= fixNanos) {
+            return;
+        }
+        double north, east, uncertainty;
+        if (!Double.isNaN(speed)) {
+            double radians = Math.toRadians(bearing);
+            north = speed * Math.cos(radians);
+            east = speed * Math.sin(radians);
+            uncertainty = REPORTED_SPEED_UNCERTAINTY;
+        } else if (hasPrevious && elapsedRealtimeNanos - fixNanos <= MAX_DERIVATION_GAP_NANOS) {
+            double seconds = (elapsedRealtimeNanos - fixNanos) / 1e9;
+            double northMeters = Math.toRadians(latitude - this.latitude) * GeodesyUtil.EARTH_RADIUS_METERS;
+            double eastMeters = Math.toRadians(normalizeLongitude(longitude - this.longitude))
+                    * GeodesyUtil.EARTH_RADIUS_METERS * Math.cos(Math.toRadians(latitude));
+            double noise = accuracy + this.accuracy;
+            if (Math.sqrt(northMeters * northMeters + eastMeters * eastMeters) <= noise) {
+                // The movement is within the accuracy of the fixes
+                north = 0;
+                east = 0;
+            } else {
+                north = northMeters / seconds;
+                east = eastMeters / seconds;
+            }
+            uncertainty = noise / seconds;
+        } else {
+            north = 0;
+            east = 0;
+            uncertainty = REPORTED_SPEED_UNCERTAINTY;
+        }
+
+        int next = sequence + 1;
+        sequence = next;
+        this.hasFix = true;
+        this.fixNanos = elapsedRealtimeNanos;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+        this.velocityNorth = north;
+        this.velocityEast = east;
+        this.velocityUncertainty = uncertainty;
+        sequence = next + 1;
+    }
+
+    /**
+     * Predicts the position at the current time, see {@link #predict(long, double[])}
+     */
+    public boolean predictNow(double[] out) {
+        return predict(clock.elapsedRealtime() * 1000000, out);
+    }
+
+    /**
+     * Predicts the position at the given time
+     * @param elapsedRealtimeNanos time in the elapsed realtime clock, such as
+     *                             {@link android.os.SystemClock#elapsedRealtimeNanos()}
+     * @param out array where the latitude, longitude and uncertainty in meters are written
+     * @return false if no fix was received yet, in which case nothing is written
+     */
+    public boolean predict(long elapsedRealtimeNanos, double[] out) {
+        boolean hasFix;
+        long fixNanos;
+        double latitude, longitude, accuracy, north, east, uncertainty;
+        int before;
+        do {
+            before = sequence;
+            hasFix = this.hasFix;
+            fixNanos = this.fixNanos;
+            latitude = this.latitude;
+            longitude = this.longitude;
+            accuracy = this.accuracy;
+            north = velocityNorth;
+            east = velocityEast;
+            uncertainty = velocityUncertainty;
+        } while ((before & 1) != 0 || before != sequence);
+        if (!hasFix) {
+            return false;
+        }
+
+        double seconds = Math.max(0, elapsedRealtimeNanos - fixNanos) / 1e9;
+        double extrapolatedSeconds = Math.min(seconds, maxExtrapolationNanos / 1e9);
+        double northMeters = north * extrapolatedSeconds;
+        double eastMeters = east * extrapolatedSeconds;
+        double predictedLatitude = latitude + Math.toDegrees(northMeters / GeodesyUtil.EARTH_RADIUS_METERS);
+        double cosLatitude = Math.max(1e-6, Math.cos(Math.toRadians(latitude)));
+        double predictedLongitude = longitude
+                + Math.toDegrees(eastMeters / (GeodesyUtil.EARTH_RADIUS_METERS * cosLatitude));
+        out[LATITUDE] = Math.max(-90, Math.min(90, predictedLatitude));
+        out[LONGITUDE] = normalizeLongitude(predictedLongitude);
+        out[UNCERTAINTY] = accuracy + uncertainty * seconds + 0.5 * MAX_ACCELERATION * seconds * seconds;
+        return true;
+    }
+
+    /**
+     * Forgets the last fix
+     */
+    public synchronized void reset() {
+        int next = sequence + 1;
+        sequence = next;
+        hasFix = false;
+        sequence = next + 1;
+    }
+
+    private static double normalizeLongitude(double longitude) {
+        if (longitude > 180) {
+            return longitude - 360;
+        } else if (longitude < -180) {
+            return longitude + 360;
+        }
+        return longitude;
+    }
+}
@@ -0,0 +1,228 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import com.bmacedo.easylocation.controllers.util.Clock;
+import com.bmacedo.easylocation.models.ClientUsage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * This class attributes the resources used by the {@link LocationService} to its clients: the
+ * time the providers are active, by strategy, the wakeups, the locations delivered and the
+ * locations rejected.
+ *
+ * The clients being served share the cost of the merged request in equal parts. When the last
+ * client stops and the strategy keeps running during the linger period, the clients that were
+ * served last keep being charged, since the linger period is meant for them.
+ *
+ * The time is settled only when something changes, so the service calls this class a few times
+ * per location and the cost is proportional to the number of clients. The accounts are kept for
+ * the lifetime of the process, including those of the last stopped clients, so that the usage can
+ * be read at any moment from any thread.
+ *
+ */
+public class ClientUsageAccountant {
+
+    // Number of accounts of stopped clients that are kept
+    private static final int MAX_INACTIVE_ACCOUNTS = 32;
+
+    // Object that stores the unique instance of this class
+    private static ClientUsageAccountant instance;
+
+    private final Clock clock;
+    // Accounts by client id, oldest first
+    private final Map<Integer, Account> accounts = new LinkedHashMap<>();
+    // Accounts that pay for the providers now
+    private final List<Account> chargedAccounts = new ArrayList<>();
+    // Name of the strategy whose providers are active, or null
+    private String activeStrategy;
+    private long settledAt;
+
+    ClientUsageAccountant(Clock clock) {
+        this.clock = clock;
+    }
+
+    public static synchronized ClientUsageAccountant getInstance() {
+        if (instance == null) {
+            instance = new ClientUsageAccountant(Clock.ELAPSED_REALTIME);
+        }
+        return instance;
+    }
+
+    public synchronized void onClientStarted(int clientId) {
+        settle();
+        Account account = accounts.get(clientId);
+        if (account == null) {
+            account = new Account(clientId);
+            accounts.put(clientId, account);
+        }
+        account.isActive = true;
+        updateChargedAccounts();
+    }
+
+    public synchronized void onClientStopped(int clientId) {
+        settle();
+        Account account = accounts.get(clientId);
+        if (account != null) {
+            account.isActive = false;
+        }
+        updateChargedAccounts();
+        evictInactiveAccounts();
+    }
+
+    public synchronized void onAllClientsStopped() {
+        settle();
+        for (Account account : accounts.values()) {
+            account.isActive = false;
+        }
+        updateChargedAccounts();
+        evictInactiveAccounts();
+    }
+
+    /**
+     * Called when a strategy starts requesting locations from its providers
+     */
+    public synchronized void onProviderStarted(String strategyName) {
+        settle();
+        activeStrategy = strategyName;
+    }
+
+    public synchronized void onProviderStopped() {
+        settle();
+        activeStrategy = null;
+        updateChargedAccounts();
+    }
+
+    /**
+     * Called when a strategy delivers one location or a batch of them
+     */
+    public synchronized void onWakeup() {
+        double share = 1.0 / Math.max(1, chargedAccounts.size());
+        for (Account account : chargedAccounts) {
+            account.wakeups += share;
+        }
+    }
+
+    public synchronized void onFixesRejected(int count) {
+        double share = (double) count / Math.max(1, chargedAccounts.size());
+        for (Account account : chargedAccounts) {
+            account.rejectedFixes += share;
+        }
+    }
+
+    /**
+     * Called when locations are delivered, which every active client receives
+     */
+    public synchronized void onFixesDelivered(int count) {
+        for (Account account : chargedAccounts) {
+            if (account.isActive) {
+                account.fixesDelivered += count;
+            }
+        }
+    }
+
+    /**
+     * @return the usage of the client, or null if the client is unknown
+     */
+    public synchronized ClientUsage getUsage(int clientId) {
+        settle();
+        Account account = accounts.get(clientId);
+        return account != null ? account.toUsage() : null;
+    }
+
+    /**
+     * @return the usage of the active clients and of the last stopped ones
+     */
+    public synchronized List<ClientUsage> getUsages() {
+        settle();
+        List<ClientUsage> usages = new ArrayList<>(accounts.size());
+        for (Account account : accounts.values()) {
+            usages.add(account.toUsage());
+        }
+        return usages;
+    }
+
+    /**
+     * Charges the provider time elapsed since the last change to the charged accounts
+     */
+    private void settle() {
+        long now = clock.elapsedRealtime();
+        if (activeStrategy != null && !chargedAccounts.isEmpty()) {
+            double share = (double) (now - settledAt) / chargedAccounts.size();
+            for (Account account : chargedAccounts) {
+                account.addProviderActiveMillis(activeStrategy, share);
+            }
+        }
+        settledAt = now;
+    }
+
+    /**
+     * The active accounts are charged. Without any, the last ones charged keep paying while the
+     * providers are active.
+     */
+    private void updateChargedAccounts() {
+        List<Account> active = new ArrayList<>();
+        for (Account account : accounts.values()) {
+            if (account.isActive) {
+                active.add(account);
+            }
+        }
+        if (!active.isEmpty() || activeStrategy == null) {
+            chargedAccounts.clear();
+            chargedAccounts.addAll(active);
+        }
+    }
+
+    private void evictInactiveAccounts() {
+        int inactive = 0;
+        for (Account account : accounts.values()) {
+            if (!account.isActive) {
+                inactive++;
+            }
+        }
+        Iterator<Account> iterator = accounts.values().iterator();
+        while (inactive > MAX_INACTIVE_ACCOUNTS && iterator.hasNext()) {
+            Account account = iterator.next();
+            if (!account.isActive && !chargedAccounts.contains(account)) {
+                iterator.remove();
+                inactive--;
+            }
+        }
+    }
+
+    private static class Account {
+        final int clientId;
+        boolean isActive;
+        // Milliseconds by strategy name, in arrays so that they are updated in place
+        final Map<String, double[]> providerActiveMillis = new HashMap<>();
+        long fixesDelivered;
+        double wakeups;
+        double rejectedFixes;
+
+        Account(int clientId) {
+            this.clientId = clientId;
+        }
+
+        void addProviderActiveMillis(String strategyName, double millis) {
+            double[] total = providerActiveMillis.get(strategyName);
+            if (total == null) {
+                total = new double[1];
+                providerActiveMillis.put(strategyName, total);
+            }
+            total[0] += millis;
+        }
+
+        ClientUsage toUsage() {
+            Map<String, Double> millis = new HashMap<>();
+            for (Map.Entry<String, double[]> entry : providerActiveMillis.entrySet()) {
+                millis.put(entry.getKey(), entry.getValue()[0]);
+            }
+            return new ClientUsage(clientId, isActive, millis, fixesDelivered, wakeups, rejectedFixes);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import com.bmacedo.easylocation.api.EasyLocationConfiguration;
+import com.bmacedo.easylocation.controllers.util.Clock;
+import com.bmacedo.easylocation.models.LocationStrategyError.StrategyError;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ *
+ * This class decides when the LocationErrorHandlerActivity may be shown to resolve an error.
+ *
+ * When the connectivity flaps, the strategies report the same errors again and again. Without
+ * coordination, each report would open the activity and show another dialog. So:
+ *
+ * <ul>
+ * <li>while a resolution is showing, no other is started: its answer decides</li>
+ * <li>the same type of error is not resolved again before the resolution interval elapses</li>
+ * <li>after the user declines, that type of error is not resolved again during the cool-down</li>
+ * </ul>
+ *
+ * See {@link EasyLocationConfiguration#setResolutionPolicy(long, long)}. The state is kept for the
+ * lifetime of the process, so that a declined resolution is remembered when the service is
+ * created again. It must be used from the main thread.
+ *
+ */
+public class ErrorResolutionCoordinator {
+
+    // Object that stores the unique instance of this class
+    private static ErrorResolutionCoordinator instance;
+
+    private final Clock clock;
+    // Moment of the last resolution started, by error type
+    private final Map<StrategyError, Long> lastLaunchAt = new EnumMap<>(StrategyError.class);
+    // Moment of the last resolution declined, by error type
+    private final Map<StrategyError, Long> lastDeclineAt = new EnumMap<>(StrategyError.class);
+    // Type of the error being resolved, or null if no resolution is showing
+    private StrategyError resolvingError;
+
+    ErrorResolutionCoordinator(Clock clock) {
+        this.clock = clock;
+    }
+
+    public static synchronized ErrorResolutionCoordinator getInstance() {
+        if (instance == null) {
+            instance = new ErrorResolutionCoordinator(Clock.ELAPSED_REALTIME);
+        }
+        return instance;
+    }
+
+    public boolean isResolving() {
+        return resolvingError != null;
+    }
+
+    /**
+     * @return the time until a resolution of this type of error may be started, in milliseconds,
+     * or 0 if it may be started now
+     */
+    public long getTimeUntilAllowed(StrategyError error) {
+        EasyLocationConfiguration configuration = EasyLocationConfiguration.getInstance();
+        long now = clock.elapsedRealtime();
+        long allowedAt = now;
+        Long launchedAt = lastLaunchAt.get(error);
+        if (launchedAt != null) {
+            allowedAt = Math.max(allowedAt, launchedAt + configuration.getResolutionInterval());
+        }
+        Long declinedAt = lastDeclineAt.get(error);
+        if (declinedAt != null) {
+            allowedAt = Math.max(allowedAt, declinedAt + configuration.getResolutionCooldown());
+        }
+        return allowedAt - now;
+    }
+
+    public void onResolutionStarted(StrategyError error) {
+        resolvingError = error;
+        lastLaunchAt.put(error, clock.elapsedRealtime());
+    }
+
+    public void onResolutionSolved(StrategyError error) {
+        resolvingError = null;
+        lastDeclineAt.remove(error);
+    }
+
+    public void onResolutionDeclined(StrategyError error) {
+        resolvingError = null;
+        lastDeclineAt.put(error, clock.elapsedRealtime());
+    }
+}
@@ -0,0 +1,82 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import android.content.Context;
+import android.location.Location;
+import android.location.LocationManager;
+import android.util.Log;
+
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategy;
+import com.bmacedo.easylocation.controllers.util.LocationUtil;
+
+/**
+ *
+ * This class gathers every location that is known without starting a new request and picks the
+ * best one, so that it can be delivered before the strategy requests updates from the providers.
+ *
+ * The candidates are:
+ * <ul>
+ *     <li>The locations already known by the service (obtained in this session or persisted)</li>
+ *     <li>The last location known by the strategy (e.g. the FusedLocation API)</li>
+ *     <li>The last location known by every enabled device provider</li>
+ * </ul>
+ *
+ * A location loses value as it gets old, since the device may have moved since then. The
+ * candidates are compared by their accuracy plus the distance the device could have travelled
+ * since they were obtained, using the monotonic age given by {@link LocationUtil#getAgeMillis(Location)}.
+ *
+ */
+public class LastKnownLocationAggregator {
+
+    private static final String TAG = "LastKnownLocationAggreg";
+
+    // Speed assumed for the device since a location was obtained, in meters per second
+    private static final double ASSUMED_SPEED = 2;
+    // Accuracy assumed for the locations that do not have one, in meters
+    private static final double UNKNOWN_ACCURACY = 1000;
+
+    private final LocationManager androidLocationManager;
+
+    public LastKnownLocationAggregator(Context context) {
+        androidLocationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+    }
+
+    /**
+     * @param strategy the strategy about to be started
+     * @param knownLocations the locations already known by the service. Null values are ignored.
+     * @return the best candidate, or null if no location is known
+     */
+    public Location findBestLocation(LocationStrategy strategy, Location... knownLocations) {
+        Location best = null;
+        for (Location location : knownLocations) {
+            best = getBetter(best, location);
+        }
+        best = getBetter(best, strategy.getLastKnownLocation());
+        try {
+            for (String provider : androidLocationManager.getProviders(true)) {
+                best = getBetter(best, androidLocationManager.getLastKnownLocation(provider));
+            }
+        } catch (SecurityException e) {
+            // The app may hold only some of the location permissions
+            Log.w(TAG, "Could not read the last known location of the providers", e);
+        }
+        return best;
+    }
+
+    private static Location getBetter(Location current, Location candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        if (current == null || getExpectedError(candidate) < getExpectedError(current)) {
+            return candidate;
+        }
+        return current;
+    }
+
+    /**
+     * @return the distance in meters within which the device is expected to be now
+     */
+    static double getExpectedError(Location location) {
+        double accuracy = location.hasAccuracy() ? location.getAccuracy() : UNKNOWN_ACCURACY;
+        return accuracy + ASSUMED_SPEED * LocationUtil.getAgeMillis(location) / 1000.0;
+    }
+}
@@ -0,0 +1,223 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import android.location.Location;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import com.bmacedo.easylocation.api.EasyLocationMetrics;
+import com.bmacedo.easylocation.controllers.util.Clock;
+import com.bmacedo.easylocation.controllers.util.GeodesyUtil;
+import com.bmacedo.easylocation.controllers.util.HandlerTaskScheduler;
+import com.bmacedo.easylocation.controllers.util.TaskScheduler;
+import com.bmacedo.easylocation.models.LocationCheckpoint;
+import com.bmacedo.easylocation.models.LocationModel;
+import com.bmacedo.easylocation.models.LocationState;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ *
+ * This class saves the last location and the state of the {@link LocationService} to a file on a
+ * background thread, so that they are not lost if the process is killed before onDestroy.
+ *
+ * The locations are coalesced: at most one checkpoint is written per minimum interval, and only
+ * when the device moved at least the minimum distance or the state changed since the last one.
+ * Locations received in between only replace the pending checkpoint, which is written when the
+ * interval elapses, or when the checkpointer is closed.
+ *
+ * Each checkpoint is written to a temporary file which is then renamed over the checkpoint file,
+ * so that a partial write never corrupts the previous checkpoint.
+ *
+ */
+public class LocationCheckpointer {
+
+    private static final String TAG = "LocationCheckpointer";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final Gson gson = new Gson();
+
+    private final File file;
+    private final long minIntervalMillis;
+    private final float minDistanceMeters;
+    private final Clock clock;
+    // Thread where the checkpoints are written, or null if the scheduler was provided
+    private final HandlerThread thread;
+    private final TaskScheduler scheduler;
+
+    // The fields below are guarded by this object
+    // Checkpoint waiting to be written, or null if there is none
+    private LocationCheckpoint pending;
+    // Location and state of the last checkpoint written
+    private Location lastCheckpointLocation;
+    private LocationState lastCheckpointState;
+    // Moment when the last checkpoint was written
+    private long lastWriteAt;
+    // Variable that indicates if a delayed write is scheduled
+    private boolean isWriteScheduled;
+
+    private final Runnable writeTask = new Runnable() {
+        @Override
+        public void run() {
+            writePending();
+        }
+    };
+
+    public LocationCheckpointer(File file, long minIntervalMillis, float minDistanceMeters, Clock clock) {
+        this(file, minIntervalMillis, minDistanceMeters, clock, startThread());
+    }
+
+    private LocationCheckpointer(File file, long minIntervalMillis, float minDistanceMeters, Clock clock,
+                                 HandlerThread thread) {
+        this(file, minIntervalMillis, minDistanceMeters, clock, thread, new HandlerTaskScheduler(thread.getLooper()));
+    }
+
+    /**
+     * Creates a checkpointer that writes on the tasks of the given scheduler
+     */
+    LocationCheckpointer(File file, long minIntervalMillis, float minDistanceMeters, Clock clock,
+                         TaskScheduler scheduler) {
+        this(file, minIntervalMillis, minDistanceMeters, clock, null, scheduler);
+    }
+
+    private LocationCheckpointer(File file, long minIntervalMillis, float minDistanceMeters, Clock clock,
+                                 HandlerThread thread, TaskScheduler scheduler) {
+        this.file = file;
+        this.minIntervalMillis = minIntervalMillis;
+        this.minDistanceMeters = minDistanceMeters;
+        this.clock = clock;
+        this.thread = thread;
+        this.scheduler = scheduler;
+        this.lastWriteAt = clock.elapsedRealtime() - minIntervalMillis;
+    }
+
+    private static HandlerThread startThread() {
+        HandlerThread thread = new HandlerThread(TAG);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Reads the last checkpoint written to the file
+     * @return the checkpoint or null if there is none or it could not be read
+     */
+    public static LocationCheckpoint load(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        Reader reader = null;
+        try {
+            reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+            return gson.fromJson(reader, LocationCheckpoint.class);
+        } catch (IOException | JsonParseException e) {
+            Log.w(TAG, "Could not read the location checkpoint", e);
+            return null;
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Offers a new location to be saved. Must not be called after {@link #close(LocationState, Location)}.
+     */
+    public synchronized void onLocationChanged(Location location, LocationState state) {
+        pending = new LocationCheckpoint(state, new LocationModel(location), System.currentTimeMillis());
+        boolean hasChanged = state != lastCheckpointState || lastCheckpointLocation == null
+                || GeodesyUtil.equirectangular(lastCheckpointLocation.getLatitude(), lastCheckpointLocation.getLongitude(),
+                location.getLatitude(), location.getLongitude()) >= minDistanceMeters;
+        if (!hasChanged || isWriteScheduled) {
+            // Either nothing worth a write, or the scheduled write will take this location
+            return;
+        }
+        long elapsed = clock.elapsedRealtime() - lastWriteAt;
+        scheduler.schedule(writeTask, Math.max(0, minIntervalMillis - elapsed));
+        isWriteScheduled = true;
+    }
+
+    /**
+     * Writes the final checkpoint and finishes the background thread once it is written. If the
+     * location is null, the last location offered is saved along with the state.
+     */
+    public synchronized void close(LocationState state, Location location) {
+        LocationModel model;
+        if (location != null) {
+            model = new LocationModel(location);
+        } else if (pending != null) {
+            model = pending.getLocation();
+        } else if (lastCheckpointLocation != null) {
+            model = new LocationModel(lastCheckpointLocation);
+        } else {
+            model = null;
+        }
+        pending = new LocationCheckpoint(state, model, System.currentTimeMillis());
+        scheduler.cancel(writeTask);
+        scheduler.schedule(writeTask, 0);
+        if (thread != null) {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    thread.quit();
+                }
+            }, 0);
+        }
+    }
+
+    private void writePending() {
+        LocationCheckpoint checkpoint;
+        synchronized (this) {
+            checkpoint = pending;
+            pending = null;
+            isWriteScheduled = false;
+            if (checkpoint == null) {
+                return;
+            }
+            lastWriteAt = clock.elapsedRealtime();
+            lastCheckpointState = checkpoint.getState();
+            if (checkpoint.getLocation() != null) {
+                lastCheckpointLocation = checkpoint.getLocation().getLocation();
+            }
+        }
+        write(checkpoint);
+    }
+
+    private void write(LocationCheckpoint checkpoint) {
+        File temporary = new File(file.getPath() + TEMPORARY_SUFFIX);
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(temporary);
+            Writer writer = new OutputStreamWriter(output, "UTF-8");
+            gson.toJson(checkpoint, writer);
+            writer.flush();
+            output.getFD().sync();
+            output.close();
+            output = null;
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Could not rename " + temporary + " to " + file);
+            }
+            EasyLocationMetrics.getInstance().onCheckpointWritten();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write the location checkpoint", e);
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing else to do
+            }
+        }
+    }
+}
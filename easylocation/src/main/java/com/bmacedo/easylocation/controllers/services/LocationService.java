@@ -3,29 +3,53 @@ package com.bmacedo.easylocation.controllers.services;
 import android.app.Service;
 import android.content.Intent;
 import android.location.Location;
+import android.os.Build;
 import android.os.IBinder;
+import android.os.Looper;
+import android.util.Log;
 import android.support.annotation.Nullable;
 
+import com.bmacedo.easylocation.api.EasyLocationConfiguration;
+import com.bmacedo.easylocation.api.EasyLocationMetrics;
+import com.bmacedo.easylocation.common.events.OnDegradedModeChangedEvent;
+import com.bmacedo.easylocation.common.ipc.SharedFixRing;
 import com.bmacedo.easylocation.common.events.OnInitialLocationObtainedEvent;
 import com.bmacedo.easylocation.common.events.OnLocationErrorEvent;
+import com.bmacedo.easylocation.common.events.OnLocationsBatchObtainedEvent;
 import com.bmacedo.easylocation.common.events.OnStrategyErrorNotSolved;
 import com.bmacedo.easylocation.common.events.OnStrategyErrorSolved;
 import com.bmacedo.easylocation.common.events.OnUpdatedLocationObtainedEvent;
 import com.bmacedo.easylocation.common.events.SingletonBus;
 import com.bmacedo.easylocation.common.intents.LocationErrorHandlerIntent;
 import com.bmacedo.easylocation.common.intents.LocationServiceIntent;
+import com.bmacedo.easylocation.controllers.diagnostics.FlightRecorder;
 import com.bmacedo.easylocation.controllers.activities.LocationErrorHandlerActivity;
-import com.bmacedo.easylocation.controllers.strategies.FallbackLocationStrategy;
 import com.bmacedo.easylocation.controllers.strategies.LocationStrategy;
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategyDescriptor;
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategyLoader;
 import com.bmacedo.easylocation.controllers.strategies.LocationStrategyManager;
-import com.bmacedo.easylocation.controllers.strategies.ServicesLocationStrategy;
-import com.bmacedo.easylocation.controllers.util.PreferenceUtil;
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategyRegistry;
+import com.bmacedo.easylocation.controllers.strategies.StrategyChain;
+import com.bmacedo.easylocation.controllers.strategies.StrategyHealthStore;
+import com.bmacedo.easylocation.controllers.strategies.StrategySelector;
+import com.bmacedo.easylocation.controllers.tracing.Tracing;
+import com.bmacedo.easylocation.controllers.util.HandlerTaskScheduler;
+import com.bmacedo.easylocation.controllers.util.LocationUtil;
+import com.bmacedo.easylocation.controllers.util.SerialExecutor;
 import com.bmacedo.easylocation.models.LocationError;
-import com.bmacedo.easylocation.models.LocationModel;
 import com.bmacedo.easylocation.models.LocationState;
 import com.bmacedo.easylocation.models.LocationStrategyError;
 import com.squareup.otto.Subscribe;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  *
  * This class provides the location retrieval service.
@@ -35,21 +59,49 @@ import com.squareup.otto.Subscribe;
  * <ul>
  * <li>OnInitialLocationObtainedEvent</li>
  * <li>OnUpdatedLocationObtainedEvent</li>
+ * <li>OnLocationsBatchObtainedEvent, when batching is enabled</li>
  * <li>OnLocationErrorEvent</li>
  * </ul>
  *
- * Depending on the strategy used, it will use Google Services, the device location providers or
- * both in order to obtain the location.
+ * The location is obtained by a chain of the strategies registered in the
+ * {@link LocationStrategyRegistry}: Google Services, the device location providers or any strategy
+ * registered by the app. The strategies are tried in order. The next one is started when the
+ * current one fails, or when it does not obtain a location within a few times its declared latency.
+ *
+ * When any strategy is allowed, the order in which they are tried is chosen by the
+ * {@link StrategySelector}, based on how each strategy performed on this device before.
+ *
+ * The managers of the same process send their actions with {@link LocationServiceClient}, which
+ * calls the running service directly instead of sending an Intent.
  *
- * The fastest approach is to use the Google Services strategy.
+ * The state of the service is confined to the main thread. The strategies and the bus may call
+ * it from any thread: these calls are handed to a {@link SerialExecutor}, which runs them one at
+ * a time on the main thread, right away when they are already made on it.
+ *
+ * When the last client stops, the strategy is kept running during a linger period. If a client
+ * starts again within this period, the running strategy is reused and the last location, kept up
+ * to date meanwhile, is delivered right away.
  *
  * Created by -Bernardo on 2015-07-22.
  */
-public class LocationService extends Service implements LocationStrategyManager {
+public class LocationService extends Service implements LocationStrategyManager, LocationServiceLoader.Callback {
 
-    private static final String STATE_PREFERENCE_KEY = "caronaphone_location_state";
-    private static final String LOCATION_PREFERENCE_KEY = "caronaphone_location_data";
+    private static final String TAG = "LocationService";
     private static final long MAX_TIME_LOCATION_INTERVAL = 1 * 60 * 1000;  // 1 minute
+    // Service that accepts direct calls from the LocationServiceClient, or null. Only used on the main thread.
+    private static LocationService directInstance;
+
+    // Main thread time that onCreate is expected to take at most
+    private static final long ON_CREATE_BUDGET_NANOS = 2 * 1000 * 1000;  // 2 milliseconds
+    // Times the declared latency of a strategy that it has to obtain a location before the next one is tried
+    private static final int FAST_FALLBACK_LATENCY_FACTOR = 3;
+
+    // Object that runs the calls received from other threads on the main thread, in order
+    private final SerialExecutor executor = new SerialExecutor(Looper.getMainLooper());
+    // Object that keeps the last events of the service for debugging
+    private final FlightRecorder flightRecorder = FlightRecorder.getInstance();
+    // Object that attributes the resources used by the service to its clients
+    private final ClientUsageAccountant usageAccountant = ClientUsageAccountant.getInstance();
 
     // Object that maintains the state of the strategy management
     private LocationState state;
@@ -57,47 +109,180 @@ public class LocationService extends Service implements LocationStrategyManager
     private LocationStrategy strategy;
     // Object that stores the last obtained location
     private Location location;
+    // Object that stores the location loaded from the last checkpoint
+    private Location persistedLocation;
     // Variable that indicates if the service has been requested to stop
     private boolean isStopped;
+    // Variable that indicates if the strategy is recovering its connection, serving only the last location
+    private boolean isDegraded;
+    // Strategies to be tried for the current request, in order
+    private StrategyChain chain;
+    // Strategies already created, by their descriptors
+    private final Map<LocationStrategyDescriptor, LocationStrategy> strategies = new HashMap<>();
+    // Variable that indicates if the current strategy obtained a location since it was started
+    private boolean hasFirstFix;
+    // Object that schedules the move to the next strategy when the current one is too slow
+    private HandlerTaskScheduler fastFallbackScheduler;
+    // Object that avoids showing the error resolution again and again when errors repeat
+    private ErrorResolutionCoordinator resolutionCoordinator;
+    // Object that schedules a new attempt of the strategy once its error may be resolved again
+    private HandlerTaskScheduler resolutionRetryScheduler;
+    // Object that records how each strategy performs, in order to choose their order
+    private StrategyHealthStore strategyHealthStore;
+    // Ids of the clients that are receiving locations
+    private final Set<Integer> activeClients = new HashSet<>();
+    // Variable that indicates if the strategy is kept running after the last client stopped
+    private boolean isLingering;
+    // Object that schedules the end of the linger period
+    private HandlerTaskScheduler lingerScheduler;
+    // Object that saves the location and the state in background while the service runs
+    private LocationCheckpointer checkpointer;
+    // Object that finds the best location known before starting a strategy
+    private LastKnownLocationAggregator lastKnownLocationAggregator;
+
+    // Object that publishes the delivered locations to other processes, or null if disabled
+    private SharedFixRing.Writer sharedFixRingWriter;
+    // Moment when the service was created, as given by System.nanoTime
+    private long createdAt;
+    // Variable that indicates if the persisted state was loaded
+    private boolean isLoaded;
+    // Variable that indicates if the service was destroyed
+    private boolean isDestroyed;
+    // Variable that indicates if the current strategy was started and not stopped since
+    private boolean isStrategyRunning;
+    // Variable that indicates if the current strategy is being stopped. The locations it flushes
+    // meanwhile are handled right away, while it is still the current strategy: during a switch
+    // they are delivered and credited to it, and on a tear down they are dropped, as the service
+    // is already stopped. Queued, they would only be handled once the next strategy started.
+    private boolean isStoppingStrategy;
+    // Actions received before the persisted state was loaded
+    private final List<PendingAction> pendingActions = new ArrayList<>();
+
+    private final Runnable lingerTimeoutTask = serialize(new ServiceTask() {
+        @Override
+        void perform() {
+            if (isLingering) {
+                tearDown();
+            }
+        }
+    });
+
+    private final Runnable resolutionRetryTask = serialize(new ServiceTask() {
+        @Override
+        void perform() {
+            if (!isStopped) {
+                // If the error is still there, the strategy reports it again
+                startCurrentStrategy();
+            }
+        }
+    });
+
+    private final Runnable fastFallbackTask = serialize(new ServiceTask() {
+        @Override
+        void perform() {
+            if (!isStopped && !hasFirstFix && chain.hasNext()) {
+                stopCurrentStrategy();
+                switchToNextStrategy();
+            }
+        }
+    });
 
-    private boolean isFallbackEnabled;
+    /**
+     * @return a task that runs the given one through the executor, so that the timers do not run
+     * in the middle of another transition of the state machine
+     */
+    private Runnable serialize(final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(task);
+            }
+        };
+    }
 
     @Override
     public void onCreate() {
+        createdAt = System.nanoTime();
         super.onCreate();
+        EasyLocationMetrics.getInstance().startSession();
         SingletonBus.getInstance().register(this);
+        directInstance = this;
         isStopped = true;
-        isFallbackEnabled = true;
+        isLingering = false;
+        isLoaded = false;
+        lingerScheduler = new HandlerTaskScheduler();
+        fastFallbackScheduler = new HandlerTaskScheduler();
+        resolutionRetryScheduler = new HandlerTaskScheduler();
+        resolutionCoordinator = ErrorResolutionCoordinator.getInstance();
+        lastKnownLocationAggregator = new LastKnownLocationAggregator(this);
 
-        // Initialize state
-        if (!PreferenceUtil.getPreference(this, STATE_PREFERENCE_KEY, "").isEmpty()) {
-            state = LocationState.valueOf(PreferenceUtil.getPreference(this, STATE_PREFERENCE_KEY, ""));
-        } else {
-            state = LocationState.IDLE;
+        // The persisted state is loaded in background. The strategies are only created when needed.
+        new LocationServiceLoader(this).load(this);
+
+        long elapsed = System.nanoTime() - createdAt;
+        EasyLocationMetrics.getInstance().onServiceCreated(elapsed);
+        if (elapsed > ON_CREATE_BUDGET_NANOS) {
+            Log.w(TAG, "LocationService.onCreate took " + elapsed / 1000 + "us on the main thread");
         }
+    }
+
+    /**
+     * Called on the main thread when the persisted state is loaded. Runs the actions received
+     * in the meantime, so that the cached location is delivered right away. Goes through the
+     * executor, like every other transition of the state machine.
+     */
+    @Override
+    public void onLoaded(final LocationServiceLoader loader) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                handleLoaded(loader);
+            }
+        });
+    }
 
-        // Initialize strategy
-        strategy = ServicesLocationStrategy.getInstance(this, this.getApplicationContext());
+    private void handleLoaded(LocationServiceLoader loader) {
+        if (isDestroyed) {
+            loader.getCheckpointer().close(loader.getState(), loader.getLocation());
+            return;
+        }
+        isLoaded = true;
+        setState(loader.getState());
+        location = loader.getLocation();
+        persistedLocation = location;
+        strategyHealthStore = loader.getStrategyHealthStore();
+        checkpointer = loader.getCheckpointer();
+        EasyLocationMetrics.getInstance().onColdStart(location != null);
+        EasyLocationMetrics.getInstance().onServiceLoaded(System.nanoTime() - createdAt);
 
-        // Initialize location. If no location was previously set, getPreference returns null.
-        LocationModel locationModel = PreferenceUtil.getPreference(this, LOCATION_PREFERENCE_KEY, LocationModel.class);
-        if (locationModel != null) {
-            location = locationModel.getLocation();
+        for (PendingAction action : pendingActions) {
+            handleAction(action.action, action.clientId, action.strategyNames);
         }
+        pendingActions.clear();
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
+        isDestroyed = true;
+        clearDirectInstance();
         SingletonBus.getInstance().unregister(this);
+        lingerScheduler.cancel(lingerTimeoutTask);
+        fastFallbackScheduler.cancel(fastFallbackTask);
+        resolutionRetryScheduler.cancel(resolutionRetryTask);
+        closeSharedFixRing();
+        usageAccountant.onProviderStopped();
+        usageAccountant.onAllClientsStopped();
+        if (!isLoaded) {
+            // Nothing was changed, so there is nothing to be saved
+            return;
+        }
         if (state == LocationState.ABORTING_LOCATION_UPDATE) {
             // Change state to DONE in order to avoid that the state gets stuck in ABORTING
-            state = LocationState.DONE;
-        }
-        PreferenceUtil.savePreference(this, STATE_PREFERENCE_KEY, state.name());
-        if (location != null) {
-            PreferenceUtil.savePreference(this, LOCATION_PREFERENCE_KEY, new LocationModel(location));
+            setState(LocationState.DONE);
         }
+        checkpointer.close(state, location);
+        strategyHealthStore.save(this);
     }
 
     @Nullable
@@ -108,94 +293,494 @@ public class LocationService extends Service implements LocationStrategyManager
 
     @Override
     public int onStartCommand(Intent baseIntent, int flags, int startId) {
-        handleAction(baseIntent.getAction());
+        if (baseIntent == null) {
+            // Restarted by the system after the process was killed. There are no clients left.
+            if (activeClients.isEmpty() && pendingActions.isEmpty()) {
+                clearDirectInstance();
+                stopSelf(startId);
+            }
+            return START_STICKY;
+        }
+        LocationServiceClient.onIntentReceived();
+        LocationServiceIntent intent = new LocationServiceIntent(baseIntent);
+        onAction(intent.getAction(), intent.getClientId(), intent.getStrategyNames());
         // The service continues to execute while not called again with action ACTION_STOP
         return START_STICKY;
     }
 
-    private void handleAction(String action) {
+    /**
+     * @return the service that accepts direct calls, or null if none is running. Must be called on the main thread.
+     */
+    static LocationService getDirectInstance() {
+        return directInstance;
+    }
+
+    /**
+     * Receives an action, from an Intent or directly from the {@link LocationServiceClient}.
+     * Must be called on the main thread. The action goes through the executor, so that a client
+     * that starts or stops while receiving a location, e.g. from its listener, does not change the
+     * state in the middle of the delivery: the action runs once the delivery is done.
+     */
+    void onAction(final String action, final int clientId, final String[] strategyNames) {
+        executor.execute(new ServiceTask() {
+            @Override
+            void perform() {
+                if (isLoaded) {
+                    handleAction(action, clientId, strategyNames);
+                } else {
+                    pendingActions.add(new PendingAction(action, clientId, strategyNames));
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops accepting direct calls, as the service is about to stop. From now on the actions are
+     * sent by Intent, which creates the service again if needed.
+     */
+    private void clearDirectInstance() {
+        if (directInstance == this) {
+            directInstance = null;
+        }
+    }
+
+    private void handleAction(String action, int clientId, String[] strategyNames) {
         switch (action) {
             case LocationServiceIntent.ACTION_START_STRATEGY_ANY:
-                strategy = ServicesLocationStrategy.getInstance(this, this.getApplicationContext());
-                isFallbackEnabled = true;
-                startStrategy();
+                startChain(LocationStrategyRegistry.getInstance().getDescriptors(), true, clientId);
                 break;
             case LocationServiceIntent.ACTION_START_STRATEGY_SERVICES:
-                strategy = ServicesLocationStrategy.getInstance(this, this.getApplicationContext());
-                isFallbackEnabled = false;
-                startStrategy();
+                startChain(findDescriptors(LocationStrategyLoader.SERVICES), false, clientId);
                 break;
             case LocationServiceIntent.ACTION_START_STRATEGY_DEVICE:
-                strategy = FallbackLocationStrategy.getInstance(this, this.getApplicationContext());
-                isFallbackEnabled = true;
-                startStrategy();
+                startChain(findDescriptors(LocationStrategyLoader.DEVICE), false, clientId);
+                break;
+            case LocationServiceIntent.ACTION_START_STRATEGY_CHAIN:
+                startChain(findDescriptors(strategyNames), false, clientId);
                 break;
             case LocationServiceIntent.ACTION_STOP:
-                isStopped = true;
-                if (state == LocationState.WAITING_UPDATED_LOCATION) {
-                    state = LocationState.ABORTING_LOCATION_UPDATE;
-                }
-                strategy.stop();
-                stopSelf();
+                stopClient(clientId);
                 break;
             default:
                 throw new UnsupportedOperationException("LocationService deve receber uma Intent do tipo LocationServiceIntent");
         }
     }
 
-    private void startStrategy() {
+    private List<LocationStrategyDescriptor> findDescriptors(String... names) {
+        List<LocationStrategyDescriptor> descriptors = new ArrayList<>();
+        if (names == null) {
+            return descriptors;
+        }
+        LocationStrategyRegistry registry = LocationStrategyRegistry.getInstance();
+        for (String name : names) {
+            LocationStrategyDescriptor descriptor = registry.getDescriptor(name);
+            if (descriptor != null) {
+                descriptors.add(descriptor);
+            } else {
+                // E.g. the module of the strategy is not a dependency of the app
+                Log.e(TAG, "The strategy " + name + " is not registered");
+            }
+        }
+        return descriptors;
+    }
+
+    /**
+     * Starts the first strategy of the chain.
+     * @param selectOrder true if the order may be changed by the {@link StrategySelector}
+     */
+    private void startChain(List<LocationStrategyDescriptor> descriptors, boolean selectOrder, int clientId) {
+        if (descriptors.isEmpty()) {
+            onNoStrategyAvailable();
+            return;
+        }
+        if (selectOrder) {
+            descriptors = new StrategySelector(strategyHealthStore).selectOrder(descriptors);
+        }
+        StrategyChain newChain = new StrategyChain(descriptors);
+        LocationStrategy newStrategy = getStrategy(newChain.getCurrent());
+        while (newStrategy == null && newChain.hasNext()) {
+            newStrategy = getStrategy(newChain.next());
+        }
+        if (newStrategy == null) {
+            onNoStrategyAvailable();
+            return;
+        }
+        startStrategy(newStrategy, newChain, clientId);
+    }
+
+    private void onNoStrategyAvailable() {
+        Log.e(TAG, "No location strategy available for the request");
+        dispatch(new OnLocationErrorEvent(LocationError.UNRECOVERABLE_ERROR));
+        if (isStopped && !isLingering && activeClients.isEmpty()) {
+            clearDirectInstance();
+            stopSelf();
+        }
+    }
+
+    private void startStrategy(LocationStrategy newStrategy, StrategyChain newChain, int clientId) {
+        activeClients.add(clientId);
+        usageAccountant.onClientStarted(clientId);
+        boolean wasLingering = isLingering;
+        boolean wasRunning = !isStopped || isLingering;
+        if (isLingering) {
+            isLingering = false;
+            lingerScheduler.cancel(lingerTimeoutTask);
+        }
+        if (state == LocationState.ABORTING_LOCATION_UPDATE) {
+            setState(LocationState.WAITING_UPDATED_LOCATION);
+        }
+        chain = newChain;
         isStopped = false;
+        location = lastKnownLocationAggregator.findBestLocation(newStrategy, location, persistedLocation);
         if (location != null) {
             // If there is a cached location, sends it even before starting the strategy
-            if (System.currentTimeMillis() - location.getTime() > MAX_TIME_LOCATION_INTERVAL) {
-                state = LocationState.WAITING_UPDATED_LOCATION;
-                SingletonBus.getInstance().post(new OnInitialLocationObtainedEvent(location));
+            if (LocationUtil.getAgeMillis(location) > MAX_TIME_LOCATION_INTERVAL) {
+                setState(LocationState.WAITING_UPDATED_LOCATION);
+                dispatch(new OnInitialLocationObtainedEvent(location));
             } else {
-                state = LocationState.DONE;
-                SingletonBus.getInstance().post(new OnUpdatedLocationObtainedEvent(location));
+                setState(LocationState.DONE);
+                dispatch(new OnUpdatedLocationObtainedEvent(location));
+            }
+            usageAccountant.onFixesDelivered(1);
+        }
+        if (wasLingering && newStrategy == strategy) {
+            // The strategy kept running during the linger period, so there is nothing to restart
+            EasyLocationMetrics.getInstance().onReconnectAvoided();
+        } else {
+            if (wasRunning && newStrategy != strategy) {
+                strategyHealthStore.onStrategyStopped();
+                stopCurrentStrategy();
+            }
+            strategy = newStrategy;
+            startCurrentStrategy();
+        }
+    }
+
+    /**
+     * Removes the client. When there are no clients left, the locations stop being delivered, but
+     * the strategy is only stopped after the linger period.
+     */
+    private void stopClient(int clientId) {
+        if (clientId == LocationServiceIntent.NO_CLIENT) {
+            activeClients.clear();
+            usageAccountant.onAllClientsStopped();
+        } else {
+            activeClients.remove(clientId);
+            usageAccountant.onClientStopped(clientId);
+        }
+        if (!activeClients.isEmpty() || isLingering) {
+            return;
+        }
+        boolean wasRunning = !isStopped;
+        isStopped = true;
+        isDegraded = false;
+        fastFallbackScheduler.cancel(fastFallbackTask);
+        resolutionRetryScheduler.cancel(resolutionRetryTask);
+        if (state == LocationState.WAITING_UPDATED_LOCATION) {
+            setState(LocationState.ABORTING_LOCATION_UPDATE);
+        }
+        long lingerPeriod = EasyLocationConfiguration.getInstance().getLingerPeriod();
+        if (wasRunning && lingerPeriod > 0) {
+            isLingering = true;
+            lingerScheduler.schedule(lingerTimeoutTask, lingerPeriod);
+        } else {
+            tearDown();
+        }
+    }
+
+    private void tearDown() {
+        isLingering = false;
+        lingerScheduler.cancel(lingerTimeoutTask);
+        fastFallbackScheduler.cancel(fastFallbackTask);
+        resolutionRetryScheduler.cancel(resolutionRetryTask);
+        if (strategy != null) {
+            strategyHealthStore.onStrategyStopped();
+            stopCurrentStrategy();
+        }
+        // The process may be killed before onDestroy, so the statistics are saved right away
+        strategyHealthStore.save(this);
+        clearDirectInstance();
+        stopSelf();
+    }
+
+    private void startCurrentStrategy() {
+        resolutionRetryScheduler.cancel(resolutionRetryTask);
+        strategyHealthStore.onStrategyStarted(strategy.getName());
+        hasFirstFix = false;
+        fastFallbackScheduler.cancel(fastFallbackTask);
+        long latency = chain.getCurrent().getLatency();
+        if (EasyLocationConfiguration.getInstance().isFastFallbackEnabled() && chain.hasNext() && latency > 0) {
+            fastFallbackScheduler.schedule(fastFallbackTask, latency * FAST_FALLBACK_LATENCY_FACTOR);
+        }
+        flightRecorder.recordStrategyStarted(strategy.getName());
+        usageAccountant.onProviderStarted(strategy.getName());
+        isStrategyRunning = true;
+        if (Tracing.ENABLED) {
+            Tracing.beginSection(Tracing.STRATEGY_START);
+        }
+        try {
+            strategy.start();
+        } finally {
+            if (Tracing.ENABLED) {
+                Tracing.endSection();
             }
         }
-        strategy.start();
+    }
+
+    private void setState(LocationState newState) {
+        if (newState != state) {
+            flightRecorder.recordStateChanged(state, newState);
+            state = newState;
+        }
+    }
+
+    private String getStrategyName() {
+        return strategy != null ? strategy.getName() : null;
+    }
+
+    /**
+     * Stops the current strategy, unless it is already stopped, e.g. after it reported that it is
+     * disabled and a resolution was started
+     */
+    private void stopCurrentStrategy() {
+        if (!isStrategyRunning) {
+            return;
+        }
+        isStrategyRunning = false;
+        if (Tracing.ENABLED) {
+            Tracing.beginSection(Tracing.STRATEGY_STOP);
+        }
+        isStoppingStrategy = true;
+        try {
+            strategy.stop();
+        } finally {
+            isStoppingStrategy = false;
+            if (Tracing.ENABLED) {
+                Tracing.endSection();
+            }
+        }
+        // After the stop, so that the locations flushed by the strategy are charged to its provider
+        flightRecorder.recordStrategyStopped(strategy.getName());
+        usageAccountant.onProviderStopped();
+    }
+
+    /**
+     * Posts the event to the listeners, which run before this method returns
+     */
+    private static void dispatch(Object event) {
+        if (Tracing.ENABLED) {
+            Tracing.beginSection(Tracing.DISPATCH);
+        }
+        try {
+            SingletonBus.getInstance().post(event);
+        } finally {
+            if (Tracing.ENABLED) {
+                Tracing.endSection();
+            }
+        }
+    }
+
+    /**
+     * Returns the strategy, creating it the first time it is needed.
+     * @return the strategy, or null if it could not be created
+     */
+    private LocationStrategy getStrategy(LocationStrategyDescriptor descriptor) {
+        LocationStrategy strategy = strategies.get(descriptor);
+        if (strategy == null) {
+            strategy = descriptor.getFactory().create(this, this.getApplicationContext());
+            if (strategy != null) {
+                strategies.put(descriptor, strategy);
+            }
+        }
+        return strategy;
+    }
+
+    /**
+     * Replaces the current strategy, which failed, by the next one of the chain.
+     * @return false if there is no strategy left in the chain
+     */
+    private boolean switchToNextStrategy() {
+        strategyHealthStore.onStrategyFailed(strategy.getName());
+        fastFallbackScheduler.cancel(fastFallbackTask);
+        LocationStrategyDescriptor next = chain.next();
+        while (next != null) {
+            LocationStrategy nextStrategy = getStrategy(next);
+            if (nextStrategy != null) {
+                flightRecorder.recordStrategySwitched(strategy.getName(), nextStrategy.getName());
+                strategy = nextStrategy;
+                startCurrentStrategy();
+                return true;
+            }
+            next = chain.next();
+        }
+        return false;
     }
 
 
     @Override
-    public void onLocationObtained(Location location) {
-        if (!isStopped) {
+    public void onLocationObtained(final Location location) {
+        if (executor.isOnTargetThread() && isStoppingStrategy) {
+            handleLocation(location);
+            return;
+        }
+        executor.execute(new ServiceTask() {
+            @Override
+            void perform() {
+                handleLocation(location);
+            }
+        });
+    }
+
+    @Override
+    public void onLocationsObtained(final List<Location> locations) {
+        if (executor.isOnTargetThread() && isStoppingStrategy) {
+            handleLocations(locations);
+            return;
+        }
+        executor.execute(new ServiceTask() {
+            @Override
+            void perform() {
+                handleLocations(locations);
+            }
+        });
+    }
+
+    @Override
+    public void onStrategyError(final LocationStrategyError locationStrategyError) {
+        executor.execute(new ServiceTask() {
+            @Override
+            void perform() {
+                handleStrategyError(locationStrategyError);
+            }
+        });
+    }
+
+    private void handleLocation(Location location) {
+        usageAccountant.onWakeup();
+        if (!isNewer(location, this.location)) {
+            flightRecorder.recordFixRejected(getStrategyName(), FlightRecorder.REJECTED_NOT_NEWER, location.getAccuracy());
+            usageAccountant.onFixesRejected(1);
+            return;
+        }
+        if (isLingering || isStopped) {
+            flightRecorder.recordFixRejected(getStrategyName(), FlightRecorder.REJECTED_NOT_DELIVERED, location.getAccuracy());
+        }
+        if (isLingering) {
+            // Keeps the cached location up to date, so that it can be delivered on a restart
             this.location = location;
+            checkpointer.onLocationChanged(location, state);
+        } else if (!isStopped) {
+            this.location = location;
+            onLocationAccepted(location);
             if (state == LocationState.WAITING_INITIAL_LOCATION || state == LocationState.IDLE) {
                 // Se recebeu a localizacao quando o estado eh IDLE ou WAITING INITIAL
-                state = LocationState.WAITING_UPDATED_LOCATION;
-                SingletonBus.getInstance().post(new OnInitialLocationObtainedEvent(location));
+                setState(LocationState.WAITING_UPDATED_LOCATION);
+                dispatch(new OnInitialLocationObtainedEvent(location));
+                usageAccountant.onFixesDelivered(1);
             } else {
                 // Senao
                 if (state != LocationState.ABORTING_LOCATION_UPDATE) {
-                    state = LocationState.DONE;
-                    SingletonBus.getInstance().post(new OnUpdatedLocationObtainedEvent(location));
+                    setState(LocationState.DONE);
+                    dispatch(new OnUpdatedLocationObtainedEvent(location));
+                    usageAccountant.onFixesDelivered(1);
                 }
             }
+            checkpointer.onLocationChanged(location, state);
         }
     }
 
-    @Override
-    public void onStrategyError(LocationStrategyError locationStrategyError) {
-        if (!isStopped) {
+    private void handleLocations(List<Location> locations) {
+        usageAccountant.onWakeup();
+        List<Location> accepted = new ArrayList<>(locations.size());
+        Location newest = this.location;
+        for (Location location : locations) {
+            if (isNewer(location, newest)) {
+                newest = location;
+                accepted.add(location);
+            } else {
+                flightRecorder.recordFixRejected(getStrategyName(), FlightRecorder.REJECTED_NOT_NEWER, location.getAccuracy());
+            }
+        }
+        usageAccountant.onFixesRejected(locations.size() - accepted.size());
+        if (accepted.isEmpty()) {
+            return;
+        }
+        if (isLingering || isStopped) {
+            for (Location location : accepted) {
+                flightRecorder.recordFixRejected(getStrategyName(), FlightRecorder.REJECTED_NOT_DELIVERED, location.getAccuracy());
+            }
+        }
+        if (isLingering) {
+            this.location = newest;
+            checkpointer.onLocationChanged(newest, state);
+        } else if (!isStopped) {
+            this.location = newest;
+            for (Location location : accepted) {
+                onLocationAccepted(location);
+            }
+            if (state == LocationState.WAITING_INITIAL_LOCATION || state == LocationState.IDLE) {
+                // The first location of the batch is the initial one, the others are updates
+                setState(LocationState.WAITING_UPDATED_LOCATION);
+                dispatch(new OnInitialLocationObtainedEvent(accepted.remove(0)));
+                usageAccountant.onFixesDelivered(1);
+            }
+            if (!accepted.isEmpty() && state != LocationState.ABORTING_LOCATION_UPDATE) {
+                setState(LocationState.DONE);
+                dispatch(new OnLocationsBatchObtainedEvent(accepted));
+                usageAccountant.onFixesDelivered(accepted.size());
+            }
+            // The whole batch is persisted at once
+            checkpointer.onLocationChanged(newest, state);
+        }
+    }
+
+    /**
+     * Locations that are not newer than the current one (e.g. the last known location of a
+     * strategy, already delivered by the aggregator) are discarded
+     */
+    private static boolean isNewer(Location location, Location current) {
+        return current == null || LocationUtil.getAgeMillis(location) < LocationUtil.getAgeMillis(current);
+    }
+
+    private void onLocationAccepted(Location location) {
+        flightRecorder.recordFixAccepted(strategy.getName(), location.getAccuracy());
+        if (!hasFirstFix) {
+            hasFirstFix = true;
+            fastFallbackScheduler.cancel(fastFallbackTask);
+        }
+        strategyHealthStore.onLocationObtained(strategy.getName(), location);
+        if (isDegraded) {
+            // A new location means that the strategy has recovered
+            setDegraded(false);
+        }
+        publishToSharedFixRing(location);
+    }
+
+    private void handleStrategyError(LocationStrategyError locationStrategyError) {
+        flightRecorder.recordStrategyError(locationStrategyError.getError(), locationStrategyError.getStrategy());
+        if (isLingering) {
+            // There are no clients to recover the strategy for, so the linger period ends early
+            tearDown();
+        } else if (!isStopped) {
             switch (locationStrategyError.getError()) {
                 case STRATEGY_CONNECTION_FAILURE:
-                    if (locationStrategyError.getErrorDetails() != null) {
-                        tryToResolveError(locationStrategyError);
-                    } else {
+                    if (locationStrategyError.getErrorDetails() == null) {
                         // If error details were not provided then the error has no resolution
                         handleUnrecoverableError();
+                    } else if (!tryToResolveError(locationStrategyError)) {
+                        handleUnresolvedError(locationStrategyError.getError());
+                    }
+                    break;
+                case STRATEGY_CONNECTION_SUSPENDED:
+                    // The strategy is reconnecting by itself. Until it recovers or gives up, the last location is served.
+                    if (!isDegraded) {
+                        setDegraded(true);
                     }
                     break;
                 case STRATEGY_DISABLED:
-                    strategy.stop();
-                    if (isFallbackEnabled && strategy.getName().equals(ServicesLocationStrategy.STRATEGY_NAME)) {
-                        strategy = FallbackLocationStrategy.getInstance(this, this.getApplicationContext());
-                        strategy.start();
-                    } else {
-                        tryToResolveError(locationStrategyError);
+                    stopCurrentStrategy();
+                    if (!switchToNextStrategy() && !tryToResolveError(locationStrategyError)) {
+                        waitForResolution(locationStrategyError.getError());
                     }
                     break;
                 case UNRECOVERABLE_ERROR:
@@ -207,39 +792,182 @@ public class LocationService extends Service implements LocationStrategyManager
         }
     }
 
+    private void publishToSharedFixRing(Location location) {
+        if (sharedFixRingWriter == null) {
+            EasyLocationConfiguration configuration = EasyLocationConfiguration.getInstance();
+            File file = configuration.getSharedFixRingFile();
+            if (file == null) {
+                return;
+            }
+            try {
+                sharedFixRingWriter = SharedFixRing.openWriter(file, configuration.getSharedFixRingCapacity());
+            } catch (IOException e) {
+                Log.w(TAG, "Could not open the shared fix ring", e);
+                return;
+            }
+        }
+        long elapsedRealtimeNanos = 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            elapsedRealtimeNanos = location.getElapsedRealtimeNanos();
+        }
+        sharedFixRingWriter.publish(location.getTime(), elapsedRealtimeNanos, location.getLatitude(),
+                location.getLongitude(), location.getAltitude(), location.getAccuracy(), location.getSpeed(),
+                location.getBearing());
+    }
+
+    private void closeSharedFixRing() {
+        if (sharedFixRingWriter != null) {
+            try {
+                sharedFixRingWriter.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Could not close the shared fix ring", e);
+            }
+            sharedFixRingWriter = null;
+        }
+    }
+
+    private void setDegraded(boolean degraded) {
+        isDegraded = degraded;
+        dispatch(new OnDegradedModeChangedEvent(degraded, location));
+    }
+
     private void handleUnrecoverableError() {
         if (!isStopped) {
-            strategy.stop();
-            if (isFallbackEnabled && strategy.getName().equals(ServicesLocationStrategy.STRATEGY_NAME)) {
-                strategy = FallbackLocationStrategy.getInstance(this, this.getApplicationContext());
-                strategy.start();
-            } else {
-                state = LocationState.UNRECOVERABLE_ERROR;
-                SingletonBus.getInstance().post(new OnLocationErrorEvent(LocationError.UNRECOVERABLE_ERROR));
+            stopCurrentStrategy();
+            if (!switchToNextStrategy()) {
+                if (isDegraded) {
+                    setDegraded(false);
+                }
+                setState(LocationState.UNRECOVERABLE_ERROR);
+                dispatch(new OnLocationErrorEvent(LocationError.UNRECOVERABLE_ERROR));
             }
         }
     }
 
-    private void tryToResolveError(LocationStrategyError error) {
-        if (!isStopped) {
-            LocationErrorHandlerIntent it = new LocationErrorHandlerIntent(this, LocationErrorHandlerActivity.class,
-                    LocationErrorHandlerIntent.HANDLE_ERROR_ACTION, error);
-            it.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            startActivity(it);
+    /**
+     * Shows the error resolution to the user, unless the {@link ErrorResolutionCoordinator} says
+     * it was shown too recently for this type of error.
+     * @return true if the result of a resolution is awaited, false if the error must be handled
+     * without one
+     */
+    private boolean tryToResolveError(LocationStrategyError error) {
+        if (isStopped) {
+            return true;
+        }
+        if (resolutionCoordinator.isResolving()) {
+            // The answer to the resolution being shown decides
+            EasyLocationMetrics.getInstance().onResolutionLaunchAvoided();
+            return true;
+        }
+        if (resolutionCoordinator.getTimeUntilAllowed(error.getError()) > 0) {
+            EasyLocationMetrics.getInstance().onResolutionLaunchAvoided();
+            return false;
         }
+        // The user decides when the error is solved, so the chain waits for the answer
+        fastFallbackScheduler.cancel(fastFallbackTask);
+        resolutionCoordinator.onResolutionStarted(error.getError());
+        EasyLocationMetrics.getInstance().onResolutionLaunched();
+        LocationErrorHandlerIntent it = new LocationErrorHandlerIntent(this, LocationErrorHandlerActivity.class,
+                LocationErrorHandlerIntent.HANDLE_ERROR_ACTION, error);
+        it.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        startActivity(it);
+        return true;
     }
 
-    @Subscribe
-    public void onStrategyErrorSolved(OnStrategyErrorSolved event) {
-        if (!isStopped) {
-            strategy.start();
+    /**
+     * Moves to the next strategy, since the error of the current one was not resolved. When there
+     * is none left, waits until the error may be resolved again. If the strategy was already
+     * stopped when the resolution started, the chain was already exhausted.
+     */
+    private void handleUnresolvedError(LocationStrategyError.StrategyError error) {
+        boolean wasRunning = isStrategyRunning;
+        stopCurrentStrategy();
+        if (!wasRunning || !switchToNextStrategy()) {
+            waitForResolution(error);
         }
     }
 
+    /**
+     * Serves the last location in degraded mode, and tries the current strategy again once the
+     * error may be resolved again. Without a location to serve, the error is reported.
+     */
+    private void waitForResolution(LocationStrategyError.StrategyError error) {
+        if (location != null) {
+            if (!isDegraded) {
+                setDegraded(true);
+            }
+        } else {
+            setState(LocationState.UNRECOVERABLE_ERROR);
+            dispatch(new OnLocationErrorEvent(LocationError.UNRECOVERABLE_ERROR));
+        }
+        resolutionRetryScheduler.cancel(resolutionRetryTask);
+        resolutionRetryScheduler.schedule(resolutionRetryTask, resolutionCoordinator.getTimeUntilAllowed(error));
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the result of the error resolution.
+     */
     @Subscribe
-    public void onStrategyErrorNotSolved(OnStrategyErrorNotSolved event) {
-        if (!isStopped) {
-            handleUnrecoverableError();
+    public void onStrategyErrorSolved(final OnStrategyErrorSolved event) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // The coordinator lives as long as the process, so the answer is kept even if the service is destroyed
+                resolutionCoordinator.onResolutionSolved(event.getError());
+                if (!isDestroyed && !isStopped) {
+                    startCurrentStrategy();
+                }
+            }
+        });
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the result of the error resolution.
+     */
+    @Subscribe
+    public void onStrategyErrorNotSolved(final OnStrategyErrorNotSolved event) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // The coordinator lives as long as the process, so the answer is kept even if the service is destroyed
+                resolutionCoordinator.onResolutionDeclined(event.getError());
+                if (!isDestroyed && !isStopped) {
+                    handleUnresolvedError(event.getError());
+                }
+            }
+        });
+    }
+
+    /**
+     * Task of the state machine, run through the executor. The tasks still queued when the service
+     * is destroyed are skipped, as the checkpointer and the shared fix ring are already closed.
+     */
+    private abstract class ServiceTask implements Runnable {
+
+        @Override
+        public final void run() {
+            if (!isDestroyed) {
+                perform();
+            }
+        }
+
+        abstract void perform();
+    }
+
+    /**
+     * Action received before the persisted state was loaded
+     */
+    private static class PendingAction {
+        final String action;
+        final int clientId;
+        final String[] strategyNames;
+
+        PendingAction(String action, int clientId, String[] strategyNames) {
+            this.action = action;
+            this.clientId = clientId;
+            this.strategyNames = strategyNames;
         }
     }
 
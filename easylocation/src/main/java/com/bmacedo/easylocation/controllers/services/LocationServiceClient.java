@@ -0,0 +1,89 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.bmacedo.easylocation.api.EasyLocationMetrics;
+import com.bmacedo.easylocation.common.intents.LocationServiceIntent;
+
+/**
+ *
+ * This class sends the actions of the managers to the {@link LocationService}.
+ *
+ * When the service is already running in this process, the actions are handed to it with a direct
+ * method call on the main thread, without building an Intent and going through startService and
+ * onStartCommand. Otherwise, e.g. on the first start, a {@link LocationServiceIntent} is sent,
+ * which creates the service.
+ *
+ * Actions sent by Intent are delivered later than direct calls, so while any Intent is on its
+ * way the direct calls are not used, in order to keep the actions in order.
+ *
+ */
+public class LocationServiceClient {
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Number of intents sent that were not received by the service yet. Only used on the main thread.
+    private static int pendingIntents;
+
+    private LocationServiceClient() {
+    }
+
+    /**
+     * @param action one of the start actions of {@link LocationServiceIntent}
+     */
+    public static void start(Context context, String action, int clientId) {
+        send(context, action, clientId, null);
+    }
+
+    /**
+     * Starts the chain of the registered strategies with the given names
+     */
+    public static void startChain(Context context, String[] strategyNames, int clientId) {
+        send(context, LocationServiceIntent.ACTION_START_STRATEGY_CHAIN, clientId, strategyNames);
+    }
+
+    public static void stop(Context context, int clientId) {
+        send(context, LocationServiceIntent.ACTION_STOP, clientId, null);
+    }
+
+    private static void send(Context context, final String action, final int clientId, final String[] strategyNames) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            final Context applicationContext = context.getApplicationContext();
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    send(applicationContext, action, clientId, strategyNames);
+                }
+            });
+            return;
+        }
+        LocationService service = LocationService.getDirectInstance();
+        if (service != null && pendingIntents == 0) {
+            EasyLocationMetrics.getInstance().onDirectCall();
+            service.onAction(action, clientId, strategyNames);
+            return;
+        }
+        LocationServiceIntent intent;
+        if (strategyNames != null) {
+            intent = new LocationServiceIntent(context, LocationService.class, clientId, strategyNames);
+        } else {
+            intent = new LocationServiceIntent(context, LocationService.class, action, clientId);
+        }
+        pendingIntents++;
+        if (context.startService(intent) == null) {
+            // The service will not receive it
+            pendingIntents--;
+        }
+    }
+
+    /**
+     * Called by the service on the main thread for each intent received
+     */
+    static void onIntentReceived() {
+        if (pendingIntents > 0) {
+            pendingIntents--;
+        }
+    }
+}
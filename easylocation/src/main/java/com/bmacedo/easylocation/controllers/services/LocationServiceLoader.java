@@ -0,0 +1,125 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import android.content.Context;
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.bmacedo.easylocation.api.EasyLocationConfiguration;
+import com.bmacedo.easylocation.controllers.strategies.StrategyHealthStore;
+import com.bmacedo.easylocation.controllers.util.Clock;
+import com.bmacedo.easylocation.controllers.util.PreferenceUtil;
+import com.bmacedo.easylocation.models.LocationCheckpoint;
+import com.bmacedo.easylocation.models.LocationModel;
+import com.bmacedo.easylocation.models.LocationState;
+
+import java.io.File;
+
+/**
+ *
+ * This class loads the persisted state of the {@link LocationService} on a background thread, so
+ * that the disk reads do not block the main thread while the service is created.
+ *
+ * The result is delivered on the main thread through the {@link Callback}.
+ *
+ */
+public class LocationServiceLoader {
+
+    private static final String STATE_PREFERENCE_KEY = "caronaphone_location_state";
+    private static final String LOCATION_PREFERENCE_KEY = "caronaphone_location_data";
+    private static final String CHECKPOINT_FILE_NAME = "easylocation_checkpoint.json";
+
+    public interface Callback {
+        void onLoaded(LocationServiceLoader loader);
+    }
+
+    private final Context context;
+
+    // Results of the loading. Only read after the callback is called.
+    private LocationState state;
+    private Location location;
+    private StrategyHealthStore strategyHealthStore;
+    private LocationCheckpointer checkpointer;
+
+    public LocationServiceLoader(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Starts the loading. The callback is called on the main thread when it is finished.
+     */
+    public void load(final Callback callback) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loadInBackground();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onLoaded(LocationServiceLoader.this);
+                    }
+                });
+            }
+        }, "LocationServiceLoader");
+        thread.start();
+    }
+
+    private void loadInBackground() {
+        strategyHealthStore = StrategyHealthStore.load(context, Clock.ELAPSED_REALTIME);
+
+        // Initialize state and location from the last checkpoint. The preferences are only used
+        // by versions that did not write checkpoints.
+        File checkpointFile = new File(context.getFilesDir(), CHECKPOINT_FILE_NAME);
+        LocationCheckpoint checkpoint = LocationCheckpointer.load(checkpointFile);
+        if (checkpoint != null) {
+            state = checkpoint.getState();
+            if (checkpoint.getLocation() != null) {
+                location = checkpoint.getLocation().getLocation();
+            }
+        } else {
+            String savedState = PreferenceUtil.getPreference(context, STATE_PREFERENCE_KEY, "");
+            if (!savedState.isEmpty()) {
+                try {
+                    state = LocationState.valueOf(savedState);
+                } catch (IllegalArgumentException e) {
+                    state = null;
+                }
+            }
+            // If no location was previously set, getPreference returns null.
+            LocationModel locationModel = PreferenceUtil.getPreference(context, LOCATION_PREFERENCE_KEY, LocationModel.class);
+            if (locationModel != null) {
+                location = locationModel.getLocation();
+            }
+        }
+        if (state == null) {
+            state = LocationState.IDLE;
+        } else if (state == LocationState.ABORTING_LOCATION_UPDATE) {
+            // The process was killed while stopping, before onDestroy could fix the state
+            state = LocationState.DONE;
+        }
+
+        EasyLocationConfiguration configuration = EasyLocationConfiguration.getInstance();
+        checkpointer = new LocationCheckpointer(checkpointFile, configuration.getCheckpointInterval(),
+                configuration.getCheckpointDistance(), Clock.ELAPSED_REALTIME);
+    }
+
+    public LocationState getState() {
+        return state;
+    }
+
+    /**
+     * @return the persisted location, or null if there is none
+     */
+    public Location getLocation() {
+        return location;
+    }
+
+    public StrategyHealthStore getStrategyHealthStore() {
+        return strategyHealthStore;
+    }
+
+    public LocationCheckpointer getCheckpointer() {
+        return checkpointer;
+    }
+}
@@ -0,0 +1,180 @@
+package com.bmacedo.easylocation.controllers.spatial;
+
+import android.location.Location;
+
+import com.bmacedo.easylocation.controllers.util.GeodesyUtil;
+
+/**
+ *
+ * Keeps the k points of a {@link PointIndex} nearest to the user up to date, as the locations are
+ * obtained. Should be called from a single thread, e.g. the one receiving the locations.
+ *
+ * The index is only searched when the user moves more than the movement threshold away from the
+ * location of the last search. That search keeps, besides the k nearest points, every point that
+ * could become one of the k nearest while the user stays within the threshold; the following
+ * locations only rank those candidates again, and give the same results as a full search.
+ *
+ */
+public class NearestPointsTracker {
+
+    private static final int INITIAL_CANDIDATES = 64;
+
+    private final PointIndex index;
+    private final int k;
+    private final double maxDistanceMeters;
+    private final double movementThresholdMeters;
+
+    // Location of the last search of the index
+    private double anchorLatitude;
+    private double anchorLongitude;
+    private boolean hasAnchor;
+    // Positions in the index of the points that may be among the nearest
+    private int[] candidates = new int[INITIAL_CANDIDATES];
+    private int candidateCount;
+    // Current results, nearest first
+    private final int[] resultIds;
+    private final double[] resultDistances;
+    private int resultCount;
+
+    private long searches;
+    private long cachedUpdates;
+
+    /**
+     * @param k maximum number of points kept
+     * @param maxDistanceMeters points farther than this are not kept, or
+     *                          {@link Double#POSITIVE_INFINITY} for no limit
+     * @param movementThresholdMeters distance the user may move before the index is searched again
+     */
+    public NearestPointsTracker(PointIndex index, int k, double maxDistanceMeters, double movementThresholdMeters) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Invalid number of points: " + k);
+        }
+        if (maxDistanceMeters < 0 || movementThresholdMeters < 0) {
+            throw new IllegalArgumentException("Distances must not be negative");
+        }
+        this.index = index;
+        this.k = k;
+        this.maxDistanceMeters = maxDistanceMeters;
+        this.movementThresholdMeters = movementThresholdMeters;
+        this.resultIds = new int[k];
+        this.resultDistances = new double[k];
+    }
+
+    public void onLocationChanged(Location location) {
+        update(location.getLatitude(), location.getLongitude());
+    }
+
+    /**
+     * Updates the nearest points to the given location
+     * @return the number of points found
+     */
+    public int update(double latitude, double longitude) {
+        double x = PointIndex.toX(latitude, longitude);
+        double y = PointIndex.toY(latitude, longitude);
+        double z = PointIndex.toZ(latitude);
+        if (hasAnchor && GeodesyUtil.haversine(anchorLatitude, anchorLongitude, latitude, longitude)
+                <= movementThresholdMeters) {
+            cachedUpdates++;
+        } else {
+            searchCandidates(x, y, z);
+            anchorLatitude = latitude;
+            anchorLongitude = longitude;
+            hasAnchor = true;
+            searches++;
+        }
+        rank(x, y, z);
+        return resultCount;
+    }
+
+    /**
+     * Forgets the last search, so that the next update searches the index
+     */
+    public void reset() {
+        hasAnchor = false;
+        resultCount = 0;
+    }
+
+    public int getCount() {
+        return resultCount;
+    }
+
+    /**
+     * @param i position in the results, nearest first
+     * @return the id of the point in the index
+     */
+    public int getId(int i) {
+        if (i >= resultCount) {
+            throw new IndexOutOfBoundsException("Invalid result: " + i);
+        }
+        return resultIds[i];
+    }
+
+    /**
+     * @param i position in the results, nearest first
+     * @return the distance to the point in meters
+     */
+    public double getDistance(int i) {
+        if (i >= resultCount) {
+            throw new IndexOutOfBoundsException("Invalid result: " + i);
+        }
+        return resultDistances[i];
+    }
+
+    /**
+     * @return the number of updates that searched the index
+     */
+    public long getSearches() {
+        return searches;
+    }
+
+    /**
+     * @return the number of updates that only ranked the candidates of the last search
+     */
+    public long getCachedUpdates() {
+        return cachedUpdates;
+    }
+
+    // If the k-th nearest point is at distance d from the anchor, the k nearest points of any
+    // location within the threshold t are at most d + 2t away from the anchor
+    private void searchCandidates(double x, double y, double z) {
+        double radiusMeters = maxDistanceMeters + movementThresholdMeters;
+        if (index.size() > k) {
+            int found = index.nearestPositions(x, y, z, k, resultIds, resultDistances);
+            double kthMeters = PointIndex.chordToMeters(resultDistances[found - 1]);
+            radiusMeters = Math.min(radiusMeters, kthMeters + 2 * movementThresholdMeters);
+        }
+        double chord = PointIndex.metersToChord(radiusMeters);
+        candidateCount = index.withinPositions(x, y, z, chord, candidates);
+        if (candidateCount > candidates.length) {
+            candidates = new int[Integer.highestOneBit(candidateCount) << 1];
+            candidateCount = index.withinPositions(x, y, z, chord, candidates);
+        }
+    }
+
+    private void rank(double x, double y, double z) {
+        double maxSquaredChord = PointIndex.metersToChord(maxDistanceMeters);
+        maxSquaredChord *= maxSquaredChord;
+        // Insertion into the sorted results, which are few
+        resultCount = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int position = candidates[i];
+            double squaredChord = index.squaredChord(position, x, y, z);
+            if (squaredChord > maxSquaredChord
+                    || (resultCount == k && squaredChord >= resultDistances[k - 1])) {
+                continue;
+            }
+            int j = resultCount < k ? resultCount++ : k - 1;
+            while (j > 0 && resultDistances[j - 1] > squaredChord) {
+                resultDistances[j] = resultDistances[j - 1];
+                resultIds[j] = resultIds[j - 1];
+                j--;
+            }
+            resultDistances[j] = squaredChord;
+            resultIds[j] = position;
+        }
+        for (int i = 0; i < resultCount; i++) {
+            resultIds[i] = index.getId(resultIds[i]);
+            resultDistances[i] = PointIndex.chordToMeters(Math.sqrt(resultDistances[i]));
+        }
+    }
+}
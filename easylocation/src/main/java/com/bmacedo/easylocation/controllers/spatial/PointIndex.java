@@ -0,0 +1,337 @@
+package com.bmacedo.easylocation.controllers.spatial;
+
+import com.bmacedo.easylocation.controllers.util.GeodesyUtil;
+
+/**
+ *
+ * Static spatial index of points, such as points of interest, built once and queried for the
+ * nearest points or the points within a radius.
+ *
+ * The points are converted to unit vectors and kept in an implicit KD-tree stored in primitive
+ * arrays, so the index has no per-point objects and works the same at any latitude and across
+ * the antimeridian. The straight-line distance between two unit vectors grows with the great
+ * circle distance, so it is used to compare points, and only the results are converted to
+ * meters on a spherical earth.
+ *
+ * The points are identified by their position in the arrays given to the constructor. The index
+ * is immutable and may be queried from any thread.
+ *
+ */
+public class PointIndex {
+
+    // Unit vector and id of each point, in tree order
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final int[] ids;
+    // Split axis of each node: 0 for x, 1 for y and 2 for z
+    private final byte[] axes;
+
+    /**
+     * Builds the index, which takes O(n log n) time
+     * @param count number of points to use from the arrays
+     */
+    public PointIndex(double[] latitudes, double[] longitudes, int count) {
+        if (count < 0 || count > latitudes.length || count > longitudes.length) {
+            throw new IllegalArgumentException("Invalid number of points: " + count);
+        }
+        xs = new double[count];
+        ys = new double[count];
+        zs = new double[count];
+        ids = new int[count];
+        axes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            double phi = Math.toRadians(latitudes[i]);
+            double lambda = Math.toRadians(longitudes[i]);
+            double cosPhi = Math.cos(phi);
+            xs[i] = cosPhi * Math.cos(lambda);
+            ys[i] = cosPhi * Math.sin(lambda);
+            zs[i] = Math.sin(phi);
+            ids[i] = i;
+        }
+        build(0, count);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return the approximate number of bytes used by the index
+     */
+    public long getFootprintBytes() {
+        return (long) ids.length * (3 * 8 + 4 + 1);
+    }
+
+    /**
+     * Finds the k points nearest to the given point
+     * @param outIds array where the ids of the points found are written, nearest first
+     * @param outDistances array where the distances of the points found are written, in meters
+     * @return the number of points found, which is k unless the index has fewer points
+     */
+    public int nearest(double latitude, double longitude, int k, int[] outIds, double[] outDistances) {
+        int found = nearestPositions(toX(latitude, longitude), toY(latitude, longitude), toZ(latitude), k,
+                outIds, outDistances);
+        for (int i = 0; i < found; i++) {
+            outIds[i] = ids[outIds[i]];
+            outDistances[i] = chordToMeters(outDistances[i]);
+        }
+        return found;
+    }
+
+    /**
+     * Finds the points within the radius of the given point, in no particular order
+     * @param outIds array where the ids of the points found are written
+     * @return the number of points found. If it is larger than the array, only the first ones
+     *         were written.
+     */
+    public int withinRadius(double latitude, double longitude, double radiusMeters, int[] outIds) {
+        int found = withinPositions(toX(latitude, longitude), toY(latitude, longitude), toZ(latitude),
+                metersToChord(radiusMeters), outIds);
+        for (int i = 0; i < Math.min(found, outIds.length); i++) {
+            outIds[i] = ids[outIds[i]];
+        }
+        return found;
+    }
+
+    int nearestPositions(double x, double y, double z, int k, int[] outPositions, double[] outChords) {
+        if (k <= 0) {
+            return 0;
+        }
+        Search search = new Search(x, y, z, Math.min(k, ids.length), outPositions, outChords);
+        searchNearest(search, 0, ids.length);
+        // Sorts the heap, nearest first, and converts the squared chords to chords
+        for (int end = search.size - 1; end > 0; end--) {
+            swapHeap(search, 0, end);
+            siftDown(search, 0, end);
+        }
+        for (int i = 0; i < search.size; i++) {
+            outChords[i] = Math.sqrt(outChords[i]);
+        }
+        return search.size;
+    }
+
+    int withinPositions(double x, double y, double z, double chord, int[] outPositions) {
+        Search search = new Search(x, y, z, 0, outPositions, null);
+        searchWithin(search, 0, ids.length, chord * chord);
+        return search.size;
+    }
+
+    int getId(int position) {
+        return ids[position];
+    }
+
+    double squaredChord(int position, double x, double y, double z) {
+        double dx = xs[position] - x;
+        double dy = ys[position] - y;
+        double dz = zs[position] - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    static double toX(double latitude, double longitude) {
+        return Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(longitude));
+    }
+
+    static double toY(double latitude, double longitude) {
+        return Math.cos(Math.toRadians(latitude)) * Math.sin(Math.toRadians(longitude));
+    }
+
+    static double toZ(double latitude) {
+        return Math.sin(Math.toRadians(latitude));
+    }
+
+    static double chordToMeters(double chord) {
+        return 2 * GeodesyUtil.EARTH_RADIUS_METERS * Math.asin(Math.min(1, chord / 2));
+    }
+
+    static double metersToChord(double meters) {
+        double angle = Math.min(Math.PI, meters / GeodesyUtil.EARTH_RADIUS_METERS);
+        return 2 * Math.sin(angle / 2);
+    }
+
+    private void build(int lo, int hi) {
+        while (hi - lo > 1) {
+            int axis = widestAxis(lo, hi);
+            int middle = (lo + hi) >>> 1;
+            select(lo, hi - 1, middle, axis);
+            axes[middle] = (byte) axis;
+            build(lo, middle);
+            lo = middle + 1;
+        }
+    }
+
+    private int widestAxis(int lo, int hi) {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+        for (int i = lo; i < hi; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+            minZ = Math.min(minZ, zs[i]);
+            maxZ = Math.max(maxZ, zs[i]);
+        }
+        double spreadX = maxX - minX, spreadY = maxY - minY, spreadZ = maxZ - minZ;
+        if (spreadX >= spreadY && spreadX >= spreadZ) {
+            return 0;
+        }
+        return spreadY >= spreadZ ? 1 : 2;
+    }
+
+    private double coordinate(int position, int axis) {
+        return axis == 0 ? xs[position] : (axis == 1 ? ys[position] : zs[position]);
+    }
+
+    // Quickselect that leaves the k-th smallest coordinate of the axis at position k
+    private void select(int left, int right, int k, int axis) {
+        while (right > left) {
+            double pivot = coordinate((left + right) >>> 1, axis);
+            int i = left, j = right;
+            while (i <= j) {
+                while (coordinate(i, axis) < pivot) {
+                    i++;
+                }
+                while (coordinate(j, axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        double x = xs[i]; xs[i] = xs[j]; xs[j] = x;
+        double y = ys[i]; ys[i] = ys[j]; ys[j] = y;
+        double z = zs[i]; zs[i] = zs[j]; zs[j] = z;
+        int id = ids[i]; ids[i] = ids[j]; ids[j] = id;
+    }
+
+    private void searchNearest(Search search, int lo, int hi) {
+        if (lo >= hi) {
+            return;
+        }
+        int middle = (lo + hi) >>> 1;
+        offer(search, middle, squaredChord(middle, search.x, search.y, search.z));
+        if (hi - lo == 1) {
+            return;
+        }
+        int axis = axes[middle];
+        double difference = search.coordinate(axis) - coordinate(middle, axis);
+        if (difference < 0) {
+            searchNearest(search, lo, middle);
+            if (search.size < search.k || difference * difference < search.chords[0]) {
+                searchNearest(search, middle + 1, hi);
+            }
+        } else {
+            searchNearest(search, middle + 1, hi);
+            if (search.size < search.k || difference * difference < search.chords[0]) {
+                searchNearest(search, lo, middle);
+            }
+        }
+    }
+
+    private void searchWithin(Search search, int lo, int hi, double squaredChord) {
+        while (lo < hi) {
+            int middle = (lo + hi) >>> 1;
+            if (squaredChord(middle, search.x, search.y, search.z) <= squaredChord) {
+                if (search.size < search.positions.length) {
+                    search.positions[search.size] = middle;
+                }
+                search.size++;
+            }
+            if (hi - lo == 1) {
+                return;
+            }
+            int axis = axes[middle];
+            double difference = search.coordinate(axis) - coordinate(middle, axis);
+            if (difference <= 0 || difference * difference <= squaredChord) {
+                searchWithin(search, lo, middle, squaredChord);
+            }
+            if (difference >= 0 || difference * difference <= squaredChord) {
+                lo = middle + 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // Max-heap of the nearest points found so far, stored in the output arrays
+    private void offer(Search search, int position, double squaredChord) {
+        if (search.size < search.k) {
+            int i = search.size++;
+            search.positions[i] = position;
+            search.chords[i] = squaredChord;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (search.chords[parent] >= search.chords[i]) {
+                    break;
+                }
+                swapHeap(search, i, parent);
+                i = parent;
+            }
+        } else if (squaredChord < search.chords[0]) {
+            search.positions[0] = position;
+            search.chords[0] = squaredChord;
+            siftDown(search, 0, search.size);
+        }
+    }
+
+    private static void siftDown(Search search, int i, int size) {
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1, right = left + 1;
+            if (left < size && search.chords[left] > search.chords[largest]) {
+                largest = left;
+            }
+            if (right < size && search.chords[right] > search.chords[largest]) {
+                largest = right;
+            }
+            if (largest == i) {
+                return;
+            }
+            swapHeap(search, i, largest);
+            i = largest;
+        }
+    }
+
+    private static void swapHeap(Search search, int i, int j) {
+        int position = search.positions[i];
+        search.positions[i] = search.positions[j];
+        search.positions[j] = position;
+        double chord = search.chords[i];
+        search.chords[i] = search.chords[j];
+        search.chords[j] = chord;
+    }
+
+    private static class Search {
+        final double x, y, z;
+        final int k;
+        final int[] positions;
+        final double[] chords;
+        int size;
+
+        Search(double x, double y, double z, int k, int[] positions, double[] chords) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.k = k;
+            this.positions = positions;
+            this.chords = chords;
+        }
+
+        double coordinate(int axis) {
+            return axis == 0 ? x : (axis == 1 ? y : z);
+        }
+    }
+}
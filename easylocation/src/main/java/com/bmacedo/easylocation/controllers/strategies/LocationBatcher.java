@@ -0,0 +1,91 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import android.location.Location;
+
+import com.bmacedo.easylocation.controllers.util.TaskScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Holds the locations of a strategy whose provider cannot batch them, and delivers them together
+ * once the oldest one has waited for the maximum wait time, or the batch is full.
+ *
+ */
+public class LocationBatcher {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    private final Listener listener;
+    private final TaskScheduler scheduler;
+    private final int maxBatchSize;
+    private long maxWaitTime;
+    private List<Location> batch = new ArrayList<>();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * This interface receives the batches
+     */
+    public interface Listener {
+
+        void onBatchReady(List<Location> locations);
+
+    }
+
+    public LocationBatcher(Listener listener, TaskScheduler scheduler, long maxWaitTime, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Invalid maximum batch size: " + maxBatchSize);
+        }
+        this.listener = listener;
+        this.scheduler = scheduler;
+        this.maxBatchSize = maxBatchSize;
+        setMaxWaitTime(maxWaitTime);
+    }
+
+    /**
+     * Changes the maximum wait time. Applies from the next batch on.
+     */
+    public void setMaxWaitTime(long maxWaitTime) {
+        if (maxWaitTime < 0) {
+            throw new IllegalArgumentException("Invalid maximum wait time: " + maxWaitTime);
+        }
+        this.maxWaitTime = maxWaitTime;
+    }
+
+    public void add(Location location) {
+        batch.add(location);
+        if (batch.size() >= maxBatchSize) {
+            flush();
+        } else if (batch.size() == 1) {
+            scheduler.schedule(flushTask, maxWaitTime);
+        }
+    }
+
+    /**
+     * Delivers the locations held right away, if there are any
+     */
+    public void flush() {
+        scheduler.cancel(flushTask);
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Location> locations = batch;
+        batch = new ArrayList<>();
+        listener.onBatchReady(locations);
+    }
+
+    /**
+     * Discards the locations held
+     */
+    public void clear() {
+        scheduler.cancel(flushTask);
+        batch.clear();
+    }
+}
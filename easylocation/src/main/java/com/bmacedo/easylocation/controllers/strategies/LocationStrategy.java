@@ -1,6 +1,7 @@
 package com.bmacedo.easylocation.controllers.strategies;
 
 import android.content.Context;
+import android.location.Location;
 
 /**
  * Created by -Bernardo on 2015-07-22.
@@ -48,4 +49,13 @@ public abstract class LocationStrategy {
      */
     public abstract String getName();
 
+    /**
+     * Method that returns the last location known by the strategy without starting a request.
+     * The default implementation knows no location.
+     * @return the last known location, or null if there is none
+     */
+    public Location getLastKnownLocation() {
+        return null;
+    }
+
 }
@@ -0,0 +1,81 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import android.content.Context;
+
+/**
+ *
+ * This class describes a location strategy that can be registered in the
+ * {@link LocationStrategyRegistry}, so that the LocationService can use it without knowing its class.
+ *
+ * Besides creating the strategy, the descriptor declares what to expect from it:
+ *
+ * <ul>
+ * <li>cost: the battery cost of keeping the strategy running</li>
+ * <li>accuracy: the typical accuracy of its locations, in meters</li>
+ * <li>latency: the typical time until its first location, in milliseconds</li>
+ * </ul>
+ *
+ * These characteristics set the default order of the strategies and the time after which the
+ * next strategy of the chain is tried when no location was obtained yet. Once a strategy has been
+ * used on the device, its recorded statistics take precedence, see {@link StrategySelector}.
+ *
+ */
+public class LocationStrategyDescriptor {
+
+    public enum Cost {LOW, MEDIUM, HIGH}
+
+    /**
+     * Creates the strategy. It is called at most once per LocationService instance, on the main
+     * thread, when the strategy is needed for the first time.
+     */
+    public interface Factory {
+        LocationStrategy create(LocationStrategyManager manager, Context context);
+    }
+
+    private final String name;
+    private final Cost cost;
+    private final float accuracy;
+    private final long latency;
+    private final Factory factory;
+
+    /**
+     * @param name the unique name of the strategy, the same returned by {@link LocationStrategy#getName()}
+     * @param cost the battery cost of the strategy
+     * @param accuracy the typical accuracy of the locations, in meters
+     * @param latency the typical time until the first location, in milliseconds, or 0 if unknown
+     * @param factory the object that creates the strategy
+     */
+    public LocationStrategyDescriptor(String name, Cost cost, float accuracy, long latency, Factory factory) {
+        if (name == null || cost == null || factory == null) {
+            throw new IllegalArgumentException("name, cost and factory are required");
+        }
+        if (accuracy < 0 || latency < 0) {
+            throw new IllegalArgumentException("accuracy and latency cannot be negative");
+        }
+        this.name = name;
+        this.cost = cost;
+        this.accuracy = accuracy;
+        this.latency = latency;
+        this.factory = factory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Cost getCost() {
+        return cost;
+    }
+
+    public float getAccuracy() {
+        return accuracy;
+    }
+
+    public long getLatency() {
+        return latency;
+    }
+
+    public Factory getFactory() {
+        return factory;
+    }
+}
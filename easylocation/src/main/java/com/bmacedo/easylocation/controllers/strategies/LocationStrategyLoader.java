@@ -0,0 +1,98 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * This class finds the location strategies that are shipped in separate artifacts.
+ *
+ * The core library does not depend on the strategy modules: the Google Services strategy lives in
+ * <b>easylocation-gms</b> and the device providers strategy lives in <b>easylocation-device</b>.
+ * An app only pays for the modules it adds as dependencies, so the strategies are looked up by
+ * class name and created through their static <b>getInstance(LocationStrategyManager, Context)</b>
+ * method.
+ *
+ */
+public class LocationStrategyLoader {
+
+    public static final String SERVICES = "Google_Services_Strategy";
+    public static final String DEVICE = "Fallback_Strategy";
+
+    private static final String TAG = "LocationStrategyLoader";
+
+    private static final String SERVICES_CLASS =
+            "com.bmacedo.easylocation.controllers.strategies.ServicesLocationStrategy";
+    private static final String DEVICE_CLASS =
+            "com.bmacedo.easylocation.controllers.strategies.FallbackLocationStrategy";
+
+    private LocationStrategyLoader() {
+    }
+
+    /**
+     * @param name the strategy name
+     * @return true if the module that contains the strategy is in the classpath
+     */
+    public static boolean isAvailable(String name) {
+        return findClass(name) != null;
+    }
+
+    /**
+     * @return the names of the available strategies, in the default order
+     */
+    public static List<String> getAvailableStrategies() {
+        List<String> names = new ArrayList<>(2);
+        if (isAvailable(SERVICES)) {
+            names.add(SERVICES);
+        }
+        if (isAvailable(DEVICE)) {
+            names.add(DEVICE);
+        }
+        return names;
+    }
+
+    /**
+     * Returns the unique instance of the strategy.
+     * @return the strategy, or null if its module is not in the classpath
+     */
+    public static LocationStrategy load(String name, LocationStrategyManager manager, Context context) {
+        Class<?> strategyClass = findClass(name);
+        if (strategyClass == null) {
+            Log.e(TAG, "The strategy " + name + " is not available. Add its module to the app dependencies");
+            return null;
+        }
+        try {
+            Method getInstance = strategyClass.getMethod("getInstance", LocationStrategyManager.class, Context.class);
+            return (LocationStrategy) getInstance.invoke(null, manager, context);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("The strategy " + name + " does not declare getInstance", e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Could not create the strategy " + name, cause);
+        }
+    }
+
+    private static Class<?> findClass(String name) {
+        String className;
+        if (SERVICES.equals(name)) {
+            className = SERVICES_CLASS;
+        } else if (DEVICE.equals(name)) {
+            className = DEVICE_CLASS;
+        } else {
+            return null;
+        }
+        try {
+            return Class.forName(className, false, LocationStrategyLoader.class.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import android.location.Location;
 
 import com.bmacedo.easylocation.models.LocationStrategyError;
 
+import java.util.List;
+
 
 /**
  * 
@@ -16,6 +18,12 @@ public interface LocationStrategyManager {
 
     void onLocationObtained(Location location);
 
+    /**
+     * Called instead of {@link #onLocationObtained(Location)} when batching is enabled
+     * @param locations the locations, ordered from the oldest to the newest
+     */
+    void onLocationsObtained(List<Location> locations);
+
     void onStrategyError(LocationStrategyError error);
 
 }
@@ -0,0 +1,113 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * This class keeps the location strategies that the LocationService may use.
+ *
+ * The strategies of the gms and device modules are registered automatically when their modules are
+ * in the classpath. Other strategies, e.g. an indoor or a replay source, are registered by the app
+ * with {@link #register(LocationStrategyDescriptor)}. The registration lives in the app process, so
+ * it should be done before the first location request, e.g. in Application.onCreate, in order to
+ * survive a restart of the service by the system.
+ *
+ */
+public class LocationStrategyRegistry {
+
+    // Characteristics declared for the strategies shipped with the library
+    private static final float SERVICES_ACCURACY = 20;
+    private static final long SERVICES_LATENCY = 2000;
+    private static final float DEVICE_ACCURACY = 30;
+    private static final long DEVICE_LATENCY = 10000;
+
+    // Object that stores the unique instance of this class
+    private static LocationStrategyRegistry instance;
+
+    // Descriptors by strategy name, in registration order
+    private final Map<String, LocationStrategyDescriptor> descriptors = new LinkedHashMap<>();
+
+    private LocationStrategyRegistry() {
+        registerBuiltIn(LocationStrategyLoader.SERVICES, LocationStrategyDescriptor.Cost.LOW,
+                SERVICES_ACCURACY, SERVICES_LATENCY);
+        registerBuiltIn(LocationStrategyLoader.DEVICE, LocationStrategyDescriptor.Cost.HIGH,
+                DEVICE_ACCURACY, DEVICE_LATENCY);
+    }
+
+    public static synchronized LocationStrategyRegistry getInstance() {
+        if (instance == null) {
+            instance = new LocationStrategyRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a strategy, replacing the one registered with the same name, if any.
+     * The change applies to the location requests started afterwards.
+     */
+    public synchronized void register(LocationStrategyDescriptor descriptor) {
+        descriptors.put(descriptor.getName(), descriptor);
+    }
+
+    /**
+     * Removes a strategy. The change applies to the location requests started afterwards.
+     * @return true if the strategy was registered
+     */
+    public synchronized boolean unregister(String name) {
+        return descriptors.remove(name) != null;
+    }
+
+    /**
+     * @return the descriptor of the strategy, or null if it is not registered
+     */
+    public synchronized LocationStrategyDescriptor getDescriptor(String name) {
+        return descriptors.get(name);
+    }
+
+    /**
+     * Returns the registered strategies in priority order: the cheaper first, then the more
+     * accurate, then the faster. Strategies with the same characteristics keep the registration order.
+     */
+    public synchronized List<LocationStrategyDescriptor> getDescriptors() {
+        List<LocationStrategyDescriptor> sorted = new ArrayList<>(descriptors.values());
+        Collections.sort(sorted, PRIORITY_ORDER);
+        return sorted;
+    }
+
+    private void registerBuiltIn(final String name, LocationStrategyDescriptor.Cost cost, float accuracy, long latency) {
+        if (!LocationStrategyLoader.isAvailable(name)) {
+            return;
+        }
+        register(new LocationStrategyDescriptor(name, cost, accuracy, latency, new LocationStrategyDescriptor.Factory() {
+            @Override
+            public LocationStrategy create(LocationStrategyManager manager, Context context) {
+                return LocationStrategyLoader.load(name, manager, context);
+            }
+        }));
+    }
+
+    private static final Comparator<LocationStrategyDescriptor> PRIORITY_ORDER = new Comparator<LocationStrategyDescriptor>() {
+        @Override
+        public int compare(LocationStrategyDescriptor a, LocationStrategyDescriptor b) {
+            int result = a.getCost().compareTo(b.getCost());
+            if (result == 0) {
+                result = Float.compare(a.getAccuracy(), b.getAccuracy());
+            }
+            if (result == 0) {
+                result = compareLongs(a.getLatency(), b.getLatency());
+            }
+            return result;
+        }
+    };
+
+    private static int compareLongs(long a, long b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+}
@@ -0,0 +1,140 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import com.bmacedo.easylocation.controllers.util.Clock;
+import com.bmacedo.easylocation.controllers.util.ExponentialBackoff;
+import com.bmacedo.easylocation.controllers.util.TaskScheduler;
+
+/**
+ *
+ * This class schedules reconnection attempts after a connection with a location provider is
+ * lost, using a jittered exponential backoff.
+ *
+ * The attempts continue until the {@link Client} reports that it is connected again or until
+ * the deadline is reached. When the deadline is reached, the {@link Listener} is notified so
+ * that the strategy can give up and let the {@link LocationStrategyManager} switch to another
+ * strategy.
+ *
+ * Both the clock and the scheduler are injected, which allows this class to be exercised with
+ * fake implementations.
+ *
+ */
+public class ReconnectionScheduler {
+
+    /**
+     * The connection that is being recovered
+     */
+    public interface Client {
+
+        boolean isConnected();
+
+        /**
+         * Starts a new connection attempt. The result is expected to be reported back through
+         * {@link ReconnectionScheduler#onConnectionRestored()}.
+         */
+        void reconnect();
+    }
+
+    public interface Listener {
+
+        /**
+         * Called when the connection could not be restored before the deadline
+         */
+        void onReconnectionDeadlineExceeded();
+    }
+
+    private final Client client;
+    private final Listener listener;
+    private final Clock clock;
+    private final TaskScheduler taskScheduler;
+    private final ExponentialBackoff backoff;
+    private final long deadlineMillis;
+
+    // Moment when the connection was lost. Only meaningful while reconnecting.
+    private long connectionLostAt;
+    // Variable that indicates if there is a reconnection in progress
+    private boolean isReconnecting = false;
+
+    private final Runnable attemptTask = new Runnable() {
+        @Override
+        public void run() {
+            attemptReconnection();
+        }
+    };
+
+    public ReconnectionScheduler(Client client, Listener listener, Clock clock, TaskScheduler taskScheduler,
+                                 ExponentialBackoff backoff, long deadlineMillis) {
+        this.client = client;
+        this.listener = listener;
+        this.clock = clock;
+        this.taskScheduler = taskScheduler;
+        this.backoff = backoff;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * Starts the reconnection attempts. Calling this method while already reconnecting has no
+     * effect, so the original deadline is preserved.
+     */
+    public void onConnectionLost() {
+        if (!isReconnecting) {
+            isReconnecting = true;
+            connectionLostAt = clock.elapsedRealtime();
+            backoff.reset();
+            scheduleNextAttempt();
+        }
+    }
+
+    /**
+     * Stops the reconnection attempts because the connection is available again
+     */
+    public void onConnectionRestored() {
+        cancel();
+    }
+
+    /**
+     * Stops the reconnection attempts without notifying the listener
+     */
+    public void cancel() {
+        if (isReconnecting) {
+            isReconnecting = false;
+            taskScheduler.cancel(attemptTask);
+            backoff.reset();
+        }
+    }
+
+    public boolean isReconnecting() {
+        return isReconnecting;
+    }
+
+    /**
+     * @return the number of attempts scheduled since the connection was lost
+     */
+    public int getAttempts() {
+        return backoff.getAttempts();
+    }
+
+    private void attemptReconnection() {
+        if (!isReconnecting) {
+            return;
+        }
+        if (client.isConnected()) {
+            cancel();
+        } else if (getRemainingTime() <= 0) {
+            cancel();
+            listener.onReconnectionDeadlineExceeded();
+        } else {
+            client.reconnect();
+            scheduleNextAttempt();
+        }
+    }
+
+    private void scheduleNextAttempt() {
+        // The last attempt is scheduled exactly at the deadline, so that it is verified on time
+        long delay = Math.min(backoff.nextDelay(), Math.max(0, getRemainingTime()));
+        taskScheduler.schedule(attemptTask, delay);
+    }
+
+    private long getRemainingTime() {
+        return deadlineMillis - (clock.elapsedRealtime() - connectionLostAt);
+    }
+}
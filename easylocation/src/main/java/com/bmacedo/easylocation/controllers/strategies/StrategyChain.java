@@ -0,0 +1,51 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ * This class keeps the strategies that will be tried, in order, for a location request.
+ *
+ * The first strategy is the current one. When it fails, or takes too long to obtain the first
+ * location, the LocationService moves to the next one with {@link #next()}, until the chain ends.
+ *
+ */
+public class StrategyChain {
+
+    private final List<LocationStrategyDescriptor> descriptors;
+    // Position of the current strategy in the chain
+    private int position;
+
+    public StrategyChain(List<LocationStrategyDescriptor> descriptors) {
+        if (descriptors.isEmpty()) {
+            throw new IllegalArgumentException("The strategy chain cannot be empty");
+        }
+        this.descriptors = Collections.unmodifiableList(new ArrayList<>(descriptors));
+    }
+
+    public LocationStrategyDescriptor getCurrent() {
+        return descriptors.get(position);
+    }
+
+    public boolean hasNext() {
+        return position + 1 < descriptors.size();
+    }
+
+    /**
+     * Moves to the next strategy of the chain.
+     * @return the next strategy, or null if the chain ended
+     */
+    public LocationStrategyDescriptor next() {
+        if (!hasNext()) {
+            return null;
+        }
+        position++;
+        return descriptors.get(position);
+    }
+
+    public List<LocationStrategyDescriptor> getDescriptors() {
+        return descriptors;
+    }
+}
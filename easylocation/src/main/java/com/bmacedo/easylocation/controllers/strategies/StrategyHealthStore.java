@@ -0,0 +1,130 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import android.content.Context;
+import android.location.Location;
+
+import com.bmacedo.easylocation.controllers.util.Clock;
+import com.bmacedo.easylocation.controllers.util.LocationUtil;
+import com.bmacedo.easylocation.controllers.util.PreferenceUtil;
+import com.bmacedo.easylocation.models.StrategyHealth;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *
+ * This class records, for each strategy, how long it takes to obtain the first location, how
+ * often it fails and how accurate its first location is. The statistics are persisted in the
+ * SharedPreferences and used by {@link StrategySelector} to choose the order of the strategies.
+ *
+ * Each strategy run is an attempt. An attempt ends at the first location obtained after the
+ * strategy was started or at the first failure, whichever comes first.
+ *
+ */
+public class StrategyHealthStore {
+
+    private static final String HEALTH_PREFERENCE_KEY = "easylocation_strategy_health";
+    private static final String STARTS_PREFERENCE_KEY = "easylocation_strategy_starts";
+
+    private final Clock clock;
+    private final Map<String, StrategyHealth> healthByStrategy = new HashMap<>();
+
+    // Number of times the strategies were selected. Used to schedule explorations.
+    private int starts;
+    // Strategy whose attempt is in progress, or null if no attempt is in progress
+    private String currentStrategy;
+    // Moment when the current attempt was started
+    private long attemptStartedAt;
+
+    public StrategyHealthStore(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Loads the statistics saved by {@link #save(Context)}
+     */
+    public static StrategyHealthStore load(Context context, Clock clock) {
+        StrategyHealthStore store = new StrategyHealthStore(clock);
+        StrategyHealth[] saved = PreferenceUtil.getPreference(context, HEALTH_PREFERENCE_KEY, StrategyHealth[].class);
+        if (saved != null) {
+            for (StrategyHealth health : saved) {
+                store.healthByStrategy.put(health.getStrategy(), health);
+            }
+        }
+        String starts = PreferenceUtil.getPreference(context, STARTS_PREFERENCE_KEY, "");
+        if (!starts.isEmpty()) {
+            store.starts = Integer.parseInt(starts);
+        }
+        return store;
+    }
+
+    public void save(Context context) {
+        PreferenceUtil.savePreference(context, HEALTH_PREFERENCE_KEY,
+                healthByStrategy.values().toArray(new StrategyHealth[healthByStrategy.size()]));
+        PreferenceUtil.savePreference(context, STARTS_PREFERENCE_KEY, String.valueOf(starts));
+    }
+
+    /**
+     * @return the statistics of the strategy, or null if it was never attempted
+     */
+    public StrategyHealth getHealth(String strategy) {
+        return healthByStrategy.get(strategy);
+    }
+
+    public int getStarts() {
+        return starts;
+    }
+
+    public void onSelection() {
+        starts++;
+    }
+
+    public void onStrategyStarted(String strategy) {
+        if (strategy.equals(currentStrategy)) {
+            // Restarting the same strategy (e.g. after an error resolution) continues the attempt
+            return;
+        }
+        currentStrategy = strategy;
+        attemptStartedAt = clock.elapsedRealtime();
+        getOrCreate(strategy).onAttempt();
+    }
+
+    /**
+     * Ends the current attempt successfully if the location was obtained after the strategy started.
+     * Cached locations delivered right away by the strategies are not taken into account, since
+     * they say nothing about the time needed to obtain a new one.
+     */
+    public void onLocationObtained(String strategy, Location location) {
+        long attemptDuration = clock.elapsedRealtime() - attemptStartedAt;
+        if (strategy.equals(currentStrategy) && LocationUtil.getAgeMillis(location) <= attemptDuration) {
+            getOrCreate(strategy).onFirstFix(attemptDuration, location.getAccuracy());
+            currentStrategy = null;
+        }
+    }
+
+    public void onStrategyFailed(String strategy) {
+        if (strategy.equals(currentStrategy)) {
+            getOrCreate(strategy).onFailure(clock.elapsedRealtime() - attemptStartedAt);
+            currentStrategy = null;
+        }
+    }
+
+    /**
+     * Abandons the current attempt without counting it as a success or a failure
+     */
+    public void onStrategyStopped() {
+        if (currentStrategy != null) {
+            healthByStrategy.get(currentStrategy).onAttemptAbandoned();
+            currentStrategy = null;
+        }
+    }
+
+    private StrategyHealth getOrCreate(String strategy) {
+        StrategyHealth health = healthByStrategy.get(strategy);
+        if (health == null) {
+            health = new StrategyHealth(strategy);
+            healthByStrategy.put(strategy, health);
+        }
+        return health;
+    }
+}
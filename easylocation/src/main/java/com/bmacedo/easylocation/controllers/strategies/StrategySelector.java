@@ -0,0 +1,115 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import com.bmacedo.easylocation.models.StrategyHealth;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * This class chooses the order in which the strategies of a chain are tried, based on the
+ * statistics recorded by the {@link StrategyHealthStore}.
+ *
+ * For two strategies, the expected time until the first location is estimated as:
+ *
+ * <pre>
+ * E(A, B) = (1 - fA) * tA + fA * (failA + (1 - fB) * tB + fB * failB)
+ * </pre>
+ *
+ * where f is the failure rate, t the average time to the first location and fail the average time
+ * until a failure. E(A, B) is lower than E(B, A) exactly when cA / (1 - fA) is lower than
+ * cB / (1 - fB), where c = (1 - f) * t + f * fail is the expected time spent on the strategy. So
+ * sorting by this ratio gives the fastest order for chains of any length. Until a strategy has
+ * enough attempts, its statistics are blended with a prior, which uses the latency declared in its
+ * {@link LocationStrategyDescriptor}.
+ *
+ * Every {@link #EXPLORATION_INTERVAL} selections the default order is used regardless of the
+ * statistics, so that a strategy that was failing gets the chance to show that it recovered.
+ *
+ */
+public class StrategySelector {
+
+    public static final int EXPLORATION_INTERVAL = 10;
+
+    // Number of attempts that the prior is worth when blended with the recorded statistics
+    private static final double PRIOR_WEIGHT = 3;
+    private static final double PRIOR_FAILURE_RATE = 0.1;
+    private static final double PRIOR_TIME_TO_FIRST_FIX = 5000;
+    private static final double PRIOR_TIME_TO_FAILURE = 2000;
+
+    private final StrategyHealthStore store;
+
+    public StrategySelector(StrategyHealthStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @param defaultOrder the strategies in the default order
+     * @return the strategies in the order they should be tried
+     */
+    public List<LocationStrategyDescriptor> selectOrder(List<LocationStrategyDescriptor> defaultOrder) {
+        store.onSelection();
+        List<LocationStrategyDescriptor> order = new ArrayList<>(defaultOrder);
+        if (order.size() < 2 || store.getStarts() % EXPLORATION_INTERVAL == 0) {
+            return order;
+        }
+        final Map<LocationStrategyDescriptor, Double> ranks = new HashMap<>();
+        for (LocationStrategyDescriptor descriptor : order) {
+            ranks.put(descriptor, getRank(descriptor));
+        }
+        // The sort is stable, so strategies with the same rank keep the default order
+        Collections.sort(order, new Comparator<LocationStrategyDescriptor>() {
+            @Override
+            public int compare(LocationStrategyDescriptor a, LocationStrategyDescriptor b) {
+                return Double.compare(ranks.get(a), ranks.get(b));
+            }
+        });
+        return order;
+    }
+
+    private double getRank(LocationStrategyDescriptor descriptor) {
+        double failureRate = getFailureRate(descriptor.getName());
+        return getTimeSpent(descriptor, failureRate) / (1 - failureRate);
+    }
+
+    private double getTimeSpent(LocationStrategyDescriptor descriptor, double failureRate) {
+        return (1 - failureRate) * getTimeToFirstFix(descriptor) + failureRate * getTimeToFailure(descriptor.getName());
+    }
+
+    private double getFailureRate(String strategy) {
+        StrategyHealth health = store.getHealth(strategy);
+        if (health == null) {
+            return PRIOR_FAILURE_RATE;
+        }
+        return blend(PRIOR_FAILURE_RATE, health.getFailureRate(), health.getAttempts());
+    }
+
+    private double getTimeToFirstFix(LocationStrategyDescriptor descriptor) {
+        double prior = descriptor.getLatency() > 0 ? descriptor.getLatency() : PRIOR_TIME_TO_FIRST_FIX;
+        StrategyHealth health = store.getHealth(descriptor.getName());
+        if (health == null) {
+            return prior;
+        }
+        int fixes = health.getAttempts() - health.getFailures();
+        return blend(prior, health.getAverageTimeToFirstFix(), fixes);
+    }
+
+    private double getTimeToFailure(String strategy) {
+        StrategyHealth health = store.getHealth(strategy);
+        if (health == null) {
+            return PRIOR_TIME_TO_FAILURE;
+        }
+        return blend(PRIOR_TIME_TO_FAILURE, health.getAverageTimeToFailure(), health.getFailures());
+    }
+
+    private static double blend(double prior, double average, int samples) {
+        if (samples <= 0) {
+            return prior;
+        }
+        return (PRIOR_WEIGHT * prior + samples * average) / (PRIOR_WEIGHT + samples);
+    }
+}
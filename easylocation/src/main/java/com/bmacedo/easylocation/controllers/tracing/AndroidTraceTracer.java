@@ -0,0 +1,85 @@
+package com.bmacedo.easylocation.controllers.tracing;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+import java.lang.reflect.Method;
+
+/**
+ *
+ * Tracer that writes the sections to the system trace, where they show up in systrace and
+ * Perfetto captures.
+ *
+ * {@link Trace} is only available from API 18, so nothing is traced on older devices. The
+ * asynchronous sections are only available from API 29, and are looked up by reflection, since
+ * the library compiles against an older SDK.
+ *
+ */
+public class AndroidTraceTracer implements Tracer {
+
+    private static final boolean IS_SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    private static final int ASYNC_SECTIONS_API = 29;
+    // Section names longer than this are rejected by Trace
+    private static final int MAX_NAME_LENGTH = 127;
+
+    private final Method beginAsyncSection;
+    private final Method endAsyncSection;
+
+    public AndroidTraceTracer() {
+        Method begin = null;
+        Method end = null;
+        if (Build.VERSION.SDK_INT >= ASYNC_SECTIONS_API) {
+            try {
+                begin = Trace.class.getMethod("beginAsyncSection", String.class, int.class);
+                end = Trace.class.getMethod("endAsyncSection", String.class, int.class);
+            } catch (NoSuchMethodException e) {
+                begin = null;
+                end = null;
+            }
+        }
+        beginAsyncSection = begin;
+        endAsyncSection = end;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @Override
+    public void beginSection(String name) {
+        if (IS_SUPPORTED) {
+            Trace.beginSection(truncate(name));
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @Override
+    public void endSection() {
+        if (IS_SUPPORTED) {
+            Trace.endSection();
+        }
+    }
+
+    @Override
+    public void beginAsyncSection(String name, int cookie) {
+        invoke(beginAsyncSection, name, cookie);
+    }
+
+    @Override
+    public void endAsyncSection(String name, int cookie) {
+        invoke(endAsyncSection, name, cookie);
+    }
+
+    private static void invoke(Method method, String name, int cookie) {
+        if (method == null) {
+            return;
+        }
+        try {
+            method.invoke(null, truncate(name), cookie);
+        } catch (Exception e) {
+            // Tracing must never break the location updates
+        }
+    }
+
+    private static String truncate(String name) {
+        return name.length() > MAX_NAME_LENGTH ? name.substring(0, MAX_NAME_LENGTH) : name;
+    }
+}
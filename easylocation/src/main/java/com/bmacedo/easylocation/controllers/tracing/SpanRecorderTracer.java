@@ -0,0 +1,142 @@
+package com.bmacedo.easylocation.controllers.tracing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * Tracer that keeps the finished sections in memory as spans, with their durations, so that they
+ * can be inspected in tests or in the JVM, where {@link android.os.Trace} is not available.
+ *
+ * Sections that are never ended are not recorded. This class is thread safe.
+ *
+ */
+public class SpanRecorderTracer implements Tracer {
+
+    // Sections begun and not ended in each thread, innermost last
+    private final ThreadLocal<Deque<Span>> openSections = new ThreadLocal<Deque<Span>>() {
+        @Override
+        protected Deque<Span> initialValue() {
+            return new ArrayDeque<>();
+        }
+    };
+    // Asynchronous sections begun and not ended, by name and cookie
+    private final Map<String, Span> openAsyncSections = new HashMap<>();
+    private final List<Span> spans = new ArrayList<>();
+
+    @Override
+    public void beginSection(String name) {
+        openSections.get().addLast(new Span(name, Thread.currentThread().getName(), System.nanoTime()));
+    }
+
+    @Override
+    public void endSection() {
+        Span span = openSections.get().pollLast();
+        if (span != null) {
+            finish(span);
+        }
+    }
+
+    @Override
+    public void beginAsyncSection(String name, int cookie) {
+        Span span = new Span(name, Thread.currentThread().getName(), System.nanoTime());
+        synchronized (this) {
+            openAsyncSections.put(getAsyncKey(name, cookie), span);
+        }
+    }
+
+    @Override
+    public void endAsyncSection(String name, int cookie) {
+        Span span;
+        synchronized (this) {
+            span = openAsyncSections.remove(getAsyncKey(name, cookie));
+        }
+        if (span != null) {
+            finish(span);
+        }
+    }
+
+    /**
+     * @return the finished spans, in the order they ended
+     */
+    public synchronized List<Span> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    /**
+     * @return the finished spans with the given name, in the order they ended
+     */
+    public synchronized List<Span> getSpans(String name) {
+        List<Span> result = new ArrayList<>();
+        for (Span span : spans) {
+            if (span.getName().equals(name)) {
+                result.add(span);
+            }
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        spans.clear();
+        openAsyncSections.clear();
+    }
+
+    private void finish(Span span) {
+        span.endNanos = System.nanoTime();
+        synchronized (this) {
+            spans.add(span);
+        }
+    }
+
+    private static String getAsyncKey(String name, int cookie) {
+        return name + '#' + cookie;
+    }
+
+    /**
+     * A finished section
+     */
+    public static class Span {
+        private final String name;
+        private final String threadName;
+        private final long startNanos;
+        private long endNanos;
+
+        Span(String name, String threadName, long startNanos) {
+            this.name = name;
+            this.threadName = threadName;
+            this.startNanos = startNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the name of the thread where the section began
+         */
+        public String getThreadName() {
+            return threadName;
+        }
+
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        public long getEndNanos() {
+            return endNanos;
+        }
+
+        public long getDurationNanos() {
+            return endNanos - startNanos;
+        }
+
+        @Override
+        public String toString() {
+            return name + " [" + threadName + "] " + (getDurationNanos() / 1000) + "us";
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.bmacedo.easylocation.controllers.tracing;
+
+/**
+ *
+ * Receives the sections traced by the library, e.g. to show them in a systrace capture
+ * ({@link AndroidTraceTracer}) or to measure them in tests ({@link SpanRecorderTracer}).
+ *
+ * Synchronous sections begin and end in the same thread and are nested, as in
+ * {@link android.os.Trace}. Asynchronous sections, such as the connection with Google Services
+ * or the check of the location settings, end in a callback and are identified by their name and
+ * a cookie.
+ *
+ * Install it with {@link com.bmacedo.easylocation.api.EasyLocationConfiguration#setTracer(Tracer)}.
+ * The methods are called from the main thread and must be cheap.
+ *
+ */
+public interface Tracer {
+
+    void beginSection(String name);
+
+    /**
+     * Ends the last section begun in this thread
+     */
+    void endSection();
+
+    void beginAsyncSection(String name, int cookie);
+
+    void endAsyncSection(String name, int cookie);
+}
@@ -0,0 +1,60 @@
+package com.bmacedo.easylocation.controllers.tracing;
+
+import com.bmacedo.easylocation.api.EasyLocationConfiguration;
+
+/**
+ *
+ * Entry point of the tracing hooks of the library. The hooks are written as
+ * <pre>
+ * if (Tracing.ENABLED) {
+ *     Tracing.beginSection(Tracing.STRATEGY_START);
+ * }
+ * </pre>
+ *
+ * The tracer is read from the {@link EasyLocationConfiguration} once, when this class is
+ * initialized, and kept in static final fields. So, when no tracer is installed, each hook costs a
+ * check of a static final flag, which the compiler removes.
+ *
+ */
+public final class Tracing {
+
+    // Names of the sections
+    public static final String STRATEGY_START = "EasyLocation:strategyStart";
+    public static final String STRATEGY_STOP = "EasyLocation:strategyStop";
+    public static final String CONNECT = "EasyLocation:connect";
+    public static final String SETTINGS_CHECK = "EasyLocation:settingsCheck";
+    public static final String PROVIDER_REQUEST = "EasyLocation:providerRequest";
+    public static final String BEST_PROVIDER = "EasyLocation:bestProvider";
+    public static final String DISPATCH = "EasyLocation:dispatch";
+
+    private static final Tracer TRACER = EasyLocationConfiguration.getInstance().sealTracer();
+    // True if a tracer is installed
+    public static final boolean ENABLED = TRACER != null;
+
+    private Tracing() {
+    }
+
+    public static void beginSection(String name) {
+        if (ENABLED) {
+            TRACER.beginSection(name);
+        }
+    }
+
+    public static void endSection() {
+        if (ENABLED) {
+            TRACER.endSection();
+        }
+    }
+
+    public static void beginAsyncSection(String name, int cookie) {
+        if (ENABLED) {
+            TRACER.beginAsyncSection(name, cookie);
+        }
+    }
+
+    public static void endAsyncSection(String name, int cookie) {
+        if (ENABLED) {
+            TRACER.endAsyncSection(name, cookie);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.bmacedo.easylocation.controllers.upload;
+
+import com.bmacedo.easylocation.models.FixRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ *
+ * Encodes batches of fixes in a compact binary format.
+ *
+ * The batch starts with a header of 3 bytes (the magic number 0x454c and the version), followed by
+ * the number of fixes as a varint, and by the fixes compressed with zlib. Each fix is encoded as
+ * the difference from the previous one, which is small for consecutive fixes:
+ * <ul>
+ *     <li>flags: bit 0 altitude, bit 1 speed, bit 2 bearing, bit 3 accuracy present</li>
+ *     <li>time difference in milliseconds, zigzag varint</li>
+ *     <li>latitude and longitude differences in 1e-7 degrees, zigzag varints</li>
+ *     <li>accuracy in decimeters, varint, if present</li>
+ *     <li>altitude in decimeters, zigzag varint, if present</li>
+ *     <li>speed in centimeters per second, varint, if present</li>
+ *     <li>bearing in tenths of degree, varint, if present</li>
+ * </ul>
+ *
+ */
+public class FixBatchEncoder {
+
+    public static final String CONTENT_TYPE = "application/x-easylocation-fixes";
+
+    private static final int MAGIC = 0x454c;
+    private static final int VERSION = 1;
+
+    private static final int HAS_ALTITUDE = 1;
+    private static final int HAS_SPEED = 1 << 1;
+    private static final int HAS_BEARING = 1 << 2;
+    private static final int HAS_ACCURACY = 1 << 3;
+
+    private static final double E7 = 1e7;
+
+    private FixBatchEncoder() {
+    }
+
+    public static byte[] encode(List<FixRecord> fixes) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(fixes.size() * 12);
+        long previousTime = 0;
+        long previousLatitude = 0;
+        long previousLongitude = 0;
+        for (FixRecord fix : fixes) {
+            int flags = 0;
+            if (!Double.isNaN(fix.getAltitude())) {
+                flags |= HAS_ALTITUDE;
+            }
+            if (!Float.isNaN(fix.getSpeed())) {
+                flags |= HAS_SPEED;
+            }
+            if (!Float.isNaN(fix.getBearing())) {
+                flags |= HAS_BEARING;
+            }
+            if (!Float.isNaN(fix.getAccuracy())) {
+                flags |= HAS_ACCURACY;
+            }
+            long latitude = Math.round(fix.getLatitude() * E7);
+            long longitude = Math.round(fix.getLongitude() * E7);
+            body.write(flags);
+            writeSignedVarint(body, fix.getTime() - previousTime);
+            writeSignedVarint(body, latitude - previousLatitude);
+            writeSignedVarint(body, longitude - previousLongitude);
+            if ((flags & HAS_ACCURACY) != 0) {
+                writeVarint(body, Math.max(0, Math.round(fix.getAccuracy() * 10)));
+            }
+            if ((flags & HAS_ALTITUDE) != 0) {
+                writeSignedVarint(body, Math.round(fix.getAltitude() * 10));
+            }
+            if ((flags & HAS_SPEED) != 0) {
+                writeVarint(body, Math.max(0, Math.round(fix.getSpeed() * 100)));
+            }
+            if ((flags & HAS_BEARING) != 0) {
+                writeVarint(body, Math.max(0, Math.round(fix.getBearing() * 10)));
+            }
+            previousTime = fix.getTime();
+            previousLatitude = latitude;
+            previousLongitude = longitude;
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(body.size() / 2 + 16);
+        output.write(MAGIC >>> 8);
+        output.write(MAGIC & 0xff);
+        output.write(VERSION);
+        writeVarint(output, fixes.size());
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(body.toByteArray());
+            deflater.finish();
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                output.write(buffer, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * @return the number of fixes of a batch produced by {@link #encode(List)}, read from its header
+     * @throws IOException if the batch is malformed
+     */
+    public static int getFixCount(byte[] batch) throws IOException {
+        checkHeader(batch);
+        return (int) readVarint(batch, new int[]{3}, batch.length);
+    }
+
+    /**
+     * Decodes a batch produced by {@link #encode(List)}, e.g. on a test server
+     * @throws IOException if the batch is malformed
+     */
+    public static List<FixRecord> decode(byte[] batch) throws IOException {
+        checkHeader(batch);
+        int[] position = {3};
+        int count = (int) readVarint(batch, position, batch.length);
+
+        Inflater inflater = new Inflater();
+        ByteArrayOutputStream inflated = new ByteArrayOutputStream(count * 12);
+        try {
+            inflater.setInput(batch, position[0], batch.length - position[0]);
+            byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated batch of fixes");
+                }
+                inflated.write(buffer, 0, length);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted batch of fixes", e);
+        } finally {
+            inflater.end();
+        }
+
+        byte[] body = inflated.toByteArray();
+        int[] offset = {0};
+        List<FixRecord> fixes = new ArrayList<>(count);
+        long time = 0;
+        long latitude = 0;
+        long longitude = 0;
+        for (int i = 0; i < count; i++) {
+            if (offset[0] >= body.length) {
+                throw new IOException("Truncated batch of fixes");
+            }
+            int flags = body[offset[0]++];
+            time += readSignedVarint(body, offset, body.length);
+            latitude += readSignedVarint(body, offset, body.length);
+            longitude += readSignedVarint(body, offset, body.length);
+            float accuracy = (flags & HAS_ACCURACY) != 0 ? readVarint(body, offset, body.length) / 10f : Float.NaN;
+            double altitude = (flags & HAS_ALTITUDE) != 0 ? readSignedVarint(body, offset, body.length) / 10.0 : Double.NaN;
+            float speed = (flags & HAS_SPEED) != 0 ? readVarint(body, offset, body.length) / 100f : Float.NaN;
+            float bearing = (flags & HAS_BEARING) != 0 ? readVarint(body, offset, body.length) / 10f : Float.NaN;
+            fixes.add(new FixRecord(time, latitude / E7, longitude / E7, accuracy, altitude, speed, bearing));
+        }
+        return fixes;
+    }
+
+    private static void checkHeader(byte[] batch) throws IOException {
+        if (batch.length < 4 || ((batch[0] & 0xff) << 8 | (batch[1] & 0xff)) != MAGIC || batch[2] != VERSION) {
+            throw new IOException("Not a batch of fixes");
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream output, long value) {
+        while ((value & ~0x7fL) != 0) {
+            output.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    private static void writeSignedVarint(ByteArrayOutputStream output, long value) {
+        writeVarint(output, (value << 1) ^ (value >> 63));
+    }
+
+    private static long readVarint(byte[] input, int[] position, int limit) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= limit) {
+                throw new IOException("Truncated batch of fixes");
+            }
+            int b = input[position[0]++];
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long readSignedVarint(byte[] input, int[] position, int limit) throws IOException {
+        long value = readVarint(input, position, limit);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,20 @@
+package com.bmacedo.easylocation.controllers.upload;
+
+import java.io.IOException;
+
+/**
+ *
+ * Interface that should be implemented by the classes that deliver the batches of fixes to a
+ * backend. The calls are made on background threads, possibly several at the same time.
+ *
+ */
+public interface FixTransport {
+
+    /**
+     * Delivers a batch encoded by {@link FixBatchEncoder}
+     * @throws RejectedBatchException if the backend will never accept the batch
+     * @throws IOException if the batch could not be delivered and should be retried
+     */
+    void send(byte[] batch) throws IOException;
+
+}
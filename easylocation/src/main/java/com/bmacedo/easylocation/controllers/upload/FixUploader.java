@@ -0,0 +1,438 @@
+package com.bmacedo.easylocation.controllers.upload;
+
+import android.location.Location;
+import android.util.Log;
+
+import com.bmacedo.easylocation.common.events.OnInitialLocationObtainedEvent;
+import com.bmacedo.easylocation.common.events.OnLocationsBatchObtainedEvent;
+import com.bmacedo.easylocation.common.events.OnUpdatedLocationObtainedEvent;
+import com.bmacedo.easylocation.common.events.SingletonBus;
+import com.bmacedo.easylocation.controllers.util.ExponentialBackoff;
+import com.bmacedo.easylocation.models.FixRecord;
+import com.squareup.otto.Subscribe;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Uploads the fixes delivered by the LocationService in batches.
+ *
+ * The fixes are buffered until the batch is full or the oldest one has waited for the flush
+ * interval. Each batch is then encoded by {@link FixBatchEncoder} and written to the directory,
+ * so that it survives the process, and sent through the {@link FixTransport}. At most
+ * maxInFlight batches are sent at the same time. When a send fails, the batch goes back to the
+ * queue and no batch is sent until the backoff delay has elapsed. When the directory holds more
+ * than the maximum number of batches, the oldest ones are discarded.
+ *
+ * Call {@link #start()} to upload the locations delivered by the LocationService.
+ *
+ */
+public class FixUploader {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 60 * 1000;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 2;
+    public static final int DEFAULT_MAX_STORED_BATCHES = 500;
+
+    private static final String TAG = "FixUploader";
+    private static final String BATCH_PREFIX = "batch-";
+    private static final String BATCH_SUFFIX = ".bin";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final long RETRY_BASE_DELAY = 5 * 1000;
+    private static final long RETRY_MAX_DELAY = 15 * 60 * 1000;
+
+    private final File directory;
+    private final FixTransport transport;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final int maxStoredBatches;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final ScheduledExecutorService executor;
+
+    // The fields below are guarded by this object
+    private List<FixRecord> buffer = new ArrayList<>();
+    private ScheduledFuture<?> flushFuture;
+    // Batches written to the directory and not delivered, oldest first
+    private final Deque<File> queue = new ArrayDeque<>();
+    private final ExponentialBackoff backoff = new ExponentialBackoff(RETRY_BASE_DELAY, RETRY_MAX_DELAY);
+    private boolean isBackingOff;
+    private long nextBatchId;
+
+    // Guards the loading of the batches left by a previous uploader
+    private final Object loadLock = new Object();
+    private volatile boolean isLoaded;
+
+    private final AtomicLong uploadedFixes = new AtomicLong();
+    private final AtomicLong uploadedBatches = new AtomicLong();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+    private final AtomicLong sendNanos = new AtomicLong();
+    private final AtomicLong failedSends = new AtomicLong();
+    private final AtomicLong droppedBatches = new AtomicLong();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final Runnable retryTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (FixUploader.this) {
+                isBackingOff = false;
+            }
+            dispatch();
+        }
+    };
+
+    public FixUploader(File directory, FixTransport transport) {
+        this(directory, transport, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS, DEFAULT_MAX_IN_FLIGHT,
+                DEFAULT_MAX_STORED_BATCHES);
+    }
+
+    /**
+     * @param directory directory where the batches waiting to be delivered are kept
+     * @param batchSize maximum number of fixes per batch
+     * @param flushIntervalMillis maximum time a fix waits before its batch is sent
+     * @param maxInFlight maximum number of batches sent at the same time
+     * @param maxStoredBatches maximum number of batches waiting to be delivered
+     */
+    public FixUploader(File directory, FixTransport transport, int batchSize, long flushIntervalMillis,
+                       int maxInFlight, int maxStoredBatches) {
+        if (batchSize <= 0 || flushIntervalMillis < 0 || maxInFlight <= 0 || maxStoredBatches <= 0) {
+            throw new IllegalArgumentException("Invalid uploader settings");
+        }
+        this.directory = directory;
+        this.transport = transport;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxStoredBatches = maxStoredBatches;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(maxInFlight, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor = executor;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ensureLoaded();
+                dispatch();
+            }
+        });
+    }
+
+    /**
+     * Starts uploading the locations delivered by the LocationService
+     */
+    public void start() {
+        SingletonBus.getInstance().register(this);
+    }
+
+    /**
+     * Stops receiving locations. The fixes buffered are written as a batch and sent.
+     */
+    public void stop() {
+        SingletonBus.getInstance().unregister(this);
+        flush();
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the locations.
+     */
+    @Subscribe
+    public void onInitialLocationObtained(OnInitialLocationObtainedEvent event) {
+        offer(event.getLocation());
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the locations.
+     */
+    @Subscribe
+    public void onUpdatedLocationObtained(OnUpdatedLocationObtainedEvent event) {
+        offer(event.getLocation());
+    }
+
+    /**
+     * <b>Do not call this method.</b>
+     * This method is used internally to receive the locations.
+     */
+    @Subscribe
+    public void onLocationsBatchObtained(OnLocationsBatchObtainedEvent event) {
+        for (Location location : event.getLocations()) {
+            offer(location);
+        }
+    }
+
+    public void offer(Location location) {
+        offer(new FixRecord(location));
+    }
+
+    public synchronized void offer(FixRecord fix) {
+        buffer.add(fix);
+        if (buffer.size() >= batchSize) {
+            flush();
+        } else if (flushFuture == null) {
+            flushFuture = executor.schedule(flushTask, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the fixes buffered as a batch and sends it, without waiting for the batch to be full
+     */
+    public void flush() {
+        final List<FixRecord> fixes;
+        synchronized (this) {
+            if (flushFuture != null) {
+                flushFuture.cancel(false);
+                flushFuture = null;
+            }
+            if (buffer.isEmpty()) {
+                return;
+            }
+            fixes = buffer;
+            buffer = new ArrayList<>();
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                store(FixBatchEncoder.encode(fixes));
+                dispatch();
+            }
+        });
+    }
+
+    /**
+     * Stops the threads of the uploader. The batches not delivered stay in the directory and are
+     * sent by the next uploader created for it. If the uploader was started, call {@link #stop()} first.
+     */
+    public void close() {
+        executor.shutdown();
+    }
+
+    private void store(byte[] batch) {
+        // The batches left in the directory must be known before choosing the name of a new one
+        ensureLoaded();
+        File file;
+        synchronized (this) {
+            file = new File(directory, BATCH_PREFIX + String.format("%019d", nextBatchId++) + BATCH_SUFFIX);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create " + directory);
+            return;
+        }
+        File temporary = new File(file.getPath() + TEMPORARY_SUFFIX);
+        try {
+            FileOutputStream output = new FileOutputStream(temporary);
+            try {
+                output.write(batch);
+                output.getFD().sync();
+            } finally {
+                output.close();
+            }
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Could not rename " + temporary + " to " + file);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write the batch of fixes", e);
+            temporary.delete();
+            return;
+        }
+        synchronized (this) {
+            queue.addLast(file);
+            while (queue.size() > maxStoredBatches) {
+                queue.removeFirst().delete();
+                droppedBatches.incrementAndGet();
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        synchronized (loadLock) {
+            if (!isLoaded) {
+                loadStoredBatches();
+                isLoaded = true;
+            }
+        }
+    }
+
+    private void loadStoredBatches() {
+        File[] files = directory.listFiles();
+        List<String> names = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(BATCH_PREFIX) && name.endsWith(BATCH_SUFFIX)) {
+                    names.add(name);
+                } else if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    file.delete();
+                }
+            }
+        }
+        // The ids have a fixed width, so the names sort in the order the batches were written
+        String[] sorted = names.toArray(new String[names.size()]);
+        Arrays.sort(sorted);
+        synchronized (this) {
+            for (String name : sorted) {
+                queue.addLast(new File(directory, name));
+            }
+            if (sorted.length > 0) {
+                String last = sorted[sorted.length - 1];
+                nextBatchId = Long.parseLong(last.substring(BATCH_PREFIX.length(), last.length() - BATCH_SUFFIX.length())) + 1;
+            }
+        }
+    }
+
+    private void dispatch() {
+        while (true) {
+            final File file;
+            synchronized (this) {
+                if (!isLoaded || isBackingOff || queue.isEmpty() || executor.isShutdown() || !inFlight.tryAcquire()) {
+                    return;
+                }
+                file = queue.removeFirst();
+            }
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        send(file);
+                    } finally {
+                        inFlight.release();
+                    }
+                    dispatch();
+                }
+            });
+        }
+    }
+
+    private void send(File file) {
+        byte[] batch;
+        int fixes;
+        try {
+            batch = read(file);
+            fixes = FixBatchEncoder.getFixCount(batch);
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding unreadable batch " + file, e);
+            file.delete();
+            droppedBatches.incrementAndGet();
+            return;
+        }
+        long startedAt = System.nanoTime();
+        try {
+            transport.send(batch);
+        } catch (RejectedBatchException e) {
+            Log.w(TAG, "Discarding rejected batch " + file, e);
+            file.delete();
+            droppedBatches.incrementAndGet();
+            return;
+        } catch (IOException e) {
+            failedSends.incrementAndGet();
+            synchronized (this) {
+                queue.addFirst(file);
+                if (!isBackingOff && !executor.isShutdown()) {
+                    isBackingOff = true;
+                    executor.schedule(retryTask, backoff.nextDelay(), TimeUnit.MILLISECONDS);
+                }
+            }
+            return;
+        }
+        sendNanos.addAndGet(System.nanoTime() - startedAt);
+        file.delete();
+        synchronized (this) {
+            backoff.reset();
+        }
+        uploadedBatches.incrementAndGet();
+        uploadedFixes.addAndGet(fixes);
+        uploadedBytes.addAndGet(batch.length);
+    }
+
+    private static byte[] read(File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            byte[] data = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < data.length) {
+                int read = input.read(data, offset, data.length - offset);
+                if (read < 0) {
+                    throw new IOException("Truncated file " + file);
+                }
+                offset += read;
+            }
+            return data;
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * @return the number of batches written and not delivered yet
+     */
+    public synchronized int getPendingBatches() {
+        return queue.size() + maxInFlight - inFlight.availablePermits();
+    }
+
+    public long getUploadedFixes() {
+        return uploadedFixes.get();
+    }
+
+    public long getUploadedBatches() {
+        return uploadedBatches.get();
+    }
+
+    public long getUploadedBytes() {
+        return uploadedBytes.get();
+    }
+
+    /**
+     * @return the average size of an uploaded fix, in bytes, including the batch overhead
+     */
+    public double getBytesPerFix() {
+        long fixes = uploadedFixes.get();
+        return fixes == 0 ? 0 : (double) uploadedBytes.get() / fixes;
+    }
+
+    /**
+     * @return the number of fixes delivered per second spent in the transport
+     */
+    public double getFixesPerSecond() {
+        long nanos = sendNanos.get();
+        return nanos == 0 ? 0 : uploadedFixes.get() * 1e9 / nanos;
+    }
+
+    public long getFailedSends() {
+        return failedSends.get();
+    }
+
+    /**
+     * @return the number of batches discarded because the backend rejected them, they could not
+     * be read or there were too many batches waiting
+     */
+    public long getDroppedBatches() {
+        return droppedBatches.get();
+    }
+}
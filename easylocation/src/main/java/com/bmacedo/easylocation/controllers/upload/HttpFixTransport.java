@@ -0,0 +1,75 @@
+package com.bmacedo.easylocation.controllers.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ *
+ * {@link FixTransport} that posts each batch to a URL. Responses 2xx mean that the batch was
+ * delivered; 408, 429 and 5xx are retried, and the other responses reject the batch.
+ *
+ */
+public class HttpFixTransport implements FixTransport {
+
+    public static final int DEFAULT_TIMEOUT_MILLIS = 15 * 1000;
+
+    private final URL url;
+    private final int timeoutMillis;
+
+    public HttpFixTransport(URL url) {
+        this(url, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public HttpFixTransport(URL url, int timeoutMillis) {
+        this.url = url;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void send(byte[] batch) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(batch.length);
+            connection.setRequestProperty("Content-Type", FixBatchEncoder.CONTENT_TYPE);
+            OutputStream output = connection.getOutputStream();
+            try {
+                output.write(batch);
+            } finally {
+                output.close();
+            }
+            int code = connection.getResponseCode();
+            drain(code < 400 ? connection.getInputStream() : connection.getErrorStream());
+            if (code >= 200 && code < 300) {
+                return;
+            }
+            if (code == 408 || code == 429 || code >= 500) {
+                throw new IOException("The server responded " + code);
+            }
+            throw new RejectedBatchException("The server rejected the batch with " + code);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // Reads the whole response, so that the connection can be reused
+    private static void drain(InputStream input) throws IOException {
+        if (input == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[512];
+            while (input.read(buffer) != -1) {
+                // Discards the response
+            }
+        } finally {
+            input.close();
+        }
+    }
+}
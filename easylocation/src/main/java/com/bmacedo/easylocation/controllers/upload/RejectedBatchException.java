@@ -0,0 +1,18 @@
+package com.bmacedo.easylocation.controllers.upload;
+
+import java.io.IOException;
+
+/**
+ *
+ * Thrown by a {@link FixTransport} when the backend refuses a batch for good, e.g. because it is
+ * malformed. The batch is discarded instead of retried.
+ *
+ */
+public class RejectedBatchException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RejectedBatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,29 @@
+package com.bmacedo.easylocation.controllers.util;
+
+import android.os.SystemClock;
+
+/**
+ *
+ * Source of monotonic time used by the schedulers of this library.
+ *
+ * The default implementation {@link #ELAPSED_REALTIME} reads
+ * {@link SystemClock#elapsedRealtime()}, which keeps counting while the device sleeps and is not
+ * affected by wall clock changes. Tests can provide a fake implementation in order to control
+ * the passage of time.
+ *
+ */
+public interface Clock {
+
+    Clock ELAPSED_REALTIME = new Clock() {
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+    };
+
+    /**
+     * @return the milliseconds elapsed since an arbitrary, fixed origin
+     */
+    long elapsedRealtime();
+
+}
@@ -0,0 +1,57 @@
+package com.bmacedo.easylocation.controllers.util;
+
+import java.util.Random;
+
+/**
+ *
+ * Calculates retry delays that grow exponentially from a base delay up to a cap.
+ *
+ * A random jitter is applied to every delay ("equal jitter": half of the delay is fixed and the
+ * other half is random), so that many clients that lost the connection at the same time do not
+ * retry in lockstep.
+ *
+ */
+public class ExponentialBackoff {
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final Random random;
+    // Number of delays handed out since the last reset
+    private int attempts;
+
+    public ExponentialBackoff(long baseDelayMillis, long maxDelayMillis) {
+        this(baseDelayMillis, maxDelayMillis, new Random());
+    }
+
+    public ExponentialBackoff(long baseDelayMillis, long maxDelayMillis, Random random) {
+        if (baseDelayMillis <= 0 || maxDelayMillis < baseDelayMillis) {
+            throw new IllegalArgumentException("Invalid backoff delays: base=" + baseDelayMillis
+                    + ", max=" + maxDelayMillis);
+        }
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.random = random;
+    }
+
+    /**
+     * @return the delay to be waited before the next attempt
+     */
+    public long nextDelay() {
+        long delay = maxDelayMillis;
+        // Avoids overflowing the shift when there were too many attempts
+        if (attempts < 30) {
+            delay = Math.min(maxDelayMillis, baseDelayMillis << attempts);
+        }
+        attempts++;
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * (delay - half));
+    }
+
+    public void reset() {
+        attempts = 0;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
@@ -0,0 +1,235 @@
+package com.bmacedo.easylocation.controllers.util;
+
+/**
+ *
+ * Distance and bearing calculations between coordinates in degrees, without allocating objects per point.
+ *
+ * Three modes are available, from the fastest to the most accurate:
+ * <ul>
+ *     <li>equirectangular: good for distances of a few kilometers, away from the poles</li>
+ *     <li>haversine: spherical earth, error up to about 0.5%</li>
+ *     <li>Vincenty: WGS84 ellipsoid, accurate to millimeters, iterative</li>
+ * </ul>
+ *
+ * The batch methods work over parallel latitude and longitude arrays and write their results to an
+ * array given by the caller, so that they can be reused between calls. The loops of the distance
+ * methods have no branches and no calls other than the math functions, which lets the JIT compile
+ * them tightly. {@link #withinRadius} is the exception: it branches on the bounding box of the
+ * circle, so that the distance is only computed for the points inside it.
+ *
+ */
+public class GeodesyUtil {
+
+    // Mean earth radius, in meters
+    public static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    // WGS84 ellipsoid
+    private static final double WGS84_A = 6378137.0;
+    private static final double WGS84_F = 1 / 298.257223563;
+    private static final double WGS84_B = WGS84_A * (1 - WGS84_F);
+    private static final int VINCENTY_MAX_ITERATIONS = 200;
+    private static final double VINCENTY_TOLERANCE = 1e-12;
+
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * EARTH_RADIUS_METERS;
+
+    private GeodesyUtil() {
+    }
+
+    public static double haversine(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double sinHalfDeltaPhi = Math.sin((phi2 - phi1) / 2);
+        double sinHalfDeltaLambda = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double h = sinHalfDeltaPhi * sinHalfDeltaPhi
+                + Math.cos(phi1) * Math.cos(phi2) * sinHalfDeltaLambda * sinHalfDeltaLambda;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(Math.min(1, h)));
+    }
+
+    public static double equirectangular(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double x = normalizeLongitude(longitude2 - longitude1) * Math.cos(Math.toRadians((latitude1 + latitude2) / 2));
+        double y = latitude2 - latitude1;
+        return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * Distance on the WGS84 ellipsoid. For nearly antipodal points, where the method does not
+     * converge, the haversine distance is returned instead.
+     */
+    public static double vincenty(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double l = Math.toRadians(longitude2 - longitude1);
+        double u1 = Math.atan((1 - WGS84_F) * Math.tan(Math.toRadians(latitude1)));
+        double u2 = Math.atan((1 - WGS84_F) * Math.tan(Math.toRadians(latitude2)));
+        double sinU1 = Math.sin(u1), cosU1 = Math.cos(u1);
+        double sinU2 = Math.sin(u2), cosU2 = Math.cos(u2);
+
+        double lambda = l;
+        double sinSigma, cosSigma, sigma, cosSquaredAlpha, cos2SigmaM;
+        int iterations = 0;
+        while (true) {
+            double sinLambda = Math.sin(lambda), cosLambda = Math.cos(lambda);
+            double a = cosU2 * sinLambda;
+            double b = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            sinSigma = Math.sqrt(a * a + b * b);
+            if (sinSigma == 0) {
+                return 0;
+            }
+            cosSigma = sinU1 * sinU2 + cosU1 * cosU2 * cosLambda;
+            sigma = Math.atan2(sinSigma, cosSigma);
+            double sinAlpha = cosU1 * cosU2 * sinLambda / sinSigma;
+            cosSquaredAlpha = 1 - sinAlpha * sinAlpha;
+            // On the equator cosSquaredAlpha is 0 and the term is not used
+            cos2SigmaM = cosSquaredAlpha != 0 ? cosSigma - 2 * sinU1 * sinU2 / cosSquaredAlpha : 0;
+            double c = WGS84_F / 16 * cosSquaredAlpha * (4 + WGS84_F * (4 - 3 * cosSquaredAlpha));
+            double previousLambda = lambda;
+            lambda = l + (1 - c) * WGS84_F * sinAlpha
+                    * (sigma + c * sinSigma * (cos2SigmaM + c * cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)));
+            if (Math.abs(lambda - previousLambda) < VINCENTY_TOLERANCE) {
+                break;
+            }
+            if (++iterations >= VINCENTY_MAX_ITERATIONS) {
+                return haversine(latitude1, longitude1, latitude2, longitude2);
+            }
+        }
+
+        double uSquared = cosSquaredAlpha * (WGS84_A * WGS84_A - WGS84_B * WGS84_B) / (WGS84_B * WGS84_B);
+        double a = 1 + uSquared / 16384 * (4096 + uSquared * (-768 + uSquared * (320 - 175 * uSquared)));
+        double b = uSquared / 1024 * (256 + uSquared * (-128 + uSquared * (74 - 47 * uSquared)));
+        double deltaSigma = b * sinSigma * (cos2SigmaM + b / 4 * (cosSigma * (-1 + 2 * cos2SigmaM * cos2SigmaM)
+                - b / 6 * cos2SigmaM * (-3 + 4 * sinSigma * sinSigma) * (-3 + 4 * cos2SigmaM * cos2SigmaM)));
+        return WGS84_B * a * (sigma - deltaSigma);
+    }
+
+    /**
+     * @return the initial bearing from the first to the second point, in degrees between 0 and 360
+     */
+    public static double bearing(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double deltaLambda = Math.toRadians(longitude2 - longitude1);
+        double y = Math.sin(deltaLambda) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(deltaLambda);
+        return (Math.toDegrees(Math.atan2(y, x)) + 360) % 360;
+    }
+
+    /**
+     * Computes the haversine distance from each point of the arrays to the given point
+     * @param count number of points to use from the arrays
+     * @param out array where the distances are written, with at least count elements
+     */
+    public static void haversineTo(double[] latitudes, double[] longitudes, int count,
+                                   double latitude, double longitude, double[] out) {
+        double phi = Math.toRadians(latitude);
+        double cosPhi = Math.cos(phi);
+        double lambda = Math.toRadians(longitude);
+        for (int i = 0; i < count; i++) {
+            double phiI = Math.toRadians(latitudes[i]);
+            double sinHalfDeltaPhi = Math.sin((phiI - phi) / 2);
+            double sinHalfDeltaLambda = Math.sin((Math.toRadians(longitudes[i]) - lambda) / 2);
+            double h = sinHalfDeltaPhi * sinHalfDeltaPhi
+                    + cosPhi * Math.cos(phiI) * sinHalfDeltaLambda * sinHalfDeltaLambda;
+            out[i] = 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(Math.min(1, h)));
+        }
+    }
+
+    /**
+     * Computes the equirectangular distance from each point of the arrays to the given point.
+     * Uses the cosine of the given latitude for all points, so it is only suited for points
+     * within a few kilometers from it and on the same side of the antimeridian.
+     * @param count number of points to use from the arrays
+     * @param out array where the distances are written, with at least count elements
+     */
+    public static void equirectangularTo(double[] latitudes, double[] longitudes, int count,
+                                         double latitude, double longitude, double[] out) {
+        double scale = Math.cos(Math.toRadians(latitude));
+        for (int i = 0; i < count; i++) {
+            double x = (longitudes[i] - longitude) * scale;
+            double y = latitudes[i] - latitude;
+            out[i] = Math.sqrt(x * x + y * y) * METERS_PER_DEGREE;
+        }
+    }
+
+    /**
+     * Computes the haversine distance between each consecutive pair of points of a track
+     * @param count number of points to use from the arrays
+     * @param out array where the distance between the points i and i + 1 is written at index i,
+     *            with at least count - 1 elements
+     * @return the total length of the track
+     */
+    public static double trackSegments(double[] latitudes, double[] longitudes, int count, double[] out) {
+        double total = 0;
+        for (int i = 0; i < count - 1; i++) {
+            double phi1 = Math.toRadians(latitudes[i]);
+            double phi2 = Math.toRadians(latitudes[i + 1]);
+            double sinHalfDeltaPhi = Math.sin((phi2 - phi1) / 2);
+            double sinHalfDeltaLambda = Math.sin(Math.toRadians(longitudes[i + 1] - longitudes[i]) / 2);
+            double h = sinHalfDeltaPhi * sinHalfDeltaPhi
+                    + Math.cos(phi1) * Math.cos(phi2) * sinHalfDeltaLambda * sinHalfDeltaLambda;
+            double distance = 2 * EARTH_RADIUS_METERS * Math.asin(Math.sqrt(Math.min(1, h)));
+            out[i] = distance;
+            total += distance;
+        }
+        return total;
+    }
+
+    /**
+     * Computes a box that contains every point within the radius of the given point
+     * @param out array where the minimum latitude, minimum longitude, maximum latitude and maximum
+     *            longitude are written, in this order. The longitudes are not wrapped, so the
+     *            minimum may be below -180 and the maximum above 180.
+     */
+    public static void boundingBox(double latitude, double longitude, double radiusMeters, double[] out) {
+        double deltaLatitude = radiusMeters / METERS_PER_DEGREE;
+        double minLatitude = latitude - deltaLatitude;
+        double maxLatitude = latitude + deltaLatitude;
+        double deltaLongitude;
+        if (minLatitude <= -90 || maxLatitude >= 90) {
+            // The circle contains a pole, so it covers every longitude
+            deltaLongitude = 180;
+        } else {
+            double maxAbsLatitude = Math.max(Math.abs(minLatitude), Math.abs(maxLatitude));
+            deltaLongitude = Math.min(180, deltaLatitude / Math.cos(Math.toRadians(maxAbsLatitude)));
+        }
+        out[0] = Math.max(-90, minLatitude);
+        out[1] = longitude - deltaLongitude;
+        out[2] = Math.min(90, maxLatitude);
+        out[3] = longitude + deltaLongitude;
+    }
+
+    /**
+     * Finds the points within the radius of the given point. The points outside the bounding box
+     * of the circle are discarded without computing their distance.
+     * @param count number of points to use from the arrays
+     * @param outIndices array where the indices of the points found are written, with at least
+     *                   count elements
+     * @return the number of points found
+     */
+    public static int withinRadius(double[] latitudes, double[] longitudes, int count,
+                                   double latitude, double longitude, double radiusMeters, int[] outIndices) {
+        double[] box = new double[4];
+        boundingBox(latitude, longitude, radiusMeters, box);
+        double minLatitude = box[0], minLongitude = box[1], maxLatitude = box[2], maxLongitude = box[3];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            double candidateLatitude = latitudes[i];
+            double candidateLongitude = longitudes[i];
+            // Longitudes are compared on both sides of the antimeridian
+            boolean isInLongitude = (candidateLongitude >= minLongitude && candidateLongitude <= maxLongitude)
+                    || (candidateLongitude + 360 >= minLongitude && candidateLongitude + 360 <= maxLongitude)
+                    || (candidateLongitude - 360 >= minLongitude && candidateLongitude - 360 <= maxLongitude);
+            if (candidateLatitude >= minLatitude && candidateLatitude <= maxLatitude && isInLongitude
+                    && haversine(latitude, longitude, candidateLatitude, candidateLongitude) <= radiusMeters) {
+                outIndices[found++] = i;
+            }
+        }
+        return found;
+    }
+
+    private static double normalizeLongitude(double longitude) {
+        if (longitude > 180) {
+            return longitude - 360;
+        } else if (longitude < -180) {
+            return longitude + 360;
+        }
+        return longitude;
+    }
+}
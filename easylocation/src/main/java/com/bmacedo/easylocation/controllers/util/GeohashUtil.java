@@ -0,0 +1,54 @@
+package com.bmacedo.easylocation.controllers.util;
+
+/**
+ *
+ * Encodes coordinates as geohashes. Locations that share a geohash are inside the same cell, whose
+ * size depends on the precision (number of characters): 7 characters are about 150 meters wide and
+ * 8 characters about 38 meters.
+ *
+ */
+public class GeohashUtil {
+
+    public static final int MAX_PRECISION = 12;
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private GeohashUtil() {
+    }
+
+    public static String encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Invalid geohash precision: " + precision);
+        }
+        double minLatitude = -90, maxLatitude = 90;
+        double minLongitude = -180, maxLongitude = 180;
+        char[] hash = new char[precision];
+        boolean isLongitudeBit = true;
+        for (int i = 0; i < precision; i++) {
+            int value = 0;
+            for (int bit = 0; bit < 5; bit++) {
+                value <<= 1;
+                if (isLongitudeBit) {
+                    double middle = (minLongitude + maxLongitude) / 2;
+                    if (longitude >= middle) {
+                        value |= 1;
+                        minLongitude = middle;
+                    } else {
+                        maxLongitude = middle;
+                    }
+                } else {
+                    double middle = (minLatitude + maxLatitude) / 2;
+                    if (latitude >= middle) {
+                        value |= 1;
+                        minLatitude = middle;
+                    } else {
+                        maxLatitude = middle;
+                    }
+                }
+                isLongitudeBit = !isLongitudeBit;
+            }
+            hash[i] = BASE32[value];
+        }
+        return new String(hash);
+    }
+}
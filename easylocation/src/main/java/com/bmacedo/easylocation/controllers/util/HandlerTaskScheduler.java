@@ -0,0 +1,33 @@
+package com.bmacedo.easylocation.controllers.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ *
+ * {@link TaskScheduler} backed by a {@link Handler}. By default the tasks run on the main thread,
+ * which is the same thread where the location callbacks are delivered.
+ *
+ */
+public class HandlerTaskScheduler implements TaskScheduler {
+
+    private final Handler handler;
+
+    public HandlerTaskScheduler() {
+        this(Looper.getMainLooper());
+    }
+
+    public HandlerTaskScheduler(Looper looper) {
+        this.handler = new Handler(looper);
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMillis) {
+        handler.postDelayed(task, delayMillis);
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        handler.removeCallbacks(task);
+    }
+}
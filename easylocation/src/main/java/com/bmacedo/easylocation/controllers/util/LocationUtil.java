@@ -1,7 +1,10 @@
 package com.bmacedo.easylocation.controllers.util;
 
+import android.annotation.TargetApi;
 import android.content.ContentResolver;
+import android.location.Location;
 import android.os.Build;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.text.TextUtils;
 
@@ -27,4 +30,34 @@ public class LocationUtil {
             return !TextUtils.isEmpty(locationProviders);
         }
     }
+
+    /**
+     * Calculates the age of the location. When possible, the monotonic elapsed realtime of the
+     * location is used, so that the result is not affected by changes in the wall clock. Otherwise
+     * the wall clock time of the location is used.
+     * @return the age in milliseconds, never negative
+     */
+    public static long getAgeMillis(Location location) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            long age = getElapsedRealtimeAgeMillis(location);
+            if (age >= 0) {
+                return age;
+            }
+        }
+        return Math.max(0, System.currentTimeMillis() - location.getTime());
+    }
+
+    /**
+     * @return the age given by the elapsed realtime of the location, or -1 if it is not available
+     * or belongs to a previous boot
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private static long getElapsedRealtimeAgeMillis(Location location) {
+        long elapsedRealtimeNanos = location.getElapsedRealtimeNanos();
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (elapsedRealtimeNanos <= 0 || elapsedRealtimeNanos > now) {
+            return -1;
+        }
+        return (now - elapsedRealtimeNanos) / 1000000;
+    }
 }
@@ -0,0 +1,86 @@
+package com.bmacedo.easylocation.controllers.util;
+
+/**
+ *
+ * Identifies the Web Mercator tiles that contain coordinates. Each tile is packed in a long, with
+ * the zoom level in the bits 58 to 62 and the quadkey digits, two bits each, in the lower bits.
+ * The keys are never negative.
+ *
+ */
+public class QuadkeyUtil {
+
+    public static final int MAX_ZOOM = 29;
+
+    private static final int ZOOM_SHIFT = 58;
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private QuadkeyUtil() {
+    }
+
+    public static long encode(double latitude, double longitude, int zoom) {
+        if (zoom < 1 || zoom > MAX_ZOOM) {
+            throw new IllegalArgumentException("Invalid zoom: " + zoom);
+        }
+        double clampedLatitude = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude));
+        double sinLatitude = Math.sin(Math.toRadians(clampedLatitude));
+        double x = (longitude + 180) / 360;
+        double y = 0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI);
+        long tiles = 1L << zoom;
+        long tileX = Math.max(0, Math.min(tiles - 1, (long) Math.floor(x * tiles)));
+        long tileY = Math.max(0, Math.min(tiles - 1, (long) Math.floor(y * tiles)));
+        return fromTile(tileX, tileY, zoom);
+    }
+
+    public static long fromTile(long tileX, long tileY, int zoom) {
+        long digits = 0;
+        for (int i = zoom - 1; i >= 0; i--) {
+            digits = (digits << 2) | (((tileY >>> i) & 1) << 1) | ((tileX >>> i) & 1);
+        }
+        return ((long) zoom << ZOOM_SHIFT) | digits;
+    }
+
+    public static int getZoom(long key) {
+        return (int) (key >>> ZOOM_SHIFT);
+    }
+
+    public static long getTileX(long key) {
+        return deinterleave(key, 0);
+    }
+
+    public static long getTileY(long key) {
+        return deinterleave(key, 1);
+    }
+
+    /**
+     * @return the key of the tile that contains this one at a lower zoom level
+     */
+    public static long getParent(long key, int zoom) {
+        int keyZoom = getZoom(key);
+        if (zoom < 1 || zoom > keyZoom) {
+            throw new IllegalArgumentException("Invalid zoom: " + zoom);
+        }
+        long digits = key & ((1L << ZOOM_SHIFT) - 1);
+        return ((long) zoom << ZOOM_SHIFT) | (digits >>> (2 * (keyZoom - zoom)));
+    }
+
+    /**
+     * @return the quadkey of the tile as a string of digits from 0 to 3, as used by Bing Maps
+     */
+    public static String toQuadkey(long key) {
+        int zoom = getZoom(key);
+        char[] quadkey = new char[zoom];
+        for (int i = 0; i < zoom; i++) {
+            quadkey[i] = (char) ('0' + ((key >>> (2 * (zoom - 1 - i))) & 3));
+        }
+        return new String(quadkey);
+    }
+
+    private static long deinterleave(long key, int offset) {
+        int zoom = getZoom(key);
+        long value = 0;
+        for (int i = zoom - 1; i >= 0; i--) {
+            value = (value << 1) | ((key >>> (2 * i + offset)) & 1);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,113 @@
+package com.bmacedo.easylocation.controllers.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * Executor that runs its tasks one at a time, in submission order, on a single target thread.
+ * Any thread can submit tasks without taking locks: the task is added to a lock-free queue, and
+ * the thread that finds the executor idle schedules a drain of the queue on the target thread.
+ *
+ * A task submitted from the target thread while the executor is idle runs right away, before
+ * {@link #execute(Runnable)} returns, so code that already runs on the target thread keeps its
+ * synchronous behavior. A task submitted while another one is running, e.g. by the running task
+ * itself, runs after it.
+ *
+ * This lets an object confine its state to the target thread, while receiving callbacks from
+ * other threads.
+ *
+ */
+public class SerialExecutor implements Executor {
+
+    private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    // Number of tasks submitted and not yet accounted by a drain. The executor is idle when 0.
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Executor dispatcher;
+    private final Thread targetThread;
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Creates an executor that runs the tasks on the thread of the looper
+     */
+    public SerialExecutor(Looper looper) {
+        this(new HandlerExecutor(new Handler(looper)), looper.getThread());
+    }
+
+    /**
+     * @param dispatcher executor that runs the drains on the target thread
+     * @param targetThread the thread where the dispatcher runs
+     */
+    public SerialExecutor(Executor dispatcher, Thread targetThread) {
+        this.dispatcher = dispatcher;
+        this.targetThread = targetThread;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        queue.offer(task);
+        if (pending.getAndIncrement() == 0) {
+            if (Thread.currentThread() == targetThread) {
+                drain();
+            } else {
+                dispatcher.execute(drainTask);
+            }
+        }
+    }
+
+    /**
+     * @return true if the current thread is the one where the tasks run
+     */
+    public boolean isOnTargetThread() {
+        return Thread.currentThread() == targetThread;
+    }
+
+    private void drain() {
+        boolean isCompleted = false;
+        int missed = 1;
+        try {
+            while (true) {
+                Runnable task;
+                while ((task = queue.poll()) != null) {
+                    task.run();
+                }
+                missed = pending.addAndGet(-missed);
+                if (missed == 0) {
+                    isCompleted = true;
+                    return;
+                }
+            }
+        } finally {
+            if (!isCompleted) {
+                // A task failed. The remaining ones run in a new drain, as the executor is not idle.
+                dispatcher.execute(drainTask);
+            }
+        }
+    }
+
+    private static class HandlerExecutor implements Executor {
+        private final Handler handler;
+
+        HandlerExecutor(Handler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    }
+}
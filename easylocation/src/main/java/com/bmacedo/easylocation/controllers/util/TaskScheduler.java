@@ -0,0 +1,24 @@
+package com.bmacedo.easylocation.controllers.util;
+
+/**
+ *
+ * Abstraction over the mechanism used to run delayed tasks, so that the classes that depend on
+ * timers can be driven by a fake scheduler when tested outside of a Looper.
+ *
+ */
+public interface TaskScheduler {
+
+    /**
+     * Schedules the task to be run once after the given delay
+     * @param task the task to be run
+     * @param delayMillis the delay in milliseconds
+     */
+    void schedule(Runnable task, long delayMillis);
+
+    /**
+     * Removes any pending execution of the given task
+     * @param task the task previously scheduled
+     */
+    void cancel(Runnable task);
+
+}
@@ -0,0 +1,75 @@
+package com.bmacedo.easylocation.models;
+
+import android.location.Address;
+
+/**
+ *
+ * This class creates a copy of the most relevant fields of an {@link Address} object, so that
+ * it can be cached on disk.
+ *
+ */
+public class AddressModel {
+
+    String[] addressLines;
+    String featureName;
+    String thoroughfare;
+    String subLocality;
+    String locality;
+    String adminArea;
+    String postalCode;
+    String countryCode;
+    String countryName;
+
+    public AddressModel() {}
+
+    public AddressModel(Address address) {
+        this.addressLines = new String[address.getMaxAddressLineIndex() + 1];
+        for (int i = 0; i < addressLines.length; i++) {
+            addressLines[i] = address.getAddressLine(i);
+        }
+        this.featureName = address.getFeatureName();
+        this.thoroughfare = address.getThoroughfare();
+        this.subLocality = address.getSubLocality();
+        this.locality = address.getLocality();
+        this.adminArea = address.getAdminArea();
+        this.postalCode = address.getPostalCode();
+        this.countryCode = address.getCountryCode();
+        this.countryName = address.getCountryName();
+    }
+
+    public String[] getAddressLines() {
+        return addressLines;
+    }
+
+    public String getFeatureName() {
+        return featureName;
+    }
+
+    public String getThoroughfare() {
+        return thoroughfare;
+    }
+
+    public String getSubLocality() {
+        return subLocality;
+    }
+
+    public String getLocality() {
+        return locality;
+    }
+
+    public String getAdminArea() {
+        return adminArea;
+    }
+
+    public String getPostalCode() {
+        return postalCode;
+    }
+
+    public String getCountryCode() {
+        return countryCode;
+    }
+
+    public String getCountryName() {
+        return countryName;
+    }
+}
@@ -0,0 +1,95 @@
+package com.bmacedo.easylocation.models;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ *
+ * Snapshot of the resources used by a client of the location service (an
+ * {@link com.bmacedo.easylocation.api.EasyLocationManager}) since it was created.
+ *
+ * While several clients share the service, the cost of the location request is split between
+ * them: the time the strategies keep the location providers active, the wakeups and the rejected
+ * locations are attributed in equal parts, so the values may be fractional. Every client receives
+ * every location delivered, so each one is charged for all of them.
+ *
+ */
+public class ClientUsage {
+
+    private final int clientId;
+    private final boolean isActive;
+    private final Map<String, Double> providerActiveMillis;
+    private final double totalProviderActiveMillis;
+    private final long fixesDelivered;
+    private final double wakeups;
+    private final double rejectedFixes;
+
+    public ClientUsage(int clientId, boolean isActive, Map<String, Double> providerActiveMillis,
+                       long fixesDelivered, double wakeups, double rejectedFixes) {
+        this.clientId = clientId;
+        this.isActive = isActive;
+        this.providerActiveMillis = Collections.unmodifiableMap(providerActiveMillis);
+        double total = 0;
+        for (double millis : providerActiveMillis.values()) {
+            total += millis;
+        }
+        this.totalProviderActiveMillis = total;
+        this.fixesDelivered = fixesDelivered;
+        this.wakeups = wakeups;
+        this.rejectedFixes = rejectedFixes;
+    }
+
+    public int getClientId() {
+        return clientId;
+    }
+
+    /**
+     * @return true if the client is receiving locations
+     */
+    public boolean isActive() {
+        return isActive;
+    }
+
+    /**
+     * @return the time the providers were active on behalf of the client, in milliseconds, by
+     * strategy name. Each strategy requests a different kind of provider, e.g. the high accuracy
+     * fused provider of Google Services, or the GPS and network providers of the device.
+     */
+    public Map<String, Double> getProviderActiveMillis() {
+        return providerActiveMillis;
+    }
+
+    public double getTotalProviderActiveMillis() {
+        return totalProviderActiveMillis;
+    }
+
+    public long getFixesDelivered() {
+        return fixesDelivered;
+    }
+
+    /**
+     * @return the share of the client in the deliveries of locations by the strategies
+     */
+    public double getWakeups() {
+        return wakeups;
+    }
+
+    /**
+     * @return the share of the client in the locations discarded for not being newer than the last one
+     */
+    public double getRejectedFixes() {
+        return rejectedFixes;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientUsage{" +
+                "clientId=" + clientId +
+                ", isActive=" + isActive +
+                ", providerActiveMillis=" + providerActiveMillis +
+                ", fixesDelivered=" + fixesDelivered +
+                ", wakeups=" + wakeups +
+                ", rejectedFixes=" + rejectedFixes +
+                '}';
+    }
+}
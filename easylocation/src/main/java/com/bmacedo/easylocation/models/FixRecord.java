@@ -0,0 +1,70 @@
+package com.bmacedo.easylocation.models;
+
+import android.location.Location;
+
+/**
+ *
+ * This class holds the fields of a location that are uploaded. Fields that the location does not
+ * have are NaN.
+ *
+ */
+public class FixRecord {
+
+    private final long time;
+    private final double latitude;
+    private final double longitude;
+    private final float accuracy;
+    private final double altitude;
+    private final float speed;
+    private final float bearing;
+
+    public FixRecord(long time, double latitude, double longitude, float accuracy,
+                     double altitude, float speed, float bearing) {
+        this.time = time;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+        this.altitude = altitude;
+        this.speed = speed;
+        this.bearing = bearing;
+    }
+
+    public FixRecord(Location location) {
+        this(location.getTime(), location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : Float.NaN,
+                location.hasAltitude() ? location.getAltitude() : Double.NaN,
+                location.hasSpeed() ? location.getSpeed() : Float.NaN,
+                location.hasBearing() ? location.getBearing() : Float.NaN);
+    }
+
+    /**
+     * @return the time of the fix in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public float getAccuracy() {
+        return accuracy;
+    }
+
+    public double getAltitude() {
+        return altitude;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    public float getBearing() {
+        return bearing;
+    }
+}
@@ -0,0 +1,52 @@
+package com.bmacedo.easylocation.models;
+
+import com.bmacedo.easylocation.controllers.util.QuadkeyUtil;
+
+/**
+ *
+ * This class holds the dwell time and visits of each tile accumulated since the last
+ * synchronization of a heatmap. The tiles are identified by the keys of {@link QuadkeyUtil}.
+ *
+ */
+public class HeatmapDelta {
+
+    private final long[] keys;
+    private final long[] dwellMillis;
+    private final int[] visits;
+    private final int count;
+
+    public HeatmapDelta(long[] keys, long[] dwellMillis, int[] visits, int count) {
+        this.keys = keys;
+        this.dwellMillis = dwellMillis;
+        this.visits = visits;
+        this.count = count;
+    }
+
+    public int getTileCount() {
+        return count;
+    }
+
+    public long getKey(int i) {
+        return keys[i];
+    }
+
+    public String getQuadkey(int i) {
+        return QuadkeyUtil.toQuadkey(keys[i]);
+    }
+
+    public int getZoom(int i) {
+        return QuadkeyUtil.getZoom(keys[i]);
+    }
+
+    public long getDwellMillis(int i) {
+        return dwellMillis[i];
+    }
+
+    public int getVisits(int i) {
+        return visits[i];
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+}
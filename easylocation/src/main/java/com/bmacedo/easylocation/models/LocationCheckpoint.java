@@ -0,0 +1,50 @@
+package com.bmacedo.easylocation.models;
+
+/**
+ *
+ * This class represents the state of the location service saved by the checkpointer, so that the
+ * last location survives the service process being killed.
+ *
+ */
+public class LocationCheckpoint {
+
+    String state;
+    LocationModel location;
+    long savedAt;
+
+    public LocationCheckpoint() {}
+
+    public LocationCheckpoint(LocationState state, LocationModel location, long savedAt) {
+        this.state = state.name();
+        this.location = location;
+        this.savedAt = savedAt;
+    }
+
+    /**
+     * @return the saved state, or null if it is missing or unknown
+     */
+    public LocationState getState() {
+        if (state != null) {
+            try {
+                return LocationState.valueOf(state);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the saved location, or null if the state was saved without one
+     */
+    public LocationModel getLocation() {
+        return location;
+    }
+
+    /**
+     * @return the wall clock time when the checkpoint was saved
+     */
+    public long getSavedAt() {
+        return savedAt;
+    }
+}
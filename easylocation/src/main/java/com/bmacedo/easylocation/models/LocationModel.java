@@ -1,6 +1,9 @@
 package com.bmacedo.easylocation.models;
 
+import android.annotation.TargetApi;
 import android.location.Location;
+import android.os.Build;
+import android.os.SystemClock;
 
 import org.parceler.Parcel;
 
@@ -11,13 +14,19 @@ import java.io.Serializable;
  * This class creates a copy of an {@link Location} object in order to Serialize it inside the
  * SharedPreferences.
  *
- * Only 2 field are ignored: {@link Location#getExtras()} and {@link Location#getElapsedRealtimeNanos()}
+ * Only the field {@link Location#getExtras()} is ignored. The field
+ * {@link Location#getElapsedRealtimeNanos()} is only restored if the device was not rebooted since
+ * the location was obtained, since the elapsed realtime starts over at every boot. The boot is
+ * identified by the wall clock time when it happened, which is saved along with the location.
  *
  * Created by -Bernardo on 2015-07-28.
  */
 @Parcel
 public class LocationModel implements Serializable {
 
+    // Maximum difference between two boot times of the same boot, caused by wall clock adjustments
+    private static final long BOOT_TIME_TOLERANCE = 10 * 1000;
+
     long time;
     double latitude;
     double longitude;
@@ -26,6 +35,9 @@ public class LocationModel implements Serializable {
     float bearing;
     String provider;
     float speed;
+    long elapsedRealtimeNanos;
+    // Wall clock time of the boot when the location was obtained, or 0 if unknown
+    long bootTime;
 
     public LocationModel() {}
 
@@ -38,6 +50,10 @@ public class LocationModel implements Serializable {
         this.bearing = location.getBearing();
         this.provider = location.getProvider();
         this.speed = location.getSpeed();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            this.elapsedRealtimeNanos = getElapsedRealtimeNanos(location);
+            this.bootTime = getCurrentBootTime();
+        }
     }
 
     public Location getLocation() {
@@ -49,10 +65,35 @@ public class LocationModel implements Serializable {
         location.setAltitude(altitude);
         location.setBearing(bearing);
         location.setSpeed(speed);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            setElapsedRealtimeNanos(location);
+        }
 
         return location;
     }
 
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private static long getElapsedRealtimeNanos(Location location) {
+        return location.getElapsedRealtimeNanos();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    private void setElapsedRealtimeNanos(Location location) {
+        // After a reboot the old value could look like a recent one, so it is only restored if the
+        // location was obtained in the current boot
+        if (elapsedRealtimeNanos > 0 && elapsedRealtimeNanos <= SystemClock.elapsedRealtimeNanos()
+                && bootTime > 0 && Math.abs(getCurrentBootTime() - bootTime) <= BOOT_TIME_TOLERANCE) {
+            location.setElapsedRealtimeNanos(elapsedRealtimeNanos);
+        }
+    }
+
+    /**
+     * @return the wall clock time when the device booted
+     */
+    private static long getCurrentBootTime() {
+        return System.currentTimeMillis() - SystemClock.elapsedRealtime();
+    }
+
     public long getTime() {
         return time;
     }
@@ -84,4 +125,12 @@ public class LocationModel implements Serializable {
     public float getSpeed() {
         return speed;
     }
+
+    public long getElapsedRealtimeNanos() {
+        return elapsedRealtimeNanos;
+    }
+
+    public long getBootTime() {
+        return bootTime;
+    }
 }
@@ -7,7 +7,7 @@ import android.os.Parcelable;
  */
 public class LocationStrategyError {
 
-    public enum StrategyError {STRATEGY_DISABLED, STRATEGY_CONNECTION_FAILURE, UNRECOVERABLE_ERROR};
+    public enum StrategyError {STRATEGY_DISABLED, STRATEGY_CONNECTION_FAILURE, STRATEGY_CONNECTION_SUSPENDED, UNRECOVERABLE_ERROR};
 
     private StrategyError error;
     private String strategy;
@@ -0,0 +1,60 @@
+package com.bmacedo.easylocation.models;
+
+/**
+ *
+ * This class holds the summary of a stay point: a period in which the user remained within a
+ * small radius. While the stay is in progress, the end time is the time of the last fix.
+ *
+ */
+public class StaySummary {
+
+    private final double latitude;
+    private final double longitude;
+    private final long startTime;
+    private final long endTime;
+    private final int fixCount;
+
+    public StaySummary(double latitude, double longitude, long startTime, long endTime, int fixCount) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.fixCount = fixCount;
+    }
+
+    /**
+     * @return the latitude of the centroid of the fixes
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * @return the longitude of the centroid of the fixes
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return the time of the first fix, in milliseconds since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return the time of the last fix, in milliseconds since the epoch
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public long getDurationMillis() {
+        return endTime - startTime;
+    }
+
+    public int getFixCount() {
+        return fixCount;
+    }
+}
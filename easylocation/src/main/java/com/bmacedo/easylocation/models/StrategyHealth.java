@@ -0,0 +1,100 @@
+package com.bmacedo.easylocation.models;
+
+/**
+ *
+ * This class stores the statistics collected for a location strategy across the service
+ * sessions. It is serialized inside the SharedPreferences.
+ *
+ * The averages are exponentially weighted, so that recent sessions weigh more than old ones and
+ * a strategy that recovers (or starts failing) is noticed after a few attempts.
+ *
+ */
+public class StrategyHealth {
+
+    // Weight of the newest sample in the moving averages
+    private static final double SMOOTHING_FACTOR = 0.3;
+
+    String strategy;
+    int attempts;
+    int failures;
+    // Moving average of the outcomes of the attempts, 1 for a failure and 0 for a success. Negative
+    // in statistics saved before it existed, where the failure rate is given by the counters.
+    double recentFailureRate = -1;
+    double averageTimeToFirstFix;
+    double averageTimeToFailure;
+    double averageAccuracy;
+
+    public StrategyHealth() {}
+
+    public StrategyHealth(String strategy) {
+        this.strategy = strategy;
+    }
+
+    public void onAttempt() {
+        if (recentFailureRate < 0 && attempts > 0) {
+            // Statistics saved before the moving rate existed start it from the counters
+            recentFailureRate = (double) failures / attempts;
+        }
+        attempts++;
+    }
+
+    public void onAttemptAbandoned() {
+        attempts--;
+    }
+
+    public void onFirstFix(long timeToFirstFix, float accuracy) {
+        int fixes = attempts - failures;
+        averageTimeToFirstFix = average(averageTimeToFirstFix, timeToFirstFix, fixes);
+        averageAccuracy = average(averageAccuracy, accuracy, fixes);
+        recentFailureRate = average(getFailureRate(), 0, attempts);
+    }
+
+    public void onFailure(long timeToFailure) {
+        failures++;
+        recentFailureRate = average(getFailureRate(), 1, attempts);
+        averageTimeToFailure = average(averageTimeToFailure, timeToFailure, failures);
+    }
+
+    private static double average(double current, double sample, int samples) {
+        if (samples <= 1) {
+            return sample;
+        }
+        return current + SMOOTHING_FACTOR * (sample - current);
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the moving average of the fraction of attempts that failed, or 0 if there were no
+     * attempts. Recent attempts weigh more, so a strategy with many old failures that succeeds
+     * again sees its rate drop after a few attempts.
+     */
+    public double getFailureRate() {
+        if (recentFailureRate >= 0) {
+            return recentFailureRate;
+        }
+        return attempts == 0 ? 0 : (double) failures / attempts;
+    }
+
+    public double getAverageTimeToFirstFix() {
+        return averageTimeToFirstFix;
+    }
+
+    public double getAverageTimeToFailure() {
+        return averageTimeToFailure;
+    }
+
+    public double getAverageAccuracy() {
+        return averageAccuracy;
+    }
+}
@@ -0,0 +1,94 @@
+package com.bmacedo.easylocation.models;
+
+/**
+ *
+ * This class holds the summary of a trip between two stay points. While the trip is in progress,
+ * the end of the trip is the last fix.
+ *
+ */
+public class TripSummary {
+
+    private final double startLatitude;
+    private final double startLongitude;
+    private final long startTime;
+    private final double endLatitude;
+    private final double endLongitude;
+    private final long endTime;
+    private final double distanceMeters;
+    private final double maxSpeed;
+    private final int fixCount;
+
+    public TripSummary(double startLatitude, double startLongitude, long startTime,
+                       double endLatitude, double endLongitude, long endTime,
+                       double distanceMeters, double maxSpeed, int fixCount) {
+        this.startLatitude = startLatitude;
+        this.startLongitude = startLongitude;
+        this.startTime = startTime;
+        this.endLatitude = endLatitude;
+        this.endLongitude = endLongitude;
+        this.endTime = endTime;
+        this.distanceMeters = distanceMeters;
+        this.maxSpeed = maxSpeed;
+        this.fixCount = fixCount;
+    }
+
+    public double getStartLatitude() {
+        return startLatitude;
+    }
+
+    public double getStartLongitude() {
+        return startLongitude;
+    }
+
+    /**
+     * @return the start time, in milliseconds since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public double getEndLatitude() {
+        return endLatitude;
+    }
+
+    public double getEndLongitude() {
+        return endLongitude;
+    }
+
+    /**
+     * @return the end time, in milliseconds since the epoch
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    public long getDurationMillis() {
+        return endTime - startTime;
+    }
+
+    /**
+     * @return the distance travelled along the fixes
+     */
+    public double getDistanceMeters() {
+        return distanceMeters;
+    }
+
+    /**
+     * @return the highest speed between two consecutive fixes, in meters per second
+     */
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    /**
+     * @return the average speed, in meters per second
+     */
+    public double getAverageSpeed() {
+        long duration = getDurationMillis();
+        return duration > 0 ? distanceMeters * 1000 / duration : 0;
+    }
+
+    public int getFixCount() {
+        return fixCount;
+    }
+}
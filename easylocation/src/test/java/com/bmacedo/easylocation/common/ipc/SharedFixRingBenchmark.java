@@ -0,0 +1,198 @@
+package com.bmacedo.easylocation.common.ipc;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Cost of the {@link SharedFixRing}. The JMH benchmarks measure, in a single JVM, the publish of a
+ * fix, the publish followed by the read of the fix, and a writer and a reader running at the same
+ * time on two threads.
+ *
+ * The main method runs the JMH benchmarks, then measures the latency from the publish of a fix to
+ * its read by a reader in another JVM process, with {@link SharedFixRing.Reader#awaitNext} and with
+ * a busy {@link SharedFixRing.Reader#poll}. The writer publishes its {@link System#nanoTime()}, which
+ * both processes share on the same machine. Run it from the unit test classpath:
+ *
+ * java -cp [test classpath] com.bmacedo.easylocation.common.ipc.SharedFixRingBenchmark
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SharedFixRingBenchmark {
+
+    private static final int CAPACITY = 64;
+    private static final int CROSS_PROCESS_FIXES = 2000;
+    // Time between two fixes published for the cross-process latency
+    private static final long CROSS_PROCESS_INTERVAL_MILLIS = 2;
+    private static final String READY = "ready";
+
+    @State(Scope.Group)
+    public static class Ring {
+        File file;
+        SharedFixRing.Writer writer;
+        SharedFixRing.Reader reader;
+        long next;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            file = File.createTempFile("ring", ".bin");
+            writer = SharedFixRing.openWriter(file, CAPACITY);
+            reader = SharedFixRing.openReader(file);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            reader.close();
+            writer.close();
+            file.delete();
+        }
+
+        long publish() {
+            long i = next++;
+            return writer.publish(i, System.nanoTime(), 48.85 + i * 1e-7, 2.35, 35, 5, 1, 90);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Fix {
+        final SharedFix fix = new SharedFix();
+    }
+
+    @Benchmark
+    @Group("publish")
+    public long publish(Ring ring) {
+        return ring.publish();
+    }
+
+    @Benchmark
+    @Group("roundTrip")
+    public boolean publishAndPoll(Ring ring, Fix fix) {
+        ring.publish();
+        return ring.reader.poll(fix.fix);
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(1)
+    public long concurrentPublish(Ring ring) {
+        return ring.publish();
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(1)
+    public boolean concurrentPoll(Ring ring, Fix fix) {
+        return ring.reader.poll(fix.fix);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2) {
+            readInChildProcess(new File(args[0]), Boolean.parseBoolean(args[1]));
+            return;
+        }
+        runJmh();
+        measureCrossProcess(false);
+        measureCrossProcess(true);
+    }
+
+    private static void runJmh() throws RunnerException {
+        new Runner(new OptionsBuilder().include(SharedFixRingBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Publishes fixes at a regular interval while a reader in another JVM prints the latencies
+     */
+    private static void measureCrossProcess(boolean isBusyPoll) throws IOException, InterruptedException {
+        File file = File.createTempFile("ring", ".bin");
+        SharedFixRing.Writer writer = SharedFixRing.openWriter(file, CAPACITY);
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                SharedFixRingBenchmark.class.getName(), file.getPath(), String.valueOf(isBusyPoll))
+                .redirectErrorStream(true).start();
+        try {
+            BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+            String line = output.readLine();
+            if (!READY.equals(line)) {
+                throw new IOException("The reader process did not start: " + line);
+            }
+            for (int i = 0; i < CROSS_PROCESS_FIXES; i++) {
+                writer.publish(i, System.nanoTime(), 48.85, 2.35, 35, 5, 1, 90);
+                Thread.sleep(CROSS_PROCESS_INTERVAL_MILLIS);
+            }
+            while ((line = output.readLine()) != null) {
+                System.out.println(line);
+            }
+            process.waitFor();
+        } finally {
+            process.destroy();
+            writer.close();
+            file.delete();
+        }
+    }
+
+    private static void readInChildProcess(File file, boolean isBusyPoll) throws IOException, InterruptedException {
+        SharedFixRing.Reader reader = SharedFixRing.openReader(file);
+        SharedFix fix = new SharedFix();
+        long[] latencies = new long[CROSS_PROCESS_FIXES];
+        int count = 0;
+        System.out.println(READY);
+        System.out.flush();
+        try {
+            while (count < CROSS_PROCESS_FIXES) {
+                boolean hasFix;
+                if (isBusyPoll) {
+                    hasFix = reader.poll(fix);
+                } else {
+                    hasFix = reader.awaitNext(fix, 1000);
+                    if (!hasFix) {
+                        break;
+                    }
+                }
+                if (hasFix) {
+                    latencies[count++] = System.nanoTime() - fix.getElapsedRealtimeNanos();
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        Arrays.sort(latencies, 0, count);
+        String mode = isBusyPoll ? "busy poll" : "awaitNext";
+        if (count == 0) {
+            System.out.println("Cross-process " + mode + ": no fix read");
+            return;
+        }
+        System.out.println("Cross-process " + mode + ": " + count + " fixes read, " + reader.getSkipped()
+                + " skipped, latency p50 " + toMicros(latencies[count / 2]) + " us, p99 "
+                + toMicros(latencies[count * 99 / 100]) + " us, max " + toMicros(latencies[count - 1]) + " us");
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
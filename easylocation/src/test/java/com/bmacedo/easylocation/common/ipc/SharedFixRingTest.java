@@ -0,0 +1,107 @@
+package com.bmacedo.easylocation.common.ipc;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SharedFixRingTest {
+
+    private static final int CAPACITY = 4;
+
+    private File file;
+    private SharedFixRing.Writer writer;
+    private SharedFixRing.Reader reader;
+    private final SharedFix fix = new SharedFix();
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("ring", ".bin");
+        writer = SharedFixRing.openWriter(file, CAPACITY);
+        reader = SharedFixRing.openReader(file);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        reader.close();
+        writer.close();
+        file.delete();
+    }
+
+    @Test
+    public void fixesAreReadInOrder() {
+        assertFalse(reader.poll(fix));
+        publish(1);
+        publish(2);
+
+        assertTrue(reader.poll(fix));
+        assertEquals(1, fix.getSequence());
+        assertEquals(1, fix.getLatitude(), 0);
+        assertEquals(1000, fix.getTime());
+        assertTrue(reader.poll(fix));
+        assertEquals(2, fix.getSequence());
+        assertFalse(reader.poll(fix));
+    }
+
+    @Test
+    public void readerOnlyReadsTheFixesPublishedAfterItOpened() throws IOException {
+        publish(1);
+        SharedFixRing.Reader lateReader = SharedFixRing.openReader(file);
+        try {
+            publish(2);
+            assertTrue(lateReader.poll(fix));
+            assertEquals(2, fix.getLatitude(), 0);
+        } finally {
+            lateReader.close();
+        }
+    }
+
+    @Test
+    public void overwrittenFixesAreSkipped() {
+        for (int i = 1; i <= CAPACITY + 2; i++) {
+            publish(i);
+        }
+
+        assertTrue(reader.poll(fix));
+        assertEquals(3, fix.getSequence());
+        assertEquals(2, reader.getSkipped());
+    }
+
+    @Test
+    public void newWriterStartsTheRingOver() throws IOException {
+        publish(1);
+        publish(2);
+        writer.close();
+        writer = SharedFixRing.openWriter(file, CAPACITY);
+        publish(5);
+
+        assertTrue(reader.poll(fix));
+        assertEquals(1, fix.getSequence());
+        assertEquals(5, fix.getLatitude(), 0);
+    }
+
+    @Test
+    public void awaitNextTimesOutWithoutFixes() throws InterruptedException {
+        assertFalse(reader.awaitNext(fix, 20));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFilesThatAreNotRings() throws IOException {
+        File other = File.createTempFile("other", ".bin");
+        try {
+            SharedFixRing.openReader(other);
+        } finally {
+            other.delete();
+        }
+    }
+
+    private void publish(double latitude) {
+        writer.publish((long) latitude * 1000, 0, latitude, -latitude, 0, 5, 0, 0);
+    }
+}
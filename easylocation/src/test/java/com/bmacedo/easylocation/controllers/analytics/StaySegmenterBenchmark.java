@@ -0,0 +1,114 @@
+package com.bmacedo.easylocation.controllers.analytics;
+
+import com.bmacedo.easylocation.models.StaySummary;
+import com.bmacedo.easylocation.models.TripSummary;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Throughput of {@link StaySegmenter#onFix} on a synthetic day of fixes every 10 seconds, made of
+ * stays with GPS jitter and the drives between them, so that both the fixes within a stay and the
+ * transitions are measured. The track is replayed in a loop with its times shifted, and the state
+ * is not saved. Run it from the unit test classpath:
+ *
+ * java -cp [test classpath] org.openjdk.jmh.Main StaySegmenterBenchmark
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StaySegmenterBenchmark {
+
+    private static final long FIX_INTERVAL = 10 * 1000;
+    private static final double METERS_PER_DEGREE = 111195;
+
+    private StaySegmenter segmenter;
+    private double[] latitudes;
+    private double[] longitudes;
+    private long trackMillis;
+    private long timeOffset;
+    private int next;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        segmenter = new StaySegmenter(null, new StaySegmenter.Listener() {
+            @Override
+            public void onStayStarted(StaySummary stay) {
+                blackhole.consume(stay);
+            }
+
+            @Override
+            public void onStayEnded(StaySummary stay) {
+                blackhole.consume(stay);
+            }
+
+            @Override
+            public void onTripStarted(TripSummary trip) {
+                blackhole.consume(trip);
+            }
+
+            @Override
+            public void onTripEnded(TripSummary trip) {
+                blackhole.consume(trip);
+            }
+        });
+        // Eight stays of an hour to three hours, with a drive of 10 to 30 minutes after each one
+        Random random = new Random(3);
+        int fixes = 0;
+        int[] stayFixes = new int[8];
+        int[] driveFixes = new int[8];
+        for (int i = 0; i < stayFixes.length; i++) {
+            stayFixes[i] = 360 + random.nextInt(720);
+            driveFixes[i] = 60 + random.nextInt(120);
+            fixes += stayFixes[i] + driveFixes[i];
+        }
+        latitudes = new double[fixes];
+        longitudes = new double[fixes];
+        double latitude = 48.85;
+        double longitude = 2.35;
+        int fix = 0;
+        for (int i = 0; i < stayFixes.length; i++) {
+            for (int j = 0; j < stayFixes[i]; j++, fix++) {
+                latitudes[fix] = latitude + (random.nextDouble() - 0.5) * 60 / METERS_PER_DEGREE;
+                longitudes[fix] = longitude + (random.nextDouble() - 0.5) * 60 / METERS_PER_DEGREE;
+            }
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            for (int j = 0; j < driveFixes[i]; j++, fix++) {
+                latitude += Math.cos(bearing) * 150 / METERS_PER_DEGREE;
+                longitude += Math.sin(bearing) * 150 / METERS_PER_DEGREE;
+                latitudes[fix] = latitude;
+                longitudes[fix] = longitude;
+            }
+        }
+        trackMillis = fixes * FIX_INTERVAL;
+    }
+
+    @Benchmark
+    public void onFix() {
+        int i = next;
+        segmenter.onFix(latitudes[i], longitudes[i], 10, timeOffset + i * FIX_INTERVAL);
+        if (i + 1 == latitudes.length) {
+            next = 0;
+            timeOffset += trackMillis;
+        } else {
+            next = i + 1;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.bmacedo.easylocation.controllers.analytics;
+
+import com.bmacedo.easylocation.models.StaySummary;
+import com.bmacedo.easylocation.models.TripSummary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays synthetic tracks with a fix every 10 seconds through a segmenter with the default
+ * radius and minimum stay
+ */
+public class StaySegmenterTest {
+
+    private static final long FIX_INTERVAL = 10 * 1000;
+    private static final long MINUTE = 60 * 1000;
+    private static final double METERS_PER_DEGREE = 111195;
+    private static final double RADIUS = StaySegmenter.DEFAULT_RADIUS_METERS;
+    private static final double WALKING_SPEED = 1.4;
+    private static final double DRIVING_SPEED = 15;
+
+    private RecordingListener listener;
+    private StaySegmenter segmenter;
+    private Track track;
+
+    @Before
+    public void setUp() {
+        listener = new RecordingListener();
+        segmenter = new StaySegmenter(null, listener);
+        track = new Track(segmenter, 48.85, 2.35, 1000000);
+    }
+
+    @Test
+    public void stayWithJitterStartsOnceAfterTheMinimumDuration() {
+        track.stay(4 * MINUTE, 30);
+        assertEquals("", listener.getEvents());
+
+        track.stay(6 * MINUTE, 30);
+
+        assertEquals("stayStarted", listener.getEvents());
+        StaySummary started = listener.stays.get(0);
+        assertEquals(1000000, started.getStartTime());
+        assertEquals(StaySegmenter.DEFAULT_MIN_STAY_MILLIS, started.getDurationMillis());
+        StaySummary current = segmenter.getCurrentStay();
+        assertEquals(1000000, current.getStartTime());
+        assertEquals(10 * MINUTE - FIX_INTERVAL, current.getDurationMillis());
+        assertEquals(60, current.getFixCount());
+        assertNull(segmenter.getCurrentTrip());
+    }
+
+    @Test
+    public void walkAwayEndsTheStayAndStartsATrip() {
+        track.stay(10 * MINUTE, 30);
+        long departedAt = track.getLastTime();
+        track.move(0, WALKING_SPEED, 10 * MINUTE);
+
+        assertEquals("stayStarted stayEnded tripStarted", listener.getEvents());
+        // The stay ends with the last fix within the radius, a minute into the walk
+        StaySummary stay = listener.stays.get(1);
+        assertEquals(1000000, stay.getStartTime());
+        assertTrue(stay.getEndTime() > departedAt);
+        assertTrue(stay.getEndTime() <= departedAt + travelTime(RADIUS, WALKING_SPEED));
+        TripSummary trip = segmenter.getCurrentTrip();
+        assertEquals(stay.getEndTime(), trip.getStartTime());
+        assertEquals(track.getLastTime(), trip.getEndTime());
+        assertFalse(segmenter.isStaying());
+    }
+
+    @Test
+    public void arrivalEndsTheTripAtTheFirstFixOfTheStay() {
+        track.stay(10 * MINUTE, 30);
+        long departedAt = track.getLastTime();
+        track.move(0, WALKING_SPEED, 10 * MINUTE);
+        long arrivedAt = track.getLastTime();
+        track.stay(10 * MINUTE, 30);
+
+        assertEquals("stayStarted stayEnded tripStarted tripEnded stayStarted", listener.getEvents());
+        TripSummary trip = listener.trips.get(1);
+        assertEquals(listener.stays.get(1).getEndTime(), trip.getStartTime());
+        // The trip ends with the first fix of the stay. The centroid of the walking fixes trails
+        // behind them, so the stay can start up to twice the radius before the arrival.
+        assertTrue(trip.getEndTime() <= arrivedAt);
+        assertTrue(trip.getEndTime() >= arrivedAt - travelTime(2 * RADIUS, WALKING_SPEED));
+        StaySummary started = listener.stays.get(2);
+        assertEquals(trip.getEndTime(), started.getStartTime());
+        assertEquals(StaySegmenter.DEFAULT_MIN_STAY_MILLIS, started.getDurationMillis());
+        assertEquals(track.getLastTime(), segmenter.getCurrentStay().getEndTime());
+        // The jitter at both ends is not counted
+        assertEquals(WALKING_SPEED * (trip.getEndTime() - departedAt) / 1000, trip.getDistanceMeters(), 30);
+        assertEquals(WALKING_SPEED, trip.getMaxSpeed(), 0.1);
+    }
+
+    @Test
+    public void drivingPastDoesNotStartAStay() {
+        track.stay(10 * MINUTE, 30);
+        long departedAt = track.getLastTime();
+        track.move(90, DRIVING_SPEED, 20 * MINUTE);
+
+        assertEquals("stayStarted stayEnded tripStarted", listener.getEvents());
+        // Every fix of the drive is outside the radius of the previous one
+        assertEquals(departedAt, listener.stays.get(1).getEndTime());
+        TripSummary trip = segmenter.getCurrentTrip();
+        assertEquals(departedAt, trip.getStartTime());
+        assertEquals(20 * MINUTE, trip.getDurationMillis());
+        assertEquals(DRIVING_SPEED * 20 * MINUTE / 1000, trip.getDistanceMeters(), 30);
+        assertEquals(DRIVING_SPEED, trip.getMaxSpeed(), 0.1);
+        assertEquals(120, trip.getFixCount());
+    }
+
+    @Test
+    public void briefStopDoesNotSplitTheTrip() {
+        track.stay(10 * MINUTE, 30);
+        track.move(0, DRIVING_SPEED, 5 * MINUTE);
+        track.stay(3 * MINUTE, 10);
+        track.move(0, DRIVING_SPEED, 5 * MINUTE);
+        long arrivedAt = track.getLastTime();
+        track.stay(10 * MINUTE, 30);
+
+        assertEquals("stayStarted stayEnded tripStarted tripEnded stayStarted", listener.getEvents());
+        TripSummary trip = listener.trips.get(1);
+        assertEquals(listener.stays.get(1).getEndTime(), trip.getStartTime());
+        assertTrue(trip.getEndTime() <= arrivedAt);
+        assertTrue(trip.getEndTime() >= arrivedAt - travelTime(2 * RADIUS, DRIVING_SPEED));
+        // Both drives are in the trip, with the time and the jitter of the stop
+        assertEquals(DRIVING_SPEED * 10 * MINUTE / 1000, trip.getDistanceMeters(), 300);
+        assertEquals(13 * MINUTE, trip.getDurationMillis(), 2 * FIX_INTERVAL);
+    }
+
+    @Test
+    public void inaccurateAndOutOfOrderFixesAreIgnored() {
+        track.stay(10 * MINUTE, 30);
+        long lastTime = track.getLastTime();
+        segmenter.onFix(49, 2.35, 500, lastTime + FIX_INTERVAL);
+        segmenter.onFix(49, 2.35, 5, lastTime - FIX_INTERVAL);
+
+        assertEquals("stayStarted", listener.getEvents());
+        assertEquals(lastTime, segmenter.getCurrentStay().getEndTime());
+    }
+
+    @Test
+    public void listenerCanCallBackIntoTheSegmenter() throws InterruptedException {
+        final StaySegmenter[] reentrant = new StaySegmenter[1];
+        final List<StaySummary> seenFromOtherThread = new ArrayList<>();
+        reentrant[0] = new StaySegmenter(null, new RecordingListener() {
+            @Override
+            public void onStayStarted(StaySummary stay) {
+                // Blocks if the listener is called while the segmenter holds its lock
+                Thread reader = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        seenFromOtherThread.add(reentrant[0].getCurrentStay());
+                    }
+                });
+                reader.start();
+                try {
+                    reader.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                assertFalse("The segmenter is locked during the notification", reader.isAlive());
+            }
+        });
+
+        new Track(reentrant[0], 48.85, 2.35, 1000000).stay(6 * MINUTE, 30);
+
+        assertEquals(1, seenFromOtherThread.size());
+        assertNotNull(seenFromOtherThread.get(0));
+    }
+
+    /**
+     * @return the time to travel the distance at the speed, rounded up to the next fix
+     */
+    private static long travelTime(double meters, double speed) {
+        return (long) (meters / speed * 1000) + FIX_INTERVAL;
+    }
+
+    private static class Track {
+        private final StaySegmenter segmenter;
+        private final Random random = new Random(7);
+        private double latitude;
+        private double longitude;
+        private long time;
+        private boolean hasFix;
+
+        Track(StaySegmenter segmenter, double latitude, double longitude, long time) {
+            this.segmenter = segmenter;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.time = time;
+        }
+
+        long getLastTime() {
+            return time;
+        }
+
+        /**
+         * Stays in place, with fixes scattered up to the given distance around it
+         */
+        void stay(long millis, double jitterMeters) {
+            for (long elapsed = 0; elapsed < millis; elapsed += FIX_INTERVAL) {
+                double north = (2 * random.nextDouble() - 1) * jitterMeters;
+                double east = (2 * random.nextDouble() - 1) * jitterMeters;
+                fix(latitude + toLatitude(north), longitude + toLongitude(east));
+            }
+        }
+
+        /**
+         * Moves in a straight line at the given speed in meters per second
+         */
+        void move(double bearing, double speed, long millis) {
+            double step = speed * FIX_INTERVAL / 1000;
+            double north = step * Math.cos(Math.toRadians(bearing));
+            double east = step * Math.sin(Math.toRadians(bearing));
+            for (long elapsed = 0; elapsed < millis; elapsed += FIX_INTERVAL) {
+                latitude += toLatitude(north);
+                longitude += toLongitude(east);
+                fix(latitude, longitude);
+            }
+        }
+
+        private void fix(double fixLatitude, double fixLongitude) {
+            if (hasFix) {
+                time += FIX_INTERVAL;
+            }
+            hasFix = true;
+            segmenter.onFix(fixLatitude, fixLongitude, 10, time);
+        }
+
+        private double toLatitude(double meters) {
+            return meters / METERS_PER_DEGREE;
+        }
+
+        private double toLongitude(double meters) {
+            return meters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude)));
+        }
+    }
+
+    private static class RecordingListener implements StaySegmenter.Listener {
+        final List<StaySummary> stays = new ArrayList<>();
+        final List<TripSummary> trips = new ArrayList<>();
+        private final StringBuilder events = new StringBuilder();
+
+        @Override
+        public void onStayStarted(StaySummary stay) {
+            record("stayStarted");
+            stays.add(stay);
+        }
+
+        @Override
+        public void onStayEnded(StaySummary stay) {
+            record("stayEnded");
+            stays.add(stay);
+        }
+
+        @Override
+        public void onTripStarted(TripSummary trip) {
+            record("tripStarted");
+            trips.add(trip);
+        }
+
+        @Override
+        public void onTripEnded(TripSummary trip) {
+            record("tripEnded");
+            trips.add(trip);
+        }
+
+        String getEvents() {
+            return events.toString();
+        }
+
+        private void record(String event) {
+            if (events.length() > 0) {
+                events.append(' ');
+            }
+            events.append(event);
+        }
+    }
+}
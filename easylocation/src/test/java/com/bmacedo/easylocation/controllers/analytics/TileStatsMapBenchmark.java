@@ -0,0 +1,111 @@
+package com.bmacedo.easylocation.controllers.analytics;
+
+import com.bmacedo.easylocation.controllers.util.QuadkeyUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Update cost per fix of the heatmap aggregation: the quadkeys of the fix at each zoom level are
+ * computed and added to a {@link TileStatsMap} that already holds the given number of tiles, as
+ * {@link VisitHeatmap} does for each location. The main method prints the memory per tile, then
+ * runs the benchmarks. Run it from the unit test classpath:
+ *
+ * java -cp [test classpath] com.bmacedo.easylocation.controllers.analytics.TileStatsMapBenchmark
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TileStatsMapBenchmark {
+
+    private static final int[] ZOOMS = {12, 15, 18};
+    private static final int FIXES = 4096;
+
+    @Param({"1000", "100000"})
+    public int tiles;
+
+    private TileStatsMap map;
+    private double[] latitudes;
+    private double[] longitudes;
+    private long[] keys;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        map = new TileStatsMap();
+        while (map.size() < tiles) {
+            map.add(QuadkeyUtil.encode(45 + random.nextDouble() * 5, random.nextDouble() * 7, 18), 1000, 1);
+        }
+        latitudes = new double[FIXES];
+        longitudes = new double[FIXES];
+        keys = new long[FIXES];
+        double latitude = 47.5;
+        double longitude = 3.5;
+        for (int i = 0; i < FIXES; i++) {
+            latitude += 0.0001 * (random.nextDouble() - 0.5);
+            longitude += 0.0001 * (random.nextDouble() - 0.5);
+            latitudes[i] = latitude;
+            longitudes[i] = longitude;
+            keys[i] = QuadkeyUtil.encode(latitude, longitude, 18);
+        }
+    }
+
+    @Benchmark
+    public long encode() {
+        int i = nextIndex();
+        return QuadkeyUtil.encode(latitudes[i], longitudes[i], 18);
+    }
+
+    @Benchmark
+    public void add() {
+        map.add(keys[nextIndex()], 1000, 1);
+    }
+
+    @Benchmark
+    public void updatePerFix() {
+        int i = nextIndex();
+        for (int zoom : ZOOMS) {
+            map.add(QuadkeyUtil.encode(latitudes[i], longitudes[i], zoom), 1000, 1);
+        }
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == FIXES ? 0 : i + 1;
+        return i;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int tiles : new int[]{1000, 100000}) {
+            TileStatsMap map = new TileStatsMap();
+            for (int i = 0; i < tiles; i++) {
+                map.add(i, 0, 1);
+            }
+            System.out.println(String.format(Locale.US, "%d tiles: %.1f bytes per tile", tiles,
+                    (double) map.getFootprintBytes() / map.size()));
+        }
+        new Runner(new OptionsBuilder().include(TileStatsMapBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,94 @@
+package com.bmacedo.easylocation.controllers.analytics;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TileStatsMapTest {
+
+    @Test
+    public void addAccumulatesTheValues() {
+        TileStatsMap map = new TileStatsMap();
+        map.add(7, 1000, 1);
+        map.add(7, 500, 0);
+        map.add(8, 0, 1);
+
+        assertEquals(2, map.size());
+        assertEquals(1500, map.getDwellMillis(7));
+        assertEquals(1, map.getVisits(7));
+        assertEquals(0, map.getDwellMillis(9));
+        assertEquals(0, map.getVisits(9));
+    }
+
+    @Test
+    public void growingKeepsEveryEntry() {
+        TileStatsMap map = new TileStatsMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(13);
+        for (int i = 0; i < 10000; i++) {
+            // Nearby keys differ only in their lower bits
+            long key = random.nextInt(5000);
+            long dwell = random.nextInt(1000);
+            map.add(key, dwell, 1);
+            Long previous = expected.get(key);
+            expected.put(key, previous != null ? previous + dwell : dwell);
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(true, 2 * map.size() <= map.capacity());
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertEquals(entry.getValue().longValue(), map.getDwellMillis(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void syncedValuesAreKeptAlongside() {
+        TileStatsMap map = new TileStatsMap();
+        map.add(1, 1000, 2);
+        map.addSynced(1, 400, 1);
+        // Tiles that are not in the map are ignored
+        map.addSynced(2, 400, 1);
+        map.put(3, 10, 1, 5, 1);
+
+        final long[] values = new long[4];
+        map.forEach(new TileStatsMap.Visitor() {
+            @Override
+            public void visit(long key, long dwellMillis, int visits, long syncedDwellMillis, int syncedVisits) {
+                if (key == 1) {
+                    values[0] = dwellMillis;
+                    values[1] = visits;
+                    values[2] = syncedDwellMillis;
+                    values[3] = syncedVisits;
+                }
+            }
+        });
+
+        assertEquals(2, map.size());
+        assertEquals(1000, values[0]);
+        assertEquals(2, values[1]);
+        assertEquals(400, values[2]);
+        assertEquals(1, values[3]);
+    }
+
+    @Test
+    public void clearRemovesEveryEntry() {
+        TileStatsMap map = new TileStatsMap();
+        for (int i = 0; i < 100; i++) {
+            map.add(i, 1, 1);
+        }
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertEquals(0, map.getVisits(5));
+        assertEquals(16, map.capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeKeys() {
+        new TileStatsMap().add(-1, 0, 1);
+    }
+}
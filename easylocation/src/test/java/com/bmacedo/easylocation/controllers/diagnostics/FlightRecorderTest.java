@@ -0,0 +1,231 @@
+package com.bmacedo.easylocation.controllers.diagnostics;
+
+import com.bmacedo.easylocation.controllers.util.Clock;
+import com.bmacedo.easylocation.controllers.util.FakeClock;
+import com.bmacedo.easylocation.models.LocationState;
+import com.bmacedo.easylocation.models.LocationStrategyError.StrategyError;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FlightRecorderTest {
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(8, new FlightRecorder(5, new FakeClock(0)).getCapacity());
+        assertEquals(8, new FlightRecorder(8, new FakeClock(0)).getCapacity());
+    }
+
+    @Test
+    public void ringKeepsTheLastRecordsWhenItWrapsAround() throws IOException {
+        FakeClock clock = new FakeClock(1000);
+        FlightRecorder recorder = new FlightRecorder(4, clock);
+        for (int i = 0; i < 10; i++) {
+            recorder.recordFixAccepted("Strategy", i);
+            clock.advance(10);
+        }
+
+        List<long[]> records = readRecords(dump(recorder));
+
+        assertEquals(4, records.size());
+        for (int i = 0; i < 4; i++) {
+            long[] record = records.get(i);
+            assertEquals(7 + i, record[0]);
+            assertEquals(1000 + (6 + i) * 10, record[1]);
+            assertEquals(6 + i, Float.intBitsToFloat(FlightRecorder.getValue(record[2])), 0);
+        }
+    }
+
+    @Test
+    public void decoderRendersEveryTypeOfRecord() throws IOException {
+        FlightRecorder recorder = new FlightRecorder(16, new FakeClock(5000));
+        recorder.recordStateChanged(null, LocationState.WAITING_INITIAL_LOCATION);
+        recorder.recordStrategyStarted("Services");
+        recorder.recordStrategyError(StrategyError.STRATEGY_DISABLED, "Services");
+        recorder.recordStrategySwitched("Services", "Device");
+        recorder.recordFixAccepted("Device", 12.5f);
+        recorder.recordFixRejected("Device", FlightRecorder.REJECTED_NOT_NEWER, 30);
+        recorder.recordFixRejected(null, FlightRecorder.REJECTED_NOT_DELIVERED, 5);
+        recorder.recordStrategyStopped("Device");
+
+        StringBuilder text = new StringBuilder();
+        FlightRecordDecoder.decode(new ByteArrayInputStream(dump(recorder)), text);
+
+        String[] lines = text.toString().split("\n");
+        assertEquals(9, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("Flight record dumped at "));
+        assertTrue(lines[0], lines[0].endsWith(", 8 records"));
+        assertLine("#1", "STATE NONE -> WAITING_INITIAL_LOCATION", lines[1]);
+        assertLine("#2", "STRATEGY_STARTED Services", lines[2]);
+        assertLine("#3", "STRATEGY_ERROR STRATEGY_DISABLED Services", lines[3]);
+        assertLine("#4", "STRATEGY_SWITCHED Services -> Device", lines[4]);
+        assertLine("#5", "FIX_ACCEPTED Device accuracy=12.5m", lines[5]);
+        assertLine("#6", "FIX_REJECTED Device NOT_NEWER accuracy=30.0m", lines[6]);
+        assertLine("#7", "FIX_REJECTED ? NOT_DELIVERED accuracy=5.0m", lines[7]);
+        assertLine("#8", "STRATEGY_STOPPED Device", lines[8]);
+    }
+
+    @Test
+    public void decoderReportsTheRecordsSkippedByTheDump() throws IOException {
+        // Records overwritten while the dump was written leave a gap in the sequences
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(FlightRecorder.MAGIC);
+        output.writeInt(FlightRecorder.VERSION);
+        output.writeLong(1000);
+        output.writeLong(System.currentTimeMillis());
+        output.writeInt(1);
+        output.writeUTF("Services");
+        output.writeInt(2);
+        for (long sequence : new long[]{4, 7}) {
+            output.writeLong(sequence);
+            output.writeLong(900);
+            output.writeLong(FlightRecorder.pack(FlightRecorder.TYPE_STRATEGY_STARTED, 0, 0, 0));
+        }
+
+        StringBuilder text = new StringBuilder();
+        FlightRecordDecoder.decode(new ByteArrayInputStream(bytes.toByteArray()), text);
+
+        String[] lines = text.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertLine("#4", "STRATEGY_STARTED Services", lines[1]);
+        assertEquals("... 2 records lost", lines[2]);
+        assertLine("#7", "STRATEGY_STARTED Services", lines[3]);
+    }
+
+    @Test
+    public void emptyDumpHasTheHeaderOnly() throws IOException {
+        StringBuilder text = new StringBuilder();
+        FlightRecordDecoder.decode(new ByteArrayInputStream(dump(new FlightRecorder(2, new FakeClock(0)))), text);
+
+        assertEquals(1, text.toString().split("\n").length);
+        assertTrue(text.toString(), text.toString().endsWith(", 0 records\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void decoderRejectsOtherFiles() throws IOException {
+        FlightRecordDecoder.decode(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8}), new StringBuilder());
+    }
+
+    @Test
+    public void dumpsDuringConcurrentWritesHaveNoTornRecords() throws Exception {
+        // Each writer sets the time it records, so a record with the time of one write and the
+        // payload of another one is detected
+        final ThreadLocal<Long> now = new ThreadLocal<Long>() {
+            @Override
+            protected Long initialValue() {
+                return 0L;
+            }
+        };
+        final FlightRecorder recorder = new FlightRecorder(64, new Clock() {
+            @Override
+            public long elapsedRealtime() {
+                return now.get();
+            }
+        });
+        final int writers = 4;
+        final int writes = 200000;
+        final CountDownLatch done = new CountDownLatch(writers);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int w = 0; w < writers; w++) {
+            final int writer = w;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        String name = "Writer" + writer;
+                        for (int i = 1; i <= writes; i++) {
+                            now.set(writer * 1000000000L + i);
+                            recorder.recordFixAccepted(name, i);
+                        }
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        int dumps = 0;
+        int checked = 0;
+        while (done.getCount() > 0 || dumps == 0) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            recorder.writeTo(output);
+            Dump dump = parse(output.toByteArray());
+            assertTrue(dump.records.size() <= recorder.getCapacity());
+            long previous = 0;
+            for (long[] record : dump.records) {
+                assertTrue("Records out of order", record[0] > previous);
+                previous = record[0];
+                int writer = (int) (record[1] / 1000000000L);
+                long i = record[1] % 1000000000L;
+                assertEquals("Writer" + writer, dump.names[FlightRecorder.getB(record[2])]);
+                assertEquals(FlightRecorder.TYPE_FIX_ACCEPTED, FlightRecorder.getType(record[2]));
+                assertEquals(i, (long) Float.intBitsToFloat(FlightRecorder.getValue(record[2])));
+                checked++;
+            }
+            dumps++;
+        }
+
+        assertNull(failure.get());
+        assertTrue(checked > 0);
+        assertEquals(64, readRecords(dump(recorder)).size());
+    }
+
+    private static void assertLine(String sequence, String description, String line) {
+        // The time depends on the time zone of the machine
+        assertTrue(line, line.matches(sequence + " \\d\\d:\\d\\d:\\d\\d\\.\\d\\d\\d " + Pattern.quote(description)));
+    }
+
+    private static byte[] dump(FlightRecorder recorder) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        recorder.writeTo(output);
+        return output.toByteArray();
+    }
+
+    private static List<long[]> readRecords(byte[] dump) throws IOException {
+        return parse(dump).records;
+    }
+
+    /**
+     * Reads the dump without the decoder, to check the raw records
+     */
+    private static Dump parse(byte[] bytes) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+        assertEquals(FlightRecorder.MAGIC, input.readInt());
+        assertEquals(FlightRecorder.VERSION, input.readInt());
+        input.readLong();
+        input.readLong();
+        Dump dump = new Dump();
+        dump.names = new String[input.readInt()];
+        for (int i = 0; i < dump.names.length; i++) {
+            dump.names[i] = input.readUTF();
+        }
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            dump.records.add(new long[]{input.readLong(), input.readLong(), input.readLong()});
+        }
+        assertEquals(-1, input.read());
+        return dump;
+    }
+
+    private static class Dump {
+        String[] names;
+        final List<long[]> records = new ArrayList<>();
+    }
+}
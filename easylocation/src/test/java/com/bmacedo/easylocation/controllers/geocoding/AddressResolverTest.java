@@ -0,0 +1,240 @@
+package com.bmacedo.easylocation.controllers.geocoding;
+
+import android.location.Address;
+import android.location.Location;
+
+import com.bmacedo.easylocation.models.AddressModel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class AddressResolverTest {
+
+    private static final int PRECISION = 8;
+    private static final long TIMEOUT = 5000;
+
+    private FakeGeocoder geocoder;
+    private RecordingCallback callback;
+    private AddressResolver resolver;
+
+    @Before
+    public void setUp() {
+        deleteDiskCache();
+        geocoder = new FakeGeocoder();
+        callback = new RecordingCallback();
+        resolver = createResolver(geocoder, 2);
+    }
+
+    @After
+    public void tearDown() {
+        geocoder.release.countDown();
+        deleteDiskCache();
+    }
+
+    @Test
+    public void sameCellIsServedFromMemory() {
+        resolveAndWait(createLocation(48.85660, 2.35220));
+        // A couple of meters away, in the same cell
+        resolveAndWait(createLocation(48.85661, 2.35221));
+
+        assertEquals(1, geocoder.calls);
+        assertEquals(1, resolver.getMemoryHits());
+        assertEquals(0.5, resolver.getHitRate(), 1e-9);
+        assertEquals("48.8566", callback.addresses.get(1).getLocality());
+    }
+
+    @Test
+    public void leastRecentlyUsedCellIsEvictedToTheDiskCache() {
+        resolveAndWait(createLocation(48.8566, 2.3522));
+        resolveAndWait(createLocation(51.5074, -0.1278));
+        resolveAndWait(createLocation(40.7128, -74.0060));
+        resolveAndWait(createLocation(48.8566, 2.3522));
+
+        assertEquals(3, geocoder.calls);
+        assertEquals(0, resolver.getMemoryHits());
+        assertEquals(1, resolver.getDiskHits());
+        assertEquals("48.8566", callback.addresses.get(3).getLocality());
+    }
+
+    @Test
+    public void diskCacheIsSharedWithTheNextResolver() {
+        resolveAndWait(createLocation(48.8566, 2.3522));
+
+        FakeGeocoder otherGeocoder = new FakeGeocoder();
+        resolver = createResolver(otherGeocoder, 2);
+        resolveAndWait(createLocation(48.8566, 2.3522));
+
+        assertEquals(0, otherGeocoder.calls);
+        assertEquals(1, resolver.getDiskHits());
+        assertEquals(1, resolver.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void concurrentLookupsOfACellCallTheGeocoderOnce() throws InterruptedException {
+        final int lookups = 8;
+        geocoder.release = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < lookups; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    resolver.resolve(createLocation(48.8566, 2.3522), callback);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(lookups - 1, resolver.getCoalescedRequests());
+        geocoder.release.countDown();
+        awaitResults(lookups);
+
+        assertEquals(1, geocoder.calls);
+        assertEquals(lookups, callback.addresses.size());
+        assertEquals((double) (lookups - 1) / lookups, resolver.getHitRate(), 1e-9);
+        assertTrue(resolver.getLatencyPercentileMicros(100) > 0);
+    }
+
+    @Test
+    public void errorsAreDeliveredAndNotCached() {
+        geocoder.error = new IOException("Expected by the test");
+        resolveAndWait(createLocation(48.8566, 2.3522));
+        assertEquals(1, callback.errors.size());
+
+        geocoder.error = null;
+        resolveAndWait(createLocation(48.8566, 2.3522));
+        assertEquals(2, geocoder.calls);
+        assertEquals("48.8566", callback.addresses.get(0).getLocality());
+    }
+
+    @Test
+    public void missingAddressIsNotCached() {
+        geocoder.hasAddress = false;
+        resolveAndWait(createLocation(48.8566, 2.3522));
+        assertNull(callback.addresses.get(0));
+
+        resolveAndWait(createLocation(48.8566, 2.3522));
+        assertEquals(2, geocoder.calls);
+        assertEquals(0, resolver.getHitRate(), 0);
+    }
+
+    private AddressResolver createResolver(AddressGeocoder geocoder, int memoryEntries) {
+        return new AddressResolver(RuntimeEnvironment.application, geocoder, PRECISION, memoryEntries, 16);
+    }
+
+    private void resolveAndWait(Location location) {
+        int results = callback.getResults();
+        resolver.resolve(location, callback);
+        awaitResults(results + 1);
+    }
+
+    /**
+     * The results are resolved in background, then posted to the main thread
+     */
+    private void awaitResults(int results) {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (callback.getResults() < results && System.currentTimeMillis() < deadline) {
+            ShadowLooper.runUiThreadTasks();
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        assertEquals(results, callback.getResults());
+    }
+
+    private static void deleteDiskCache() {
+        File[] directories = RuntimeEnvironment.application.getCacheDir().listFiles();
+        if (directories == null) {
+            return;
+        }
+        for (File directory : directories) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    private static Location createLocation(double latitude, double longitude) {
+        Location location = new Location("fake");
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        return location;
+    }
+
+    /**
+     * Geocoder that names the locality after the latitude
+     */
+    private static class FakeGeocoder implements AddressGeocoder {
+        volatile int calls;
+        volatile boolean hasAddress = true;
+        volatile IOException error;
+        volatile CountDownLatch release = new CountDownLatch(0);
+
+        @Override
+        public AddressModel getAddress(double latitude, double longitude) throws IOException {
+            calls++;
+            try {
+                release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (error != null) {
+                throw error;
+            }
+            if (!hasAddress) {
+                return null;
+            }
+            Address address = new Address(Locale.US);
+            address.setLocality(String.format(Locale.US, "%.4f", latitude));
+            return new AddressModel(address);
+        }
+    }
+
+    private static class RecordingCallback implements AddressResolver.Callback {
+        final List<AddressModel> addresses = new ArrayList<>();
+        final List<IOException> errors = new ArrayList<>();
+
+        int getResults() {
+            return addresses.size() + errors.size();
+        }
+
+        @Override
+        public void onAddressResolved(Location location, AddressModel address) {
+            addresses.add(address);
+        }
+
+        @Override
+        public void onAddressError(Location location, IOException error) {
+            errors.add(error);
+        }
+    }
+}
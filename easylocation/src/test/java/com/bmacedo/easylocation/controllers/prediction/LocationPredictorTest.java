@@ -0,0 +1,169 @@
+package com.bmacedo.easylocation.controllers.prediction;
+
+import com.bmacedo.easylocation.controllers.util.FakeClock;
+import com.bmacedo.easylocation.controllers.util.GeodesyUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LocationPredictorTest {
+
+    private static final long MAX_EXTRAPOLATION = 10000;
+    private static final double LATITUDE = 48.85;
+    private static final double LONGITUDE = 2.35;
+    private static final double NaN = Double.NaN;
+
+    private FakeClock clock;
+    private LocationPredictor predictor;
+    private double[] out;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock(1000000);
+        predictor = new LocationPredictor(clock, MAX_EXTRAPOLATION);
+        out = new double[3];
+    }
+
+    @Test
+    public void nothingIsPredictedBeforeTheFirstFix() {
+        assertFalse(predictor.predictNow(out));
+        predictor.onFix(nowNanos(), LATITUDE, LONGITUDE, 5, 0, 0);
+        assertTrue(predictor.predictNow(out));
+        predictor.reset();
+        assertFalse(predictor.predictNow(out));
+    }
+
+    @Test
+    public void predictionMovesAlongTheBearing() {
+        predictor.onFix(nowNanos(), LATITUDE, LONGITUDE, 5, 10, 90);
+        clock.advance(2000);
+
+        assertTrue(predictor.predictNow(out));
+
+        // 20 meters to the east
+        assertEquals(LATITUDE, out[0], 1e-9);
+        assertTrue(out[1] > LONGITUDE);
+        assertEquals(20, GeodesyUtil.haversine(LATITUDE, LONGITUDE, out[0], out[1]), 0.01);
+        // Accuracy, then the speed uncertainty and the acceleration over 2 seconds
+        assertEquals(5 + 2 + 4, out[2], 1e-9);
+    }
+
+    @Test
+    public void velocityIsDerivedWithoutAReportedSpeed() {
+        predictor.onFix(nowNanos(), LATITUDE, LONGITUDE, 5, NaN, 0);
+        clock.advance(10000);
+        double north = LATITUDE + Math.toDegrees(100 / GeodesyUtil.EARTH_RADIUS_METERS);
+        predictor.onFix(nowNanos(), north, LONGITUDE, 5, NaN, 0);
+        clock.advance(1000);
+
+        assertTrue(predictor.predictNow(out));
+
+        // 10 meters per second to the north, with the noise of both fixes over the 10 seconds
+        assertEquals(LONGITUDE, out[1], 1e-9);
+        assertEquals(10, GeodesyUtil.haversine(LATITUDE, LONGITUDE, out[0], out[1]) - 100, 0.01);
+        assertEquals(5 + 1 + 1, out[2], 1e-9);
+    }
+
+    @Test
+    public void movementWithinTheAccuracyIsNotExtrapolated() {
+        predictor.onFix(nowNanos(), LATITUDE, LONGITUDE, 20, NaN, 0);
+        clock.advance(10000);
+        double north = LATITUDE + Math.toDegrees(30 / GeodesyUtil.EARTH_RADIUS_METERS);
+        predictor.onFix(nowNanos(), north, LONGITUDE, 20, NaN, 0);
+        clock.advance(5000);
+
+        assertTrue(predictor.predictNow(out));
+
+        assertEquals(north, out[0], 1e-9);
+        assertEquals(LONGITUDE, out[1], 1e-9);
+    }
+
+    @Test
+    public void velocityIsNotDerivedFromAStaleFix() {
+        predictor.onFix(nowNanos(), LATITUDE, LONGITUDE, 5, NaN, 0);
+        clock.advance(61000);
+        double north = LATITUDE + Math.toDegrees(1000 / GeodesyUtil.EARTH_RADIUS_METERS);
+        predictor.onFix(nowNanos(), north, LONGITUDE, 5, NaN, 0);
+        clock.advance(1000);
+
+        assertTrue(predictor.predictNow(out));
+
+        assertEquals(north, out[0], 1e-9);
+    }
+
+    @Test
+    public void positionStopsAfterTheMaximumExtrapolation() {
+        predictor.onFix(nowNanos(), LATITUDE, LONGITUDE, 5, 10, 0);
+        clock.advance(MAX_EXTRAPOLATION);
+        assertTrue(predictor.predictNow(out));
+        double[] atCutoff = out.clone();
+
+        clock.advance(20000);
+        assertTrue(predictor.predictNow(out));
+
+        assertEquals(100, GeodesyUtil.haversine(LATITUDE, LONGITUDE, atCutoff[0], atCutoff[1]), 0.01);
+        assertEquals(atCutoff[0], out[0], 1e-12);
+        assertEquals(atCutoff[1], out[1], 1e-12);
+        // The uncertainty keeps growing
+        assertEquals(5 + 30 + 900, out[2], 1e-9);
+    }
+
+    @Test
+    public void olderFixesAreIgnored() {
+        long nanos = nowNanos();
+        predictor.onFix(nanos, LATITUDE, LONGITUDE, 5, 0, 0);
+        predictor.onFix(nanos - 1000000000L, 0, 0, 5, 0, 0);
+        predictor.onFix(nanos, 0, 0, 5, 0, 0);
+
+        assertTrue(predictor.predictNow(out));
+
+        assertEquals(LATITUDE, out[0], 1e-9);
+        assertEquals(LONGITUDE, out[1], 1e-9);
+    }
+
+    @Test
+    public void predictionsDuringUpdatesSeeWholeFixes() throws InterruptedException {
+        // Every fix has the same latitude and longitude, and an accuracy that matches them, so a
+        // prediction mixing the fields of two fixes is detected
+        final AtomicBoolean isDone = new AtomicBoolean();
+        final AtomicReference<String> torn = new AtomicReference<>();
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    double[] prediction = new double[3];
+                    while (!isDone.get() && torn.get() == null) {
+                        if (predictor.predict(0, prediction)
+                                && (prediction[0] != prediction[1] || prediction[2] != prediction[0] * 1000)) {
+                            torn.set(prediction[0] + ", " + prediction[1] + ", " + prediction[2]);
+                        }
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        for (int i = 1; i <= 200000; i++) {
+            double degrees = (i % 80000) / 1000.0;
+            predictor.onFix(i, degrees, degrees, degrees * 1000, 0, 0);
+        }
+        isDone.set(true);
+        for (Thread reader : readers) {
+            reader.join(10000);
+        }
+
+        assertNull(torn.get());
+    }
+
+    private long nowNanos() {
+        return clock.elapsedRealtime() * 1000000;
+    }
+}
@@ -0,0 +1,173 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import com.bmacedo.easylocation.controllers.util.FakeClock;
+import com.bmacedo.easylocation.models.ClientUsage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClientUsageAccountantTest {
+
+    private static final String GPS = "Gps_Strategy";
+    private static final String NETWORK = "Network_Strategy";
+
+    private FakeClock clock;
+    private ClientUsageAccountant accountant;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock(1000000);
+        accountant = new ClientUsageAccountant(clock);
+    }
+
+    @Test
+    public void activeClientsShareTheCostInEqualParts() {
+        accountant.onClientStarted(1);
+        accountant.onProviderStarted(GPS);
+        clock.advance(6000);
+        accountant.onClientStarted(2);
+        accountant.onClientStarted(3);
+        clock.advance(9000);
+        accountant.onWakeup();
+        accountant.onFixesRejected(6);
+
+        // The first client paid alone for 6 seconds, then a third of the next 9 seconds
+        assertEquals(6000 + 3000, getProviderActiveMillis(1, GPS), 1e-6);
+        assertEquals(3000, getProviderActiveMillis(2, GPS), 1e-6);
+        assertEquals(3000, getProviderActiveMillis(3, GPS), 1e-6);
+        for (int clientId = 1; clientId <= 3; clientId++) {
+            ClientUsage usage = accountant.getUsage(clientId);
+            assertEquals(1.0 / 3, usage.getWakeups(), 1e-9);
+            assertEquals(2, usage.getRejectedFixes(), 1e-9);
+        }
+    }
+
+    @Test
+    public void timeIsChargedByStrategy() {
+        accountant.onClientStarted(1);
+        accountant.onProviderStarted(GPS);
+        clock.advance(4000);
+        accountant.onProviderStopped();
+        clock.advance(1000);
+        accountant.onProviderStarted(NETWORK);
+        clock.advance(2000);
+
+        assertEquals(4000, getProviderActiveMillis(1, GPS), 1e-6);
+        assertEquals(2000, getProviderActiveMillis(1, NETWORK), 1e-6);
+        assertEquals(6000, accountant.getUsage(1).getTotalProviderActiveMillis(), 1e-6);
+    }
+
+    @Test
+    public void lingerIsChargedToTheLastClients() {
+        accountant.onClientStarted(1);
+        accountant.onClientStarted(2);
+        accountant.onProviderStarted(GPS);
+        clock.advance(2000);
+        accountant.onClientStopped(1);
+        clock.advance(2000);
+        accountant.onClientStopped(2);
+
+        // The strategy lingers after the last client stopped, which keeps paying for it alone
+        clock.advance(5000);
+        accountant.onWakeup();
+        accountant.onProviderStopped();
+        clock.advance(5000);
+
+        assertEquals(1000, getProviderActiveMillis(1, GPS), 1e-6);
+        assertEquals(1000 + 2000 + 5000, getProviderActiveMillis(2, GPS), 1e-6);
+        assertEquals(0, accountant.getUsage(1).getWakeups(), 1e-9);
+        assertEquals(1, accountant.getUsage(2).getWakeups(), 1e-9);
+        assertFalse(accountant.getUsage(2).isActive());
+    }
+
+    @Test
+    public void lingerIsSharedByTheClientsStoppedTogether() {
+        accountant.onClientStarted(1);
+        accountant.onClientStarted(2);
+        accountant.onProviderStarted(GPS);
+        clock.advance(2000);
+        accountant.onAllClientsStopped();
+        clock.advance(4000);
+        accountant.onProviderStopped();
+
+        assertEquals(3000, getProviderActiveMillis(1, GPS), 1e-6);
+        assertEquals(3000, getProviderActiveMillis(2, GPS), 1e-6);
+    }
+
+    @Test
+    public void fixesAreDeliveredOnlyToTheActiveClients() {
+        accountant.onClientStarted(1);
+        accountant.onClientStarted(2);
+        accountant.onProviderStarted(GPS);
+        accountant.onFixesDelivered(3);
+        accountant.onClientStopped(1);
+        accountant.onFixesDelivered(2);
+        accountant.onClientStopped(2);
+
+        // Fixes obtained during the linger are not delivered to anyone
+        accountant.onFixesDelivered(4);
+
+        assertEquals(3, accountant.getUsage(1).getFixesDelivered());
+        assertEquals(3 + 2, accountant.getUsage(2).getFixesDelivered());
+    }
+
+    @Test
+    public void oldestInactiveAccountsAreEvictedAfter32() {
+        accountant.onClientStarted(0);
+        for (int clientId = 1; clientId <= 33; clientId++) {
+            accountant.onClientStarted(clientId);
+            accountant.onClientStopped(clientId);
+        }
+
+        // The first stopped client is evicted, the active one is kept however old it is
+        assertNull(accountant.getUsage(1));
+        assertNotNull(accountant.getUsage(0));
+        assertTrue(accountant.getUsage(0).isActive());
+        assertNotNull(accountant.getUsage(2));
+        assertNotNull(accountant.getUsage(33));
+        assertEquals(1 + 32, accountant.getUsages().size());
+    }
+
+    @Test
+    public void lingeringAccountIsNotEvicted() {
+        accountant.onClientStarted(100);
+        accountant.onProviderStarted(GPS);
+        for (int clientId = 1; clientId <= 32; clientId++) {
+            accountant.onClientStarted(clientId);
+            accountant.onClientStopped(clientId);
+        }
+        accountant.onClientStopped(100);
+
+        // The oldest inactive account pays for the linger, so the next oldest is evicted instead
+        assertNotNull(accountant.getUsage(100));
+        assertNull(accountant.getUsage(1));
+        assertEquals(32, accountant.getUsages().size());
+    }
+
+    @Test
+    public void restartedClientKeepsItsAccount() {
+        accountant.onClientStarted(1);
+        accountant.onProviderStarted(GPS);
+        clock.advance(1000);
+        accountant.onClientStopped(1);
+        accountant.onProviderStopped();
+        accountant.onClientStarted(1);
+        accountant.onProviderStarted(GPS);
+        clock.advance(1000);
+
+        assertTrue(accountant.getUsage(1).isActive());
+        assertEquals(2000, getProviderActiveMillis(1, GPS), 1e-6);
+        assertEquals(1, accountant.getUsages().size());
+    }
+
+    private double getProviderActiveMillis(int clientId, String strategyName) {
+        Double millis = accountant.getUsage(clientId).getProviderActiveMillis().get(strategyName);
+        return millis != null ? millis : 0;
+    }
+}
@@ -0,0 +1,115 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import com.bmacedo.easylocation.api.EasyLocationConfiguration;
+import com.bmacedo.easylocation.controllers.util.FakeClock;
+import com.bmacedo.easylocation.models.LocationStrategyError.StrategyError;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ErrorResolutionCoordinatorTest {
+
+    private static final long INTERVAL = 30000;
+    private static final long COOLDOWN = 600000;
+
+    private FakeClock clock;
+    private ErrorResolutionCoordinator coordinator;
+    private long previousInterval;
+    private long previousCooldown;
+
+    @Before
+    public void setUp() {
+        EasyLocationConfiguration configuration = EasyLocationConfiguration.getInstance();
+        previousInterval = configuration.getResolutionInterval();
+        previousCooldown = configuration.getResolutionCooldown();
+        configuration.setResolutionPolicy(INTERVAL, COOLDOWN);
+        clock = new FakeClock(1000000);
+        coordinator = new ErrorResolutionCoordinator(clock);
+    }
+
+    @After
+    public void tearDown() {
+        EasyLocationConfiguration.getInstance().setResolutionPolicy(previousInterval, previousCooldown);
+    }
+
+    @Test
+    public void firstResolutionIsAllowed() {
+        assertFalse(coordinator.isResolving());
+        assertEquals(0, coordinator.getTimeUntilAllowed(StrategyError.STRATEGY_DISABLED));
+    }
+
+    @Test
+    public void resolutionIsShownUntilAnswered() {
+        coordinator.onResolutionStarted(StrategyError.STRATEGY_DISABLED);
+        assertTrue(coordinator.isResolving());
+
+        coordinator.onResolutionSolved(StrategyError.STRATEGY_DISABLED);
+        assertFalse(coordinator.isResolving());
+    }
+
+    @Test
+    public void repeatedErrorWaitsForTheInterval() {
+        coordinator.onResolutionStarted(StrategyError.STRATEGY_DISABLED);
+        coordinator.onResolutionSolved(StrategyError.STRATEGY_DISABLED);
+        clock.advance(10000);
+
+        assertEquals(INTERVAL - 10000, coordinator.getTimeUntilAllowed(StrategyError.STRATEGY_DISABLED));
+        // Each type of error is limited separately
+        assertEquals(0, coordinator.getTimeUntilAllowed(StrategyError.STRATEGY_CONNECTION_FAILURE));
+
+        clock.advance(INTERVAL - 10000);
+        assertEquals(0, coordinator.getTimeUntilAllowed(StrategyError.STRATEGY_DISABLED));
+    }
+
+    @Test
+    public void declinedResolutionWaitsForTheCooldown() {
+        coordinator.onResolutionStarted(StrategyError.STRATEGY_DISABLED);
+        clock.advance(5000);
+        coordinator.onResolutionDeclined(StrategyError.STRATEGY_DISABLED);
+        assertFalse(coordinator.isResolving());
+
+        // The cool-down counts from the answer, and outlasts the interval
+        clock.advance(INTERVAL);
+        assertEquals(COOLDOWN - INTERVAL, coordinator.getTimeUntilAllowed(StrategyError.STRATEGY_DISABLED));
+        assertEquals(0, coordinator.getTimeUntilAllowed(StrategyError.STRATEGY_CONNECTION_FAILURE));
+
+        clock.advance(COOLDOWN - INTERVAL);
+        assertEquals(0, coordinator.getTimeUntilAllowed(StrategyError.STRATEGY_DISABLED));
+    }
+
+    @Test
+    public void acceptedResolutionClearsTheCooldown() {
+        coordinator.onResolutionStarted(StrategyError.STRATEGY_DISABLED);
+        coordinator.onResolutionDeclined(StrategyError.STRATEGY_DISABLED);
+        clock.advance(COOLDOWN);
+        coordinator.onResolutionStarted(StrategyError.STRATEGY_DISABLED);
+        coordinator.onResolutionSolved(StrategyError.STRATEGY_DISABLED);
+
+        // Only the interval applies to the next report of the error
+        clock.advance(INTERVAL);
+        assertEquals(0, coordinator.getTimeUntilAllowed(StrategyError.STRATEGY_DISABLED));
+    }
+
+    @Test
+    public void flappingErrorIsResolvedOncePerInterval() {
+        int launches = 0;
+        for (int second = 0; second < 120; second++) {
+            // The error comes back every second, and the user accepts every resolution
+            if (!coordinator.isResolving() && coordinator.getTimeUntilAllowed(StrategyError.STRATEGY_DISABLED) == 0) {
+                coordinator.onResolutionStarted(StrategyError.STRATEGY_DISABLED);
+                launches++;
+            }
+            clock.advance(1000);
+            if (coordinator.isResolving()) {
+                coordinator.onResolutionSolved(StrategyError.STRATEGY_DISABLED);
+            }
+        }
+
+        assertEquals(120000 / INTERVAL, launches);
+    }
+}
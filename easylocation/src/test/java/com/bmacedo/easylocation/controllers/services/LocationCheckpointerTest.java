@@ -0,0 +1,154 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import android.location.Location;
+
+import com.bmacedo.easylocation.controllers.util.FakeClock;
+import com.bmacedo.easylocation.controllers.util.FakeTaskScheduler;
+import com.bmacedo.easylocation.models.LocationCheckpoint;
+import com.bmacedo.easylocation.models.LocationState;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class LocationCheckpointerTest {
+
+    private static final long INTERVAL = 30000;
+    private static final float DISTANCE = 50;
+    // About 111 meters of latitude
+    private static final double FAR = 0.001;
+    // About 11 meters of latitude
+    private static final double NEAR = 0.0001;
+
+    private File file;
+    private FakeClock clock;
+    private FakeTaskScheduler scheduler;
+    private LocationCheckpointer checkpointer;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("checkpoint", ".json");
+        file.delete();
+        clock = new FakeClock(100000);
+        scheduler = new FakeTaskScheduler(clock);
+        checkpointer = new LocationCheckpointer(file, INTERVAL, DISTANCE, clock, scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void firstLocationIsWrittenRightAway() {
+        checkpointer.onLocationChanged(createLocation(0), LocationState.IDLE);
+        scheduler.advance(0);
+        assertEquals(0, getLatitude(), 0);
+    }
+
+    @Test
+    public void distanceTriggerWaitsForTheInterval() {
+        checkpointer.onLocationChanged(createLocation(0), LocationState.IDLE);
+        scheduler.advance(1000);
+
+        checkpointer.onLocationChanged(createLocation(FAR), LocationState.IDLE);
+        scheduler.advance(INTERVAL - 1000 - 1);
+        assertEquals(0, getLatitude(), 0);
+
+        scheduler.advance(1);
+        assertEquals(FAR, getLatitude(), 0);
+    }
+
+    @Test
+    public void pendingLocationIsCoalesced() {
+        checkpointer.onLocationChanged(createLocation(0), LocationState.IDLE);
+        scheduler.advance(0);
+
+        checkpointer.onLocationChanged(createLocation(FAR), LocationState.IDLE);
+        checkpointer.onLocationChanged(createLocation(2 * FAR), LocationState.IDLE);
+        checkpointer.onLocationChanged(createLocation(3 * FAR), LocationState.IDLE);
+        assertEquals(1, scheduler.getPendingTasks());
+
+        scheduler.advance(INTERVAL);
+        assertEquals(3 * FAR, getLatitude(), 0);
+    }
+
+    @Test
+    public void locationsThatDidNotMoveAreNotWritten() {
+        checkpointer.onLocationChanged(createLocation(0), LocationState.IDLE);
+        scheduler.advance(INTERVAL);
+
+        checkpointer.onLocationChanged(createLocation(NEAR), LocationState.IDLE);
+        assertEquals(0, scheduler.getPendingTasks());
+        scheduler.advance(INTERVAL);
+        assertEquals(0, getLatitude(), 0);
+    }
+
+    @Test
+    public void stateChangeIsWrittenAfterTheInterval() {
+        checkpointer.onLocationChanged(createLocation(0), LocationState.IDLE);
+        scheduler.advance(0);
+
+        checkpointer.onLocationChanged(createLocation(NEAR), LocationState.DONE);
+        scheduler.advance(INTERVAL);
+        assertEquals(LocationState.DONE, LocationCheckpointer.load(file).getState());
+    }
+
+    @Test
+    public void closeWritesTheLastLocationOffered() {
+        checkpointer.onLocationChanged(createLocation(0), LocationState.IDLE);
+        scheduler.advance(0);
+        checkpointer.onLocationChanged(createLocation(NEAR), LocationState.IDLE);
+
+        checkpointer.close(LocationState.DONE, null);
+        scheduler.advance(0);
+
+        LocationCheckpoint checkpoint = LocationCheckpointer.load(file);
+        assertEquals(LocationState.DONE, checkpoint.getState());
+        assertEquals(NEAR, checkpoint.getLocation().getLocation().getLatitude(), 0);
+    }
+
+    @Test
+    public void closeWithoutLocationsWritesTheState() {
+        checkpointer.close(LocationState.DONE, null);
+        scheduler.advance(0);
+
+        LocationCheckpoint checkpoint = LocationCheckpointer.load(file);
+        assertNotNull(checkpoint);
+        assertEquals(LocationState.DONE, checkpoint.getState());
+        assertNull(checkpoint.getLocation());
+    }
+
+    @Test
+    public void closeWritesBeforeTheInterval() {
+        checkpointer.onLocationChanged(createLocation(0), LocationState.IDLE);
+        scheduler.advance(0);
+
+        checkpointer.close(LocationState.DONE, createLocation(FAR));
+        scheduler.advance(0);
+        assertEquals(FAR, getLatitude(), 0);
+    }
+
+    private double getLatitude() {
+        return LocationCheckpointer.load(file).getLocation().getLocation().getLatitude();
+    }
+
+    private static Location createLocation(double latitude) {
+        Location location = new Location("fake");
+        location.setLatitude(latitude);
+        location.setTime(System.currentTimeMillis());
+        return location;
+    }
+}
@@ -0,0 +1,369 @@
+package com.bmacedo.easylocation.controllers.services;
+
+import android.content.Context;
+import android.location.Location;
+
+import com.bmacedo.easylocation.api.EasyLocationConfiguration;
+import com.bmacedo.easylocation.common.events.OnInitialLocationObtainedEvent;
+import com.bmacedo.easylocation.common.events.OnStrategyErrorNotSolved;
+import com.bmacedo.easylocation.common.events.OnStrategyErrorSolved;
+import com.bmacedo.easylocation.common.events.OnUpdatedLocationObtainedEvent;
+import com.bmacedo.easylocation.common.events.SingletonBus;
+import com.bmacedo.easylocation.common.intents.LocationServiceIntent;
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategy;
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategyDescriptor;
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategyManager;
+import com.bmacedo.easylocation.controllers.strategies.LocationStrategyRegistry;
+import com.bmacedo.easylocation.models.LocationStrategyError;
+import com.squareup.otto.Subscribe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ServiceController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class LocationServiceTest {
+
+    private static final int CLIENT_ID = 1;
+    private static final long LOAD_TIMEOUT = 5000;
+    private static final long PRIMARY_LATENCY = 2000;
+    private static final long LINGER_PERIOD = 10000;
+
+    private FakeStrategy primary;
+    private FakeStrategy secondary;
+    private ServiceController<LocationService> controller;
+    private LocationService service;
+    private long previousLingerPeriod;
+    private boolean isDestroyed;
+
+    @Before
+    public void setUp() {
+        primary = new FakeStrategy("Primary");
+        secondary = new FakeStrategy("Secondary");
+        register(primary, LocationStrategyDescriptor.Cost.LOW, PRIMARY_LATENCY);
+        register(secondary, LocationStrategyDescriptor.Cost.HIGH, 0);
+        previousLingerPeriod = EasyLocationConfiguration.getInstance().getLingerPeriod();
+        EasyLocationConfiguration.getInstance().setLingerPeriod(0);
+        controller = Robolectric.buildService(LocationService.class);
+        service = controller.attach().create().get();
+    }
+
+    @After
+    public void tearDown() {
+        EasyLocationConfiguration.getInstance().setFastFallbackEnabled(false);
+        EasyLocationConfiguration.getInstance().setLingerPeriod(previousLingerPeriod);
+        if (!isDestroyed) {
+            controller.destroy();
+        }
+        LocationStrategyRegistry.getInstance().unregister(primary.getName());
+        LocationStrategyRegistry.getInstance().unregister(secondary.getName());
+    }
+
+    @Test
+    public void reconnectionDeadlineFallsBackToTheNextStrategy() {
+        startChain();
+        assertEquals(1, primary.starts);
+
+        // Reported by the Services strategy when the reconnection deadline is exceeded
+        primary.reportError(LocationStrategyError.StrategyError.STRATEGY_CONNECTION_FAILURE);
+
+        assertEquals(1, primary.stops);
+        assertEquals(1, secondary.starts);
+    }
+
+    @Test
+    public void suspendedConnectionKeepsTheStrategy() {
+        startChain();
+        primary.reportError(LocationStrategyError.StrategyError.STRATEGY_CONNECTION_SUSPENDED);
+
+        assertEquals(0, primary.stops);
+        assertEquals(0, secondary.starts);
+    }
+
+    @Test
+    public void slowFirstFixKeepsTheStrategyByDefault() {
+        startChain();
+        ShadowLooper.idleMainLooper(10 * PRIMARY_LATENCY);
+
+        assertEquals(0, primary.stops);
+        assertEquals(0, secondary.starts);
+    }
+
+    @Test
+    public void fastFallbackStartsTheNextStrategyAfterThreeTimesTheLatency() {
+        EasyLocationConfiguration.getInstance().setFastFallbackEnabled(true);
+        startChain();
+        ShadowLooper.idleMainLooper(3 * PRIMARY_LATENCY - 1);
+        assertEquals(0, secondary.starts);
+
+        ShadowLooper.idleMainLooper(1);
+        assertEquals(1, primary.stops);
+        assertEquals(1, secondary.starts);
+    }
+
+    @Test
+    public void strategyKeepsRunningDuringTheLingerPeriod() {
+        EasyLocationConfiguration.getInstance().setLingerPeriod(LINGER_PERIOD);
+        startChain();
+        stopClient();
+        assertEquals(0, primary.stops);
+
+        ShadowLooper.idleMainLooper(LINGER_PERIOD - 1);
+        assertEquals(0, primary.stops);
+    }
+
+    @Test
+    public void restartDuringTheLingerPeriodReusesTheStrategy() {
+        EasyLocationConfiguration.getInstance().setLingerPeriod(LINGER_PERIOD);
+        startChain();
+        stopClient();
+        ShadowLooper.idleMainLooper(LINGER_PERIOD / 2);
+
+        startChain();
+        assertEquals(1, primary.starts);
+        ShadowLooper.idleMainLooper(2 * LINGER_PERIOD);
+        assertEquals(0, primary.stops);
+        assertEquals(1, primary.starts);
+    }
+
+    @Test
+    public void endOfTheLingerPeriodStopsTheStrategy() {
+        EasyLocationConfiguration.getInstance().setLingerPeriod(LINGER_PERIOD);
+        startChain();
+        stopClient();
+
+        ShadowLooper.idleMainLooper(LINGER_PERIOD);
+        assertEquals(1, primary.stops);
+        assertEquals(0, secondary.starts);
+    }
+
+    @Test
+    public void stopFromTheListenerRunsAfterTheDelivery() {
+        startChain();
+        final int[] stopsDuringDelivery = {-1};
+        Object listener = new Object() {
+            @Subscribe
+            public void onInitialLocationObtained(OnInitialLocationObtainedEvent event) {
+                service.onAction(LocationServiceIntent.ACTION_STOP, CLIENT_ID, null);
+                stopsDuringDelivery[0] = primary.stops;
+            }
+        };
+        SingletonBus.getInstance().register(listener);
+        try {
+            primary.deliver(new Location("fake"));
+        } finally {
+            SingletonBus.getInstance().unregister(listener);
+        }
+
+        assertEquals(0, stopsDuringDelivery[0]);
+        assertEquals(1, primary.stops);
+    }
+
+    @Test
+    public void batchFlushedOnAFallbackIsDeliveredBeforeTheNextStrategyStarts() {
+        EasyLocationConfiguration.getInstance().setFastFallbackEnabled(true);
+        startChain();
+        primary.batchOnStop.add(new Location("fake"));
+        final int[] secondaryStartsAtDelivery = {-1};
+        Object listener = new Object() {
+            @Subscribe
+            public void onInitialLocationObtained(OnInitialLocationObtainedEvent event) {
+                secondaryStartsAtDelivery[0] = secondary.starts;
+            }
+        };
+        SingletonBus.getInstance().register(listener);
+        try {
+            ShadowLooper.idleMainLooper(3 * PRIMARY_LATENCY);
+        } finally {
+            SingletonBus.getInstance().unregister(listener);
+        }
+
+        assertEquals(1, primary.stops);
+        assertEquals(0, secondaryStartsAtDelivery[0]);
+        assertEquals(1, secondary.starts);
+    }
+
+    @Test
+    public void batchFlushedOnATearDownIsNotDelivered() {
+        startChain();
+        primary.batchOnStop.add(new Location("fake"));
+        final int[] deliveries = {0};
+        Object listener = new Object() {
+            @Subscribe
+            public void onInitialLocationObtained(OnInitialLocationObtainedEvent event) {
+                deliveries[0]++;
+            }
+        };
+        SingletonBus.getInstance().register(listener);
+        try {
+            stopClient();
+            ShadowLooper.runUiThreadTasks();
+        } finally {
+            SingletonBus.getInstance().unregister(listener);
+        }
+
+        assertEquals(1, primary.stops);
+        assertEquals(0, deliveries[0]);
+    }
+
+    @Test
+    public void declinedResolutionOfADisabledStrategyDoesNotStopItAgain() {
+        service.onAction(LocationServiceIntent.ACTION_START_STRATEGY_CHAIN, CLIENT_ID, new String[]{primary.getName()});
+        waitForStart(primary);
+        // The chain is exhausted, so the resolution is shown to the user
+        primary.reportError(LocationStrategyError.StrategyError.STRATEGY_DISABLED);
+        assertEquals(1, primary.stops);
+
+        SingletonBus.getInstance().post(new OnStrategyErrorNotSolved(LocationStrategyError.StrategyError.STRATEGY_DISABLED));
+
+        assertEquals(1, primary.stops);
+        assertEquals(1, primary.starts);
+    }
+
+    @Test
+    public void acceptedResolutionOfADisabledStrategyStartsItAgain() {
+        service.onAction(LocationServiceIntent.ACTION_START_STRATEGY_CHAIN, CLIENT_ID, new String[]{primary.getName()});
+        waitForStart(primary);
+        primary.reportError(LocationStrategyError.StrategyError.STRATEGY_DISABLED);
+
+        SingletonBus.getInstance().post(new OnStrategyErrorSolved(LocationStrategyError.StrategyError.STRATEGY_DISABLED));
+
+        assertEquals(2, primary.starts);
+        stopClient();
+        assertEquals(2, primary.stops);
+    }
+
+    @Test
+    public void locationQueuedBeforeTheDestroyIsDropped() {
+        startChain();
+        final Location queued = newLocation(1000);
+        final int[] updates = {0};
+        Object listener = new Object() {
+            @Subscribe
+            public void onInitialLocationObtained(OnInitialLocationObtainedEvent event) {
+                // Queued behind this delivery, and the service is destroyed before it runs
+                primary.deliver(queued);
+                destroy();
+            }
+
+            @Subscribe
+            public void onUpdatedLocationObtained(OnUpdatedLocationObtainedEvent event) {
+                updates[0]++;
+            }
+        };
+        SingletonBus.getInstance().register(listener);
+        try {
+            primary.deliver(newLocation(2000));
+        } finally {
+            SingletonBus.getInstance().unregister(listener);
+        }
+
+        assertEquals(0, updates[0]);
+    }
+
+    private void destroy() {
+        controller.destroy();
+        isDestroyed = true;
+    }
+
+    private static Location newLocation(long ageMillis) {
+        Location location = new Location("fake");
+        location.setTime(System.currentTimeMillis() - ageMillis);
+        return location;
+    }
+
+    private void stopClient() {
+        service.onAction(LocationServiceIntent.ACTION_STOP, CLIENT_ID, null);
+    }
+
+    private void startChain() {
+        service.onAction(LocationServiceIntent.ACTION_START_STRATEGY_CHAIN, CLIENT_ID,
+                new String[]{primary.getName(), secondary.getName()});
+        waitForStart(primary);
+    }
+
+    /**
+     * The state is loaded in background, then the pending actions run on the main thread
+     */
+    private static void waitForStart(FakeStrategy strategy) {
+        long deadline = System.currentTimeMillis() + LOAD_TIMEOUT;
+        while (strategy.starts == 0 && System.currentTimeMillis() < deadline) {
+            ShadowLooper.runUiThreadTasks();
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        assertTrue("The strategy " + strategy.getName() + " was not started", strategy.starts > 0);
+    }
+
+    private static void register(final FakeStrategy strategy, LocationStrategyDescriptor.Cost cost, long latency) {
+        LocationStrategyRegistry.getInstance().register(new LocationStrategyDescriptor(strategy.getName(), cost, 10, latency,
+                new LocationStrategyDescriptor.Factory() {
+                    @Override
+                    public LocationStrategy create(LocationStrategyManager manager, Context context) {
+                        strategy.attach(manager);
+                        return strategy;
+                    }
+                }));
+    }
+
+    static class FakeStrategy extends LocationStrategy {
+        private final String name;
+        // Locations delivered as a batch when the strategy is stopped, as a batching strategy flushes them
+        final List<Location> batchOnStop = new ArrayList<>();
+        int starts;
+        int stops;
+
+        FakeStrategy(String name) {
+            super(null, null);
+            this.name = name;
+        }
+
+        void attach(LocationStrategyManager manager) {
+            setManager(manager);
+        }
+
+        void deliver(Location location) {
+            getManager().onLocationObtained(location);
+        }
+
+        void reportError(LocationStrategyError.StrategyError error) {
+            getManager().onStrategyError(new LocationStrategyError(error, name));
+        }
+
+        @Override
+        public void start() {
+            starts++;
+        }
+
+        @Override
+        public void stop() {
+            stops++;
+            if (!batchOnStop.isEmpty()) {
+                getManager().onLocationsObtained(new ArrayList<>(batchOnStop));
+                batchOnStop.clear();
+            }
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
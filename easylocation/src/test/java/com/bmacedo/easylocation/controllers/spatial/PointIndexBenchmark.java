@@ -0,0 +1,142 @@
+package com.bmacedo.easylocation.controllers.spatial;
+
+import com.bmacedo.easylocation.controllers.util.GeodesyUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Build time and query latency of {@link PointIndex} and {@link NearestPointsTracker}, with a
+ * linear scan as the baseline. The points are spread over a country-sized area, and the queries
+ * follow a track that moves about 10 meters per fix. The main method prints the memory footprint
+ * of each index size, then runs the benchmarks. Run it from the unit test classpath:
+ *
+ * java -cp [test classpath] com.bmacedo.easylocation.controllers.spatial.PointIndexBenchmark
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class PointIndexBenchmark {
+
+    private static final int K = 10;
+    private static final double RADIUS_METERS = 1000;
+    private static final double MOVEMENT_THRESHOLD_METERS = 200;
+    private static final int TRACK_LENGTH = 4096;
+
+    @Param({"10000", "100000", "1000000"})
+    public int count;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private PointIndex index;
+    private NearestPointsTracker tracker;
+    private double[] trackLatitudes;
+    private double[] trackLongitudes;
+    private int next;
+    private final int[] outIds = new int[1024];
+    private final double[] outDistances = new double[K];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        latitudes = new double[count];
+        longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = 45 + random.nextDouble() * 5;
+            longitudes[i] = random.nextDouble() * 7;
+        }
+        index = new PointIndex(latitudes, longitudes, count);
+        tracker = new NearestPointsTracker(index, K, Double.POSITIVE_INFINITY, MOVEMENT_THRESHOLD_METERS);
+
+        trackLatitudes = new double[TRACK_LENGTH];
+        trackLongitudes = new double[TRACK_LENGTH];
+        double latitude = 47.5;
+        double longitude = 3.5;
+        for (int i = 0; i < TRACK_LENGTH; i++) {
+            latitude += 0.00009 * (random.nextDouble() - 0.2);
+            longitude += 0.00009 * (random.nextDouble() - 0.2);
+            trackLatitudes[i] = latitude;
+            trackLongitudes[i] = longitude;
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PointIndex build() {
+        return new PointIndex(latitudes, longitudes, count);
+    }
+
+    @Benchmark
+    public int nearest() {
+        int i = nextIndex();
+        return index.nearest(trackLatitudes[i], trackLongitudes[i], K, outIds, outDistances);
+    }
+
+    @Benchmark
+    public int withinRadius() {
+        int i = nextIndex();
+        return index.withinRadius(trackLatitudes[i], trackLongitudes[i], RADIUS_METERS, outIds);
+    }
+
+    @Benchmark
+    public int trackerUpdate() {
+        int i = nextIndex();
+        if (i == 0) {
+            // The track starts over far from the last fix
+            tracker.reset();
+        }
+        return tracker.update(trackLatitudes[i], trackLongitudes[i]);
+    }
+
+    @Benchmark
+    public int linearScanNearest() {
+        int i = nextIndex();
+        double latitude = trackLatitudes[i];
+        double longitude = trackLongitudes[i];
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int best = -1;
+        for (int j = 0; j < count; j++) {
+            double distance = GeodesyUtil.equirectangular(
+                    latitude, longitude, latitudes[j], longitudes[j]);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = j;
+            }
+        }
+        return best;
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == TRACK_LENGTH ? 0 : i + 1;
+        return i;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int count : new int[]{10000, 100000, 1000000}) {
+            PointIndex index = new PointIndex(new double[count], new double[count], count);
+            System.out.println(count + " points: " + index.getFootprintBytes() / 1024 + " KB");
+        }
+        new Runner(new OptionsBuilder().include(PointIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,105 @@
+package com.bmacedo.easylocation.controllers.spatial;
+
+import com.bmacedo.easylocation.controllers.util.GeodesyUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PointIndexTest {
+
+    private static final int COUNT = 2000;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private PointIndex index;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(11);
+        latitudes = new double[COUNT];
+        longitudes = new double[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            latitudes[i] = -2 + random.nextDouble() * 4;
+            // Around the antimeridian
+            longitudes[i] = 178 + random.nextDouble() * 4;
+            if (longitudes[i] > 180) {
+                longitudes[i] -= 360;
+            }
+        }
+        index = new PointIndex(latitudes, longitudes, COUNT);
+    }
+
+    @Test
+    public void nearestMatchesALinearScan() {
+        int k = 10;
+        int[] ids = new int[k];
+        double[] distances = new double[k];
+        assertEquals(k, index.nearest(0.5, 180, k, ids, distances));
+
+        Integer[] expected = sortByDistance(0.5, 180);
+        for (int i = 0; i < k; i++) {
+            assertEquals(expected[i].intValue(), ids[i]);
+            assertEquals(GeodesyUtil.haversine(0.5, 180, latitudes[ids[i]], longitudes[ids[i]]), distances[i], 1e-3);
+        }
+    }
+
+    @Test
+    public void nearestReturnsEveryPointOfSmallIndexes() {
+        PointIndex small = new PointIndex(new double[]{1, 2}, new double[]{1, 2}, 2);
+        int[] ids = new int[5];
+        double[] distances = new double[5];
+        assertEquals(2, small.nearest(0, 0, 5, ids, distances));
+        assertArrayEquals(new int[]{0, 1}, Arrays.copyOf(ids, 2));
+    }
+
+    @Test
+    public void withinRadiusMatchesALinearScan() {
+        double radius = 30000;
+        int[] ids = new int[COUNT];
+        int found = index.withinRadius(0, -179.9, radius, ids);
+
+        int[] actual = Arrays.copyOf(ids, found);
+        Arrays.sort(actual);
+        int[] expected = new int[COUNT];
+        int expectedCount = 0;
+        for (int i = 0; i < COUNT; i++) {
+            if (GeodesyUtil.haversine(0, -179.9, latitudes[i], longitudes[i]) <= radius) {
+                expected[expectedCount++] = i;
+            }
+        }
+        assertArrayEquals(Arrays.copyOf(expected, expectedCount), actual);
+    }
+
+    @Test
+    public void withinRadiusReportsTheResultsThatDidNotFit() {
+        int[] ids = new int[1];
+        int found = index.withinRadius(0, 180, 100000, ids);
+        assertEquals(true, found > 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMorePointsThanTheArrays() {
+        new PointIndex(new double[1], new double[1], 2);
+    }
+
+    private Integer[] sortByDistance(final double latitude, final double longitude) {
+        Integer[] ids = new Integer[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            ids[i] = i;
+        }
+        Arrays.sort(ids, new java.util.Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(GeodesyUtil.haversine(latitude, longitude, latitudes[a], longitudes[a]),
+                        GeodesyUtil.haversine(latitude, longitude, latitudes[b], longitudes[b]));
+            }
+        });
+        return ids;
+    }
+}
@@ -0,0 +1,105 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import android.location.Location;
+
+import com.bmacedo.easylocation.controllers.util.FakeClock;
+import com.bmacedo.easylocation.controllers.util.FakeTaskScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class LocationBatcherTest {
+
+    private static final long MAX_WAIT_TIME = 10000;
+    private static final int MAX_BATCH_SIZE = 3;
+
+    private FakeTaskScheduler scheduler;
+    private final List<List<Location>> batches = new ArrayList<>();
+    private LocationBatcher batcher;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeTaskScheduler(new FakeClock(0));
+        batcher = new LocationBatcher(new LocationBatcher.Listener() {
+            @Override
+            public void onBatchReady(List<Location> locations) {
+                batches.add(locations);
+            }
+        }, scheduler, MAX_WAIT_TIME, MAX_BATCH_SIZE);
+    }
+
+    @Test
+    public void batchIsDeliveredWhenTheOldestLocationWaitedTheMaximum() {
+        Location first = new Location("fake");
+        batcher.add(first);
+        scheduler.advance(MAX_WAIT_TIME / 2);
+        batcher.add(new Location("fake"));
+        scheduler.advance(MAX_WAIT_TIME / 2 - 1);
+        assertEquals(0, batches.size());
+
+        scheduler.advance(1);
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertSame(first, batches.get(0).get(0));
+    }
+
+    @Test
+    public void fullBatchIsDeliveredRightAway() {
+        for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+            batcher.add(new Location("fake"));
+        }
+        assertEquals(1, batches.size());
+        assertEquals(MAX_BATCH_SIZE, batches.get(0).size());
+        assertEquals(0, scheduler.getPendingTasks());
+    }
+
+    @Test
+    public void flushDeliversTheLocationsHeld() {
+        batcher.add(new Location("fake"));
+        batcher.flush();
+        assertEquals(1, batches.size());
+        assertEquals(0, scheduler.getPendingTasks());
+
+        // Nothing is delivered without locations
+        batcher.flush();
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    public void clearDiscardsTheLocationsHeld() {
+        batcher.add(new Location("fake"));
+        batcher.clear();
+        scheduler.advance(MAX_WAIT_TIME);
+        assertEquals(0, batches.size());
+    }
+
+    @Test
+    public void maxWaitTimeAppliesFromTheNextBatch() {
+        batcher.add(new Location("fake"));
+        batcher.setMaxWaitTime(MAX_WAIT_TIME * 2);
+        scheduler.advance(MAX_WAIT_TIME);
+        assertEquals(1, batches.size());
+
+        batcher.add(new Location("fake"));
+        scheduler.advance(MAX_WAIT_TIME);
+        assertEquals(1, batches.size());
+        scheduler.advance(MAX_WAIT_TIME);
+        assertEquals(2, batches.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeMaxWaitTime() {
+        batcher.setMaxWaitTime(-1);
+    }
+}
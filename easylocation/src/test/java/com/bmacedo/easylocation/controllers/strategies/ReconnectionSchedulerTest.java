@@ -0,0 +1,170 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import com.bmacedo.easylocation.controllers.util.ExponentialBackoff;
+import com.bmacedo.easylocation.controllers.util.FakeClock;
+import com.bmacedo.easylocation.controllers.util.FakeTaskScheduler;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReconnectionSchedulerTest {
+
+    private static final long BASE_DELAY = 1000;
+    private static final long MAX_DELAY = 8000;
+    private static final long DEADLINE = 20000;
+
+    private FakeClock clock;
+    private FakeTaskScheduler taskScheduler;
+    private FakeClient client;
+    private FakeListener listener;
+    private ReconnectionScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock(100000);
+        taskScheduler = new FakeTaskScheduler(clock);
+        client = new FakeClient();
+        listener = new FakeListener();
+        scheduler = createScheduler(new MaxRandom());
+    }
+
+    @Test
+    public void attemptsFollowTheBackoff() {
+        scheduler.onConnectionLost();
+        assertTrue(scheduler.isReconnecting());
+        assertEquals(0, client.reconnections);
+
+        long[] delays = {1000, 2000, 4000, 8000};
+        for (int i = 0; i < delays.length; i++) {
+            assertEquals(delays[i], taskScheduler.getNextDelay());
+            taskScheduler.advance(delays[i]);
+            assertEquals(i + 1, client.reconnections);
+        }
+    }
+
+    @Test
+    public void jitteredAttemptsStayWithinTheBackoffBounds() {
+        scheduler = createScheduler(new Random(7));
+        scheduler.onConnectionLost();
+        long ceiling = BASE_DELAY;
+        for (int i = 0; i < 3; i++) {
+            long delay = taskScheduler.getNextDelay();
+            assertTrue("delay " + delay, delay >= ceiling / 2 && delay <= ceiling);
+            taskScheduler.advance(delay);
+            ceiling = Math.min(MAX_DELAY, ceiling * 2);
+        }
+    }
+
+    @Test
+    public void restoredConnectionStopsTheAttempts() {
+        scheduler.onConnectionLost();
+        taskScheduler.advance(1000);
+        scheduler.onConnectionRestored();
+
+        assertFalse(scheduler.isReconnecting());
+        assertEquals(0, taskScheduler.getPendingTasks());
+        taskScheduler.advance(DEADLINE);
+        assertEquals(1, client.reconnections);
+        assertEquals(0, listener.deadlinesExceeded);
+    }
+
+    @Test
+    public void connectedClientEndsTheAttemptsWithoutReconnecting() {
+        scheduler.onConnectionLost();
+        client.isConnected = true;
+        taskScheduler.advance(1000);
+
+        assertFalse(scheduler.isReconnecting());
+        assertEquals(0, client.reconnections);
+        assertEquals(0, listener.deadlinesExceeded);
+    }
+
+    @Test
+    public void deadlineIsReportedOnceAndOnTime() {
+        scheduler.onConnectionLost();
+        // Attempts at 1, 3, 7 and 15 seconds, then the last check is scheduled exactly at the deadline
+        taskScheduler.advance(DEADLINE - 1);
+        assertEquals(0, listener.deadlinesExceeded);
+        assertEquals(4, client.reconnections);
+
+        taskScheduler.advance(1);
+        assertEquals(1, listener.deadlinesExceeded);
+        assertFalse(scheduler.isReconnecting());
+
+        taskScheduler.advance(DEADLINE);
+        assertEquals(1, listener.deadlinesExceeded);
+        assertEquals(4, client.reconnections);
+    }
+
+    @Test
+    public void repeatedLossKeepsTheOriginalDeadline() {
+        scheduler.onConnectionLost();
+        taskScheduler.advance(10000);
+        scheduler.onConnectionLost();
+        taskScheduler.advance(DEADLINE - 10000);
+        assertEquals(1, listener.deadlinesExceeded);
+    }
+
+    @Test
+    public void cancelDoesNotNotifyTheListener() {
+        scheduler.onConnectionLost();
+        scheduler.cancel();
+        taskScheduler.advance(2 * DEADLINE);
+        assertEquals(0, listener.deadlinesExceeded);
+        assertEquals(0, client.reconnections);
+    }
+
+    @Test
+    public void newLossAfterRecoveryStartsFromTheBaseDelay() {
+        scheduler.onConnectionLost();
+        taskScheduler.advance(1000 + 2000);
+        scheduler.onConnectionRestored();
+        scheduler.onConnectionLost();
+        assertEquals(BASE_DELAY, taskScheduler.getNextDelay());
+    }
+
+    private ReconnectionScheduler createScheduler(Random random) {
+        return new ReconnectionScheduler(client, listener, clock, taskScheduler,
+                new ExponentialBackoff(BASE_DELAY, MAX_DELAY, random), DEADLINE);
+    }
+
+    /**
+     * Random that makes the backoff hand out the largest delays
+     */
+    private static class MaxRandom extends Random {
+        @Override
+        public double nextDouble() {
+            return 1.0;
+        }
+    }
+
+    private static class FakeClient implements ReconnectionScheduler.Client {
+        boolean isConnected;
+        int reconnections;
+
+        @Override
+        public boolean isConnected() {
+            return isConnected;
+        }
+
+        @Override
+        public void reconnect() {
+            reconnections++;
+        }
+    }
+
+    private static class FakeListener implements ReconnectionScheduler.Listener {
+        int deadlinesExceeded;
+
+        @Override
+        public void onReconnectionDeadlineExceeded() {
+            deadlinesExceeded++;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.bmacedo.easylocation.controllers.strategies;
+
+import android.content.Context;
+import android.location.Location;
+
+import com.bmacedo.easylocation.controllers.util.FakeClock;
+import com.bmacedo.easylocation.models.StrategyHealth;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21)
+public class StrategySelectorTest {
+
+    private static final LocationStrategyDescriptor FAST = createDescriptor("Fast", 1000);
+    private static final LocationStrategyDescriptor SLOW = createDescriptor("Slow", 5000);
+
+    private FakeClock clock;
+    private StrategyHealthStore store;
+    private StrategySelector selector;
+
+    @Before
+    public void setUp() {
+        clock = new FakeClock(100000);
+        store = new StrategyHealthStore(clock);
+        selector = new StrategySelector(store);
+    }
+
+    @Test
+    public void fasterStrategyGoesFirst() {
+        record(SLOW, 10, 0);
+        record(FAST, 10, 0);
+        assertEquals(Arrays.asList(FAST, SLOW), selectOrder(SLOW, FAST));
+    }
+
+    @Test
+    public void rankDividesTheExpectedTimeByTheSuccessProbability() {
+        // Fast: c = 0.5 * 1000 + 0.5 * 1000 = 1000, rank = 1000 / 0.5 = 2000
+        recordAlternating(FAST, 1000, 1000);
+        // Slow, but always successful: rank = 1500
+        recordSuccesses(SLOW, 20, 1500);
+        assertEquals(Arrays.asList(SLOW, FAST), selectOrder(FAST, SLOW));
+    }
+
+    @Test
+    public void defaultOrderIsExploredOnceEveryTenSelections() {
+        record(FAST, 10, 0);
+        record(SLOW, 10, 0);
+        int explorations = 0;
+        for (int i = 0; i < 3 * StrategySelector.EXPLORATION_INTERVAL; i++) {
+            if (selectOrder(SLOW, FAST).get(0) == SLOW) {
+                explorations++;
+            }
+        }
+        assertEquals(3, explorations);
+    }
+
+    @Test
+    public void recoveredStrategyIsRankedFirstAfterAFewSuccesses() {
+        record(FAST, 0, 200);
+        recordSuccesses(SLOW, 20, 5000);
+        assertEquals(Arrays.asList(SLOW, FAST), selectOrder(FAST, SLOW));
+
+        recordSuccesses(FAST, 5, 1000);
+        assertEquals(Arrays.asList(FAST, SLOW), selectOrder(FAST, SLOW));
+    }
+
+    @Test
+    public void statisticsSurviveASaveAndLoad() {
+        record(FAST, 3, 1);
+        selectOrder(FAST, SLOW);
+        Context context = RuntimeEnvironment.application;
+        store.save(context);
+
+        StrategyHealthStore loaded = StrategyHealthStore.load(context, clock);
+        StrategyHealth health = loaded.getHealth(FAST.getName());
+        assertNotNull(health);
+        StrategyHealth original = store.getHealth(FAST.getName());
+        assertEquals(4, health.getAttempts());
+        assertEquals(1, health.getFailures());
+        assertEquals(original.getFailureRate(), health.getFailureRate(), 0);
+        assertEquals(original.getAverageTimeToFirstFix(), health.getAverageTimeToFirstFix(), 0);
+        assertEquals(original.getAverageTimeToFailure(), health.getAverageTimeToFailure(), 0);
+        assertEquals(store.getStarts(), loaded.getStarts());
+    }
+
+    private List<LocationStrategyDescriptor> selectOrder(LocationStrategyDescriptor... defaultOrder) {
+        return selector.selectOrder(Arrays.asList(defaultOrder));
+    }
+
+    /**
+     * Records successes with the latency of the descriptor, then failures after one second
+     */
+    private void record(LocationStrategyDescriptor descriptor, int successes, int failures) {
+        recordSuccesses(descriptor, successes, descriptor.getLatency());
+        for (int i = 0; i < failures; i++) {
+            recordFailure(descriptor, 1000);
+        }
+    }
+
+    private void recordAlternating(LocationStrategyDescriptor descriptor, long timeToFirstFix, long timeToFailure) {
+        for (int i = 0; i < 20; i++) {
+            recordSuccesses(descriptor, 1, timeToFirstFix);
+            recordFailure(descriptor, timeToFailure);
+        }
+    }
+
+    private void recordSuccesses(LocationStrategyDescriptor descriptor, int successes, long timeToFirstFix) {
+        for (int i = 0; i < successes; i++) {
+            store.onStrategyStarted(descriptor.getName());
+            clock.advance(timeToFirstFix);
+            Location location = new Location(descriptor.getName());
+            location.setTime(System.currentTimeMillis());
+            store.onLocationObtained(descriptor.getName(), location);
+        }
+    }
+
+    private void recordFailure(LocationStrategyDescriptor descriptor, long timeToFailure) {
+        store.onStrategyStarted(descriptor.getName());
+        clock.advance(timeToFailure);
+        store.onStrategyFailed(descriptor.getName());
+    }
+
+    private static LocationStrategyDescriptor createDescriptor(String name, long latency) {
+        return new LocationStrategyDescriptor(name, LocationStrategyDescriptor.Cost.LOW, 10, latency,
+                new LocationStrategyDescriptor.Factory() {
+                    @Override
+                    public LocationStrategy create(LocationStrategyManager manager, Context context) {
+                        throw new UnsupportedOperationException("The selector does not create strategies");
+                    }
+                });
+    }
+}
@@ -0,0 +1,125 @@
+package com.bmacedo.easylocation.controllers.tracing;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SpanRecorderTracerTest {
+
+    private SpanRecorderTracer tracer;
+
+    @Before
+    public void setUp() {
+        tracer = new SpanRecorderTracer();
+    }
+
+    @Test
+    public void nestedSectionsEndInnermostFirst() {
+        tracer.beginSection(Tracing.STRATEGY_START);
+        tracer.beginSection(Tracing.BEST_PROVIDER);
+        tracer.endSection();
+        tracer.beginSection(Tracing.PROVIDER_REQUEST);
+        tracer.endSection();
+        tracer.endSection();
+
+        List<SpanRecorderTracer.Span> spans = tracer.getSpans();
+        assertEquals(3, spans.size());
+        assertEquals(Tracing.BEST_PROVIDER, spans.get(0).getName());
+        assertEquals(Tracing.PROVIDER_REQUEST, spans.get(1).getName());
+        SpanRecorderTracer.Span outer = spans.get(2);
+        assertEquals(Tracing.STRATEGY_START, outer.getName());
+        for (SpanRecorderTracer.Span inner : spans.subList(0, 2)) {
+            assertTrue(inner.getStartNanos() >= outer.getStartNanos());
+            assertTrue(inner.getEndNanos() <= outer.getEndNanos());
+        }
+    }
+
+    @Test
+    public void unbalancedSectionsAreNotRecorded() {
+        // An end without a begin is ignored, and a begin without an end is never finished
+        tracer.endSection();
+        tracer.beginSection(Tracing.DISPATCH);
+
+        assertEquals(0, tracer.getSpans().size());
+    }
+
+    @Test
+    public void sectionsAreBalancedPerThread() throws InterruptedException {
+        tracer.beginSection(Tracing.STRATEGY_STOP);
+        Thread other = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                tracer.beginSection(Tracing.DISPATCH);
+                tracer.endSection();
+                // Does not end the section of the main thread
+                tracer.endSection();
+            }
+        }, "other");
+        other.start();
+        other.join();
+        tracer.endSection();
+
+        List<SpanRecorderTracer.Span> spans = tracer.getSpans();
+        assertEquals(2, spans.size());
+        assertEquals(Tracing.DISPATCH, spans.get(0).getName());
+        assertEquals("other", spans.get(0).getThreadName());
+        assertEquals(Tracing.STRATEGY_STOP, spans.get(1).getName());
+        assertEquals(Thread.currentThread().getName(), spans.get(1).getThreadName());
+    }
+
+    @Test
+    public void asyncSectionsAreMatchedByNameAndCookie() {
+        tracer.beginAsyncSection(Tracing.CONNECT, 1);
+        tracer.beginAsyncSection(Tracing.CONNECT, 2);
+        tracer.beginAsyncSection(Tracing.SETTINGS_CHECK, 1);
+        tracer.endAsyncSection(Tracing.CONNECT, 2);
+        // Unknown cookie
+        tracer.endAsyncSection(Tracing.CONNECT, 3);
+        tracer.endAsyncSection(Tracing.SETTINGS_CHECK, 1);
+        tracer.endAsyncSection(Tracing.CONNECT, 1);
+        // Already ended
+        tracer.endAsyncSection(Tracing.CONNECT, 1);
+
+        List<SpanRecorderTracer.Span> spans = tracer.getSpans();
+        assertEquals(3, spans.size());
+        assertEquals(Tracing.CONNECT, spans.get(0).getName());
+        assertEquals(Tracing.SETTINGS_CHECK, spans.get(1).getName());
+        assertEquals(Tracing.CONNECT, spans.get(2).getName());
+        // The first connection began before the second one and ended after it
+        assertTrue(spans.get(2).getStartNanos() <= spans.get(0).getStartNanos());
+        assertTrue(spans.get(2).getEndNanos() >= spans.get(0).getEndNanos());
+        assertEquals(2, tracer.getSpans(Tracing.CONNECT).size());
+    }
+
+    @Test
+    public void asyncSectionsMayEndInAnotherThread() throws InterruptedException {
+        tracer.beginAsyncSection(Tracing.SETTINGS_CHECK, 7);
+        Thread callback = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                tracer.endAsyncSection(Tracing.SETTINGS_CHECK, 7);
+            }
+        });
+        callback.start();
+        callback.join();
+
+        List<SpanRecorderTracer.Span> spans = tracer.getSpans();
+        assertEquals(1, spans.size());
+        assertEquals(Thread.currentThread().getName(), spans.get(0).getThreadName());
+    }
+
+    @Test
+    public void clearForgetsTheSpansAndTheOpenAsyncSections() {
+        tracer.beginSection(Tracing.DISPATCH);
+        tracer.endSection();
+        tracer.beginAsyncSection(Tracing.CONNECT, 1);
+        tracer.clear();
+        tracer.endAsyncSection(Tracing.CONNECT, 1);
+
+        assertEquals(0, tracer.getSpans().size());
+    }
+}
@@ -0,0 +1,31 @@
+package com.bmacedo.easylocation.controllers.tracing;
+
+import com.bmacedo.easylocation.api.EasyLocationConfiguration;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The tests never install a tracer, so the hooks are disabled in the test process
+ */
+public class TracingTest {
+
+    @Test
+    public void hooksAreDisabledWithoutATracer() {
+        assertNull(EasyLocationConfiguration.getInstance().getTracer());
+        assertFalse(Tracing.ENABLED);
+        // The hooks do nothing
+        Tracing.beginSection(Tracing.STRATEGY_START);
+        Tracing.endSection();
+        Tracing.beginAsyncSection(Tracing.CONNECT, 1);
+        Tracing.endAsyncSection(Tracing.CONNECT, 1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void tracerCanNotBeInstalledOnceRead() {
+        assertFalse(Tracing.ENABLED);
+        EasyLocationConfiguration.getInstance().setTracer(new SpanRecorderTracer());
+    }
+}
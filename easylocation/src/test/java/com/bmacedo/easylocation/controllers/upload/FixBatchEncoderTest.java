@@ -0,0 +1,83 @@
+package com.bmacedo.easylocation.controllers.upload;
+
+import com.bmacedo.easylocation.models.FixRecord;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FixBatchEncoderTest {
+
+    @Test
+    public void batchRoundTripsWithinThePrecisionOfTheFormat() throws IOException {
+        List<FixRecord> fixes = new ArrayList<>();
+        long time = 1500000000000L;
+        for (int i = 0; i < 50; i++) {
+            fixes.add(new FixRecord(time + i * 1000, -23.5505 + i * 1e-5, -46.6333 - i * 1e-5,
+                    4.56f, 760.25, 1.234f, 359.95f));
+        }
+        byte[] batch = FixBatchEncoder.encode(fixes);
+        List<FixRecord> decoded = FixBatchEncoder.decode(batch);
+
+        assertEquals(fixes.size(), FixBatchEncoder.getFixCount(batch));
+        assertEquals(fixes.size(), decoded.size());
+        for (int i = 0; i < fixes.size(); i++) {
+            FixRecord expected = fixes.get(i);
+            FixRecord actual = decoded.get(i);
+            assertEquals(expected.getTime(), actual.getTime());
+            assertEquals(expected.getLatitude(), actual.getLatitude(), 1e-7);
+            assertEquals(expected.getLongitude(), actual.getLongitude(), 1e-7);
+            assertEquals(expected.getAccuracy(), actual.getAccuracy(), 0.05);
+            assertEquals(expected.getAltitude(), actual.getAltitude(), 0.05);
+            assertEquals(expected.getSpeed(), actual.getSpeed(), 0.005);
+            assertEquals(expected.getBearing(), actual.getBearing(), 0.05);
+        }
+    }
+
+    @Test
+    public void missingFieldsStayMissing() throws IOException {
+        FixRecord fix = new FixRecord(1000, 10, 20, Float.NaN, Double.NaN, Float.NaN, Float.NaN);
+        FixRecord decoded = FixBatchEncoder.decode(FixBatchEncoder.encode(Collections.singletonList(fix))).get(0);
+
+        assertTrue(Float.isNaN(decoded.getAccuracy()));
+        assertTrue(Double.isNaN(decoded.getAltitude()));
+        assertTrue(Float.isNaN(decoded.getSpeed()));
+        assertTrue(Float.isNaN(decoded.getBearing()));
+    }
+
+    @Test
+    public void timeMayGoBackwards() throws IOException {
+        List<FixRecord> fixes = Arrays.asList(
+                new FixRecord(5000, 0, 0, 1, 0, 0, 0),
+                new FixRecord(1000, 0, 0, 1, 0, 0, 0));
+        List<FixRecord> decoded = FixBatchEncoder.decode(FixBatchEncoder.encode(fixes));
+        assertEquals(1000, decoded.get(1).getTime());
+    }
+
+    @Test
+    public void consecutiveFixesAreCompact() {
+        List<FixRecord> fixes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            fixes.add(new FixRecord(1500000000000L + i * 1000, 48.8566 + i * 1e-6, 2.3522, 5, Double.NaN, Float.NaN, Float.NaN));
+        }
+        assertTrue(FixBatchEncoder.encode(fixes).length < 1000 * 4);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherData() throws IOException {
+        FixBatchEncoder.decode(new byte[]{1, 2, 3, 4, 5});
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedBatches() throws IOException {
+        byte[] batch = FixBatchEncoder.encode(Collections.singletonList(new FixRecord(1000, 10, 20, 1, 2, 3, 4)));
+        FixBatchEncoder.decode(Arrays.copyOf(batch, batch.length - 4));
+    }
+}
@@ -0,0 +1,116 @@
+package com.bmacedo.easylocation.controllers.upload;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Sends the batches to a local HTTP server that stands in for the backend
+ */
+public class HttpFixTransportTest {
+
+    private static final byte[] BATCH = {0x45, 0x4c, 1, 0, 42};
+
+    private HttpServer server;
+    private HttpFixTransport transport;
+    // Written by the server thread, read after the request completes
+    private volatile int responseCode;
+    private volatile byte[] receivedBody;
+    private volatile String receivedContentType;
+    private volatile String receivedMethod;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/fixes", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                receivedMethod = exchange.getRequestMethod();
+                receivedContentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                receivedBody = readAll(exchange.getRequestBody());
+                byte[] response = "done".getBytes("UTF-8");
+                exchange.sendResponseHeaders(responseCode, response.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(response);
+                output.close();
+            }
+        });
+        server.start();
+        transport = new HttpFixTransport(new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/fixes"), 5000);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void batchIsPosted() throws IOException {
+        responseCode = 200;
+        transport.send(BATCH);
+
+        assertEquals("POST", receivedMethod);
+        assertEquals(FixBatchEncoder.CONTENT_TYPE, receivedContentType);
+        assertArrayEquals(BATCH, receivedBody);
+    }
+
+    @Test
+    public void serverErrorsAreRetried() {
+        for (int code : new int[]{408, 429, 500, 503}) {
+            responseCode = code;
+            try {
+                transport.send(BATCH);
+                fail("Response " + code + " was accepted");
+            } catch (IOException e) {
+                assertFalse("Response " + code + " was rejected", e instanceof RejectedBatchException);
+            }
+        }
+    }
+
+    @Test
+    public void clientErrorsRejectTheBatch() throws IOException {
+        for (int code : new int[]{400, 404, 413}) {
+            responseCode = code;
+            try {
+                transport.send(BATCH);
+                fail("Response " + code + " was accepted");
+            } catch (RejectedBatchException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void unreachableServerIsRetried() throws IOException {
+        server.stop(0);
+        transport.send(BATCH);
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[512];
+        int length;
+        while ((length = input.read(buffer)) != -1) {
+            output.write(buffer, 0, length);
+        }
+        input.close();
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,87 @@
+package com.bmacedo.easylocation.controllers.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExponentialBackoffTest {
+
+    @Test
+    public void delaysDoubleUpToTheCap() {
+        ExponentialBackoff backoff = new ExponentialBackoff(1000, 15000, new FixedRandom(1.0));
+        long[] expected = {1000, 2000, 4000, 8000, 15000, 15000};
+        for (long delay : expected) {
+            assertEquals(delay, backoff.nextDelay());
+        }
+        assertEquals(expected.length, backoff.getAttempts());
+    }
+
+    @Test
+    public void jitterKeepsAtLeastHalfOfTheDelay() {
+        ExponentialBackoff backoff = new ExponentialBackoff(1000, 15000, new FixedRandom(0.0));
+        long[] expected = {500, 1000, 2000, 4000, 7500};
+        for (long delay : expected) {
+            assertEquals(delay, backoff.nextDelay());
+        }
+    }
+
+    @Test
+    public void jitteredDelaysStayWithinBounds() {
+        ExponentialBackoff backoff = new ExponentialBackoff(1000, 15000, new Random(42));
+        for (int i = 0; i < 100; i++) {
+            long ceiling = i < 30 ? Math.min(15000, 1000L << i) : 15000;
+            long delay = backoff.nextDelay();
+            assertTrue("delay " + delay + " of attempt " + i, delay >= ceiling / 2 && delay <= ceiling);
+        }
+    }
+
+    @Test
+    public void manyAttemptsDoNotOverflow() {
+        ExponentialBackoff backoff = new ExponentialBackoff(1, Long.MAX_VALUE / 4, new FixedRandom(1.0));
+        long previous = 0;
+        for (int i = 0; i < 100; i++) {
+            long delay = backoff.nextDelay();
+            assertTrue(delay >= previous);
+            previous = delay;
+        }
+    }
+
+    @Test
+    public void resetStartsFromTheBaseDelay() {
+        ExponentialBackoff backoff = new ExponentialBackoff(1000, 15000, new FixedRandom(1.0));
+        backoff.nextDelay();
+        backoff.nextDelay();
+        backoff.reset();
+        assertEquals(0, backoff.getAttempts());
+        assertEquals(1000, backoff.nextDelay());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsCapBelowTheBaseDelay() {
+        new ExponentialBackoff(1000, 500);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveBaseDelay() {
+        new ExponentialBackoff(0, 500);
+    }
+
+    /**
+     * Random that always returns the same value
+     */
+    static class FixedRandom extends Random {
+        private final double value;
+
+        FixedRandom(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.bmacedo.easylocation.controllers.util;
+
+/**
+ * Clock whose time only moves when the test advances it
+ */
+public class FakeClock implements Clock {
+
+    private long now;
+
+    public FakeClock(long now) {
+        this.now = now;
+    }
+
+    @Override
+    public long elapsedRealtime() {
+        return now;
+    }
+
+    public void advance(long millis) {
+        now += millis;
+    }
+}
@@ -0,0 +1,78 @@
+package com.bmacedo.easylocation.controllers.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scheduler that runs the tasks when the test advances its {@link FakeClock}, in the order they
+ * are due
+ */
+public class FakeTaskScheduler implements TaskScheduler {
+
+    private final FakeClock clock;
+    private final List<Task> tasks = new ArrayList<>();
+
+    public FakeTaskScheduler(FakeClock clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayMillis) {
+        tasks.add(new Task(task, clock.elapsedRealtime() + delayMillis));
+    }
+
+    @Override
+    public void cancel(Runnable task) {
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            if (tasks.get(i).runnable == task) {
+                tasks.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Advances the clock, running the tasks that become due, including those they schedule
+     */
+    public void advance(long millis) {
+        long end = clock.elapsedRealtime() + millis;
+        Task next;
+        while ((next = getNextTask()) != null && next.dueAt <= end) {
+            tasks.remove(next);
+            clock.advance(next.dueAt - clock.elapsedRealtime());
+            next.runnable.run();
+        }
+        clock.advance(end - clock.elapsedRealtime());
+    }
+
+    /**
+     * @return the delay until the next task is due, or -1 if there is none
+     */
+    public long getNextDelay() {
+        Task next = getNextTask();
+        return next != null ? next.dueAt - clock.elapsedRealtime() : -1;
+    }
+
+    public int getPendingTasks() {
+        return tasks.size();
+    }
+
+    private Task getNextTask() {
+        Task next = null;
+        for (Task task : tasks) {
+            if (next == null || task.dueAt < next.dueAt) {
+                next = task;
+            }
+        }
+        return next;
+    }
+
+    private static class Task {
+        final Runnable runnable;
+        final long dueAt;
+
+        Task(Runnable runnable, long dueAt) {
+            this.runnable = runnable;
+            this.dueAt = dueAt;
+        }
+    }
+}
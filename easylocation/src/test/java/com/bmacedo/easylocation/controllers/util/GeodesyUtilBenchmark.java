@@ -0,0 +1,144 @@
+package com.bmacedo.easylocation.controllers.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Speed of each distance mode of {@link GeodesyUtil}, for single pairs and for the batch methods.
+ * The main method first prints the error of the fast modes against Vincenty, so that the speed can
+ * be weighed against the accuracy, then runs the benchmarks. Run it from the unit test classpath:
+ *
+ * java -cp [test classpath] com.bmacedo.easylocation.controllers.util.GeodesyUtilBenchmark
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeodesyUtilBenchmark {
+
+    // Points spread around the reference point, up to about 10 km away
+    private static final double LATITUDE = 48.8566;
+    private static final double LONGITUDE = 2.3522;
+    private static final double SPREAD = 0.1;
+
+    @Param({"1000", "100000"})
+    public int count;
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] out;
+    private int[] outIndices;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        latitudes = new double[count];
+        longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = LATITUDE + (random.nextDouble() - 0.5) * SPREAD;
+            longitudes[i] = LONGITUDE + (random.nextDouble() - 0.5) * SPREAD;
+        }
+        out = new double[count];
+        outIndices = new int[count];
+    }
+
+    @Benchmark
+    public double haversine() {
+        int i = nextIndex();
+        return GeodesyUtil.haversine(LATITUDE, LONGITUDE, latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public double equirectangular() {
+        int i = nextIndex();
+        return GeodesyUtil.equirectangular(LATITUDE, LONGITUDE, latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public double vincenty() {
+        int i = nextIndex();
+        return GeodesyUtil.vincenty(LATITUDE, LONGITUDE, latitudes[i], longitudes[i]);
+    }
+
+    @Benchmark
+    public double[] haversineTo() {
+        GeodesyUtil.haversineTo(latitudes, longitudes, count, LATITUDE, LONGITUDE, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] equirectangularTo() {
+        GeodesyUtil.equirectangularTo(latitudes, longitudes, count, LATITUDE, LONGITUDE, out);
+        return out;
+    }
+
+    @Benchmark
+    public double trackSegments() {
+        return GeodesyUtil.trackSegments(latitudes, longitudes, count, out);
+    }
+
+    @Benchmark
+    public int withinRadius() {
+        return GeodesyUtil.withinRadius(latitudes, longitudes, count, LATITUDE, LONGITUDE, 1000, outIndices);
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == count ? 0 : i + 1;
+        return i;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        printErrors(1000, 10);
+        printErrors(100000, 1000);
+        new Runner(new OptionsBuilder().include(GeodesyUtilBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Prints the maximum relative error of the fast modes against Vincenty, for random pairs of
+     * points up to the given distance apart
+     */
+    private static void printErrors(int pairs, double maxDistanceKilometers) {
+        Random random = new Random(2);
+        double spread = maxDistanceKilometers / 111.0;
+        double maxHaversineError = 0;
+        double maxEquirectangularError = 0;
+        for (int i = 0; i < pairs; i++) {
+            double latitude1 = -80 + random.nextDouble() * 160;
+            double longitude1 = -180 + random.nextDouble() * 360;
+            double latitude2 = latitude1 + (random.nextDouble() - 0.5) * spread;
+            double longitude2 = longitude1 + (random.nextDouble() - 0.5) * spread;
+            double reference = GeodesyUtil.vincenty(latitude1, longitude1, latitude2, longitude2);
+            if (reference == 0) {
+                continue;
+            }
+            maxHaversineError = Math.max(maxHaversineError,
+                    Math.abs(GeodesyUtil.haversine(latitude1, longitude1, latitude2, longitude2) - reference) / reference);
+            maxEquirectangularError = Math.max(maxEquirectangularError,
+                    Math.abs(GeodesyUtil.equirectangular(latitude1, longitude1, latitude2, longitude2) - reference) / reference);
+        }
+        System.out.println(String.format(Locale.US, "Up to %.0f km: haversine error %.4f%%, equirectangular error %.4f%%",
+                maxDistanceKilometers, maxHaversineError * 100, maxEquirectangularError * 100));
+    }
+}
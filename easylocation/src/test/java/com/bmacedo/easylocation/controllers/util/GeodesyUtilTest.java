@@ -0,0 +1,117 @@
+package com.bmacedo.easylocation.controllers.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class GeodesyUtilTest {
+
+    // Paris and London
+    private static final double LATITUDE_1 = 48.8566;
+    private static final double LONGITUDE_1 = 2.3522;
+    private static final double LATITUDE_2 = 51.5074;
+    private static final double LONGITUDE_2 = -0.1278;
+
+    @Test
+    public void haversineMatchesTheSphericalDistance() {
+        assertEquals(343556.5, GeodesyUtil.haversine(LATITUDE_1, LONGITUDE_1, LATITUDE_2, LONGITUDE_2), 0.1);
+        assertEquals(Math.PI * GeodesyUtil.EARTH_RADIUS_METERS, GeodesyUtil.haversine(0, 0, 0, 180), 1e-6);
+    }
+
+    @Test
+    public void vincentyMatchesTheEllipsoidalDistance() {
+        // Reference geodesic between Flinders Peak and Buninyong
+        assertEquals(54972.271, GeodesyUtil.vincenty(-37.95103342, 144.42486789, -37.65282114, 143.92649554), 0.001);
+        assertEquals(0, GeodesyUtil.vincenty(LATITUDE_1, LONGITUDE_1, LATITUDE_1, LONGITUDE_1), 0);
+    }
+
+    @Test
+    public void vincentyFallsBackToHaversineForAntipodalPoints() {
+        assertEquals(GeodesyUtil.haversine(0, 0, 0.5, 179.7), GeodesyUtil.vincenty(0, 0, 0.5, 179.7), 0);
+    }
+
+    @Test
+    public void equirectangularIsCloseToHaversineForShortDistances() {
+        double haversine = GeodesyUtil.haversine(LATITUDE_1, LONGITUDE_1, LATITUDE_1 + 0.01, LONGITUDE_1 + 0.01);
+        double equirectangular = GeodesyUtil.equirectangular(LATITUDE_1, LONGITUDE_1, LATITUDE_1 + 0.01, LONGITUDE_1 + 0.01);
+        assertEquals(haversine, equirectangular, haversine * 1e-4);
+    }
+
+    @Test
+    public void equirectangularCrossesTheAntimeridian() {
+        assertEquals(GeodesyUtil.haversine(0, 179.99, 0, -179.99), GeodesyUtil.equirectangular(0, 179.99, 0, -179.99), 0.01);
+    }
+
+    @Test
+    public void bearingPointsToTheCardinalDirections() {
+        assertEquals(0, GeodesyUtil.bearing(0, 0, 1, 0), 1e-9);
+        assertEquals(90, GeodesyUtil.bearing(0, 0, 0, 1), 1e-9);
+        assertEquals(180, GeodesyUtil.bearing(1, 0, 0, 0), 1e-9);
+        assertEquals(270, GeodesyUtil.bearing(0, 1, 0, 0), 1e-9);
+    }
+
+    @Test
+    public void batchMethodsMatchTheSingleDistances() {
+        Random random = new Random(3);
+        int count = 100;
+        double[] latitudes = new double[count + 1];
+        double[] longitudes = new double[count + 1];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = LATITUDE_1 + random.nextDouble() * 0.1;
+            longitudes[i] = LONGITUDE_1 + random.nextDouble() * 0.1;
+        }
+        double[] haversine = new double[count];
+        double[] equirectangular = new double[count];
+        GeodesyUtil.haversineTo(latitudes, longitudes, count, LATITUDE_1, LONGITUDE_1, haversine);
+        GeodesyUtil.equirectangularTo(latitudes, longitudes, count, LATITUDE_1, LONGITUDE_1, equirectangular);
+
+        double[] segments = new double[count - 1];
+        double total = GeodesyUtil.trackSegments(latitudes, longitudes, count, segments);
+        double expectedTotal = 0;
+        for (int i = 0; i < count; i++) {
+            assertEquals(GeodesyUtil.haversine(latitudes[i], longitudes[i], LATITUDE_1, LONGITUDE_1), haversine[i], 1e-6);
+            // The batch uses the cosine of the reference latitude for every point
+            assertEquals(haversine[i], equirectangular[i], haversine[i] * 1e-3);
+            if (i < count - 1) {
+                double segment = GeodesyUtil.haversine(latitudes[i], longitudes[i], latitudes[i + 1], longitudes[i + 1]);
+                assertEquals(segment, segments[i], 1e-6);
+                expectedTotal += segment;
+            }
+        }
+        assertEquals(expectedTotal, total, 1e-6);
+    }
+
+    @Test
+    public void boundingBoxContainsThePole() {
+        double[] box = new double[4];
+        GeodesyUtil.boundingBox(89.99, 10, 10000, box);
+        assertArrayEquals(new double[]{89.99 - 10000 / 111195.08, -170, 90, 190}, box, 1e-4);
+    }
+
+    @Test
+    public void withinRadiusMatchesALinearScan() {
+        Random random = new Random(5);
+        int count = 1000;
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = -1 + random.nextDouble() * 2;
+            // Around the antimeridian
+            longitudes[i] = random.nextBoolean() ? 179 + random.nextDouble() : -180 + random.nextDouble();
+        }
+        int[] found = new int[count];
+        int foundCount = GeodesyUtil.withinRadius(latitudes, longitudes, count, 0, 180, 50000, found);
+
+        int expected = 0;
+        for (int i = 0; i < count; i++) {
+            if (GeodesyUtil.haversine(0, 180, latitudes[i], longitudes[i]) <= 50000) {
+                assertEquals(i, found[expected++]);
+            }
+        }
+        assertEquals(expected, foundCount);
+        assertEquals(true, expected > 0);
+    }
+}
@@ -0,0 +1,73 @@
+package com.bmacedo.easylocation.controllers.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuadkeyUtilTest {
+
+    @Test
+    public void tileMatchesTheBingMapsQuadkey() {
+        // Example of the Bing Maps tile system documentation
+        long key = QuadkeyUtil.fromTile(3, 5, 3);
+        assertEquals("213", QuadkeyUtil.toQuadkey(key));
+        assertEquals(3, QuadkeyUtil.getZoom(key));
+        assertEquals(3, QuadkeyUtil.getTileX(key));
+        assertEquals(5, QuadkeyUtil.getTileY(key));
+    }
+
+    @Test
+    public void encodeFindsTheTileOfTheCoordinates() {
+        assertEquals("0", QuadkeyUtil.toQuadkey(QuadkeyUtil.encode(45, -90, 1)));
+        assertEquals("1", QuadkeyUtil.toQuadkey(QuadkeyUtil.encode(45, 90, 1)));
+        assertEquals("2", QuadkeyUtil.toQuadkey(QuadkeyUtil.encode(-45, -90, 1)));
+        assertEquals("3", QuadkeyUtil.toQuadkey(QuadkeyUtil.encode(-45, 90, 1)));
+    }
+
+    @Test
+    public void encodeClampsTheEdgesOfTheMap() {
+        long tiles = 1L << 10;
+        assertEquals(0, QuadkeyUtil.getTileY(QuadkeyUtil.encode(90, 0, 10)));
+        assertEquals(tiles - 1, QuadkeyUtil.getTileY(QuadkeyUtil.encode(-90, 0, 10)));
+        assertEquals(tiles - 1, QuadkeyUtil.getTileX(QuadkeyUtil.encode(0, 180, 10)));
+        assertEquals(0, QuadkeyUtil.getTileX(QuadkeyUtil.encode(0, -180, 10)));
+    }
+
+    @Test
+    public void tilesRoundTripAtEveryZoom() {
+        Random random = new Random(9);
+        for (int zoom = 1; zoom <= QuadkeyUtil.MAX_ZOOM; zoom++) {
+            long tileX = (long) (random.nextDouble() * (1L << zoom));
+            long tileY = (long) (random.nextDouble() * (1L << zoom));
+            long key = QuadkeyUtil.fromTile(tileX, tileY, zoom);
+            assertTrue(key >= 0);
+            assertEquals(zoom, QuadkeyUtil.getZoom(key));
+            assertEquals(tileX, QuadkeyUtil.getTileX(key));
+            assertEquals(tileY, QuadkeyUtil.getTileY(key));
+        }
+    }
+
+    @Test
+    public void parentIsTheQuadkeyPrefix() {
+        long key = QuadkeyUtil.encode(48.8566, 2.3522, 18);
+        String quadkey = QuadkeyUtil.toQuadkey(key);
+        for (int zoom = 1; zoom <= 18; zoom++) {
+            long parent = QuadkeyUtil.getParent(key, zoom);
+            assertEquals(quadkey.substring(0, zoom), QuadkeyUtil.toQuadkey(parent));
+            assertEquals(QuadkeyUtil.encode(48.8566, 2.3522, zoom), parent);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZoomAboveTheMaximum() {
+        QuadkeyUtil.encode(0, 0, QuadkeyUtil.MAX_ZOOM + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsParentAtAHigherZoom() {
+        QuadkeyUtil.getParent(QuadkeyUtil.encode(0, 0, 5), 6);
+    }
+}
@@ -0,0 +1,95 @@
+package com.bmacedo.easylocation.controllers.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Throughput of the hand-off of tasks to the target thread of a {@link SerialExecutor}, with one
+ * and with several threads submitting at the same time. Each operation submits a batch of tasks
+ * and waits until the target thread ran all of them. Run it from the unit test classpath:
+ *
+ * java -cp [test classpath] org.openjdk.jmh.Main SerialExecutorBenchmark
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerialExecutorBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private ExecutorService dispatcher;
+    private SerialExecutor executor;
+
+    @Setup
+    public void setUp() throws Exception {
+        final Thread[] thread = new Thread[1];
+        dispatcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                thread[0] = new Thread(runnable, "target");
+                return thread[0];
+            }
+        });
+        dispatcher.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+        executor = new SerialExecutor(dispatcher, thread[0]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.shutdownNow();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(BATCH)
+    public void singleProducer() throws InterruptedException {
+        submitBatch();
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH)
+    public void contendedProducers() throws InterruptedException {
+        submitBatch();
+    }
+
+    private void submitBatch() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(BATCH);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+        for (int i = 0; i < BATCH; i++) {
+            executor.execute(task);
+        }
+        done.await();
+    }
+}
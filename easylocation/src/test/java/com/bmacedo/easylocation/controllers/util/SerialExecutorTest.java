@@ -0,0 +1,167 @@
+package com.bmacedo.easylocation.controllers.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress tests of the confinement, the mutual exclusion and the ordering of the tasks, with
+ * several producer threads submitting at the same time
+ */
+public class SerialExecutorTest {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private ExecutorService dispatcher;
+    private Thread targetThread;
+    private SerialExecutor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        final Thread[] thread = new Thread[1];
+        dispatcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                thread[0] = new Thread(runnable, "target");
+                return thread[0];
+            }
+        });
+        dispatcher.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+        targetThread = thread[0];
+        executor = new SerialExecutor(dispatcher, targetThread);
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.shutdownNow();
+    }
+
+    @Test
+    public void concurrentProducersKeepConfinementExclusionAndOrder() throws Exception {
+        for (int producers : new int[]{1, 2, 4, 8}) {
+            runProducers(producers, 50000);
+        }
+    }
+
+    @Test
+    public void taskSubmittedByARunningTaskRunsAfterIt() throws Exception {
+        final List<String> events = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                events.add("outer start");
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        events.add("inner");
+                        done.countDown();
+                    }
+                });
+                events.add("outer end");
+            }
+        });
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("[outer start, outer end, inner]", events.toString());
+    }
+
+    @Test
+    public void taskSubmittedOnTheIdleTargetThreadRunsInline() throws Exception {
+        final boolean[] hasRun = new boolean[1];
+        final boolean[] hasRunInline = new boolean[1];
+        dispatcher.submit(new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        hasRun[0] = true;
+                    }
+                });
+                hasRunInline[0] = hasRun[0];
+            }
+        }).get();
+        assertTrue(hasRunInline[0]);
+    }
+
+    @Test
+    public void failingTaskDoesNotLoseTheNextOnes() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        done.countDown();
+                    }
+                });
+                throw new IllegalStateException("Expected by the test");
+            }
+        });
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private void runProducers(final int producers, final int tasksPerProducer) throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger violations = new AtomicInteger();
+        final int[] lastSequences = new int[producers];
+        final CountDownLatch done = new CountDownLatch(producers * tasksPerProducer);
+        final CyclicBarrier start = new CyclicBarrier(producers);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            lastSequences[p] = -1;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (Exception e) {
+                        return;
+                    }
+                    for (int i = 0; i < tasksPerProducer; i++) {
+                        final int sequence = i;
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (running.incrementAndGet() != 1 || Thread.currentThread() != targetThread
+                                        || lastSequences[producer] != sequence - 1) {
+                                    violations.incrementAndGet();
+                                }
+                                // Only read and written on the target thread
+                                lastSequences[producer] = sequence;
+                                running.decrementAndGet();
+                                done.countDown();
+                            }
+                        });
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue("Tasks were lost with " + producers + " producers", done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("Violations with " + producers + " producers", 0, violations.get());
+    }
+}
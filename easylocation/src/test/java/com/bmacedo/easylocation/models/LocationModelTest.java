@@ -0,0 +1,75 @@
+package com.bmacedo.easylocation.models;
+
+import android.location.Location;
+import android.os.SystemClock;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 21, shadows = LocationModelTest.ShadowElapsedRealtimeClock.class)
+public class LocationModelTest {
+
+    private static final Gson gson = new Gson();
+
+    @Test
+    public void elapsedRealtimeOfTheCurrentBootIsRestored() {
+        Location location = createLocation();
+        LocationModel model = roundTrip(new LocationModel(location), 0);
+
+        assertEquals(location.getElapsedRealtimeNanos(), model.getLocation().getElapsedRealtimeNanos());
+    }
+
+    @Test
+    public void elapsedRealtimeOfAnotherBootIsDropped() {
+        // Saved one hour before this boot, with an elapsed realtime that looks recent now
+        LocationModel model = roundTrip(new LocationModel(createLocation()), -60 * 60 * 1000);
+
+        assertEquals(0, model.getLocation().getElapsedRealtimeNanos());
+    }
+
+    @Test
+    public void elapsedRealtimeWithoutBootTimeIsDropped() {
+        JsonObject json = gson.toJsonTree(new LocationModel(createLocation())).getAsJsonObject();
+        json.remove("bootTime");
+        LocationModel model = gson.fromJson(json, LocationModel.class);
+
+        assertEquals(0, model.getLocation().getElapsedRealtimeNanos());
+    }
+
+    private static LocationModel roundTrip(LocationModel model, long bootTimeShift) {
+        JsonObject json = gson.toJsonTree(model).getAsJsonObject();
+        json.addProperty("bootTime", model.getBootTime() + bootTimeShift);
+        return gson.fromJson(json, LocationModel.class);
+    }
+
+    private static Location createLocation() {
+        // Advances the elapsed realtime of the test, which starts at zero
+        SystemClock.sleep(5000);
+        Location location = new Location("fake");
+        location.setTime(System.currentTimeMillis());
+        location.setElapsedRealtimeNanos((SystemClock.elapsedRealtime() - 1000) * 1000000);
+        return location;
+    }
+
+    /**
+     * The default shadow always returns zero as the elapsed realtime in nanoseconds
+     */
+    @Implements(SystemClock.class)
+    public static class ShadowElapsedRealtimeClock extends ShadowSystemClock {
+        @Implementation
+        public static long elapsedRealtimeNanos() {
+            return elapsedRealtime() * 1000000;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.bmacedo.easylocation.models;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StrategyHealthTest {
+
+    @Test
+    public void failureRateFollowsTheRecentAttempts() {
+        StrategyHealth health = new StrategyHealth("Strategy");
+        for (int i = 0; i < 200; i++) {
+            health.onAttempt();
+            health.onFailure(1000);
+        }
+        assertEquals(1, health.getFailureRate(), 1e-9);
+
+        for (int i = 0; i < 5; i++) {
+            health.onAttempt();
+            health.onFirstFix(1000, 10);
+        }
+        assertTrue("rate " + health.getFailureRate(), health.getFailureRate() < 0.2);
+        assertEquals(200, health.getFailures());
+        assertEquals(205, health.getAttempts());
+    }
+
+    @Test
+    public void firstAttemptSetsTheFailureRate() {
+        StrategyHealth health = new StrategyHealth("Strategy");
+        assertEquals(0, health.getFailureRate(), 0);
+        health.onAttempt();
+        health.onFailure(1000);
+        assertEquals(1, health.getFailureRate(), 0);
+    }
+
+    @Test
+    public void statisticsSavedWithoutTheMovingRateUseTheCounters() {
+        StrategyHealth health = new Gson().fromJson("{\"strategy\":\"Strategy\",\"attempts\":4,\"failures\":1}",
+                StrategyHealth.class);
+        assertEquals(0.25, health.getFailureRate(), 1e-9);
+
+        health.onAttempt();
+        health.onFirstFix(1000, 10);
+        assertEquals(0.25 * 0.7, health.getFailureRate(), 1e-9);
+    }
+
+    @Test
+    public void timeAveragesAreExponentiallyWeighted() {
+        StrategyHealth health = new StrategyHealth("Strategy");
+        health.onAttempt();
+        health.onFirstFix(1000, 10);
+        health.onAttempt();
+        health.onFirstFix(2000, 20);
+        assertEquals(1300, health.getAverageTimeToFirstFix(), 1e-9);
+        assertEquals(13, health.getAverageAccuracy(), 1e-6);
+    }
+}